@@ -0,0 +1,105 @@
+/*
+ *     Copyright (C) 2015-2020 chronicle.software
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.algorithms.measures;
+
+import net.openhft.chronicle.algo.bitset.BitSetFrame;
+import net.openhft.chronicle.algo.bitset.ConcurrentFlatBitSetFrame;
+import net.openhft.chronicle.algo.bitset.StripedBitSetFrame;
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Jvm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads setting and clearing neighbouring bits: with a flat frame they all CAS the same word,
+ * with a striped frame each bit is in its own cache line.
+ */
+@State(Scope.Benchmark)
+public class BitSetContention {
+    static final int LOGICAL_SIZE = 4096;
+
+    final Access<Object> access = Access.nativeAccess();
+    final AtomicInteger threadIndexes = new AtomicInteger();
+    BitSetFrame frame;
+    BytesStore store;
+    long address;
+    @Param({"flat", "striped"})
+    String frameType;
+
+    public static void main(String... args) throws RunnerException {
+        int time = Jvm.getBoolean("longTest") ? 30 : 2;
+        System.out.println("measurementTime: " + time + " secs");
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            Options opt = new OptionsBuilder()
+                    .include(BitSetContention.class.getSimpleName())
+                    .mode(Mode.SampleTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .threads(threads)
+                    .forks(1)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void allocate() {
+        frame = "striped".equals(frameType) ?
+                new StripedBitSetFrame(LOGICAL_SIZE, 64) :
+                new ConcurrentFlatBitSetFrame(LOGICAL_SIZE);
+        store = BytesStore.nativeStoreWithFixedCapacity(frame.sizeInBytes());
+        address = store.addressForRead(0);
+        frame.clearAll(access, null, address);
+    }
+
+    @TearDown(Level.Trial)
+    public void release() {
+        store.releaseLast();
+    }
+
+    @Benchmark
+    public boolean setAndClearNeighbouringBits(ThreadState state) {
+        frame.setIfClear(access, null, address, state.bitIndex);
+        return frame.clearIfSet(access, null, address, state.bitIndex);
+    }
+
+    @Benchmark
+    public long allocateAndFree() {
+        long index = frame.setNextClearBit(access, null, address, 0);
+        frame.clear(access, null, address, index);
+        return index;
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        long bitIndex;
+
+        @Setup(Level.Trial)
+        public void assignBit(BitSetContention benchmark) {
+            bitIndex = benchmark.threadIndexes.getAndIncrement();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *     Copyright (C) 2015-2020 chronicle.software
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.algorithms.measures;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Jvm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * Bulk copy, mismatch and fill through {@link Access}, from 8 bytes to 1 MB, across pairs of
+ * accesses. Native memory, arrays, {@code ByteBuffer}s and direct stores take the
+ * {@code Unsafe} fast paths, heap stores go through the access {@code long} by {@code long}, like
+ * {@link #copyByLongs} does for any pair.
+ */
+@State(Scope.Benchmark)
+public class BulkAccess {
+    static final int MAX_SIZE = 1 << 20;
+
+    @Param({"8", "64", "1024", "65536", "1048576"})
+    int size;
+    @Param({"native->native", "array->native", "heapBuffer->directBuffer",
+            "directStore->directStore", "heapStore->heapStore"})
+    String pair;
+    Region source;
+    Region target;
+
+    public static void main(String... args) throws RunnerException {
+        int time = Jvm.getBoolean("longTest") ? 10 : 1;
+        System.out.println("measurementTime: " + time + " secs");
+        Options opt = new OptionsBuilder()
+                .include(BulkAccess.class.getSimpleName())
+                .mode(Mode.AverageTime)
+                .measurementTime(TimeValue.seconds(time))
+                .timeUnit(TimeUnit.NANOSECONDS)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void allocate() {
+        String[] kinds = pair.split("->");
+        source = new Region(kinds[0]);
+        target = new Region(kinds[1]);
+        for (int i = 0; i < size; i++)
+            source.access.writeByte(source.handle, source.offset + i, (byte) i);
+        Access.copy(source.access, source.handle, source.offset,
+                target.access, target.handle, target.offset, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void release() {
+        source.release();
+        target.release();
+    }
+
+    @Benchmark
+    public void copy() {
+        Access.copy(source.access, source.handle, source.offset,
+                target.access, target.handle, target.offset, size);
+    }
+
+    @Benchmark
+    public void copyByLongs() {
+        for (long i = 0; i < size; i += 8L) {
+            target.access.writeLong(target.handle, target.offset + i,
+                    source.access.readLong(source.handle, source.offset + i));
+        }
+    }
+
+    @Benchmark
+    public long mismatch() {
+        return Access.mismatch(source.access, source.handle, source.offset,
+                target.access, target.handle, target.offset, size);
+    }
+
+    @Benchmark
+    public void fill() {
+        target.access.writeBytes(target.handle, target.offset, size, (byte) 1);
+    }
+
+    static final class Region {
+        final Access<Object> access;
+        final Object handle;
+        final long offset;
+        BytesStore store;
+
+        @SuppressWarnings("unchecked")
+        Region(String kind) {
+            switch (kind) {
+                case "native":
+                    store = BytesStore.nativeStoreWithFixedCapacity(MAX_SIZE);
+                    access = Access.nativeAccess();
+                    handle = null;
+                    offset = store.addressForRead(0);
+                    break;
+                case "array":
+                    access = Access.nativeAccess();
+                    handle = new byte[MAX_SIZE];
+                    offset = MEMORY.arrayBaseOffset(byte[].class);
+                    break;
+                case "heapBuffer":
+                    access = (Access) Access.checkedByteBufferAccess();
+                    handle = ByteBuffer.allocate(MAX_SIZE);
+                    offset = 0;
+                    break;
+                case "directBuffer":
+                    access = (Access) Access.checkedByteBufferAccess();
+                    handle = ByteBuffer.allocateDirect(MAX_SIZE);
+                    offset = 0;
+                    break;
+                case "directStore":
+                    store = BytesStore.nativeStoreWithFixedCapacity(MAX_SIZE);
+                    access = (Access) Access.checkedBytesStoreAccess();
+                    handle = store;
+                    offset = 0;
+                    break;
+                default:
+                    access = (Access) Access.checkedBytesStoreAccess();
+                    handle = BytesStore.wrap(new byte[MAX_SIZE]);
+                    offset = 0;
+            }
+        }
+
+        void release() {
+            if (store != null)
+                store.releaseLast();
+        }
+    }
+}
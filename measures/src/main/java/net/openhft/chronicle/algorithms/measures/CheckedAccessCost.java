@@ -0,0 +1,92 @@
+/*
+ *     Copyright (C) 2015-2020 chronicle.software
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.algorithms.measures;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.CheckedAccess;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Jvm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing a 4 KB region of native memory through {@link Access#nativeAccess()} and
+ * through {@link CheckedAccess#wrap}, with the checks enabled and disabled by the system property.
+ * With the checks disabled both should be the same.
+ */
+@State(Scope.Benchmark)
+public class CheckedAccessCost {
+    static final int SIZE = 4096;
+
+    BytesStore store;
+    long address;
+    Access<Object> access;
+    @Param({"native", "wrapped"})
+    String accessType;
+
+    public static void main(String... args) throws RunnerException {
+        int time = Jvm.getBoolean("longTest") ? 10 : 2;
+        System.out.println("measurementTime: " + time + " secs");
+        for (boolean checked : new boolean[]{false, true}) {
+            Options opt = new OptionsBuilder()
+                    .include(CheckedAccessCost.class.getSimpleName())
+                    .mode(Mode.AverageTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .jvmArgsAppend("-D" + CheckedAccess.ENABLED_PROPERTY + "=" + checked)
+                    .forks(1)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void allocate() {
+        store = BytesStore.nativeStoreWithFixedCapacity(SIZE);
+        address = store.addressForRead(0);
+        access = "native".equals(accessType) ?
+                Access.nativeAccess() :
+                CheckedAccess.wrap(Access.nativeAccess(), address, SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void release() {
+        store.releaseLast();
+    }
+
+    @Benchmark
+    public long sumLongs() {
+        long sum = 0;
+        for (int i = 0; i < SIZE; i += 8)
+            sum += access.readLong(null, address + i);
+        return sum;
+    }
+
+    @Benchmark
+    public void incrementLongs() {
+        for (int i = 0; i < SIZE; i += 8)
+            access.writeLong(null, address + i, access.readLong(null, address + i) + 1);
+    }
+}
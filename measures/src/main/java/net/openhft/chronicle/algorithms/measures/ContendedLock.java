@@ -0,0 +1,123 @@
+/*
+ *     Copyright (C) 2015-2020 chronicle.software
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.algorithms.measures;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.locks.McsQueueLockingStrategy;
+import net.openhft.chronicle.algo.locks.ReadWriteLockingStrategy;
+import net.openhft.chronicle.algo.locks.TicketLockingStrategy;
+import net.openhft.chronicle.algo.locks.VanillaReadWriteWithWaitsLockingStrategy;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Jvm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads taking and releasing the same exclusive lock, with a short critical section: waiters
+ * for the vanilla lock CAS the lock word, waiters for the ticket lock spin reading it, waiters for
+ * the MCS queue lock spin on their own queue nodes.
+ */
+@State(Scope.Benchmark)
+public class ContendedLock {
+    static final int MAX_THREADS = 64;
+
+    final Access<Object> access = Access.nativeAccess();
+    final ReadWriteLockingStrategy vanilla =
+            VanillaReadWriteWithWaitsLockingStrategy.instance();
+    final TicketLockingStrategy ticket = TicketLockingStrategy.instance();
+    final McsQueueLockingStrategy mcs = new McsQueueLockingStrategy(MAX_THREADS);
+    BytesStore store;
+    long address;
+    long dataAddress;
+    @Param({"vanilla", "ticket", "mcs"})
+    String lockType;
+
+    public static void main(String... args) throws RunnerException {
+        int time = Jvm.getBoolean("longTest") ? 30 : 2;
+        System.out.println("measurementTime: " + time + " secs");
+        for (int threads : new int[]{2, 4, 8, 16, 32, MAX_THREADS}) {
+            Options opt = new OptionsBuilder()
+                    .include(ContendedLock.class.getSimpleName())
+                    .mode(Mode.SampleTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .threads(threads)
+                    .forks(1)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void allocate() {
+        // cache line-aligned, the protected data in the cache line after the lock
+        store = BytesStore.nativeStoreWithFixedCapacity(mcs.sizeInBytes() + 128);
+        address = (store.addressForRead(0) + 63) & ~63L;
+        dataAddress = address + mcs.sizeInBytes();
+        switch (lockType) {
+            case "vanilla":
+                vanilla.reset(access, null, address);
+                break;
+            case "ticket":
+                ticket.reset(access, null, address);
+                break;
+            default:
+                mcs.reset(access, null, address);
+                break;
+        }
+        access.writeLong(null, dataAddress, 0L);
+    }
+
+    @TearDown(Level.Trial)
+    public void release() {
+        store.releaseLast();
+    }
+
+    @Benchmark
+    public void lockUnlock() {
+        switch (lockType) {
+            case "vanilla":
+                while (!vanilla.tryWriteLock(access, null, address))
+                    Jvm.nanoPause();
+                increment();
+                vanilla.writeUnlock(access, null, address);
+                break;
+            case "ticket":
+                ticket.lock(access, null, address);
+                increment();
+                ticket.unlock(access, null, address);
+                break;
+            default:
+                mcs.lock(access, null, address);
+                increment();
+                mcs.unlock(access, null, address);
+                break;
+        }
+    }
+
+    private void increment() {
+        access.writeLong(null, dataAddress, access.readLong(null, dataAddress) + 1);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *     Copyright (C) 2015-2020 chronicle.software
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.algorithms.measures;
+
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.core.Jvm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing of direct buffers in both byte orders. Hash functions read buffers through a
+ * little-endian view, so hashing a big-endian buffer costs a byte swap per read and should be
+ * close to hashing a little-endian one.
+ */
+@State(Scope.Benchmark)
+public class HashByteOrder {
+
+    ByteBuffer buffer;
+    LongHashFunction function;
+    @Param({"city", "murmur", "xx"})
+    String hash;
+    @Param({"LITTLE_ENDIAN", "BIG_ENDIAN"})
+    String order;
+    @Param({"16", "1024"})
+    int size;
+
+    public static void main(String... args) throws RunnerException {
+        int time = Jvm.getBoolean("longTest") ? 10 : 2;
+        System.out.println("measurementTime: " + time + " secs");
+        Options opt = new OptionsBuilder()
+                .include(HashByteOrder.class.getSimpleName())
+                .mode(Mode.AverageTime)
+                .measurementTime(TimeValue.seconds(time))
+                .timeUnit(TimeUnit.NANOSECONDS)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void allocate() {
+        byte[] bytes = new byte[size];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        buffer = ByteBuffer.allocateDirect(size).order(
+                "BIG_ENDIAN".equals(order) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        buffer.put(bytes).flip();
+        function = "city".equals(hash) ? LongHashFunction.city_1_1() :
+                "murmur".equals(hash) ? LongHashFunction.murmur_3() :
+                        LongHashFunction.xx_r39();
+    }
+
+    @Benchmark
+    public long hashBytes() {
+        return function.hashBytes(buffer);
+    }
+}
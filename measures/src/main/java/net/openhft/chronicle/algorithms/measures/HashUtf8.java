@@ -0,0 +1,85 @@
+/*
+ *     Copyright (C) 2015-2020 chronicle.software
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.algorithms.measures;
+
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.core.Jvm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing strings as UTF-8 bytes with {@link LongHashFunction#hashUtf8}, which reads ASCII strings
+ * in place and encodes others into a thread-local buffer, against encoding them with
+ * {@code String.getBytes(UTF_8)} first.
+ */
+@State(Scope.Benchmark)
+public class HashUtf8 {
+
+    final LongHashFunction function = LongHashFunction.xx_r39();
+    String string;
+    int off;
+    @Param({"ascii", "utf16ascii", "cyrillic"})
+    String chars;
+    @Param({"16", "256"})
+    int length;
+
+    public static void main(String... args) throws RunnerException {
+        int time = Jvm.getBoolean("longTest") ? 10 : 2;
+        System.out.println("measurementTime: " + time + " secs");
+        Options opt = new OptionsBuilder()
+                .include(HashUtf8.class.getSimpleName())
+                .mode(Mode.AverageTime)
+                .measurementTime(TimeValue.seconds(time))
+                .timeUnit(TimeUnit.NANOSECONDS)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void createString() {
+        char[] c = new char[length];
+        for (int i = 0; i < length; i++)
+            c[i] = (char) ("cyrillic".equals(chars) ? '\u0410' + i % 32 : 'a' + i % 26);
+        if ("utf16ascii".equals(chars)) {
+            // ASCII chars after a non-Latin-1 char, which makes the string UTF-16
+            string = '\u0416' + new String(c);
+            off = 1;
+        } else {
+            string = new String(c);
+        }
+    }
+
+    @Benchmark
+    public long hashUtf8() {
+        return function.hashUtf8(string, off, length);
+    }
+
+    @Benchmark
+    public long getBytesThenHash() {
+        return function.hashBytes(string.substring(off).getBytes(StandardCharsets.UTF_8));
+    }
+}
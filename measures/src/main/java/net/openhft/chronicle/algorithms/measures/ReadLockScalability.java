@@ -0,0 +1,97 @@
+/*
+ *     Copyright (C) 2015-2020 chronicle.software
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.algorithms.measures;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.locks.DistributedReadWriteLockingStrategy;
+import net.openhft.chronicle.algo.locks.ReadWriteLockingStrategy;
+import net.openhft.chronicle.algo.locks.VanillaReadWriteUpdateWithWaitsLockingStrategy;
+import net.openhft.chronicle.algo.locks.VanillaReadWriteWithWaitsLockingStrategy;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Jvm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads taking and releasing the read lock of the same lock word: vanilla strategies CAS the
+ * same count, the distributed strategy counts readers in per-thread cache lines.
+ */
+@State(Scope.Benchmark)
+public class ReadLockScalability {
+
+    final Access<Object> access = Access.nativeAccess();
+    ReadWriteLockingStrategy strategy;
+    BytesStore store;
+    long address;
+    @Param({"vanilla", "vanillaUpdate", "distributed"})
+    String lockType;
+
+    public static void main(String... args) throws RunnerException {
+        int time = Jvm.getBoolean("longTest") ? 30 : 2;
+        System.out.println("measurementTime: " + time + " secs");
+        for (int threads : new int[]{1, 2, 4, 8, 16}) {
+            Options opt = new OptionsBuilder()
+                    .include(ReadLockScalability.class.getSimpleName())
+                    .mode(Mode.SampleTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .threads(threads)
+                    .forks(1)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void allocate() {
+        switch (lockType) {
+            case "vanilla":
+                strategy = VanillaReadWriteWithWaitsLockingStrategy.instance();
+                break;
+            case "vanillaUpdate":
+                strategy = VanillaReadWriteUpdateWithWaitsLockingStrategy.instance();
+                break;
+            default:
+                strategy = new DistributedReadWriteLockingStrategy(
+                        Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+                break;
+        }
+        // cache line-aligned
+        store = BytesStore.nativeStoreWithFixedCapacity(strategy.sizeInBytes() + 64);
+        address = (store.addressForRead(0) + 63) & ~63L;
+        strategy.reset(access, null, address);
+    }
+
+    @TearDown(Level.Trial)
+    public void release() {
+        store.releaseLast();
+    }
+
+    @Benchmark
+    public void readLockUnlock() {
+        while (!strategy.tryReadLock(access, null, address))
+            Jvm.nanoPause();
+        strategy.readUnlock(access, null, address);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *     Copyright (C) 2015-2020 chronicle.software
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.algorithms.measures;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.locks.ReadWriteLockingStrategy;
+import net.openhft.chronicle.algo.locks.SeqLockingStrategy;
+import net.openhft.chronicle.algo.locks.VanillaReadWriteWithWaitsLockingStrategy;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Jvm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One writer updating a 64-byte record and several readers copying it consistently, under a
+ * sequence lock (readers don't write to shared memory) and under a read-write lock (each reader
+ * CASes the lock word).
+ */
+@State(Scope.Group)
+public class SeqLockReaders {
+    static final int RECORD_SIZE = 64;
+
+    final Access<Object> access = Access.nativeAccess();
+    final SeqLockingStrategy seqLock = SeqLockingStrategy.instance();
+    final ReadWriteLockingStrategy rwLock = VanillaReadWriteWithWaitsLockingStrategy.instance();
+    BytesStore store;
+    long lockAddress;
+    long recordAddress;
+    @Param({"seqlock", "rwlock"})
+    String lockType;
+
+    public static void main(String... args) throws RunnerException {
+        int time = Jvm.getBoolean("longTest") ? 30 : 2;
+        System.out.println("measurementTime: " + time + " secs");
+        for (int readers : new int[]{1, 3, 7, 15}) {
+            Options opt = new OptionsBuilder()
+                    .include(SeqLockReaders.class.getSimpleName())
+                    .mode(Mode.SampleTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .threadGroups(1, readers)
+                    .forks(1)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void allocate() {
+        // the lock word in its own cache line, followed by the record
+        store = BytesStore.nativeStoreWithFixedCapacity(128);
+        lockAddress = store.addressForRead(0);
+        recordAddress = lockAddress + 64;
+        seqLock.reset(access, null, lockAddress);
+    }
+
+    @TearDown(Level.Trial)
+    public void release() {
+        store.releaseLast();
+    }
+
+    @Benchmark
+    @Group("record")
+    @GroupThreads(1)
+    public void write(ThreadState state) {
+        state.writeBuffer(access);
+        if ("seqlock".equals(lockType)) {
+            seqLock.writeRecord(access, null, state.address, access, null,
+                    lockAddress, recordAddress, RECORD_SIZE);
+        } else {
+            while (!rwLock.tryWriteLock(access, null, lockAddress))
+                Jvm.nanoPause();
+            Access.copy(access, null, state.address, access, null, recordAddress, RECORD_SIZE);
+            rwLock.writeUnlock(access, null, lockAddress);
+        }
+    }
+
+    @Benchmark
+    @Group("record")
+    @GroupThreads(3)
+    public long read(ThreadState state) {
+        if ("seqlock".equals(lockType)) {
+            seqLock.readRecord(access, null, lockAddress, recordAddress,
+                    access, null, state.address, RECORD_SIZE);
+        } else {
+            while (!rwLock.tryReadLock(access, null, lockAddress))
+                Jvm.nanoPause();
+            Access.copy(access, null, recordAddress, access, null, state.address, RECORD_SIZE);
+            rwLock.readUnlock(access, null, lockAddress);
+        }
+        return access.readLong(null, state.address);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        BytesStore buffer;
+        long address;
+        long counter;
+
+        @Setup(Level.Trial)
+        public void allocate() {
+            buffer = BytesStore.nativeStoreWithFixedCapacity(RECORD_SIZE);
+            address = buffer.addressForRead(0);
+        }
+
+        @TearDown(Level.Trial)
+        public void release() {
+            buffer.releaseLast();
+        }
+
+        void writeBuffer(Access<Object> access) {
+            counter++;
+            for (int i = 0; i < RECORD_SIZE; i += 8)
+                access.writeLong(null, address + i, counter);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.bytes.Access;
+
+import static net.openhft.chronicle.algo.MemoryUnit.LONGS;
+import static net.openhft.chronicle.algo.bitset.SingleThreadedFlatBitSetFrame.ALL_ONES;
+import static net.openhft.chronicle.algo.bitset.SingleThreadedFlatBitSetFrame.firstByte;
+
+/**
+ * Counter layout and the read-only operations, shared by the single threaded and the concurrent
+ * packed counter frames.
+ */
+abstract class AbstractPackedCounterFrame implements PackedCounterFrame {
+    final int bitsPerCounter;
+    final int bitsShift;
+    final int maxValue;
+    final int countersPerLongShift;
+    final long counterInLongMask;
+    final long size;
+    final long longLength;
+    /**
+     * The lowest bit of each counter set
+     */
+    final long lowBits;
+    /**
+     * The highest bit of each counter set
+     */
+    final long highBits;
+
+    AbstractPackedCounterFrame(long size, int bitsPerCounter) {
+        if (bitsPerCounter != 2 && bitsPerCounter != 4 && bitsPerCounter != 8)
+            throw new IllegalArgumentException(
+                    "bits per counter should be 2, 4 or 8, " + bitsPerCounter + " given");
+        if (size < 0)
+            throw new IllegalArgumentException("size should be non-negative, " + size + " given");
+        this.bitsPerCounter = bitsPerCounter;
+        this.bitsShift = Integer.numberOfTrailingZeros(bitsPerCounter);
+        this.maxValue = (1 << bitsPerCounter) - 1;
+        int countersPerLong = 64 / bitsPerCounter;
+        this.countersPerLongShift = Integer.numberOfTrailingZeros(countersPerLong);
+        this.counterInLongMask = countersPerLong - 1;
+        this.size = size;
+        this.longLength = (size + countersPerLong - 1) >>> countersPerLongShift;
+        this.lowBits = Long.divideUnsigned(ALL_ONES, maxValue);
+        this.highBits = lowBits << (bitsPerCounter - 1);
+    }
+
+    abstract <T> long readLong(Access<T> access, T handle, long byteIndex);
+
+    long longWithThisCounter(long index) {
+        return index >>> countersPerLongShift;
+    }
+
+    int shift(long index) {
+        return (int) (index & counterInLongMask) << bitsShift;
+    }
+
+    /**
+     * @return the mask of counters with indexes in {@code [fromIndex, toIndex]} within the long,
+     * {@code fromIndex} and {@code toIndex} shouldn't be in different longs
+     */
+    long countersMask(long fromIndex, long toIndex) {
+        long lowerCountersIncluding = ALL_ONES >>> (64 - shift(toIndex) - bitsPerCounter);
+        return (ALL_ONES << shift(fromIndex)) & lowerCountersIncluding;
+    }
+
+    boolean hasZeroCounter(long l) {
+        return ((l - lowBits) & ~l & highBits) != 0;
+    }
+
+    int minCounter(long l) {
+        int min = maxValue;
+        for (int shift = 0; shift < 64; shift += bitsPerCounter) {
+            int value = (int) (l >>> shift) & maxValue;
+            if (value < min)
+                min = value;
+        }
+        return min;
+    }
+
+    long sumCounters(long l) {
+        // fold the counters pairwise into 16-bit lanes, then sum the lanes with a multiplication
+        switch (bitsPerCounter) {
+            case 2:
+                l = (l & 0x3333333333333333L) + ((l >>> 2) & 0x3333333333333333L);
+                // fall through
+            case 4:
+                l = (l & 0x0F0F0F0F0F0F0F0FL) + ((l >>> 4) & 0x0F0F0F0F0F0F0F0FL);
+                // fall through
+            default:
+                l = (l & 0x00FF00FF00FF00FFL) + ((l >>> 8) & 0x00FF00FF00FF00FFL);
+        }
+        return (l * 0x0001000100010001L) >>> 48;
+    }
+
+    boolean checkIndex(long index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        return true;
+    }
+
+    boolean checkFromTo(long fromIndex, long toIndex) {
+        if (fromIndex < 0 || fromIndex > toIndex || toIndex > size) {
+            throw new IndexOutOfBoundsException(
+                    "index range: [" + fromIndex + ", " + toIndex + "), size: " + size);
+        }
+        return true;
+    }
+
+    void checkValue(int value) {
+        if (value < 0 || value > maxValue) {
+            throw new IllegalArgumentException(
+                    "value should be in [0, " + maxValue + "], " + value + " given");
+        }
+    }
+
+    int saturate(long value) {
+        return value < 0 ? 0 : (int) Math.min(value, maxValue);
+    }
+
+    @Override
+    public int bitsPerCounter() {
+        return bitsPerCounter;
+    }
+
+    @Override
+    public int maxValue() {
+        return maxValue;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return LONGS.toBytes(longLength);
+    }
+
+    @Override
+    public <T> int get(Access<T> access, T handle, long offset, long index) {
+        assert checkIndex(index);
+        long l = readLong(access, handle, firstByte(offset, longWithThisCounter(index)));
+        return (int) (l >>> shift(index)) & maxValue;
+    }
+
+    @Override
+    public <T> void clearAll(Access<T> access, T handle, long offset) {
+        access.writeBytes(handle, offset, LONGS.toBytes(longLength), (byte) 0);
+    }
+
+    @Override
+    public <T> long sum(Access<T> access, T handle, long offset, long fromIndex, long toIndex) {
+        assert checkFromTo(fromIndex, toIndex);
+        if (fromIndex == toIndex)
+            return 0;
+        long lastIndex = toIndex - 1;
+        long fromLongIndex = longWithThisCounter(fromIndex);
+        long toLongIndex = longWithThisCounter(lastIndex);
+        if (fromLongIndex == toLongIndex) {
+            long l = readLong(access, handle, firstByte(offset, fromLongIndex));
+            return sumCounters(l & countersMask(fromIndex, lastIndex));
+        }
+        long sum = sumCounters(readLong(access, handle, firstByte(offset, fromLongIndex)) &
+                (ALL_ONES << shift(fromIndex)));
+        for (long i = fromLongIndex + 1; i < toLongIndex; i++)
+            sum += sumCounters(readLong(access, handle, firstByte(offset, i)));
+        long last = readLong(access, handle, firstByte(offset, toLongIndex));
+        return sum + sumCounters(last & countersMask(0, lastIndex));
+    }
+
+    @Override
+    public <T> int min(Access<T> access, T handle, long offset, long fromIndex, long toIndex) {
+        assert checkFromTo(fromIndex, toIndex);
+        if (fromIndex == toIndex)
+            return maxValue;
+        long lastIndex = toIndex - 1;
+        long fromLongIndex = longWithThisCounter(fromIndex);
+        long toLongIndex = longWithThisCounter(lastIndex);
+        int min = maxValue;
+        for (long i = fromLongIndex; i <= toLongIndex; i++) {
+            long l = readLong(access, handle, firstByte(offset, i));
+            // counters out of the range are filled with ones, not to affect the minimum
+            if (i == fromLongIndex)
+                l |= ~(ALL_ONES << shift(fromIndex));
+            if (i == toLongIndex)
+                l |= ~countersMask(0, lastIndex);
+            if (hasZeroCounter(l))
+                return 0;
+            min = Math.min(min, minCounter(l));
+        }
+        return min;
+    }
+
+    @Override
+    public <T> int min(Access<T> access, T handle, long offset, long[] indexes) {
+        int min = maxValue;
+        for (long index : indexes) {
+            int value = get(access, handle, offset, index);
+            if (value == 0)
+                return 0;
+            if (value < min)
+                min = value;
+        }
+        return min;
+    }
+}
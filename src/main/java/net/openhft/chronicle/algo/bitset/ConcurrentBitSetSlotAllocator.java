@@ -0,0 +1,287 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.core.Maths;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static net.openhft.chronicle.algo.MemoryUnit.BITS;
+import static net.openhft.chronicle.algo.MemoryUnit.CACHE_LINES;
+import static net.openhft.chronicle.algo.bitset.BitSetFrame.NOT_FOUND;
+
+/**
+ * Lock-free slot allocator on top of a {@link ConcurrentFlatBitSetFrame}, a set bit means
+ * the slot is allocated.
+ * <p>
+ * The bit set is split into regions, each spanning whole cache lines where the logical size
+ * allows. Every thread is assigned a home region on its first allocation, round robin, and
+ * keeps a rotating start hint: the next search starts right after the slot it allocated last,
+ * rather than at index 0, so threads don't all fight for the same words at the head of the
+ * bit set. When the home region is exhausted the search continues into the following regions
+ * and wraps around to the start of the bit set.
+ * <p>
+ * The hints are process-local, the bit set itself may be shared between processes. An allocator
+ * keeps one hint per thread, so an instance should be used with a single bit set.
+ * Contention counters are cumulative since construction or the last {@link #resetCounters()}.
+ */
+public final class ConcurrentBitSetSlotAllocator {
+    private static final long CACHE_LINE_BITS = BITS.convert(1, CACHE_LINES);
+
+    private final BitSetFrame frame;
+    private final long logicalSize;
+    private final int regions;
+    private final long regionSize;
+    private final AtomicInteger nextRegion = new AtomicInteger();
+    private final ThreadLocal<Hint> hints = new ThreadLocal<>();
+
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder lostRaces = new LongAdder();
+    private final LongAdder regionOverflows = new LongAdder();
+    private final LongAdder wrapArounds = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Creates an allocator with one region per available processor (rounded up to a power of 2).
+     */
+    public ConcurrentBitSetSlotAllocator(ConcurrentFlatBitSetFrame frame) {
+        this(frame, Maths.nextPower2(Runtime.getRuntime().availableProcessors(), 1));
+    }
+
+    /**
+     * @param frame   the concurrent bit set frame to allocate slots from
+     * @param regions the desired number of regions, reduced if the bit set is too small to give
+     *                each region at least one native word
+     */
+    public ConcurrentBitSetSlotAllocator(ConcurrentFlatBitSetFrame frame, int regions) {
+        if (regions <= 0)
+            throw new IllegalArgumentException("regions should be positive, " + regions + " given");
+        this.frame = frame;
+        this.logicalSize = frame.logicalSize();
+        if (logicalSize <= 0)
+            throw new IllegalArgumentException("frame is empty");
+        long words = logicalSize >>> 6;
+        int actualRegions = (int) Math.min(regions, words);
+        long size = logicalSize / actualRegions;
+        // keep regions apart at least by a native word, by a cache line if the size allows
+        size = size >= CACHE_LINE_BITS ? size & ~(CACHE_LINE_BITS - 1) : size & ~63L;
+        this.regions = actualRegions;
+        this.regionSize = size;
+    }
+
+    /**
+     * @return the hint of the current thread, assigning its home region on the first call
+     */
+    private Hint hint() {
+        Hint hint = hints.get();
+        if (hint == null) {
+            int region = Math.floorMod(nextRegion.getAndIncrement(), regions);
+            hint = new Hint(region * regionSize);
+            hints.set(hint);
+        }
+        return hint;
+    }
+
+    public BitSetFrame frame() {
+        return frame;
+    }
+
+    public int regions() {
+        return regions;
+    }
+
+    /**
+     * Allocates a single slot.
+     *
+     * @return the index of the allocated slot, or {@link BitSetFrame#NOT_FOUND} if the bit set
+     * is full
+     */
+    public <T> long allocate(Access<T> access, T handle, long offset) {
+        Hint hint = hint();
+        long from = hint.next;
+        long index = claimFrom(access, handle, offset, from);
+        if (index == NOT_FOUND && from != 0) {
+            wrapArounds.increment();
+            index = claimFrom(access, handle, offset, 0);
+        }
+        return allocated(hint, index, 1);
+    }
+
+    private <T> long claimFrom(Access<T> access, T handle, long offset, long from) {
+        while (true) {
+            long index = frame.nextClearBit(access, handle, offset, from);
+            if (index == NOT_FOUND)
+                return NOT_FOUND;
+            if (frame.setIfClear(access, handle, offset, index))
+                return index;
+            // another thread claimed the same slot between the search and the CAS
+            lostRaces.increment();
+            from = index + 1;
+            if (from >= logicalSize)
+                return NOT_FOUND;
+        }
+    }
+
+    /**
+     * Allocates {@code numberOfBits} continuous slots. See {@link
+     * ConcurrentFlatBitSetFrame#setNextNContinuousClearBits} for the limitations on the range.
+     *
+     * @return the index of the first allocated slot, or {@link BitSetFrame#NOT_FOUND} if there
+     * is no free range of the requested length
+     */
+    public <T> long allocate(Access<T> access, T handle, long offset, int numberOfBits) {
+        if (numberOfBits == 1)
+            return allocate(access, handle, offset);
+        Hint hint = hint();
+        long from = hint.next;
+        long index = frame.setNextNContinuousClearBits(access, handle, offset, from, numberOfBits);
+        if (index == NOT_FOUND && from != 0) {
+            wrapArounds.increment();
+            index = frame.setNextNContinuousClearBits(access, handle, offset, 0, numberOfBits);
+        }
+        return allocated(hint, index, numberOfBits);
+    }
+
+    private long allocated(Hint hint, long index, int numberOfBits) {
+        if (index == NOT_FOUND) {
+            failures.increment();
+            return NOT_FOUND;
+        }
+        allocations.increment();
+        if (index < hint.home || index >= hint.home + regionSize)
+            regionOverflows.increment();
+        long next = index + numberOfBits;
+        // go back home once the search has overflowed past the end of the bit set
+        hint.next = next < logicalSize ? next : hint.home;
+        return index;
+    }
+
+    /**
+     * Frees a single slot, previously returned from {@link #allocate(Access, Object, long)}.
+     *
+     * @throws IllegalStateException if the slot is not allocated
+     */
+    public <T> void free(Access<T> access, T handle, long offset, long index) {
+        if (!frame.clearIfSet(access, handle, offset, index))
+            throw new IllegalStateException("slot " + index + " is not allocated");
+        freed(index);
+    }
+
+    /**
+     * Frees {@code numberOfBits} continuous slots starting from {@code fromIndex}.
+     *
+     * @throws IllegalStateException if some of the slots are not allocated, then the slots are
+     *                               left allocated
+     */
+    public <T> void free(Access<T> access, T handle, long offset, long fromIndex, int numberOfBits) {
+        if (numberOfBits == 1) {
+            free(access, handle, offset, fromIndex);
+            return;
+        }
+        long toIndex = fromIndex + numberOfBits;
+        for (long index = fromIndex; index < toIndex; index++) {
+            if (!frame.clearIfSet(access, handle, offset, index)) {
+                // restore the slots cleared so far, unless another thread has claimed them
+                // in between, don't steal them back
+                for (long i = fromIndex; i < index; i++)
+                    frame.setIfClear(access, handle, offset, i);
+                throw new IllegalStateException("slot " + index + " is not allocated");
+            }
+        }
+        freed(fromIndex);
+    }
+
+    private void freed(long index) {
+        // reuse the freed slot next if it is in the home region and behind the hint,
+        // that keeps the allocations of a thread dense within its region. Threads which only
+        // free, e. g. consumers, are not assigned a region
+        Hint hint = hints.get();
+        if (hint != null && index >= hint.home && index < hint.next)
+            hint.next = index;
+    }
+
+    /**
+     * @return the number of successful allocations
+     */
+    public long allocationCount() {
+        return allocations.sum();
+    }
+
+    /**
+     * @return the number of times a clear bit found by a search was claimed by another thread
+     * before this thread could set it
+     */
+    public long lostRaceCount() {
+        return lostRaces.sum();
+    }
+
+    /**
+     * @return the number of allocations which ended up outside of the home region of the
+     * allocating thread
+     */
+    public long regionOverflowCount() {
+        return regionOverflows.sum();
+    }
+
+    /**
+     * @return the number of searches which reached the end of the bit set and were restarted
+     * from index 0
+     */
+    public long wrapAroundCount() {
+        return wrapArounds.sum();
+    }
+
+    /**
+     * @return the number of allocations which failed because the bit set was full
+     */
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    public void resetCounters() {
+        allocations.reset();
+        lostRaces.reset();
+        regionOverflows.reset();
+        wrapArounds.reset();
+        failures.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentBitSetSlotAllocator{" +
+                "regions=" + regions +
+                ", regionSize=" + regionSize +
+                ", allocations=" + allocationCount() +
+                ", lostRaces=" + lostRaceCount() +
+                ", regionOverflows=" + regionOverflowCount() +
+                ", wrapArounds=" + wrapAroundCount() +
+                ", failures=" + failureCount() +
+                '}';
+    }
+
+    private static final class Hint {
+        final long home;
+        long next;
+
+        Hint(long home) {
+            this.home = home;
+            this.next = home;
+        }
+    }
+}
@@ -27,12 +27,36 @@ import static net.openhft.chronicle.algo.bitset.SingleThreadedFlatBitSetFrame.*;
 
 /**
  * DirectBitSet with input validations and ThreadSafe memory access.
+ * <p>
+ * By default {@code setNextNContinuousClearBits()} and {@code setPreviousNContinuousClearBits()}
+ * only find ranges within a single native word, which are claimed with a single CAS. In the
+ * multi-word range claims mode, enabled by {@link #ConcurrentFlatBitSetFrame(long, boolean)},
+ * these methods find ranges of any length, crossing word boundaries, and claim them word by word,
+ * a CAS per word. If some bit of the range is found set by another thread while claiming,
+ * the words already claimed are rolled back and the search is retried. Claims never overlap,
+ * but a concurrent reader may observe a range partially set, before it is either completed
+ * or rolled back.
  */
 public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
     private final long longLength;
+    private final boolean multiWordRangeClaims;
 
     public ConcurrentFlatBitSetFrame(long logicalSize) {
+        this(logicalSize, false);
+    }
+
+    /**
+     * @param multiWordRangeClaims whether {@code setNextNContinuousClearBits()} and
+     *                             {@code setPreviousNContinuousClearBits()} should find and claim
+     *                             ranges crossing native word boundaries
+     */
+    public ConcurrentFlatBitSetFrame(long logicalSize, boolean multiWordRangeClaims) {
         longLength = BITS.toLongs(logicalSize);
+        this.multiWordRangeClaims = multiWordRangeClaims;
+    }
+
+    public boolean multiWordRangeClaims() {
+        return multiWordRangeClaims;
     }
 
     private static long rightShiftOneFill(long l, long shift) {
@@ -75,13 +99,7 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
         long byteIndex = firstByte(offset, longIndex);
         // only 6 lowest-order bits used, JLS 15.19
         long mask = singleBit(bitIndex);
-        while (true) {
-            long l = access.readVolatileLong(handle, byteIndex);
-            long l2 = l ^ mask;
-            if (access.compareAndSwapLong(handle, byteIndex, l, l2))
-                return;
-            Jvm.nanoPause();
-        }
+        access.getAndBitwiseXorLong(handle, byteIndex, mask);
     }
 
     @Override
@@ -97,55 +115,25 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
             if ((fromIndex & 63) != 0) {
                 long fromByteIndex = firstByte(offset, fromLongIndex);
                 long mask = higherBitsIncludingThis(fromIndex);
-                while (true) {
-                    long l = access.readVolatileLong(handle, fromByteIndex);
-                    long l2 = l ^ mask;
-                    if (access.compareAndSwapLong(handle, fromByteIndex, l, l2))
-                        break;
-                    Jvm.nanoPause();
-                }
+                access.getAndBitwiseXorLong(handle, fromByteIndex, mask);
                 firstFullLongIndex++;
             }
             if ((exclusiveToIndex & 63) == 0) {
                 for (long i = firstFullLongIndex; i <= toLongIndex; i++) {
-                    while (true) {
-                        long l = readVolatileLong(access, handle, offset, i);
-                        long l2 = ~l;
-                        if (access.compareAndSwapLong(handle, firstByte(offset, i), l, l2))
-                            break;
-                        Jvm.nanoPause();
-                    }
+                    access.getAndBitwiseXorLong(handle, firstByte(offset, i), ALL_ONES);
                 }
             } else {
                 for (long i = firstFullLongIndex; i < toLongIndex; i++) {
-                    while (true) {
-                        long l = readVolatileLong(access, handle, offset, i);
-                        long l2 = ~l;
-                        if (access.compareAndSwapLong(handle, firstByte(offset, i), l, l2))
-                            break;
-                        Jvm.nanoPause();
-                    }
+                    access.getAndBitwiseXorLong(handle, firstByte(offset, i), ALL_ONES);
                 }
                 long toByteIndex = firstByte(offset, toLongIndex);
                 long mask = lowerBitsIncludingThis(toIndex);
-                while (true) {
-                    long l = access.readVolatileLong(handle, toByteIndex);
-                    long l2 = l ^ mask;
-                    if (access.compareAndSwapLong(handle, toByteIndex, l, l2))
-                        return;
-                    Jvm.nanoPause();
-                }
+                access.getAndBitwiseXorLong(handle, toByteIndex, mask);
             }
         } else {
             long byteIndex = firstByte(offset, fromLongIndex);
             long mask = higherBitsIncludingThis(fromIndex) & lowerBitsIncludingThis(toIndex);
-            while (true) {
-                long l = access.readVolatileLong(handle, byteIndex);
-                long l2 = l ^ mask;
-                if (access.compareAndSwapLong(handle, byteIndex, l, l2))
-                    return;
-                Jvm.nanoPause();
-            }
+            access.getAndBitwiseXorLong(handle, byteIndex, mask);
         }
     }
 
@@ -155,15 +143,9 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
         long longIndex = longWithThisBit(bitIndex);
         long byteIndex = firstByte(offset, longIndex);
         long mask = singleBit(bitIndex);
-        while (true) {
-            long l = access.readVolatileLong(handle, byteIndex);
-            if ((l & mask) != 0)
-                return;
-            long l2 = l | mask;
-            if (access.compareAndSwapLong(handle, byteIndex, l, l2))
-                return;
-            Jvm.nanoPause();
-        }
+        // the read avoids invalidating the cache line when the bit is already set
+        if ((access.readVolatileLong(handle, byteIndex) & mask) == 0)
+            access.getAndBitwiseOrLong(handle, byteIndex, mask);
     }
 
     @Override
@@ -172,15 +154,9 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
         long longIndex = longWithThisBit(bitIndex);
         long byteIndex = firstByte(offset, longIndex);
         long mask = singleBit(bitIndex);
-        while (true) {
-            long l = access.readVolatileLong(handle, byteIndex);
-            long l2 = l | mask;
-            if (l == l2)
-                return false;
-            if (access.compareAndSwapLong(handle, byteIndex, l, l2))
-                return true;
-            Jvm.nanoPause();
-        }
+        if ((access.readVolatileLong(handle, byteIndex) & mask) != 0)
+            return false;
+        return (access.getAndBitwiseOrLong(handle, byteIndex, mask) & mask) == 0;
     }
 
     @Override
@@ -196,13 +172,7 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
             if ((fromIndex & 63) != 0) {
                 long fromByteIndex = firstByte(offset, fromLongIndex);
                 long mask = higherBitsIncludingThis(fromIndex);
-                while (true) {
-                    long l = access.readVolatileLong(handle, fromByteIndex);
-                    long l2 = l | mask;
-                    if (access.compareAndSwapLong(handle, fromByteIndex, l, l2))
-                        break;
-                    Jvm.nanoPause();
-                }
+                access.getAndBitwiseOrLong(handle, fromByteIndex, mask);
                 firstFullLongIndex++;
             }
             if ((exclusiveToIndex & 63) == 0) {
@@ -215,24 +185,12 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
                 }
                 long toByteIndex = firstByte(offset, toLongIndex);
                 long mask = lowerBitsIncludingThis(toIndex);
-                while (true) {
-                    long l = access.readVolatileLong(handle, toByteIndex);
-                    long l2 = l | mask;
-                    if (access.compareAndSwapLong(handle, toByteIndex, l, l2))
-                        return;
-                    Jvm.nanoPause();
-                }
+                access.getAndBitwiseOrLong(handle, toByteIndex, mask);
             }
         } else {
             long byteIndex = firstByte(offset, fromLongIndex);
             long mask = higherBitsIncludingThis(fromIndex) & lowerBitsIncludingThis(toIndex);
-            while (true) {
-                long l = access.readVolatileLong(handle, byteIndex);
-                long l2 = l | mask;
-                if (access.compareAndSwapLong(handle, byteIndex, l, l2))
-                    return;
-                Jvm.nanoPause();
-            }
+            access.getAndBitwiseOrLong(handle, byteIndex, mask);
         }
     }
 
@@ -249,15 +207,9 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
         long longIndex = longWithThisBit(bitIndex);
         long byteIndex = firstByte(offset, longIndex);
         long mask = singleBit(bitIndex);
-        while (true) {
-            long l = access.readVolatileLong(handle, byteIndex);
-            if ((l & mask) == 0)
-                return;
-            long l2 = l & ~mask;
-            if (access.compareAndSwapLong(handle, byteIndex, l, l2))
-                return;
-            Jvm.nanoPause();
-        }
+        // the read avoids invalidating the cache line when the bit is already clear
+        if ((access.readVolatileLong(handle, byteIndex) & mask) != 0)
+            access.getAndBitwiseAndLong(handle, byteIndex, ~mask);
     }
 
     @Override
@@ -266,14 +218,9 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
         long longIndex = longWithThisBit(bitIndex);
         long byteIndex = firstByte(offset, longIndex);
         long mask = singleBit(bitIndex);
-        while (true) {
-            long l = access.readVolatileLong(handle, byteIndex);
-            if ((l & mask) == 0) return false;
-            long l2 = l & ~mask;
-            if (access.compareAndSwapLong(handle, byteIndex, l, l2))
-                return true;
-            Jvm.nanoPause();
-        }
+        if ((access.readVolatileLong(handle, byteIndex) & mask) == 0)
+            return false;
+        return (access.getAndBitwiseAndLong(handle, byteIndex, ~mask) & mask) != 0;
     }
 
     @Override
@@ -289,13 +236,7 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
             if ((fromIndex & 63) != 0) {
                 long fromByteIndex = firstByte(offset, fromLongIndex);
                 long mask = lowerBitsExcludingThis(fromIndex);
-                while (true) {
-                    long l = access.readVolatileLong(handle, fromByteIndex);
-                    long l2 = l & mask;
-                    if (access.compareAndSwapLong(handle, fromByteIndex, l, l2))
-                        break;
-                    Jvm.nanoPause();
-                }
+                access.getAndBitwiseAndLong(handle, fromByteIndex, mask);
                 firstFullLongIndex++;
             }
             if ((exclusiveToIndex & 63) == 0) {
@@ -308,24 +249,12 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
                 }
                 long toByteIndex = firstByte(offset, toLongIndex);
                 long mask = higherBitsExcludingThis(toIndex);
-                while (true) {
-                    long l = access.readVolatileLong(handle, toByteIndex);
-                    long l2 = l & mask;
-                    if (access.compareAndSwapLong(handle, toByteIndex, l, l2))
-                        return;
-                    Jvm.nanoPause();
-                }
+                access.getAndBitwiseAndLong(handle, toByteIndex, mask);
             }
         } else {
             long byteIndex = firstByte(offset, fromLongIndex);
             long mask = lowerBitsExcludingThis(fromIndex) | (higherBitsExcludingThis(toIndex));
-            while (true) {
-                long l = access.readVolatileLong(handle, byteIndex);
-                long l2 = l & mask;
-                if (access.compareAndSwapLong(handle, byteIndex, l, l2))
-                    return;
-                Jvm.nanoPause();
-            }
+            access.getAndBitwiseAndLong(handle, byteIndex, mask);
         }
     }
 
@@ -618,7 +547,7 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
 
     @Override
     public <T> long cardinality(Access<T> access, T handle, long offset) {
-        long count = Long.bitCount(access.readVolatileLong(handle, 0));
+        long count = Long.bitCount(readVolatileLong(access, handle, offset, 0));
         for (long i = 1; i < longLength; i++) {
             count += Long.bitCount(readLong(access, handle, offset, i));
         }
@@ -626,17 +555,20 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
     }
 
     /**
-     * WARNING! This implementation doesn't strictly follow the contract
-     * from {@code DirectBitSet} interface. For the sake of atomicity this
+     * WARNING! Unless in the multi-word range claims mode, this implementation doesn't strictly
+     * follow the contract from {@code DirectBitSet} interface. For the sake of atomicity this
      * implementation couldn't find and flip the range crossing native word
      * boundary, e. g. bits from 55 to 75 (boundary is 64).
      *
      * @throws IllegalArgumentException if {@code numberOfBits}
-     *                                  is out of range {@code 0 < numberOfBits && numberOfBits <= 64}
+     *                                  is out of range {@code 0 < numberOfBits && numberOfBits <= 64},
+     *                                  or isn't positive in the multi-word range claims mode
      */
     @Override
     public <T> long setNextNContinuousClearBits(Access<T> access, T handle, long offset,
                                                 long fromIndex, int numberOfBits) {
+        if (multiWordRangeClaims && numberOfBits > 1)
+            return claimNextRange(access, handle, offset, fromIndex, numberOfBits);
         checkNumberOfBits(numberOfBits);
         if (numberOfBits == 1)
             return setNextClearBit(access, handle, offset, fromIndex);
@@ -729,7 +661,9 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
      * WARNING! This implementation doesn't strictly follow the contract
      * from {@code BitSetFrame} interface. For the sake of atomicity this
      * implementation couldn't find and flip the range crossing native word
-     * boundary, e. g. bits from 55 to 75 (boundary is 64).
+     * boundary, e. g. bits from 55 to 75 (boundary is 64). The multi-word range
+     * claims mode doesn't apply to clearing: rolling back a partially cleared
+     * range could set bits which another thread has claimed in between.
      *
      * @throws IllegalArgumentException if {@code numberOfBits}
      *                                  is out of range {@code 0 < numberOfBits && numberOfBits <= 64}
@@ -817,17 +751,20 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
     }
 
     /**
-     * WARNING! This implementation doesn't strictly follow the contract
-     * from {@code DirectBitSet} interface. For the sake of atomicity this
+     * WARNING! Unless in the multi-word range claims mode, this implementation doesn't strictly
+     * follow the contract from {@code DirectBitSet} interface. For the sake of atomicity this
      * implementation couldn't find and flip the range crossing native word
      * boundary, e. g. bits from 55 to 75 (boundary is 64).
      *
      * @throws IllegalArgumentException if {@code numberOfBits}
-     *                                  is out of range {@code 0 < numberOfBits && numberOfBits <= 64}
+     *                                  is out of range {@code 0 < numberOfBits && numberOfBits <= 64},
+     *                                  or isn't positive in the multi-word range claims mode
      */
     @Override
     public <T> long setPreviousNContinuousClearBits(Access<T> access, T handle, long offset,
                                                     long fromIndex, int numberOfBits) {
+        if (multiWordRangeClaims && numberOfBits > 1)
+            return claimPreviousRange(access, handle, offset, fromIndex, numberOfBits);
         checkNumberOfBits(numberOfBits);
         if (numberOfBits == 1)
             return setPreviousClearBit(access, handle, offset, fromIndex);
@@ -916,7 +853,8 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
      * WARNING! This implementation doesn't strictly follow the contract
      * from {@code DirectBitSet} interface. For the sake of atomicity this
      * implementation couldn't find and flip the range crossing native word
-     * boundary, e. g. bits from 55 to 75 (boundary is 64).
+     * boundary, e. g. bits from 55 to 75 (boundary is 64). The multi-word range
+     * claims mode doesn't apply to clearing.
      *
      * @throws IllegalArgumentException if {@code numberOfBits}
      *                                  is out of range {@code 0 < numberOfBits && numberOfBits <= 64}
@@ -1005,6 +943,142 @@ public final class ConcurrentFlatBitSetFrame implements BitSetFrame {
         }
     }
 
+    private <T> long claimNextRange(Access<T> access, T handle, long offset,
+                                    long fromIndex, int numberOfBits) {
+        checkFromIndex(fromIndex);
+        long size = logicalSize();
+        while (true) {
+            long start = nextClearBit(access, handle, offset, fromIndex);
+            if (start == NOT_FOUND || start + numberOfBits > size)
+                return NOT_FOUND;
+            long end = start + numberOfBits;
+            long setBit = nextSetBitBefore(access, handle, offset, start, end);
+            if (setBit != NOT_FOUND) {
+                fromIndex = setBit + 1;
+                continue;
+            }
+            if (claimRange(access, handle, offset, start, end))
+                return start;
+            // lost a race, the search sees the bits set by another thread on the next iteration
+            Jvm.nanoPause();
+            fromIndex = start;
+        }
+    }
+
+    private <T> long claimPreviousRange(Access<T> access, T handle, long offset,
+                                        long fromIndex, int numberOfBits) {
+        if (checkNotFoundIndex(fromIndex))
+            return NOT_FOUND;
+        while (true) {
+            long last = previousClearBit(access, handle, offset, fromIndex);
+            if (last == NOT_FOUND || last - numberOfBits + 1 < 0)
+                return NOT_FOUND;
+            long start = last - numberOfBits + 1;
+            long setBit = previousSetBitAfter(access, handle, offset, last, start);
+            if (setBit != NOT_FOUND) {
+                if ((fromIndex = setBit - 1) < 0)
+                    return NOT_FOUND;
+                continue;
+            }
+            if (claimRange(access, handle, offset, start, last + 1))
+                return start;
+            Jvm.nanoPause();
+            fromIndex = last;
+        }
+    }
+
+    /**
+     * @return the index of the first set bit in {@code [fromIndex, exclusiveToIndex)},
+     * or {@link #NOT_FOUND}
+     */
+    private <T> long nextSetBitBefore(Access<T> access, T handle, long offset,
+                                      long fromIndex, long exclusiveToIndex) {
+        long longIndex = longWithThisBit(fromIndex);
+        long toIndex = exclusiveToIndex - 1;
+        long toLongIndex = longWithThisBit(toIndex);
+        long l = readVolatileLong(access, handle, offset, longIndex) &
+                higherBitsIncludingThis(fromIndex);
+        while (true) {
+            if (longIndex == toLongIndex)
+                l &= lowerBitsIncludingThis(toIndex);
+            if (l != 0)
+                return firstBit(longIndex) + numberOfTrailingZeros(l);
+            if (++longIndex > toLongIndex)
+                return NOT_FOUND;
+            l = readLong(access, handle, offset, longIndex);
+        }
+    }
+
+    /**
+     * @return the index of the last set bit in {@code [inclusiveToIndex, fromIndex]},
+     * or {@link #NOT_FOUND}
+     */
+    private <T> long previousSetBitAfter(Access<T> access, T handle, long offset,
+                                         long fromIndex, long inclusiveToIndex) {
+        long longIndex = longWithThisBit(fromIndex);
+        long toLongIndex = longWithThisBit(inclusiveToIndex);
+        long l = readVolatileLong(access, handle, offset, longIndex) &
+                lowerBitsIncludingThis(fromIndex);
+        while (true) {
+            if (longIndex == toLongIndex)
+                l &= higherBitsIncludingThis(inclusiveToIndex);
+            if (l != 0)
+                return lastBit(longIndex) - numberOfLeadingZeros(l);
+            if (--longIndex < toLongIndex)
+                return NOT_FOUND;
+            l = readLong(access, handle, offset, longIndex);
+        }
+    }
+
+    /**
+     * Sets all bits in {@code [fromIndex, exclusiveToIndex)}, a CAS per native word, provided
+     * they are all clear. If a set bit is found, the words already claimed are rolled back.
+     *
+     * @return {@code true} if the whole range is claimed, {@code false} if it is left untouched
+     */
+    private <T> boolean claimRange(Access<T> access, T handle, long offset,
+                                   long fromIndex, long exclusiveToIndex) {
+        long fromLongIndex = longWithThisBit(fromIndex);
+        long toIndex = exclusiveToIndex - 1;
+        long toLongIndex = longWithThisBit(toIndex);
+        for (long i = fromLongIndex; i <= toLongIndex; i++) {
+            long mask = rangeMask(fromIndex, toIndex, fromLongIndex, toLongIndex, i);
+            long byteIndex = firstByte(offset, i);
+            while (true) {
+                long l = access.readVolatileLong(handle, byteIndex);
+                if ((l & mask) != 0) {
+                    rollBackClaim(access, handle, offset, fromIndex, toIndex, fromLongIndex, i);
+                    return false;
+                }
+                if (access.compareAndSwapLong(handle, byteIndex, l, l | mask))
+                    break;
+                Jvm.nanoPause();
+            }
+        }
+        return true;
+    }
+
+    private <T> void rollBackClaim(Access<T> access, T handle, long offset,
+                                   long fromIndex, long toIndex,
+                                   long fromLongIndex, long exclusiveToLongIndex) {
+        long toLongIndex = longWithThisBit(toIndex);
+        for (long i = fromLongIndex; i < exclusiveToLongIndex; i++) {
+            long mask = rangeMask(fromIndex, toIndex, fromLongIndex, toLongIndex, i);
+            long byteIndex = firstByte(offset, i);
+            access.getAndBitwiseAndLong(handle, byteIndex, ~mask);
+        }
+    }
+
+    private static long rangeMask(long fromIndex, long toIndex,
+                                  long fromLongIndex, long toLongIndex, long longIndex) {
+        long mask = ALL_ONES;
+        if (longIndex == fromLongIndex)
+            mask &= higherBitsIncludingThis(fromIndex);
+        if (longIndex == toLongIndex)
+            mask &= lowerBitsIncludingThis(toIndex);
+        return mask;
+    }
+
     private class SetBits implements Bits {
         private final long byteLength = longLength << 3;
         private long byteIndex = 0;
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.core.Jvm;
+
+import static net.openhft.chronicle.algo.bitset.SingleThreadedFlatBitSetFrame.firstByte;
+
+/**
+ * Packed counters with input validations and ThreadSafe memory access. Each update is a CAS
+ * of the native word holding the counter. Bulk {@code sum()} and {@code min()} are not atomic,
+ * they read the words one after another.
+ */
+public final class ConcurrentPackedCounterFrame extends AbstractPackedCounterFrame {
+
+    /**
+     * @param size           the number of counters
+     * @param bitsPerCounter 2, 4 or 8
+     */
+    public ConcurrentPackedCounterFrame(long size, int bitsPerCounter) {
+        super(size, bitsPerCounter);
+    }
+
+    @Override
+    <T> long readLong(Access<T> access, T handle, long byteIndex) {
+        return access.readVolatileLong(handle, byteIndex);
+    }
+
+    @Override
+    public <T> void set(Access<T> access, T handle, long offset, long index, int value) {
+        assert checkIndex(index);
+        checkValue(value);
+        long byteIndex = firstByte(offset, longWithThisCounter(index));
+        int shift = shift(index);
+        long mask = (long) maxValue << shift;
+        while (true) {
+            long l = access.readVolatileLong(handle, byteIndex);
+            long l2 = (l & ~mask) | ((long) value << shift);
+            if (l == l2 || access.compareAndSwapLong(handle, byteIndex, l, l2))
+                return;
+            Jvm.nanoPause();
+        }
+    }
+
+    @Override
+    public <T> int add(Access<T> access, T handle, long offset, long index, int delta) {
+        assert checkIndex(index);
+        long byteIndex = firstByte(offset, longWithThisCounter(index));
+        int shift = shift(index);
+        long mask = (long) maxValue << shift;
+        while (true) {
+            long l = access.readVolatileLong(handle, byteIndex);
+            int value = (int) (l >>> shift) & maxValue;
+            int newValue = saturate((long) value + delta);
+            if (newValue == value ||
+                    access.compareAndSwapLong(handle, byteIndex, l,
+                            (l & ~mask) | ((long) newValue << shift)))
+                return newValue;
+            Jvm.nanoPause();
+        }
+    }
+}
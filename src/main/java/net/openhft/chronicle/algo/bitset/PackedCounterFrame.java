@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.bytes.Access;
+
+/**
+ * Array of small unsigned counters, 2, 4 or 8 bits each, packed into native words, e. g. for
+ * counting Bloom filters and reference counts. Counters never cross native word boundaries.
+ * <p>
+ * All updates saturate: a counter never goes below 0 or above {@link #maxValue()}. Note that
+ * a saturated counter no longer tracks the exact count, users which need "sticky" saturation,
+ * like counting Bloom filters, should check for {@link #maxValue()} before decrementing.
+ */
+public interface PackedCounterFrame {
+
+    /**
+     * @return the number of bits per counter, 2, 4 or 8
+     */
+    int bitsPerCounter();
+
+    /**
+     * @return the maximum value of a counter, {@code 2 ^ bitsPerCounter() - 1}
+     */
+    int maxValue();
+
+    /**
+     * @return the number of counters in the frame
+     */
+    long size();
+
+    long sizeInBytes();
+
+    /**
+     * @param index the counter index
+     * @return the value of the counter
+     */
+    <T> int get(Access<T> access, T handle, long offset, long index);
+
+    /**
+     * Sets the counter to the given value.
+     *
+     * @param index the counter index
+     * @param value the new value of the counter
+     * @throws IllegalArgumentException if the {@code value} is out of the range
+     *                                  {@code [0, maxValue()]}
+     */
+    <T> void set(Access<T> access, T handle, long offset, long index, int value);
+
+    /**
+     * Adds {@code delta} to the counter, saturating at 0 and {@link #maxValue()}.
+     *
+     * @param index the counter index
+     * @param delta the value to add, may be negative
+     * @return the new value of the counter
+     */
+    <T> int add(Access<T> access, T handle, long offset, long index, int delta);
+
+    /**
+     * Equivalent to {@code add(access, handle, offset, index, 1)}.
+     *
+     * @return the new value of the counter
+     */
+    default <T> int increment(Access<T> access, T handle, long offset, long index) {
+        return add(access, handle, offset, index, 1);
+    }
+
+    /**
+     * Equivalent to {@code add(access, handle, offset, index, -1)}.
+     *
+     * @return the new value of the counter
+     */
+    default <T> int decrement(Access<T> access, T handle, long offset, long index) {
+        return add(access, handle, offset, index, -1);
+    }
+
+    /**
+     * Sets all counters to 0.
+     */
+    <T> void clearAll(Access<T> access, T handle, long offset);
+
+    /**
+     * @param fromIndex index of the first counter to sum
+     * @param toIndex   index after the last counter to sum
+     * @return the sum of counters from {@code fromIndex} (inclusive) to {@code toIndex} (exclusive)
+     */
+    <T> long sum(Access<T> access, T handle, long offset, long fromIndex, long toIndex);
+
+    /**
+     * @param fromIndex index of the first counter
+     * @param toIndex   index after the last counter
+     * @return the minimum of counters from {@code fromIndex} (inclusive) to {@code toIndex}
+     * (exclusive), or {@link #maxValue()} if the range is empty
+     */
+    <T> int min(Access<T> access, T handle, long offset, long fromIndex, long toIndex);
+
+    /**
+     * Useful for counting Bloom filter queries, when {@code indexes} are the positions
+     * of the hashed key.
+     *
+     * @param indexes the counter indexes
+     * @return the minimum of the counters at the given indexes, or {@link #maxValue()}
+     * if {@code indexes} is empty
+     */
+    <T> int min(Access<T> access, T handle, long offset, long[] indexes);
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.bytes.Access;
+
+import static java.lang.Long.bitCount;
+import static java.lang.Long.numberOfTrailingZeros;
+import static net.openhft.chronicle.algo.MemoryUnit.BITS;
+import static net.openhft.chronicle.algo.MemoryUnit.LONGS;
+import static net.openhft.chronicle.algo.bitset.BitSetFrame.NOT_FOUND;
+import static net.openhft.chronicle.algo.bitset.SingleThreadedFlatBitSetFrame.firstByte;
+
+/**
+ * Rank/select auxiliary index over a bit set with the flat layout, i. e. a {@link
+ * SingleThreadedFlatBitSetFrame} or a {@link ConcurrentFlatBitSetFrame}, stored off-heap in a
+ * separate region of {@link #sizeInBytes()} bytes.
+ * <p>
+ * The rank part is Rank9 (S. Vigna, Broadword Implementation of Rank/Select Queries): for each
+ * block of 512 bits the index stores the number of set bits before the block and 7 9-bit numbers
+ * of set bits before each of the following longs of the block, so {@code rank1()} reads two
+ * longs of the index and one long of the bit set. The select part samples the block of each
+ * 512th set bit, {@code select1()} binary searches the blocks between two samples, which are
+ * usually few.
+ * <p>
+ * The index is a snapshot, it should be {@linkplain #build rebuilt} after the bit set changes.
+ */
+public final class RankSelectIndex {
+
+    private static final int BLOCK_LONGS_SHIFT = 3;
+    private static final int BLOCK_LONGS = 1 << BLOCK_LONGS_SHIFT;
+    private static final int SAMPLE_ONES_SHIFT = 9;
+    private static final int SUB_COUNT_BITS = 9;
+    private static final long SUB_COUNT_MASK = (1L << SUB_COUNT_BITS) - 1;
+
+    private final long longLength;
+    private final long blocks;
+    private final long samplesOffset;
+    private final long sizeInBytes;
+
+    /**
+     * @param frame the bit set frame to index
+     * @throws IllegalArgumentException if the frame doesn't have the flat layout
+     */
+    public RankSelectIndex(BitSetFrame frame) {
+        if (frame.algorithm() != FlatBitSetAlgorithm.INSTANCE) {
+            throw new IllegalArgumentException(
+                    "only bit sets with the flat layout could be indexed, " + frame + " given");
+        }
+        longLength = BITS.toLongs(frame.logicalSize());
+        blocks = (longLength + BLOCK_LONGS - 1) >>> BLOCK_LONGS_SHIFT;
+        // two longs per block, and a sentinel block with the total number of set bits
+        samplesOffset = LONGS.toBytes((blocks + 1) * 2);
+        long maxSamples = (LONGS.toBits(longLength) >>> SAMPLE_ONES_SHIFT) + 1;
+        sizeInBytes = samplesOffset + LONGS.toBytes(maxSamples);
+    }
+
+    public long logicalSize() {
+        return LONGS.toBits(longLength);
+    }
+
+    /**
+     * @return the size of the index region in bytes
+     */
+    public long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * (Re)builds the index of the bit set at {@code bitsOffset} into the region at {@code
+     * indexOffset}.
+     */
+    public <T> void build(Access<T> access, T handle, long bitsOffset, long indexOffset) {
+        long rank = 0;
+        long nextSample = 0;
+        long sampleByteIndex = indexOffset + samplesOffset;
+        for (long block = 0; block < blocks; block++) {
+            long blockRank = rank;
+            long subCounts = 0;
+            long firstLong = block << BLOCK_LONGS_SHIFT;
+            for (int j = 0; j < BLOCK_LONGS; j++) {
+                if (j > 0)
+                    subCounts |= (rank - blockRank) << ((j - 1) * SUB_COUNT_BITS);
+                long longIndex = firstLong + j;
+                if (longIndex >= longLength)
+                    continue;
+                long ones = bitCount(access.readLong(handle, firstByte(bitsOffset, longIndex)));
+                // a long has less ones than a sample, so it may contain one sampled one at most
+                if (rank + ones > nextSample) {
+                    access.writeLong(handle, sampleByteIndex, block);
+                    sampleByteIndex += 8L;
+                    nextSample += 1L << SAMPLE_ONES_SHIFT;
+                }
+                rank += ones;
+            }
+            long blockByteIndex = blockByteIndex(indexOffset, block);
+            access.writeLong(handle, blockByteIndex, blockRank);
+            access.writeLong(handle, blockByteIndex + 8L, subCounts);
+        }
+        long sentinelByteIndex = blockByteIndex(indexOffset, blocks);
+        access.writeLong(handle, sentinelByteIndex, rank);
+        access.writeLong(handle, sentinelByteIndex + 8L, 0L);
+    }
+
+    /**
+     * @return the number of set bits, as of the last {@link #build}
+     */
+    public <T> long cardinality(Access<T> access, T handle, long indexOffset) {
+        return access.readLong(handle, blockByteIndex(indexOffset, blocks));
+    }
+
+    /**
+     * @param index the bit index, in range {@code [0, logicalSize()]}
+     * @return the number of set bits before the {@code index}, i. e. in {@code [0, index)}
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public <T> long rank1(Access<T> access, T handle, long bitsOffset, long indexOffset,
+                          long index) {
+        if (index < 0 || index > logicalSize())
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + logicalSize());
+        long longIndex = BITS.toLongs(index);
+        long bitInLong = index & 63;
+        if (longIndex == longLength)
+            return cardinality(access, handle, indexOffset);
+        long block = longIndex >>> BLOCK_LONGS_SHIFT;
+        long blockByteIndex = blockByteIndex(indexOffset, block);
+        long rank = access.readLong(handle, blockByteIndex);
+        int longInBlock = (int) (longIndex & (BLOCK_LONGS - 1));
+        if (longInBlock > 0) {
+            long subCounts = access.readLong(handle, blockByteIndex + 8L);
+            rank += (subCounts >>> ((longInBlock - 1) * SUB_COUNT_BITS)) & SUB_COUNT_MASK;
+        }
+        if (bitInLong > 0) {
+            long l = access.readLong(handle, firstByte(bitsOffset, longIndex));
+            rank += bitCount(l & ((1L << bitInLong) - 1));
+        }
+        return rank;
+    }
+
+    /**
+     * @param index the bit index, in range {@code [0, logicalSize()]}
+     * @return the number of clear bits before the {@code index}, i. e. in {@code [0, index)}
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public <T> long rank0(Access<T> access, T handle, long bitsOffset, long indexOffset,
+                          long index) {
+        return index - rank1(access, handle, bitsOffset, indexOffset, index);
+    }
+
+    /**
+     * @param rank zero-based rank of the set bit
+     * @return index of the set bit with the given rank, i. e. the bit {@code i} such as {@code
+     * get(i) && rank1(i) == rank}, or {@link BitSetFrame#NOT_FOUND} if there are no more than
+     * {@code rank} set bits
+     */
+    public <T> long select1(Access<T> access, T handle, long bitsOffset, long indexOffset,
+                            long rank) {
+        long cardinality = cardinality(access, handle, indexOffset);
+        if (rank < 0 || rank >= cardinality)
+            return NOT_FOUND;
+        long sample = rank >>> SAMPLE_ONES_SHIFT;
+        long sampleByteIndex = indexOffset + samplesOffset + LONGS.toBytes(sample);
+        long lowBlock = access.readLong(handle, sampleByteIndex);
+        long highBlock = ((sample + 1) << SAMPLE_ONES_SHIFT) < cardinality ?
+                access.readLong(handle, sampleByteIndex + 8L) : blocks - 1;
+        // the last block with less than rank + 1 set bits before it
+        while (lowBlock < highBlock) {
+            long middle = (lowBlock + highBlock + 1) >>> 1;
+            if (access.readLong(handle, blockByteIndex(indexOffset, middle)) <= rank) {
+                lowBlock = middle;
+            } else {
+                highBlock = middle - 1;
+            }
+        }
+        long blockByteIndex = blockByteIndex(indexOffset, lowBlock);
+        long rankInBlock = rank - access.readLong(handle, blockByteIndex);
+        long subCounts = access.readLong(handle, blockByteIndex + 8L);
+        int longInBlock = 0;
+        while (longInBlock < BLOCK_LONGS - 1 &&
+                ((subCounts >>> (longInBlock * SUB_COUNT_BITS)) & SUB_COUNT_MASK) <= rankInBlock) {
+            longInBlock++;
+        }
+        if (longInBlock > 0)
+            rankInBlock -= (subCounts >>> ((longInBlock - 1) * SUB_COUNT_BITS)) & SUB_COUNT_MASK;
+        long longIndex = (lowBlock << BLOCK_LONGS_SHIFT) + longInBlock;
+        long l = access.readLong(handle, firstByte(bitsOffset, longIndex));
+        for (long i = 0; i < rankInBlock; i++)
+            l &= l - 1;
+        return LONGS.toBits(longIndex) + numberOfTrailingZeros(l);
+    }
+
+    private static long blockByteIndex(long indexOffset, long block) {
+        return indexOffset + LONGS.toBytes(block << 1);
+    }
+
+    @Override
+    public String toString() {
+        return "RankSelectIndex{logicalSize=" + logicalSize() + ", sizeInBytes=" + sizeInBytes +
+                '}';
+    }
+}
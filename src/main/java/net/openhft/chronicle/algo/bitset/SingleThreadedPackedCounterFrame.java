@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.bytes.Access;
+
+import static net.openhft.chronicle.algo.bitset.SingleThreadedFlatBitSetFrame.firstByte;
+
+/**
+ * Packed counters with input validations and plain memory access.
+ */
+public final class SingleThreadedPackedCounterFrame extends AbstractPackedCounterFrame {
+
+    /**
+     * @param size           the number of counters
+     * @param bitsPerCounter 2, 4 or 8
+     */
+    public SingleThreadedPackedCounterFrame(long size, int bitsPerCounter) {
+        super(size, bitsPerCounter);
+    }
+
+    @Override
+    <T> long readLong(Access<T> access, T handle, long byteIndex) {
+        return access.readLong(handle, byteIndex);
+    }
+
+    @Override
+    public <T> void set(Access<T> access, T handle, long offset, long index, int value) {
+        assert checkIndex(index);
+        checkValue(value);
+        long byteIndex = firstByte(offset, longWithThisCounter(index));
+        int shift = shift(index);
+        long l = access.readLong(handle, byteIndex);
+        access.writeLong(handle, byteIndex,
+                (l & ~((long) maxValue << shift)) | ((long) value << shift));
+    }
+
+    @Override
+    public <T> int add(Access<T> access, T handle, long offset, long index, int delta) {
+        assert checkIndex(index);
+        long byteIndex = firstByte(offset, longWithThisCounter(index));
+        int shift = shift(index);
+        long l = access.readLong(handle, byteIndex);
+        int value = (int) (l >>> shift) & maxValue;
+        int newValue = saturate((long) value + delta);
+        if (newValue != value) {
+            access.writeLong(handle, byteIndex,
+                    (l & ~((long) maxValue << shift)) | ((long) newValue << shift));
+        }
+        return newValue;
+    }
+}
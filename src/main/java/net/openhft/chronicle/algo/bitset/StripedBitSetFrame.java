@@ -0,0 +1,600 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.MemoryUnit;
+import net.openhft.chronicle.algo.bytes.Access;
+
+import static net.openhft.chronicle.algo.MemoryUnit.*;
+import static net.openhft.chronicle.algo.bitset.SingleThreadedFlatBitSetFrame.checkFromIndex;
+import static net.openhft.chronicle.algo.bitset.SingleThreadedFlatBitSetFrame.checkNotFoundIndex;
+
+/**
+ * Thread safe bit set frame, which spreads consecutive logical indexes across stripes, so that
+ * threads working on neighbouring bits don't false share a cache line.
+ * <p>
+ * Logical index {@code i} maps to the bit {@code i / stripes} of the stripe {@code i % stripes}.
+ * Each stripe is a {@link ConcurrentFlatBitSetFrame}, padded to the stripe alignment,
+ * {@link MemoryUnit#CACHE_LINES} by default. Single bit operations cost the same as
+ * in {@link ConcurrentFlatBitSetFrame}, while searches and range operations visit every stripe.
+ * <p>
+ * Continuous logical ranges are scattered across stripes, so {@code setNextNContinuousClearBits()}
+ * and {@code setPreviousNContinuousClearBits()} claim ranges bit by bit, rolling back on conflict,
+ * a concurrent reader may observe a range partially set. {@code clearNextNContinuousSetBits()}
+ * and {@code clearPreviousNContinuousSetBits()} release ranges bit by bit the same way, rolling
+ * back with {@code setIfClear()}, so a bit which another thread has set in between is left to
+ * that thread.
+ */
+public final class StripedBitSetFrame implements BitSetFrame {
+    private final int stripes;
+    private final int stripeShift;
+    private final int stripeMask;
+    private final long stripeBits;
+    private final long stripeBytes;
+    private final ConcurrentFlatBitSetFrame stripeFrame;
+    private final SingleThreadedFlatBitSetFrame stripeReader;
+    private final StripedBitSetAlgorithm algorithm;
+
+    public StripedBitSetFrame(long logicalSize, int stripes) {
+        this(logicalSize, stripes, CACHE_LINES);
+    }
+
+    /**
+     * @param logicalSize     the minimum logical size, rounded up so that every stripe holds
+     *                        a whole number of native words
+     * @param stripes         the number of stripes, should be a power of 2
+     * @param stripeAlignment the unit each stripe is padded to, at least {@link MemoryUnit#LONGS}
+     */
+    public StripedBitSetFrame(long logicalSize, int stripes, MemoryUnit stripeAlignment) {
+        this.algorithm = new StripedBitSetAlgorithm(stripes, stripeAlignment);
+        this.stripes = stripes;
+        this.stripeShift = Integer.numberOfTrailingZeros(stripes);
+        this.stripeMask = stripes - 1;
+        this.stripeBits = algorithm.stripeBits(logicalSize);
+        this.stripeBytes = algorithm.stripeBytes(stripeBits);
+        this.stripeFrame = new ConcurrentFlatBitSetFrame(stripeBits);
+        this.stripeReader = new SingleThreadedFlatBitSetFrame(stripeBits);
+    }
+
+    public int stripes() {
+        return stripes;
+    }
+
+    private long stripeOffset(long offset, long bitIndex) {
+        return offset + (bitIndex & stripeMask) * stripeBytes;
+    }
+
+    private long stripeIndex(long bitIndex) {
+        return bitIndex >>> stripeShift;
+    }
+
+    private long logicalIndex(int stripe, long stripeIndex) {
+        return (stripeIndex << stripeShift) | stripe;
+    }
+
+    /**
+     * @return the first index within the {@code stripe}, which maps to a logical index
+     * not less than {@code bitIndex}
+     */
+    private long ceilStripeIndex(int stripe, long bitIndex) {
+        return bitIndex <= stripe ? 0 : (bitIndex - stripe + stripeMask) >>> stripeShift;
+    }
+
+    /**
+     * @return the last index within the {@code stripe}, which maps to a logical index
+     * not greater than {@code bitIndex}, or -1
+     */
+    private long floorStripeIndex(int stripe, long bitIndex) {
+        return bitIndex < stripe ? -1 : (bitIndex - stripe) >>> stripeShift;
+    }
+
+    private boolean checkIndex(long bitIndex) {
+        if (bitIndex < 0 || bitIndex >= logicalSize()) {
+            throw new IndexOutOfBoundsException(
+                    "index: " + bitIndex + ", logical size: " + logicalSize());
+        }
+        return true;
+    }
+
+    private boolean checkFromTo(long fromIndex, long exclusiveToIndex) {
+        if (fromIndex < 0 || fromIndex > exclusiveToIndex || exclusiveToIndex > logicalSize()) {
+            throw new IndexOutOfBoundsException(
+                    "index range: [" + fromIndex + ", " + exclusiveToIndex + "), " +
+                            "logical size: " + logicalSize());
+        }
+        return true;
+    }
+
+    @Override
+    public <T> void flip(Access<T> access, T handle, long offset, long bitIndex) {
+        assert checkIndex(bitIndex);
+        stripeFrame.flip(access, handle, stripeOffset(offset, bitIndex), stripeIndex(bitIndex));
+    }
+
+    @Override
+    public <T> void flipRange(Access<T> access, T handle, long offset,
+                              long fromIndex, long exclusiveToIndex) {
+        assert checkFromTo(fromIndex, exclusiveToIndex);
+        for (int s = 0; s < stripes; s++) {
+            long from = ceilStripeIndex(s, fromIndex);
+            long to = ceilStripeIndex(s, exclusiveToIndex);
+            if (from < to)
+                stripeFrame.flipRange(access, handle, offset + s * stripeBytes, from, to);
+        }
+    }
+
+    @Override
+    public <T> void set(Access<T> access, T handle, long offset, long bitIndex) {
+        assert checkIndex(bitIndex);
+        stripeFrame.set(access, handle, stripeOffset(offset, bitIndex), stripeIndex(bitIndex));
+    }
+
+    @Override
+    public <T> boolean setIfClear(Access<T> access, T handle, long offset, long bitIndex) {
+        assert checkIndex(bitIndex);
+        return stripeFrame.setIfClear(access, handle,
+                stripeOffset(offset, bitIndex), stripeIndex(bitIndex));
+    }
+
+    @Override
+    public <T> boolean clearIfSet(Access<T> access, T handle, long offset, long bitIndex) {
+        assert checkIndex(bitIndex);
+        return stripeFrame.clearIfSet(access, handle,
+                stripeOffset(offset, bitIndex), stripeIndex(bitIndex));
+    }
+
+    @Override
+    public <T> void setRange(Access<T> access, T handle, long offset,
+                             long fromIndex, long exclusiveToIndex) {
+        assert checkFromTo(fromIndex, exclusiveToIndex);
+        for (int s = 0; s < stripes; s++) {
+            long from = ceilStripeIndex(s, fromIndex);
+            long to = ceilStripeIndex(s, exclusiveToIndex);
+            if (from < to)
+                stripeFrame.setRange(access, handle, offset + s * stripeBytes, from, to);
+        }
+    }
+
+    @Override
+    public <T> void setAll(Access<T> access, T handle, long offset) {
+        for (int s = 0; s < stripes; s++)
+            stripeFrame.setAll(access, handle, offset + s * stripeBytes);
+    }
+
+    @Override
+    public <T> void clear(Access<T> access, T handle, long offset, long bitIndex) {
+        assert checkIndex(bitIndex);
+        stripeFrame.clear(access, handle, stripeOffset(offset, bitIndex), stripeIndex(bitIndex));
+    }
+
+    @Override
+    public <T> void clearRange(Access<T> access, T handle, long offset,
+                               long fromIndex, long exclusiveToIndex) {
+        assert checkFromTo(fromIndex, exclusiveToIndex);
+        for (int s = 0; s < stripes; s++) {
+            long from = ceilStripeIndex(s, fromIndex);
+            long to = ceilStripeIndex(s, exclusiveToIndex);
+            if (from < to)
+                stripeFrame.clearRange(access, handle, offset + s * stripeBytes, from, to);
+        }
+    }
+
+    @Override
+    public <T> void clearAll(Access<T> access, T handle, long offset) {
+        for (int s = 0; s < stripes; s++)
+            stripeFrame.clearAll(access, handle, offset + s * stripeBytes);
+    }
+
+    @Override
+    public <T> boolean get(Access<T> access, T handle, long offset, long bitIndex) {
+        assert checkIndex(bitIndex);
+        return stripeFrame.get(access, handle,
+                stripeOffset(offset, bitIndex), stripeIndex(bitIndex));
+    }
+
+    /**
+     * Not atomic, the stripes are checked one after another.
+     */
+    @Override
+    public <T> boolean isRangeSet(Access<T> access, T handle, long offset,
+                                  long fromIndex, long exclusiveToIndex) {
+        assert checkFromTo(fromIndex, exclusiveToIndex);
+        for (int s = 0; s < stripes; s++) {
+            long from = ceilStripeIndex(s, fromIndex);
+            long to = ceilStripeIndex(s, exclusiveToIndex);
+            if (from < to &&
+                    !stripeReader.isRangeSet(access, handle, offset + s * stripeBytes, from, to))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Not atomic, the stripes are checked one after another.
+     */
+    @Override
+    public <T> boolean isRangeClear(Access<T> access, T handle, long offset,
+                                    long fromIndex, long exclusiveToIndex) {
+        assert checkFromTo(fromIndex, exclusiveToIndex);
+        for (int s = 0; s < stripes; s++) {
+            long from = ceilStripeIndex(s, fromIndex);
+            long to = ceilStripeIndex(s, exclusiveToIndex);
+            if (from < to &&
+                    !stripeReader.isRangeClear(access, handle, offset + s * stripeBytes, from, to))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public <T> long nextSetBit(Access<T> access, T handle, long offset, long fromIndex) {
+        return next(access, handle, offset, fromIndex, true);
+    }
+
+    @Override
+    public <T> long nextClearBit(Access<T> access, T handle, long offset, long fromIndex) {
+        return next(access, handle, offset, fromIndex, false);
+    }
+
+    private <T> long next(Access<T> access, T handle, long offset, long fromIndex, boolean set) {
+        checkFromIndex(fromIndex);
+        if (fromIndex >= logicalSize())
+            return NOT_FOUND;
+        long found = NOT_FOUND;
+        // visit stripes in the order of their first candidate index, fromIndex, fromIndex + 1...
+        // so the first stripe having its first candidate matched gives the answer
+        int firstStripe = (int) (fromIndex & stripeMask);
+        for (int i = 0; i < stripes; i++) {
+            int s = (firstStripe + i) & stripeMask;
+            long from = ceilStripeIndex(s, fromIndex);
+            if (from >= stripeBits)
+                continue;
+            long stripeOffset = offset + s * stripeBytes;
+            long index = set ?
+                    stripeFrame.nextSetBit(access, handle, stripeOffset, from) :
+                    stripeFrame.nextClearBit(access, handle, stripeOffset, from);
+            if (index == NOT_FOUND)
+                continue;
+            long logicalIndex = logicalIndex(s, index);
+            if (index == from)
+                return logicalIndex;
+            if (found == NOT_FOUND || logicalIndex < found)
+                found = logicalIndex;
+        }
+        return found;
+    }
+
+    @Override
+    public <T> long previousSetBit(Access<T> access, T handle, long offset, long fromIndex) {
+        return previous(access, handle, offset, fromIndex, true);
+    }
+
+    @Override
+    public <T> long previousClearBit(Access<T> access, T handle, long offset, long fromIndex) {
+        return previous(access, handle, offset, fromIndex, false);
+    }
+
+    private <T> long previous(Access<T> access, T handle, long offset, long fromIndex,
+                              boolean set) {
+        if (checkNotFoundIndex(fromIndex))
+            return NOT_FOUND;
+        if (fromIndex >= logicalSize())
+            fromIndex = logicalSize() - 1;
+        long found = NOT_FOUND;
+        int firstStripe = (int) (fromIndex & stripeMask);
+        for (int i = 0; i < stripes; i++) {
+            int s = (firstStripe - i) & stripeMask;
+            long from = floorStripeIndex(s, fromIndex);
+            if (from < 0)
+                continue;
+            long stripeOffset = offset + s * stripeBytes;
+            long index = set ?
+                    stripeFrame.previousSetBit(access, handle, stripeOffset, from) :
+                    stripeFrame.previousClearBit(access, handle, stripeOffset, from);
+            if (index == NOT_FOUND)
+                continue;
+            long logicalIndex = logicalIndex(s, index);
+            if (index == from)
+                return logicalIndex;
+            if (logicalIndex > found)
+                found = logicalIndex;
+        }
+        return found;
+    }
+
+    @Override
+    public long logicalSize() {
+        return stripeBits * stripes;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return stripeBytes * stripes;
+    }
+
+    @Override
+    public <T> long cardinality(Access<T> access, T handle, long offset) {
+        long count = 0;
+        for (int s = 0; s < stripes; s++)
+            count += stripeFrame.cardinality(access, handle, offset + s * stripeBytes);
+        return count;
+    }
+
+    @Override
+    public <T> long setNextClearBit(Access<T> access, T handle, long offset, long fromIndex) {
+        while (true) {
+            long index = nextClearBit(access, handle, offset, fromIndex);
+            if (index == NOT_FOUND || setIfClear(access, handle, offset, index))
+                return index;
+            fromIndex = index;
+        }
+    }
+
+    @Override
+    public <T> long clearNextSetBit(Access<T> access, T handle, long offset, long fromIndex) {
+        while (true) {
+            long index = nextSetBit(access, handle, offset, fromIndex);
+            if (index == NOT_FOUND || clearIfSet(access, handle, offset, index))
+                return index;
+            fromIndex = index;
+        }
+    }
+
+    @Override
+    public <T> long setPreviousClearBit(Access<T> access, T handle, long offset, long fromIndex) {
+        while (true) {
+            long index = previousClearBit(access, handle, offset, fromIndex);
+            if (index == NOT_FOUND || setIfClear(access, handle, offset, index))
+                return index;
+            fromIndex = index;
+        }
+    }
+
+    @Override
+    public <T> long clearPreviousSetBit(Access<T> access, T handle, long offset, long fromIndex) {
+        while (true) {
+            long index = previousSetBit(access, handle, offset, fromIndex);
+            if (index == NOT_FOUND || clearIfSet(access, handle, offset, index))
+                return index;
+            fromIndex = index;
+        }
+    }
+
+    @Override
+    public <T> long setNextNContinuousClearBits(Access<T> access, T handle, long offset,
+                                                long fromIndex, int numberOfBits) {
+        checkPositiveNumberOfBits(numberOfBits);
+        if (numberOfBits == 1)
+            return setNextClearBit(access, handle, offset, fromIndex);
+        checkFromIndex(fromIndex);
+        while (true) {
+            long start = nextClearBit(access, handle, offset, fromIndex);
+            if (start == NOT_FOUND || start + numberOfBits > logicalSize())
+                return NOT_FOUND;
+            long setBit = first(access, handle, offset, start, start + numberOfBits, true);
+            if (setBit == NOT_FOUND) {
+                long conflict = claim(access, handle, offset, start, start + numberOfBits);
+                if (conflict == NOT_FOUND)
+                    return start;
+                setBit = conflict;
+            }
+            fromIndex = setBit + 1;
+        }
+    }
+
+    @Override
+    public <T> long setPreviousNContinuousClearBits(Access<T> access, T handle, long offset,
+                                                    long fromIndex, int numberOfBits) {
+        checkPositiveNumberOfBits(numberOfBits);
+        if (numberOfBits == 1)
+            return setPreviousClearBit(access, handle, offset, fromIndex);
+        if (checkNotFoundIndex(fromIndex))
+            return NOT_FOUND;
+        while (true) {
+            long last = previousClearBit(access, handle, offset, fromIndex);
+            long start = last - numberOfBits + 1;
+            if (last == NOT_FOUND || start < 0)
+                return NOT_FOUND;
+            long setBit = last(access, handle, offset, start, last + 1, true);
+            if (setBit == NOT_FOUND) {
+                long conflict = claim(access, handle, offset, start, last + 1);
+                if (conflict == NOT_FOUND)
+                    return start;
+                setBit = conflict;
+            }
+            if ((fromIndex = setBit - 1) < 0)
+                return NOT_FOUND;
+        }
+    }
+
+    /**
+     * @return the index of the first bit of the range equal to {@code value}, or {@link #NOT_FOUND}
+     */
+    private <T> long first(Access<T> access, T handle, long offset,
+                           long fromIndex, long exclusiveToIndex, boolean value) {
+        for (long i = fromIndex; i < exclusiveToIndex; i++) {
+            if (get(access, handle, offset, i) == value)
+                return i;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * @return the index of the last bit of the range equal to {@code value}, or {@link #NOT_FOUND}
+     */
+    private <T> long last(Access<T> access, T handle, long offset,
+                          long fromIndex, long exclusiveToIndex, boolean value) {
+        for (long i = exclusiveToIndex - 1; i >= fromIndex; i--) {
+            if (get(access, handle, offset, i) == value)
+                return i;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Sets the bits of the range one by one, clearing those already set if some bit is found set.
+     *
+     * @return {@link #NOT_FOUND} if the whole range is claimed, or the index of the bit found set
+     */
+    private <T> long claim(Access<T> access, T handle, long offset,
+                           long fromIndex, long exclusiveToIndex) {
+        for (long i = fromIndex; i < exclusiveToIndex; i++) {
+            if (!setIfClear(access, handle, offset, i)) {
+                for (long j = fromIndex; j < i; j++)
+                    clear(access, handle, offset, j);
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Clears the bits of the range one by one, setting back those already cleared if some bit is
+     * found clear.
+     *
+     * @return {@link #NOT_FOUND} if the whole range is released, or the index of the bit found
+     * clear
+     */
+    private <T> long release(Access<T> access, T handle, long offset,
+                             long fromIndex, long exclusiveToIndex) {
+        for (long i = fromIndex; i < exclusiveToIndex; i++) {
+            if (!clearIfSet(access, handle, offset, i)) {
+                for (long j = fromIndex; j < i; j++)
+                    setIfClear(access, handle, offset, j);
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    @Override
+    public <T> long clearNextNContinuousSetBits(Access<T> access, T handle, long offset,
+                                                long fromIndex, int numberOfBits) {
+        checkPositiveNumberOfBits(numberOfBits);
+        if (numberOfBits == 1)
+            return clearNextSetBit(access, handle, offset, fromIndex);
+        checkFromIndex(fromIndex);
+        while (true) {
+            long start = nextSetBit(access, handle, offset, fromIndex);
+            if (start == NOT_FOUND || start + numberOfBits > logicalSize())
+                return NOT_FOUND;
+            long clearBit = first(access, handle, offset, start, start + numberOfBits, false);
+            if (clearBit == NOT_FOUND) {
+                long conflict = release(access, handle, offset, start, start + numberOfBits);
+                if (conflict == NOT_FOUND)
+                    return start;
+                clearBit = conflict;
+            }
+            fromIndex = clearBit + 1;
+        }
+    }
+
+    @Override
+    public <T> long clearPreviousNContinuousSetBits(Access<T> access, T handle, long offset,
+                                                    long fromIndex, int numberOfBits) {
+        checkPositiveNumberOfBits(numberOfBits);
+        if (numberOfBits == 1)
+            return clearPreviousSetBit(access, handle, offset, fromIndex);
+        if (checkNotFoundIndex(fromIndex))
+            return NOT_FOUND;
+        while (true) {
+            long last = previousSetBit(access, handle, offset, fromIndex);
+            long start = last - numberOfBits + 1;
+            if (last == NOT_FOUND || start < 0)
+                return NOT_FOUND;
+            long clearBit = last(access, handle, offset, start, last + 1, false);
+            if (clearBit == NOT_FOUND) {
+                long conflict = release(access, handle, offset, start, last + 1);
+                if (conflict == NOT_FOUND)
+                    return start;
+                clearBit = conflict;
+            }
+            if ((fromIndex = clearBit - 1) < 0)
+                return NOT_FOUND;
+        }
+    }
+
+    private static void checkPositiveNumberOfBits(int numberOfBits) {
+        if (numberOfBits <= 0)
+            throw new IllegalArgumentException("Illegal number of bits: " + numberOfBits);
+    }
+
+    @Override
+    public Bits setBits() {
+        return new SetBits();
+    }
+
+    @Override
+    public BitSetAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    private static final class StripedBitSetAlgorithm implements BitSetAlgorithm {
+        private final int stripes;
+        private final MemoryUnit stripeAlignment;
+
+        StripedBitSetAlgorithm(int stripes, MemoryUnit stripeAlignment) {
+            if (stripes <= 0 || Integer.bitCount(stripes) != 1)
+                throw new IllegalArgumentException(
+                        "stripes should be a positive power of 2, " + stripes + " given");
+            if (stripeAlignment.toBytes(1) < LONGS.toBytes(1))
+                throw new IllegalArgumentException(
+                        "stripe alignment should be at least LONGS, " + stripeAlignment + " given");
+            this.stripes = stripes;
+            this.stripeAlignment = stripeAlignment;
+        }
+
+        long stripeBits(long logicalSize) {
+            long bitsPerStripe = (logicalSize + stripes - 1) / stripes;
+            return LONGS.align(bitsPerStripe, BITS);
+        }
+
+        long stripeBytes(long stripeBits) {
+            return stripeAlignment.align(BITS.toBytes(stripeBits), BYTES);
+        }
+
+        @Override
+        public long sizeInBytes(long logicalSize) {
+            return stripeBytes(stripeBits(logicalSize)) * stripes;
+        }
+
+        @Override
+        public long maxLogicalSizeFittingSameSizeInBytes(long logicalSize) {
+            return BYTES.toBits(stripeBytes(stripeBits(logicalSize))) * stripes;
+        }
+    }
+
+    private class SetBits implements Bits {
+        private long bitIndex = 0;
+
+        @Override
+        public <T> Bits reset(Access<T> access, T handle, long offset) {
+            bitIndex = 0;
+            return this;
+        }
+
+        @Override
+        public <T> long next(Access<T> access, T handle, long offset) {
+            if (bitIndex < 0)
+                return NOT_FOUND;
+            long index = bitIndex < logicalSize() ?
+                    nextSetBit(access, handle, offset, bitIndex) : NOT_FOUND;
+            bitIndex = index == NOT_FOUND ? NOT_FOUND : index + 1;
+            return index;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import net.openhft.chronicle.bytes.BytesStore;
 import net.openhft.chronicle.bytes.RandomDataInput;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public interface Access<T> extends ReadAccess<T>, WriteAccess<T> {
 
@@ -39,6 +40,40 @@ public interface Access<T> extends ReadAccess<T>, WriteAccess<T> {
         return BytesAccesses.RandomDataInputReadAccessEnum.INSTANCE;
     }
 
+    /**
+     * @return the number of bytes of the value in the stop bit encoding, from 1 to 10
+     * @see WriteAccess#writeVarLong
+     */
+    static int varLongSize(long value) {
+        return VarInts.varLongSize(value);
+    }
+
+    /**
+     * @return the number of bytes of the value in the zig-zag and stop bit encoding, from 1 to 10
+     */
+    static int signedVarLongSize(long value) {
+        return VarInts.varLongSize(VarInts.zigZagEncode(value));
+    }
+
+    /**
+     * @return whether all chars of the subsequence are ASCII, i. e. it could be read by {@link
+     * ReadAccess#asciiCharSequenceAccess()}
+     */
+    static boolean isAscii(CharSequence input, int off, int len) {
+        return Utf8CharSequenceAccess.isAscii(input, off, len);
+    }
+
+    /**
+     * Encodes the subsequence in UTF-8 like {@code String.getBytes(UTF_8)}, unpaired surrogates
+     * are encoded as {@code '?'}. {@code dst} should have at least {@code len * 3} bytes from
+     * {@code dstOff}.
+     *
+     * @return the offset in {@code dst} after the last encoded byte
+     */
+    static int encodeUtf8(CharSequence input, int off, int len, byte[] dst, int dstOff) {
+        return Utf8CharSequenceAccess.encode(input, off, len, dst, dstOff);
+    }
+
     static <S, T> void copy(final ReadAccess<S> sourceAccess,
                             final S source,
                             final long sourceOffset,
@@ -48,6 +83,13 @@ public interface Access<T> extends ReadAccess<T>, WriteAccess<T> {
                             final long len) {
         if (targetAccess == sourceAccess && target == source && targetOffset == sourceOffset)
             return;
+        if (BulkAccesses.copy(sourceAccess, source, sourceOffset, targetAccess, target, targetOffset, len))
+            return;
+        if (sourceAccess.byteOrder(source) != targetAccess.byteOrder(target)) {
+            for (long i = 0; i < len; i++)
+                targetAccess.writeByte(target, targetOffset + i, sourceAccess.readByte(source, sourceOffset + i));
+            return;
+        }
         long i = 0;
         while (len - i >= 8L) {
             targetAccess.writeLong(target, targetOffset + i, sourceAccess.readLong(source, sourceOffset + i));
@@ -73,6 +115,11 @@ public interface Access<T> extends ReadAccess<T>, WriteAccess<T> {
                                      final U handle2,
                                      final long offset2,
                                      final long len) {
+        long mismatch = BulkAccesses.mismatch(access1, handle1, offset1, access2, handle2, offset2, len);
+        if (mismatch != -2L)
+            return mismatch == -1L;
+        if (access1.byteOrder(handle1) != access2.byteOrder(handle2))
+            return mismatch(access1, handle1, offset1, access2, handle2, offset2, len) == -1L;
         long i = 0;
         while (len - i >= 8L) {
             if (access1.readLong(handle1, offset1 + i) != access2.readLong(handle2, offset2 + i))
@@ -95,6 +142,87 @@ public interface Access<T> extends ReadAccess<T>, WriteAccess<T> {
         return true;
     }
 
+    /**
+     * Finds the first byte which differs in the given ranges, like {@code Arrays.mismatch()}.
+     * Native memory, primitive arrays, direct {@code BytesStore}s and {@code ByteBuffer}s are
+     * compared by native {@code long}s directly, other accesses by {@code long}s read through them.
+     *
+     * @return the index of the first different byte relative to the offsets, or {@code -1} if
+     * the ranges are equal
+     */
+    static <T, U> long mismatch(final ReadAccess<T> access1,
+                                final T handle1,
+                                final long offset1,
+                                final ReadAccess<U> access2,
+                                final U handle2,
+                                final long offset2,
+                                final long len) {
+        long mismatch = BulkAccesses.mismatch(access1, handle1, offset1, access2, handle2, offset2, len);
+        if (mismatch != -2L)
+            return mismatch;
+        long i = 0;
+        // longs in different byte orders are not comparable
+        if (access1.byteOrder(handle1) == access2.byteOrder(handle2)) {
+            for (; len - i >= 8L; i += 8L) {
+                if (access1.readLong(handle1, offset1 + i) != access2.readLong(handle2, offset2 + i))
+                    break;
+            }
+        }
+        for (; i < len; i++) {
+            if (access1.readByte(handle1, offset1 + i) != access2.readByte(handle2, offset2 + i))
+                return i;
+        }
+        return -1L;
+    }
+
+    /**
+     * Compares the given ranges lexicographically as unsigned bytes, like {@code memcmp()}, a
+     * range which is a prefix of the other is less. Keys stored in the big-endian order, e. g.
+     * numbers with the sign bit flipped, sort by this comparison, so sorted off-heap key blocks
+     * could be binary searched without copying keys on heap.
+     * <p>
+     * Compares 8 bytes per step, {@code long}s read in other orders are converted to the big-endian
+     * order, so that the unsigned comparison of the {@code long}s is the comparison of their bytes.
+     *
+     * @return a negative number, zero, or a positive number as the first range is less than, equal
+     * to, or greater than the second
+     */
+    static <T, U> int compare(final ReadAccess<T> access1,
+                              final T handle1,
+                              final long offset1,
+                              final long len1,
+                              final ReadAccess<U> access2,
+                              final U handle2,
+                              final long offset2,
+                              final long len2) {
+        long len = Math.min(len1, len2);
+        long i = BulkAccesses.mismatch(access1, handle1, offset1, access2, handle2, offset2, len);
+        if (i == -2L) {
+            boolean bigEndian1 = access1.byteOrder(handle1) == ByteOrder.BIG_ENDIAN;
+            boolean bigEndian2 = access2.byteOrder(handle2) == ByteOrder.BIG_ENDIAN;
+            for (i = 0; len - i >= 8L; i += 8L) {
+                long l1 = access1.readLong(handle1, offset1 + i);
+                long l2 = access2.readLong(handle2, offset2 + i);
+                if (!bigEndian1)
+                    l1 = Long.reverseBytes(l1);
+                if (!bigEndian2)
+                    l2 = Long.reverseBytes(l2);
+                if (l1 != l2)
+                    return Long.compareUnsigned(l1, l2);
+            }
+            for (; i < len; i++) {
+                int b1 = access1.readUnsignedByte(handle1, offset1 + i);
+                int b2 = access2.readUnsignedByte(handle2, offset2 + i);
+                if (b1 != b2)
+                    return b1 - b2;
+            }
+        } else if (i >= 0) {
+            return access1.readUnsignedByte(handle1, offset1 + i) -
+                    access2.readUnsignedByte(handle2, offset2 + i);
+        }
+        return Long.compare(len1, len2);
+    }
+
     /**
      * Default implementation: throws {@code UnsupportedOperationException}.
      */
@@ -104,4 +232,171 @@ public interface Access<T> extends ReadAccess<T>, WriteAccess<T> {
      * Default implementation: throws {@code UnsupportedOperationException}.
      */
     boolean compareAndSwapLong(T handle, long offset, long expected, long value);
+    /**
+     * Atomically adds {@code delta} to the value at the given offset, e. g. to take a ticket.
+     * <p>
+     * Default implementation: a {@link #compareAndSwapInt} loop.
+     *
+     * @return the previous value
+     */
+    default int getAndAddInt(T handle, long offset, int delta) {
+        int previous;
+        do {
+            previous = readVolatileInt(handle, offset);
+        } while (!compareAndSwapInt(handle, offset, previous, previous + delta));
+        return previous;
+    }
+
+    /**
+     * Atomically adds {@code delta} to the value at the given offset.
+     *
+     * @return the updated value
+     */
+    default int addAndGetInt(T handle, long offset, int delta) {
+        return getAndAddInt(handle, offset, delta) + delta;
+    }
+
+    /**
+     * Atomically sets the value at the given offset.
+     * <p>
+     * Default implementation: a {@link #compareAndSwapInt} loop.
+     *
+     * @return the previous value
+     */
+    default int getAndSetInt(T handle, long offset, int value) {
+        int previous;
+        do {
+            previous = readVolatileInt(handle, offset);
+        } while (!compareAndSwapInt(handle, offset, previous, value));
+        return previous;
+    }
+
+    /**
+     * Atomically sets the bits of {@code mask} in the value at the given offset.
+     * <p>
+     * Default implementation: a {@link #compareAndSwapInt} loop.
+     *
+     * @return the previous value
+     */
+    default int getAndBitwiseOrInt(T handle, long offset, int mask) {
+        int previous;
+        do {
+            previous = readVolatileInt(handle, offset);
+        } while (!compareAndSwapInt(handle, offset, previous, previous | mask));
+        return previous;
+    }
+
+    /**
+     * Atomically clears the bits not in {@code mask} in the value at the given offset.
+     * <p>
+     * Default implementation: a {@link #compareAndSwapInt} loop.
+     *
+     * @return the previous value
+     */
+    default int getAndBitwiseAndInt(T handle, long offset, int mask) {
+        int previous;
+        do {
+            previous = readVolatileInt(handle, offset);
+        } while (!compareAndSwapInt(handle, offset, previous, previous & mask));
+        return previous;
+    }
+
+    /**
+     * Atomically flips the bits of {@code mask} in the value at the given offset.
+     * <p>
+     * Default implementation: a {@link #compareAndSwapInt} loop.
+     *
+     * @return the previous value
+     */
+    default int getAndBitwiseXorInt(T handle, long offset, int mask) {
+        int previous;
+        do {
+            previous = readVolatileInt(handle, offset);
+        } while (!compareAndSwapInt(handle, offset, previous, previous ^ mask));
+        return previous;
+    }
+
+    /**
+     * Atomically adds {@code delta} to the value at the given offset, e. g. to take a ticket.
+     * <p>
+     * Default implementation: a {@link #compareAndSwapLong} loop.
+     *
+     * @return the previous value
+     */
+    default long getAndAddLong(T handle, long offset, long delta) {
+        long previous;
+        do {
+            previous = readVolatileLong(handle, offset);
+        } while (!compareAndSwapLong(handle, offset, previous, previous + delta));
+        return previous;
+    }
+
+    /**
+     * Atomically adds {@code delta} to the value at the given offset.
+     *
+     * @return the updated value
+     */
+    default long addAndGetLong(T handle, long offset, long delta) {
+        return getAndAddLong(handle, offset, delta) + delta;
+    }
+
+    /**
+     * Atomically sets the value at the given offset.
+     * <p>
+     * Default implementation: a {@link #compareAndSwapLong} loop.
+     *
+     * @return the previous value
+     */
+    default long getAndSetLong(T handle, long offset, long value) {
+        long previous;
+        do {
+            previous = readVolatileLong(handle, offset);
+        } while (!compareAndSwapLong(handle, offset, previous, value));
+        return previous;
+    }
+
+    /**
+     * Atomically sets the bits of {@code mask} in the value at the given offset.
+     * <p>
+     * Default implementation: a {@link #compareAndSwapLong} loop.
+     *
+     * @return the previous value
+     */
+    default long getAndBitwiseOrLong(T handle, long offset, long mask) {
+        long previous;
+        do {
+            previous = readVolatileLong(handle, offset);
+        } while (!compareAndSwapLong(handle, offset, previous, previous | mask));
+        return previous;
+    }
+
+    /**
+     * Atomically clears the bits not in {@code mask} in the value at the given offset.
+     * <p>
+     * Default implementation: a {@link #compareAndSwapLong} loop.
+     *
+     * @return the previous value
+     */
+    default long getAndBitwiseAndLong(T handle, long offset, long mask) {
+        long previous;
+        do {
+            previous = readVolatileLong(handle, offset);
+        } while (!compareAndSwapLong(handle, offset, previous, previous & mask));
+        return previous;
+    }
+
+    /**
+     * Atomically flips the bits of {@code mask} in the value at the given offset.
+     * <p>
+     * Default implementation: a {@link #compareAndSwapLong} loop.
+     *
+     * @return the previous value
+     */
+    default long getAndBitwiseXorLong(T handle, long offset, long mask) {
+        long previous;
+        do {
+            previous = readVolatileLong(handle, offset);
+        } while (!compareAndSwapLong(handle, offset, previous, previous ^ mask));
+        return previous;
+    }
 }
\ No newline at end of file
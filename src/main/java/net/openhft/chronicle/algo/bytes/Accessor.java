@@ -61,6 +61,15 @@ public interface Accessor<S, T, A extends AccessCommon<T>> {
         return (Read<String, ?>) CharSequenceAccessor.stringAccessor;
     }
 
+    /**
+     * Returns an accessor to the bytes of the given ASCII string, one byte per char, index of a
+     * byte is the index of its char. Valid only for ASCII strings, other chars are truncated to
+     * their low bytes, so strings should be checked by {@link Access#isAscii} first.
+     */
+    static Accessor.Read<String, ?> asciiStringAccessor(String string) {
+        return Utf8StringAccessor.of(string);
+    }
+
     static Accessor.Read<CharSequence, CharSequence> checkedNativeCharSequenceAccessor() {
         return CharSequenceAccessor.nativeCharSequenceAccessor();
     }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import net.openhft.chronicle.bytes.BytesStore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+import static net.openhft.chronicle.core.UnsafeMemory.UNSAFE;
+
+/**
+ * Fast paths of bulk operations for accesses which could be reduced to plain memory, an object
+ * (or {@code null} for native memory) and an offset: {@link NativeAccess} to native memory and
+ * primitive arrays, {@link ByteBufferAccess}, {@link MappedRegionAccess} and
+ * {@link BytesAccesses.Full} to direct stores.
+ * Such memory is copied with {@code Unsafe.copyMemory()} and compared by native {@code long}s
+ * without interface calls.
+ */
+final class BulkAccesses {
+
+    /**
+     * Returned by {@link #base} if the access and the handle are not reducible to plain memory
+     */
+    static final Object NOT_MEMORY = new Object();
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private BulkAccesses() {
+    }
+
+    /**
+     * Checks that {@code len} bytes from the {@code offset} are within the handle.
+     *
+     * @return the base object of the memory, {@code null} for native memory, or {@link #NOT_MEMORY}
+     */
+    static Object base(AccessCommon<?> access, Object handle, long offset, long len,
+                       boolean write) {
+        if (access instanceof CheckedAccess) {
+            CheckedAccess<?> checked = (CheckedAccess<?>) access;
+            checked.checkRange(offset, len);
+            return base(checked.delegate(), handle, offset, len, write);
+        }
+        if (access == NativeAccess.instance()) {
+            if (handle == null)
+                return null;
+            Class<?> type = handle.getClass().getComponentType();
+            // Unsafe copies only between primitive arrays and native memory
+            return type != null && type.isPrimitive() ? handle : NOT_MEMORY;
+        }
+        if (access == ByteBufferAccess.INSTANCE) {
+            ByteBuffer buffer = (ByteBuffer) handle;
+            if (buffer.isReadOnly() && (write || !buffer.isDirect()))
+                return NOT_MEMORY;
+            if (offset < 0 || offset > buffer.limit() - len) {
+                throw new IndexOutOfBoundsException(
+                        "offset: " + offset + ", length: " + len + ", limit: " + buffer.limit());
+            }
+            return ByteBufferAccess.base(buffer);
+        }
+        if (access == BytesAccesses.Full.INSTANCE) {
+            BytesStore<?, ?> store = (BytesStore<?, ?>) handle;
+            if (!store.isDirectMemory())
+                return NOT_MEMORY;
+            if (offset < store.start() || offset > store.realCapacity() - len) {
+                throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + len +
+                        ", capacity: " + store.realCapacity());
+            }
+            return null;
+        }
+        if (access == MappedRegionAccess.INSTANCE) {
+            MappedRegion region = (MappedRegion) handle;
+            if (write)
+                MappedRegionAccess.writableAddress(region, offset, len);
+            else
+                MappedRegionAccess.address(region, offset, len);
+            return null;
+        }
+        return NOT_MEMORY;
+    }
+
+    /**
+     * @return the offset of the memory for the base returned by {@link #base}
+     */
+    static long address(AccessCommon<?> access, Object handle, long offset, boolean write) {
+        if (access instanceof CheckedAccess)
+            return address(((CheckedAccess<?>) access).delegate(), handle, offset, write);
+        if (access == ByteBufferAccess.INSTANCE)
+            return ByteBufferAccess.memoryOffset((ByteBuffer) handle, offset);
+        if (access == BytesAccesses.Full.INSTANCE) {
+            BytesStore<?, ?> store = (BytesStore<?, ?>) handle;
+            return write ? store.addressForWrite(offset) : store.addressForRead(offset);
+        }
+        if (access == MappedRegionAccess.INSTANCE)
+            return ((MappedRegion) handle).address() + offset;
+        return offset;
+    }
+
+    /**
+     * @return {@code true} if copied, {@code false} if either side is not plain memory
+     */
+    static boolean copy(AccessCommon<?> sourceAccess, Object source, long sourceOffset,
+                        AccessCommon<?> targetAccess, Object target, long targetOffset,
+                        long len) {
+        Object sourceBase = base(sourceAccess, source, sourceOffset, len, false);
+        if (sourceBase == NOT_MEMORY)
+            return false;
+        Object targetBase = base(targetAccess, target, targetOffset, len, true);
+        if (targetBase == NOT_MEMORY)
+            return false;
+        if (len > 0) {
+            UNSAFE.copyMemory(sourceBase, address(sourceAccess, source, sourceOffset, false),
+                    targetBase, address(targetAccess, target, targetOffset, true), len);
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if filled, {@code false} if the handle is not plain memory
+     */
+    static boolean fill(AccessCommon<?> access, Object handle, long offset, long len, byte b) {
+        Object base = base(access, handle, offset, len, true);
+        if (base == NOT_MEMORY)
+            return false;
+        if (len > 0)
+            MEMORY.setMemory(base, address(access, handle, offset, true), len, b);
+        return true;
+    }
+
+    /**
+     * @return the index of the first different byte, {@code -1} if the ranges are equal, or
+     * {@code -2} if either side is not plain memory
+     */
+    static long mismatch(AccessCommon<?> access1, Object handle1, long offset1,
+                         AccessCommon<?> access2, Object handle2, long offset2, long len) {
+        Object base1 = base(access1, handle1, offset1, len, false);
+        if (base1 == NOT_MEMORY)
+            return -2L;
+        Object base2 = base(access2, handle2, offset2, len, false);
+        if (base2 == NOT_MEMORY)
+            return -2L;
+        if (len == 0)
+            return -1L;
+        long address1 = address(access1, handle1, offset1, false);
+        long address2 = address(access2, handle2, offset2, false);
+        long i = 0;
+        for (; len - i >= 8L; i += 8L) {
+            long diff = MEMORY.readLong(base1, address1 + i) ^ MEMORY.readLong(base2, address2 + i);
+            if (diff != 0L)
+                return i + firstDifferentByte(diff);
+        }
+        for (; i < len; i++) {
+            if (MEMORY.readByte(base1, address1 + i) != MEMORY.readByte(base2, address2 + i))
+                return i;
+        }
+        return -1L;
+    }
+
+    /**
+     * @param diff xor of two {@code long}s read in the native order, non-zero
+     * @return the index of the first different byte in memory
+     */
+    static int firstDifferentByte(long diff) {
+        return (LITTLE_ENDIAN ? Long.numberOfTrailingZeros(diff) :
+                Long.numberOfLeadingZeros(diff)) >>> 3;
+    }
+}
@@ -18,9 +18,28 @@ package net.openhft.chronicle.algo.bytes;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-
+import java.nio.ReadOnlyBufferException;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+import static net.openhft.chronicle.core.UnsafeMemory.UNSAFE;
+
+/**
+ * Bounds-checked access to heap and direct {@code ByteBuffer}s, e. g. {@code MappedByteBuffer}s,
+ * in the byte order of the buffer, with offsets from the start of the buffer, like in absolute
+ * {@code ByteBuffer} methods.
+ * <p>
+ * Volatile reads, ordered writes and CAS go directly to the memory of the buffer, the native memory
+ * of a direct buffer or the backing array of a heap buffer, so shared memory structures like
+ * {@code ConcurrentFlatBitSetFrame} and locking strategies could be used on mapped files. Offsets
+ * of these operations should be naturally aligned, e. g. to 8 bytes for {@code long}s. Heap
+ * buffers should be writable for them, because the backing array of a read-only buffer is not
+ * accessible. Structures which access the same memory both as {@code int}s and {@code long}s, like
+ * {@code VanillaReadWriteUpdateWithWaitsLockingStrategy}, need buffers in the native byte order.
+ */
 final class ByteBufferAccess implements Access<ByteBuffer> {
     public static final ByteBufferAccess INSTANCE = new ByteBufferAccess();
+    private static final ReadAccess<ByteBuffer> REVERSE =
+            new ReverseByteOrderReadAccess<>(INSTANCE);
 
     private ByteBufferAccess() {
     }
@@ -101,12 +120,124 @@ final class ByteBufferAccess implements Access<ByteBuffer> {
     }
 
     @Override
-    public boolean compareAndSwapInt(ByteBuffer handle, long offset, int expected, int value) {
-        throw new UnsupportedOperationException("todo");
+    public ReadAccess<ByteBuffer> reverseByteOrder() {
+        return REVERSE;
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer buffer, long offset, long len, byte b) {
+        if (!BulkAccesses.fill(this, buffer, offset, len, b))
+            Access.super.writeBytes(buffer, offset, len, b);
+    }
+
+    @Override
+    public void zeroOut(ByteBuffer buffer, long offset, long len) {
+        if (!BulkAccesses.fill(this, buffer, offset, len, (byte) 0))
+            Access.super.zeroOut(buffer, offset, len);
+    }
+
+    @Override
+    public int readVolatileInt(ByteBuffer buffer, long offset) {
+        checkIndex(buffer, offset, 4);
+        return toBufferOrder(buffer,
+                MEMORY.readVolatileInt(base(buffer), memoryOffset(buffer, offset)));
+    }
+
+    @Override
+    public long readVolatileLong(ByteBuffer buffer, long offset) {
+        checkIndex(buffer, offset, 8);
+        return toBufferOrder(buffer,
+                MEMORY.readVolatileLong(base(buffer), memoryOffset(buffer, offset)));
+    }
+
+    @Override
+    public void writeOrderedInt(ByteBuffer buffer, long offset, int i) {
+        checkWritableIndex(buffer, offset, 4);
+        MEMORY.writeOrderedInt(base(buffer), memoryOffset(buffer, offset), toBufferOrder(buffer, i));
+    }
+
+    @Override
+    public void writeOrderedLong(ByteBuffer buffer, long offset, long i) {
+        checkWritableIndex(buffer, offset, 8);
+        MEMORY.writeOrderedLong(base(buffer), memoryOffset(buffer, offset),
+                toBufferOrder(buffer, i));
+    }
+
+    @Override
+    public boolean compareAndSwapInt(ByteBuffer buffer, long offset, int expected, int value) {
+        checkWritableIndex(buffer, offset, 4);
+        return MEMORY.compareAndSwapInt(base(buffer), memoryOffset(buffer, offset),
+                toBufferOrder(buffer, expected), toBufferOrder(buffer, value));
     }
 
     @Override
-    public boolean compareAndSwapLong(ByteBuffer handle, long offset, long expected, long value) {
-        throw new UnsupportedOperationException("todo");
+    public boolean compareAndSwapLong(ByteBuffer buffer, long offset, long expected, long value) {
+        checkWritableIndex(buffer, offset, 8);
+        return MEMORY.compareAndSwapLong(base(buffer), memoryOffset(buffer, offset),
+                toBufferOrder(buffer, expected), toBufferOrder(buffer, value));
+    }
+
+    @Override
+    public int getAndAddInt(ByteBuffer buffer, long offset, int delta) {
+        if (buffer.order() != ByteOrder.nativeOrder())
+            return Access.super.getAndAddInt(buffer, offset, delta);
+        checkWritableIndex(buffer, offset, 4);
+        return UNSAFE.getAndAddInt(base(buffer), memoryOffset(buffer, offset), delta);
+    }
+
+    @Override
+    public long getAndAddLong(ByteBuffer buffer, long offset, long delta) {
+        if (buffer.order() != ByteOrder.nativeOrder())
+            return Access.super.getAndAddLong(buffer, offset, delta);
+        checkWritableIndex(buffer, offset, 8);
+        return UNSAFE.getAndAddLong(base(buffer), memoryOffset(buffer, offset), delta);
+    }
+
+    @Override
+    public int getAndSetInt(ByteBuffer buffer, long offset, int value) {
+        checkWritableIndex(buffer, offset, 4);
+        return toBufferOrder(buffer, UNSAFE.getAndSetInt(base(buffer),
+                memoryOffset(buffer, offset), toBufferOrder(buffer, value)));
+    }
+
+    @Override
+    public long getAndSetLong(ByteBuffer buffer, long offset, long value) {
+        checkWritableIndex(buffer, offset, 8);
+        return toBufferOrder(buffer, UNSAFE.getAndSetLong(base(buffer),
+                memoryOffset(buffer, offset), toBufferOrder(buffer, value)));
+    }
+
+    private static void checkIndex(ByteBuffer buffer, long offset, int size) {
+        if (offset < 0 || offset > buffer.limit() - size) {
+            throw new IndexOutOfBoundsException(
+                    "offset: " + offset + ", size: " + size + ", limit: " + buffer.limit());
+        }
+    }
+
+    private static void checkWritableIndex(ByteBuffer buffer, long offset, int size) {
+        if (buffer.isReadOnly())
+            throw new ReadOnlyBufferException();
+        checkIndex(buffer, offset, size);
+    }
+
+    static Object base(ByteBuffer buffer) {
+        return buffer.isDirect() ? null : buffer.array();
+    }
+
+    static long memoryOffset(ByteBuffer buffer, long offset) {
+        return buffer.isDirect() ? MEMORY.address(buffer) + offset :
+                ArrayAccessors.BYTE_BASE + buffer.arrayOffset() + offset;
+    }
+
+    /**
+     * Converts between the native order of memory operations and the order of the buffer,
+     * the conversion is symmetric
+     */
+    private static int toBufferOrder(ByteBuffer buffer, int i) {
+        return buffer.order() == ByteOrder.nativeOrder() ? i : Integer.reverseBytes(i);
+    }
+
+    private static long toBufferOrder(ByteBuffer buffer, long i) {
+        return buffer.order() == ByteOrder.nativeOrder() ? i : Long.reverseBytes(i);
     }
 }
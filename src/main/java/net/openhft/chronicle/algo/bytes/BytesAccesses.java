@@ -27,13 +27,22 @@ final class BytesAccesses {
     }
 
     enum RandomDataInputReadAccessEnum implements RandomDataInputAccess<RandomDataInput> {
-        INSTANCE
+        INSTANCE;
+
+        private static final ReadAccess<RandomDataInput> REVERSE =
+                new ReverseByteOrderReadAccess<>(INSTANCE);
+
+        @Override
+        public ReadAccess<RandomDataInput> reverseByteOrder() {
+            return REVERSE;
+        }
     }
 
     static class Full<B extends BytesStore<B, U>, U> implements RandomDataInputAccess<B>,
             RandomDataOutputAccess<B>, Access<B> {
 
         static final Full<?, ?> INSTANCE = new Full<>();
+        private static final ReadAccess<?> REVERSE = new ReverseByteOrderReadAccess<>(INSTANCE);
 
         @Override
         public boolean compareAndSwapInt(B handle, long offset, int expected, int value) {
@@ -45,9 +54,47 @@ final class BytesAccesses {
             return handle.compareAndSwapLong(offset, expected, value);
         }
 
+        @Override
+        public int getAndAddInt(B handle, long offset, int delta) {
+            return handle.addAndGetInt(offset, delta) - delta;
+        }
+
+        @Override
+        public long getAndAddLong(B handle, long offset, long delta) {
+            return handle.addAndGetLong(offset, delta) - delta;
+        }
+
+        @Override
+        public int addAndGetInt(B handle, long offset, int delta) {
+            return handle.addAndGetInt(offset, delta);
+        }
+
+        @Override
+        public long addAndGetLong(B handle, long offset, long delta) {
+            return handle.addAndGetLong(offset, delta);
+        }
+
+        @Override
+        public void writeBytes(B handle, long offset, long len, byte b) {
+            if (!BulkAccesses.fill(this, handle, offset, len, b))
+                Access.super.writeBytes(handle, offset, len, b);
+        }
+
+        @Override
+        public void zeroOut(B handle, long offset, long len) {
+            if (!BulkAccesses.fill(this, handle, offset, len, (byte) 0))
+                Access.super.zeroOut(handle, offset, len);
+        }
+
         @Override
         public ByteOrder byteOrder(B handle) {
             return handle.byteOrder();
         }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public ReadAccess<B> reverseByteOrder() {
+            return (ReadAccess<B>) REVERSE;
+        }
     }
 }
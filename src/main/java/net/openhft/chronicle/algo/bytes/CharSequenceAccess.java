@@ -80,6 +80,8 @@ abstract class CharSequenceAccess implements ReadAccess<CharSequence> {
 
     static class LittleEndianCharSequenceAccess extends CharSequenceAccess {
         static final CharSequenceAccess INSTANCE = new LittleEndianCharSequenceAccess();
+        private static final ReadAccess<CharSequence> REVERSE =
+                new ReverseByteOrderReadAccess<>(INSTANCE);
 
         private LittleEndianCharSequenceAccess() {
         }
@@ -103,10 +105,17 @@ abstract class CharSequenceAccess implements ReadAccess<CharSequence> {
         public ByteOrder byteOrder(CharSequence input) {
             return LITTLE_ENDIAN;
         }
+
+        @Override
+        public ReadAccess<CharSequence> reverseByteOrder() {
+            return REVERSE;
+        }
     }
 
     static class BigEndianCharSequenceAccess extends CharSequenceAccess {
         static final CharSequenceAccess INSTANCE = new BigEndianCharSequenceAccess();
+        private static final ReadAccess<CharSequence> REVERSE =
+                new ReverseByteOrderReadAccess<>(INSTANCE);
 
         private BigEndianCharSequenceAccess() {
         }
@@ -130,5 +139,10 @@ abstract class CharSequenceAccess implements ReadAccess<CharSequence> {
         public ByteOrder byteOrder(CharSequence input) {
             return BIG_ENDIAN;
         }
+
+        @Override
+        public ReadAccess<CharSequence> reverseByteOrder() {
+            return REVERSE;
+        }
     }
 }
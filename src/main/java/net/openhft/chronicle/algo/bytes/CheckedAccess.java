@@ -0,0 +1,291 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import net.openhft.chronicle.core.Jvm;
+
+import java.nio.ByteOrder;
+
+/**
+ * Access checking that all accessed bytes are within the region registered on creation, e. g.
+ * {@code [address, address + size)} of native memory accessed via {@link NativeAccess}, and
+ * delegating to another access. Unlike {@code BytesStore} accesses, the check doesn't depend on
+ * the accessed object, so the same code could run checked in tests and unchecked in production.
+ * <p>
+ * {@link #wrap} returns the delegate itself unless the {@link #ENABLED_PROPERTY} system property
+ * is set on startup, so in production the access call sites see the same {@code NativeAccess} as
+ * without the wrapper, and the JIT inlines them the same way.
+ */
+public final class CheckedAccess<T> implements Access<T> {
+
+    /**
+     * The system property to enable bounds checks by {@link #wrap}, {@code false} by default
+     */
+    public static final String ENABLED_PROPERTY = "chronicle.algo.access.checked";
+    static final boolean ENABLED = Jvm.getBoolean(ENABLED_PROPERTY);
+
+    private final Access<T> delegate;
+    private final long fromOffset;
+    private final long toOffset;
+
+    CheckedAccess(Access<T> delegate, long offset, long size) {
+        if (size < 0)
+            throw new IllegalArgumentException("size should be non-negative, " + size + " given");
+        this.delegate = delegate;
+        this.fromOffset = offset;
+        this.toOffset = offset + size;
+    }
+
+    /**
+     * @param delegate the access to the region
+     * @param offset   the offset of the start of the region, e. g. the address of native memory
+     * @param size     the size of the region in bytes
+     * @return the access checking offsets against the region if {@link #ENABLED_PROPERTY} is set,
+     * the {@code delegate} otherwise
+     */
+    public static <T> Access<T> wrap(Access<T> delegate, long offset, long size) {
+        return ENABLED ? new CheckedAccess<>(delegate, offset, size) : delegate;
+    }
+
+    /**
+     * @return whether bounds checks are enabled by the {@link #ENABLED_PROPERTY} system property
+     */
+    public static boolean enabled() {
+        return ENABLED;
+    }
+
+    public Access<T> delegate() {
+        return delegate;
+    }
+
+    void checkRange(long offset, long len) {
+        if (offset < fromOffset || len < 0 || offset > toOffset - len) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + len +
+                    ", region: [" + fromOffset + ", " + toOffset + ")");
+        }
+    }
+
+    @Override
+    public byte readByte(T handle, long offset) {
+        checkRange(offset, 1L);
+        return delegate.readByte(handle, offset);
+    }
+
+    @Override
+    public short readShort(T handle, long offset) {
+        checkRange(offset, 2L);
+        return delegate.readShort(handle, offset);
+    }
+
+    @Override
+    public char readChar(T handle, long offset) {
+        checkRange(offset, 2L);
+        return delegate.readChar(handle, offset);
+    }
+
+    @Override
+    public int readInt(T handle, long offset) {
+        checkRange(offset, 4L);
+        return delegate.readInt(handle, offset);
+    }
+
+    @Override
+    public long readLong(T handle, long offset) {
+        checkRange(offset, 8L);
+        return delegate.readLong(handle, offset);
+    }
+
+    @Override
+    public float readFloat(T handle, long offset) {
+        checkRange(offset, 4L);
+        return delegate.readFloat(handle, offset);
+    }
+
+    @Override
+    public double readDouble(T handle, long offset) {
+        checkRange(offset, 8L);
+        return delegate.readDouble(handle, offset);
+    }
+
+    @Override
+    public int readVolatileInt(T handle, long offset) {
+        checkRange(offset, 4L);
+        return delegate.readVolatileInt(handle, offset);
+    }
+
+    @Override
+    public long readVolatileLong(T handle, long offset) {
+        checkRange(offset, 8L);
+        return delegate.readVolatileLong(handle, offset);
+    }
+
+    @Override
+    public void writeByte(T handle, long offset, byte i8) {
+        checkRange(offset, 1L);
+        delegate.writeByte(handle, offset, i8);
+    }
+
+    @Override
+    public void writeShort(T handle, long offset, short i) {
+        checkRange(offset, 2L);
+        delegate.writeShort(handle, offset, i);
+    }
+
+    @Override
+    public void writeChar(T handle, long offset, char c) {
+        checkRange(offset, 2L);
+        delegate.writeChar(handle, offset, c);
+    }
+
+    @Override
+    public void writeInt(T handle, long offset, int i) {
+        checkRange(offset, 4L);
+        delegate.writeInt(handle, offset, i);
+    }
+
+    @Override
+    public void writeOrderedInt(T handle, long offset, int i) {
+        checkRange(offset, 4L);
+        delegate.writeOrderedInt(handle, offset, i);
+    }
+
+    @Override
+    public void writeLong(T handle, long offset, long i) {
+        checkRange(offset, 8L);
+        delegate.writeLong(handle, offset, i);
+    }
+
+    @Override
+    public void writeOrderedLong(T handle, long offset, long i) {
+        checkRange(offset, 8L);
+        delegate.writeOrderedLong(handle, offset, i);
+    }
+
+    @Override
+    public void writeFloat(T handle, long offset, float d) {
+        checkRange(offset, 4L);
+        delegate.writeFloat(handle, offset, d);
+    }
+
+    @Override
+    public void writeDouble(T handle, long offset, double d) {
+        checkRange(offset, 8L);
+        delegate.writeDouble(handle, offset, d);
+    }
+
+    @Override
+    public boolean compareAndSwapInt(T handle, long offset, int expected, int value) {
+        checkRange(offset, 4L);
+        return delegate.compareAndSwapInt(handle, offset, expected, value);
+    }
+
+    @Override
+    public boolean compareAndSwapLong(T handle, long offset, long expected, long value) {
+        checkRange(offset, 8L);
+        return delegate.compareAndSwapLong(handle, offset, expected, value);
+    }
+
+    @Override
+    public int getAndAddInt(T handle, long offset, int delta) {
+        checkRange(offset, 4L);
+        return delegate.getAndAddInt(handle, offset, delta);
+    }
+
+    @Override
+    public int addAndGetInt(T handle, long offset, int delta) {
+        checkRange(offset, 4L);
+        return delegate.addAndGetInt(handle, offset, delta);
+    }
+
+    @Override
+    public int getAndSetInt(T handle, long offset, int value) {
+        checkRange(offset, 4L);
+        return delegate.getAndSetInt(handle, offset, value);
+    }
+
+    @Override
+    public int getAndBitwiseOrInt(T handle, long offset, int mask) {
+        checkRange(offset, 4L);
+        return delegate.getAndBitwiseOrInt(handle, offset, mask);
+    }
+
+    @Override
+    public int getAndBitwiseAndInt(T handle, long offset, int mask) {
+        checkRange(offset, 4L);
+        return delegate.getAndBitwiseAndInt(handle, offset, mask);
+    }
+
+    @Override
+    public int getAndBitwiseXorInt(T handle, long offset, int mask) {
+        checkRange(offset, 4L);
+        return delegate.getAndBitwiseXorInt(handle, offset, mask);
+    }
+
+    @Override
+    public long getAndAddLong(T handle, long offset, long delta) {
+        checkRange(offset, 8L);
+        return delegate.getAndAddLong(handle, offset, delta);
+    }
+
+    @Override
+    public long addAndGetLong(T handle, long offset, long delta) {
+        checkRange(offset, 8L);
+        return delegate.addAndGetLong(handle, offset, delta);
+    }
+
+    @Override
+    public long getAndSetLong(T handle, long offset, long value) {
+        checkRange(offset, 8L);
+        return delegate.getAndSetLong(handle, offset, value);
+    }
+
+    @Override
+    public long getAndBitwiseOrLong(T handle, long offset, long mask) {
+        checkRange(offset, 8L);
+        return delegate.getAndBitwiseOrLong(handle, offset, mask);
+    }
+
+    @Override
+    public long getAndBitwiseAndLong(T handle, long offset, long mask) {
+        checkRange(offset, 8L);
+        return delegate.getAndBitwiseAndLong(handle, offset, mask);
+    }
+
+    @Override
+    public long getAndBitwiseXorLong(T handle, long offset, long mask) {
+        checkRange(offset, 8L);
+        return delegate.getAndBitwiseXorLong(handle, offset, mask);
+    }
+
+    @Override
+    public void writeBytes(T handle, long offset, long len, byte b) {
+        checkRange(offset, len);
+        delegate.writeBytes(handle, offset, len, b);
+    }
+
+    @Override
+    public void zeroOut(T handle, long offset, long len) {
+        checkRange(offset, len);
+        delegate.zeroOut(handle, offset, len);
+    }
+
+    @Override
+    public ByteOrder byteOrder(T handle) {
+        return delegate.byteOrder(handle);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import net.openhft.chronicle.core.OS;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * A file mapped into native memory, to put shared structures, e. g. {@code BitSetFrame}s and
+ * locks, into a file shared between processes.
+ * <p>
+ * The region could be accessed either through {@link #access()}, with offsets from the start of
+ * the region, checked against the region size, or through {@link Access#nativeAccess()} with
+ * {@code null} handle and offsets from {@link #address()}, e. g. for {@code hashMemory()}.
+ * Accessing the region after {@link #close()} crashes the JVM, as well as writing to a read-only
+ * region through the native access.
+ * <p>
+ * Pages of a fresh mapping are faulted in on the first access. {@link #prefault(int)} touches
+ * all pages in advance, from several threads, so that a structure starts warm.
+ */
+public final class MappedRegion implements Closeable {
+
+    private final long address;
+    private final long size;
+    private final int pageSize;
+    private final boolean readOnly;
+    private volatile boolean closed;
+
+    private MappedRegion(long address, long size, int pageSize, boolean readOnly) {
+        this.address = address;
+        this.size = size;
+        this.pageSize = pageSize;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Maps the first {@code size} bytes of the file in pages of the {@linkplain OS#pageSize()
+     * default size}.
+     *
+     * @see #map(File, long, boolean, int)
+     */
+    public static MappedRegion map(File file, long size, boolean readOnly) throws IOException {
+        return map(file, size, readOnly, OS.pageSize());
+    }
+
+    /**
+     * Maps the first {@code size} bytes of the file, the read-write file is extended to the
+     * {@code size} if it is shorter.
+     *
+     * @param pageSize the page size of the file system of the file, e. g. 2 MB for huge pages
+     *                 of {@code hugetlbfs}, the mapping is aligned to it
+     * @throws IllegalArgumentException if the size is not positive, or the read-only file is
+     *                                  shorter than the {@code size}
+     */
+    public static MappedRegion map(File file, long size, boolean readOnly, int pageSize)
+            throws IOException {
+        if (size <= 0)
+            throw new IllegalArgumentException("size should be positive, " + size + " given");
+        try (RandomAccessFile raf = new RandomAccessFile(file, readOnly ? "r" : "rw")) {
+            if (raf.length() < size) {
+                if (readOnly) {
+                    throw new IllegalArgumentException("file " + file + " of " + raf.length() +
+                            " bytes is shorter than " + size + " bytes");
+                }
+                raf.setLength(size);
+            }
+            FileChannel.MapMode mode =
+                    readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+            // the mapping outlives the channel
+            long address = OS.map(raf.getChannel(), mode, 0L, size, pageSize);
+            return new MappedRegion(address, size, pageSize, readOnly);
+        }
+    }
+
+    /**
+     * @return the address of the start of the region, for {@link Access#nativeAccess()}
+     */
+    public long address() {
+        return address;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the access to this region, with offsets from the start of the region
+     */
+    public static Access<MappedRegion> access() {
+        return MappedRegionAccess.INSTANCE;
+    }
+
+    /**
+     * Touches all pages of the region, so that later accesses don't fault. Pages of a read-write
+     * region are faulted in writable, by atomically adding zero to the first word of each page,
+     * which never changes the contents, even if other processes write to the file concurrently.
+     *
+     * @param threads the number of threads to split the pages between, the calling thread is one
+     *                of them
+     */
+    public void prefault(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads should be positive, " + threads + " given");
+        checkNotClosed();
+        long pages = (size + pageSize - 1) / pageSize;
+        long pagesPerThread = (pages + threads - 1) / threads;
+        Thread[] helpers = new Thread[threads - 1];
+        for (int t = 1; t < threads; t++) {
+            long fromPage = Math.min(t * pagesPerThread, pages);
+            long toPage = Math.min(fromPage + pagesPerThread, pages);
+            helpers[t - 1] = new Thread(() -> prefault(fromPage, toPage), "prefault-" + t);
+            helpers[t - 1].setDaemon(true);
+            helpers[t - 1].start();
+        }
+        prefault(0L, Math.min(pagesPerThread, pages));
+        try {
+            for (Thread helper : helpers)
+                helper.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void prefault(long fromPage, long toPage) {
+        for (long page = fromPage; page < toPage; page++) {
+            long pageAddress = address + page * pageSize;
+            // volatile, for the read not to be eliminated
+            if (readOnly) {
+                MEMORY.readVolatileByte(pageAddress);
+            } else {
+                MEMORY.addInt(pageAddress, 0);
+            }
+        }
+    }
+
+    void checkNotClosed() {
+        if (closed)
+            throw new IllegalStateException("region is closed");
+    }
+
+    /**
+     * Unmaps the region. Should be called once no thread accesses the region anymore.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        OS.unmap(address, size, pageSize);
+    }
+}
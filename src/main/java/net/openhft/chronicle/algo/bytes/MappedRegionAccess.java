@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+import static net.openhft.chronicle.core.UnsafeMemory.UNSAFE;
+
+/**
+ * Access to a {@link MappedRegion} in the native byte order, with offsets from the start of the
+ * region. Offsets are checked against the size of the region, writes to read-only regions throw
+ * {@code ReadOnlyBufferException} rather than crash the JVM.
+ */
+final class MappedRegionAccess implements Access<MappedRegion> {
+    static final MappedRegionAccess INSTANCE = new MappedRegionAccess();
+    private static final ReadAccess<MappedRegion> REVERSE =
+            new ReverseByteOrderReadAccess<>(INSTANCE);
+
+    private MappedRegionAccess() {
+    }
+
+    static long address(MappedRegion region, long offset, long size) {
+        if (offset < 0 || offset > region.size() - size) {
+            throw new IndexOutOfBoundsException(
+                    "offset: " + offset + ", size: " + size + ", region size: " + region.size());
+        }
+        region.checkNotClosed();
+        return region.address() + offset;
+    }
+
+    static long writableAddress(MappedRegion region, long offset, long size) {
+        if (region.isReadOnly())
+            throw new ReadOnlyBufferException();
+        return address(region, offset, size);
+    }
+
+    @Override
+    public byte readByte(MappedRegion region, long offset) {
+        return MEMORY.readByte(address(region, offset, 1));
+    }
+
+    @Override
+    public short readShort(MappedRegion region, long offset) {
+        return MEMORY.readShort(address(region, offset, 2));
+    }
+
+    @Override
+    public int readInt(MappedRegion region, long offset) {
+        return MEMORY.readInt(address(region, offset, 4));
+    }
+
+    @Override
+    public long readLong(MappedRegion region, long offset) {
+        return MEMORY.readLong(address(region, offset, 8));
+    }
+
+    @Override
+    public int readVolatileInt(MappedRegion region, long offset) {
+        return MEMORY.readVolatileInt(address(region, offset, 4));
+    }
+
+    @Override
+    public long readVolatileLong(MappedRegion region, long offset) {
+        return MEMORY.readVolatileLong(address(region, offset, 8));
+    }
+
+    @Override
+    public void writeByte(MappedRegion region, long offset, byte i8) {
+        MEMORY.writeByte(writableAddress(region, offset, 1), i8);
+    }
+
+    @Override
+    public void writeShort(MappedRegion region, long offset, short i) {
+        MEMORY.writeShort(writableAddress(region, offset, 2), i);
+    }
+
+    @Override
+    public void writeInt(MappedRegion region, long offset, int i) {
+        MEMORY.writeInt(writableAddress(region, offset, 4), i);
+    }
+
+    @Override
+    public void writeOrderedInt(MappedRegion region, long offset, int i) {
+        MEMORY.writeOrderedInt(writableAddress(region, offset, 4), i);
+    }
+
+    @Override
+    public void writeLong(MappedRegion region, long offset, long i) {
+        MEMORY.writeLong(writableAddress(region, offset, 8), i);
+    }
+
+    @Override
+    public void writeOrderedLong(MappedRegion region, long offset, long i) {
+        MEMORY.writeOrderedLong(writableAddress(region, offset, 8), i);
+    }
+
+    @Override
+    public void writeFloat(MappedRegion region, long offset, float d) {
+        writeInt(region, offset, Float.floatToRawIntBits(d));
+    }
+
+    @Override
+    public void writeDouble(MappedRegion region, long offset, double d) {
+        writeLong(region, offset, Double.doubleToRawLongBits(d));
+    }
+
+    @Override
+    public boolean compareAndSwapInt(MappedRegion region, long offset, int expected, int value) {
+        return MEMORY.compareAndSwapInt(null, writableAddress(region, offset, 4), expected, value);
+    }
+
+    @Override
+    public boolean compareAndSwapLong(MappedRegion region, long offset, long expected, long value) {
+        return MEMORY.compareAndSwapLong(null, writableAddress(region, offset, 8), expected, value);
+    }
+
+    @Override
+    public int getAndAddInt(MappedRegion region, long offset, int delta) {
+        return UNSAFE.getAndAddInt(null, writableAddress(region, offset, 4), delta);
+    }
+
+    @Override
+    public long getAndAddLong(MappedRegion region, long offset, long delta) {
+        return UNSAFE.getAndAddLong(null, writableAddress(region, offset, 8), delta);
+    }
+
+    @Override
+    public int getAndSetInt(MappedRegion region, long offset, int value) {
+        return UNSAFE.getAndSetInt(null, writableAddress(region, offset, 4), value);
+    }
+
+    @Override
+    public long getAndSetLong(MappedRegion region, long offset, long value) {
+        return UNSAFE.getAndSetLong(null, writableAddress(region, offset, 8), value);
+    }
+
+    @Override
+    public void writeBytes(MappedRegion region, long offset, long len, byte b) {
+        MEMORY.setMemory(writableAddress(region, offset, len), len, b);
+    }
+
+    @Override
+    public void zeroOut(MappedRegion region, long offset, long len) {
+        writeBytes(region, offset, len, (byte) 0);
+    }
+
+    @Override
+    public ByteOrder byteOrder(MappedRegion region) {
+        return ByteOrder.nativeOrder();
+    }
+
+    @Override
+    public ReadAccess<MappedRegion> reverseByteOrder() {
+        return REVERSE;
+    }
+}
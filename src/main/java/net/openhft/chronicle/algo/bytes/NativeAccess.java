@@ -19,10 +19,12 @@ package net.openhft.chronicle.algo.bytes;
 import java.nio.ByteOrder;
 
 import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+import static net.openhft.chronicle.core.UnsafeMemory.UNSAFE;
 
 public final class NativeAccess<T> implements Access<T> {
 
     private static final NativeAccess<Object> INSTANCE = new NativeAccess<>();
+    private static final ReadAccess<Object> REVERSE = new ReverseByteOrderReadAccess<>(INSTANCE);
 
     private NativeAccess() {
     }
@@ -132,11 +134,37 @@ public final class NativeAccess<T> implements Access<T> {
         return MEMORY.compareAndSwapLong(handle, offset, expected, value);
     }
 
+    @Override
+    public int getAndAddInt(T handle, long offset, int delta) {
+        return UNSAFE.getAndAddInt(handle, offset, delta);
+    }
+
+    @Override
+    public long getAndAddLong(T handle, long offset, long delta) {
+        return UNSAFE.getAndAddLong(handle, offset, delta);
+    }
+
+    @Override
+    public int getAndSetInt(T handle, long offset, int value) {
+        return UNSAFE.getAndSetInt(handle, offset, value);
+    }
+
+    @Override
+    public long getAndSetLong(T handle, long offset, long value) {
+        return UNSAFE.getAndSetLong(handle, offset, value);
+    }
+
     @Override
     public ByteOrder byteOrder(T handle) {
         return ByteOrder.nativeOrder();
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public ReadAccess<T> reverseByteOrder() {
+        return (ReadAccess<T>) REVERSE;
+    }
+
     @Override
     public void writeBytes(T handle, long offset, long len, byte b) {
         MEMORY.setMemory(handle, offset, len, b);
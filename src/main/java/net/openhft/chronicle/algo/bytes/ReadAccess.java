@@ -16,12 +16,44 @@
 
 package net.openhft.chronicle.algo.bytes;
 
+import java.nio.ByteOrder;
+
 public interface ReadAccess<T> extends AccessCommon<T> {
 
     static ReadAccess<Void> zeros() {
         return ZeroAccess.INSTANCE;
     }
 
+    /**
+     * Returns access to the bytes of ASCII {@code CharSequence}s, one byte per char, the offset of
+     * a byte is the index of its char. Valid only for ASCII input, other chars are truncated to
+     * their low bytes, so sequences should be checked by {@link Access#isAscii} first. Use {@link
+     * net.openhft.chronicle.algo.hashing.LongHashFunction#hashUtf8} to hash arbitrary text.
+     */
+    static ReadAccess<CharSequence> asciiCharSequenceAccess() {
+        return Utf8CharSequenceAccess.INSTANCE;
+    }
+
+    /**
+     * Returns a view reading the {@code handle} in the given byte order: this access, if it
+     * reads the handle in this order already, otherwise {@link #reverseByteOrder()}. Code written
+     * against a fixed byte order, e. g. hash functions, should obtain the view once per input, then
+     * reads from the view need no byte order checks and swaps.
+     */
+    default ReadAccess<T> byteOrder(T handle, ByteOrder order) {
+        return byteOrder(handle) == order ? this : reverseByteOrder();
+    }
+
+    /**
+     * Returns a view of this access, reading multibyte values in the byte order opposite to
+     * {@link #byteOrder(Object)}, with the same bytes. The view of the view is this access.
+     * <p>
+     * Default implementation: creates a new view, singleton accesses return a cached view.
+     */
+    default ReadAccess<T> reverseByteOrder() {
+        return new ReverseByteOrderReadAccess<>(this);
+    }
+
     default boolean readBoolean(T handle, long offset) {
         return readByte(handle, offset) != 0;
     }
@@ -64,6 +96,46 @@ public interface ReadAccess<T> extends AccessCommon<T> {
         return Double.longBitsToDouble(readLong(handle, offset));
     }
 
+    /**
+     * Reads a stop bit (unsigned LEB128) encoded value, written by {@code writeVarLong()}, its size
+     * is {@link Access#varLongSize(long)}.
+     *
+     * @throws IllegalStateException if the encoding is longer than 10 bytes
+     */
+    default long readVarLong(T handle, long offset) {
+        return VarInts.readVarLong(this, handle, offset);
+    }
+
+    /**
+     * Reads a stop bit encoded value, which ends before the {@code limit}. If at least 8 bytes are
+     * available before the {@code limit}, reads them as one {@code long} and decodes values of up
+     * to 8 bytes with bit tricks, rather than byte by byte.
+     *
+     * @param limit the offset after the last byte which could be read
+     */
+    default long readVarLong(T handle, long offset, long limit) {
+        return limit - offset >= 8L ?
+                VarInts.readVarLongFromLong(this, handle, offset) :
+                VarInts.readVarLong(this, handle, offset);
+    }
+
+    /**
+     * Reads a zig-zag and stop bit encoded value, written by {@code writeSignedVarLong()}, its size
+     * is {@link Access#signedVarLongSize(long)}.
+     */
+    default long readSignedVarLong(T handle, long offset) {
+        return VarInts.zigZagDecode(readVarLong(handle, offset));
+    }
+
+    /**
+     * Reads a zig-zag and stop bit encoded value, which ends before the {@code limit}.
+     *
+     * @see #readVarLong(Object, long, long)
+     */
+    default long readSignedVarLong(T handle, long offset, long limit) {
+        return VarInts.zigZagDecode(readVarLong(handle, offset, limit));
+    }
+
     default String printable(T handle, long offset) {
         int b = readUnsignedByte(handle, offset);
         if (b == 0)
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import java.nio.ByteOrder;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * View of a {@code ReadAccess}, which reads multibyte values in the byte order opposite to
+ * the order of the delegate, see {@link ReadAccess#reverseByteOrder()}. Byte swaps are folded into
+ * reads, so code written against a fixed byte order, e. g. hash functions, could call
+ * {@link ReadAccess#byteOrder(Object, ByteOrder)} once, rather than check the order and swap bytes
+ * on every read.
+ */
+final class ReverseByteOrderReadAccess<T> implements ReadAccess<T> {
+
+    private final ReadAccess<T> delegate;
+
+    ReverseByteOrderReadAccess(ReadAccess<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean readBoolean(T handle, long offset) {
+        return delegate.readBoolean(handle, offset);
+    }
+
+    @Override
+    public byte readByte(T handle, long offset) {
+        return delegate.readByte(handle, offset);
+    }
+
+    @Override
+    public int readUnsignedByte(T handle, long offset) {
+        return delegate.readUnsignedByte(handle, offset);
+    }
+
+    @Override
+    public short readShort(T handle, long offset) {
+        return Short.reverseBytes(delegate.readShort(handle, offset));
+    }
+
+    @Override
+    public int readUnsignedShort(T handle, long offset) {
+        return Short.reverseBytes(delegate.readShort(handle, offset)) & 0xFFFF;
+    }
+
+    @Override
+    public char readChar(T handle, long offset) {
+        return Character.reverseBytes(delegate.readChar(handle, offset));
+    }
+
+    @Override
+    public int readInt(T handle, long offset) {
+        return Integer.reverseBytes(delegate.readInt(handle, offset));
+    }
+
+    @Override
+    public long readUnsignedInt(T handle, long offset) {
+        return Integer.reverseBytes(delegate.readInt(handle, offset)) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public long readLong(T handle, long offset) {
+        return Long.reverseBytes(delegate.readLong(handle, offset));
+    }
+
+    @Override
+    public String printable(T handle, long offset) {
+        return delegate.printable(handle, offset);
+    }
+
+    @Override
+    public int readVolatileInt(T handle, long offset) {
+        return Integer.reverseBytes(delegate.readVolatileInt(handle, offset));
+    }
+
+    @Override
+    public long readVolatileLong(T handle, long offset) {
+        return Long.reverseBytes(delegate.readVolatileLong(handle, offset));
+    }
+
+    @Override
+    public ByteOrder byteOrder(T handle) {
+        return delegate.byteOrder(handle) == LITTLE_ENDIAN ? BIG_ENDIAN : LITTLE_ENDIAN;
+    }
+
+    @Override
+    public ReadAccess<T> reverseByteOrder() {
+        return delegate;
+    }
+}
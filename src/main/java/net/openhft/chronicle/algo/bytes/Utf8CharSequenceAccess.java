@@ -0,0 +1,255 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import java.lang.reflect.Field;
+import java.nio.ByteOrder;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * UTF-8 encoding of {@code CharSequence}s. The access reads the UTF-8 bytes of ASCII sequences
+ * in place, the offset of a byte is the index of its char, so it should be used only for
+ * sequences checked by {@link #isAscii}, other chars are truncated to their low bytes. Multibyte
+ * values are read in the little-endian order, 8 chars per {@code readLong()}. {@code String}s are
+ * better read through {@link Utf8StringAccessor}, directly from their arrays.
+ * <p>
+ * Sequences with other chars should be encoded by {@link #encode}, like {@code
+ * String.getBytes(UTF_8)}, unpaired surrogates are encoded as {@code '?'}.
+ */
+final class Utf8CharSequenceAccess implements ReadAccess<CharSequence> {
+    static final byte LATIN1 = 0;
+    static final byte UTF16 = 1;
+    static final Utf8CharSequenceAccess INSTANCE = new Utf8CharSequenceAccess();
+    private static final ReadAccess<CharSequence> REVERSE =
+            new ReverseByteOrderReadAccess<>(INSTANCE);
+
+    private static final boolean NATIVE_LITTLE_ENDIAN = ByteOrder.nativeOrder() == LITTLE_ENDIAN;
+    private static final long ASCII_MASK = 0x8080808080808080L;
+    private static final long UTF16_ASCII_MASK = 0xFF80FF80FF80FF80L;
+    private static final long VALUE_OFFSET;
+    /**
+     * The offset of {@code String.coder}, or -1 before Java 9, when strings are not compact
+     */
+    private static final long CODER_OFFSET;
+
+    static {
+        long valueOffset = -1L;
+        long coderOffset = -1L;
+        try {
+            Field coder = String.class.getDeclaredField("coder");
+            Field value = String.class.getDeclaredField("value");
+            if (value.getType() == byte[].class) {
+                valueOffset = MEMORY.objectFieldOffset(value);
+                coderOffset = MEMORY.objectFieldOffset(coder);
+            }
+        } catch (NoSuchFieldException e) {
+            // not a compact strings JVM, read strings through charAt()
+        }
+        VALUE_OFFSET = valueOffset;
+        CODER_OFFSET = coderOffset;
+    }
+
+    private Utf8CharSequenceAccess() {
+    }
+
+    /**
+     * @return the coder of the {@code String}, {@link #LATIN1} or {@link #UTF16}, or -1 if strings
+     * are not compact, then they have {@code char} arrays
+     */
+    static byte coder(String string) {
+        return CODER_OFFSET < 0L ? -1 : MEMORY.readByte(string, CODER_OFFSET);
+    }
+
+    /**
+     * @return the {@code byte} array of the {@code String}, if strings are compact
+     */
+    static byte[] value(String string) {
+        return (byte[]) MEMORY.getObject(string, VALUE_OFFSET);
+    }
+
+    private static void checkChars(CharSequence input, int off, int len) {
+        if (off < 0 || len < 0 || off > input.length() - len) {
+            throw new IndexOutOfBoundsException(
+                    "off: " + off + ", len: " + len + ", length: " + input.length());
+        }
+    }
+
+    static boolean isAscii(CharSequence input, int off, int len) {
+        checkChars(input, off, len);
+        int end = off + len;
+        if (input.getClass() == String.class) {
+            String string = (String) input;
+            byte coder = coder(string);
+            if (coder == LATIN1)
+                return isAscii(value(string), off, end, 1, ASCII_MASK);
+            if (coder == UTF16)
+                return isAscii(value(string), off, end, 2, UTF16_ASCII_MASK);
+        }
+        int i = off;
+        for (; i <= end - 8; i += 8) {
+            int chars = input.charAt(i) | input.charAt(i + 1) | input.charAt(i + 2) |
+                    input.charAt(i + 3) | input.charAt(i + 4) | input.charAt(i + 5) |
+                    input.charAt(i + 6) | input.charAt(i + 7);
+            if (chars >= 0x80)
+                return false;
+        }
+        for (; i < end; i++) {
+            if (input.charAt(i) >= 0x80)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks 8 bytes at a time, {@code mask} covers the bits above 7 of each char
+     */
+    private static boolean isAscii(byte[] value, int off, int end, int bytesPerChar, long mask) {
+        long i = ArrayAccessors.BYTE_BASE + (long) off * bytesPerChar;
+        long limit = ArrayAccessors.BYTE_BASE + (long) end * bytesPerChar;
+        for (; i <= limit - 8L; i += 8L) {
+            if ((MEMORY.readLong(value, i) & mask) != 0L)
+                return false;
+        }
+        for (; i < limit; i += bytesPerChar) {
+            int c = bytesPerChar == 1 ? MEMORY.readByte(value, i) : MEMORY.readShort(value, i);
+            if ((c & 0xFF80) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the chars into {@code dst} from {@code dstOff}, which should have at least
+     * {@code len * 3} bytes remaining.
+     *
+     * @return the offset in {@code dst} after the last encoded byte
+     */
+    static int encode(CharSequence input, int off, int len, byte[] dst, int dstOff) {
+        checkChars(input, off, len);
+        if (dstOff < 0 || dstOff > dst.length || dst.length - dstOff < len * 3L) {
+            throw new IndexOutOfBoundsException("dstOff: " + dstOff + ", len: " + len +
+                    ", dst length: " + dst.length + ", " + len * 3L + " bytes needed");
+        }
+        int end = off + len;
+        int i = off;
+        int d = dstOff;
+        // ASCII runs are copied 8 chars at a time
+        for (; i <= end - 8; i += 8, d += 8) {
+            long chars = readAsciiLong(input, i);
+            if (chars == -1L)
+                break;
+            MEMORY.writeLong(dst, ArrayAccessors.BYTE_BASE + d,
+                    NATIVE_LITTLE_ENDIAN ? chars : Long.reverseBytes(chars));
+        }
+        for (; i < end; i++) {
+            char c = input.charAt(i);
+            if (c < 0x80) {
+                dst[d++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[d++] = (byte) (0xC0 | (c >> 6));
+                dst[d++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                char low;
+                if (Character.isHighSurrogate(c) && i + 1 < end &&
+                        Character.isLowSurrogate(low = input.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, low);
+                    dst[d++] = (byte) (0xF0 | (codePoint >> 18));
+                    dst[d++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    dst[d++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    dst[d++] = (byte) (0x80 | (codePoint & 0x3F));
+                    i++;
+                } else {
+                    dst[d++] = '?';
+                }
+            } else {
+                dst[d++] = (byte) (0xE0 | (c >> 12));
+                dst[d++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[d++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return d;
+    }
+
+    /**
+     * @return 8 ASCII chars from {@code index} as little-endian bytes, or -1 if any of them is not
+     * ASCII
+     */
+    private static long readAsciiLong(CharSequence input, int index) {
+        long chars = 0L;
+        int or = 0;
+        for (int i = 0; i < 8; i++) {
+            char c = input.charAt(index + i);
+            or |= c;
+            chars |= (long) c << (i << 3);
+        }
+        return or < 0x80 ? chars : -1L;
+    }
+
+    private static long readCharsAsBytes(CharSequence input, int index) {
+        return (input.charAt(index) & 0xFFL) |
+                ((input.charAt(index + 1) & 0xFFL) << 8) |
+                ((input.charAt(index + 2) & 0xFFL) << 16) |
+                ((input.charAt(index + 3) & 0xFFL) << 24) |
+                ((input.charAt(index + 4) & 0xFFL) << 32) |
+                ((input.charAt(index + 5) & 0xFFL) << 40) |
+                ((input.charAt(index + 6) & 0xFFL) << 48) |
+                ((input.charAt(index + 7) & 0xFFL) << 56);
+    }
+
+    @Override
+    public byte readByte(CharSequence input, long offset) {
+        return (byte) input.charAt((int) offset);
+    }
+
+    @Override
+    public short readShort(CharSequence input, long offset) {
+        int index = (int) offset;
+        return (short) ((input.charAt(index) & 0xFF) | ((input.charAt(index + 1) & 0xFF) << 8));
+    }
+
+    @Override
+    public char readChar(CharSequence input, long offset) {
+        return (char) readShort(input, offset);
+    }
+
+    @Override
+    public int readInt(CharSequence input, long offset) {
+        int index = (int) offset;
+        return (input.charAt(index) & 0xFF) |
+                ((input.charAt(index + 1) & 0xFF) << 8) |
+                ((input.charAt(index + 2) & 0xFF) << 16) |
+                ((input.charAt(index + 3) & 0xFF) << 24);
+    }
+
+    @Override
+    public long readLong(CharSequence input, long offset) {
+        return readCharsAsBytes(input, (int) offset);
+    }
+
+    @Override
+    public ByteOrder byteOrder(CharSequence input) {
+        return LITTLE_ENDIAN;
+    }
+
+    @Override
+    public ReadAccess<CharSequence> reverseByteOrder() {
+        return REVERSE;
+    }
+}
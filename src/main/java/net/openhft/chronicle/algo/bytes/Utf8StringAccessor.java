@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import java.nio.ByteOrder;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * Accessors to the UTF-8 bytes of ASCII {@code String}s, see {@link Accessor#asciiStringAccessor}.
+ * Compact Latin-1 strings of Java 9+ are read directly from their {@code byte} arrays, which are
+ * the UTF-8 encoding already, UTF-16 strings are read from their arrays 8 chars at a time, taking
+ * the low byte of each char. Strings which are not compact are read through {@link
+ * Utf8CharSequenceAccess}.
+ */
+abstract class Utf8StringAccessor<T> implements Accessor.Read<String, T> {
+
+    static final Utf8StringAccessor<byte[]> LATIN1 = new Utf8StringAccessor<byte[]>() {
+        @Override
+        public ReadAccess<byte[]> access() {
+            return NativeAccess.instance();
+        }
+
+        @Override
+        public byte[] handle(String source) {
+            return Utf8CharSequenceAccess.value(source);
+        }
+
+        @Override
+        public long offset(String source, long index) {
+            return ArrayAccessors.BYTE_BASE + index;
+        }
+    };
+
+    static final Utf8StringAccessor<byte[]> UTF16 = new Utf8StringAccessor<byte[]>() {
+        @Override
+        public ReadAccess<byte[]> access() {
+            return Utf16Access.INSTANCE;
+        }
+
+        @Override
+        public byte[] handle(String source) {
+            return Utf8CharSequenceAccess.value(source);
+        }
+
+        @Override
+        public long offset(String source, long index) {
+            return index;
+        }
+    };
+
+    static final Utf8StringAccessor<CharSequence> CHARS =
+            new Utf8StringAccessor<CharSequence>() {
+                @Override
+                public ReadAccess<CharSequence> access() {
+                    return Utf8CharSequenceAccess.INSTANCE;
+                }
+
+                @Override
+                public CharSequence handle(String source) {
+                    return source;
+                }
+
+                @Override
+                public long offset(String source, long index) {
+                    return index;
+                }
+            };
+
+    private Utf8StringAccessor() {
+    }
+
+    static Utf8StringAccessor<?> of(String string) {
+        byte coder = Utf8CharSequenceAccess.coder(string);
+        return coder == Utf8CharSequenceAccess.LATIN1 ? LATIN1 :
+                coder == Utf8CharSequenceAccess.UTF16 ? UTF16 : CHARS;
+    }
+
+    /**
+     * Reads low bytes of the chars of a UTF-16 {@code String}'s array, which are in the native
+     * order, the offset of a byte is the index of its char. The chars should be ASCII.
+     */
+    static final class Utf16Access implements ReadAccess<byte[]> {
+        static final Utf16Access INSTANCE = new Utf16Access();
+        private static final ReadAccess<byte[]> REVERSE =
+                new ReverseByteOrderReadAccess<>(INSTANCE);
+        private static final boolean NATIVE_LITTLE_ENDIAN =
+                ByteOrder.nativeOrder() == LITTLE_ENDIAN;
+
+        private Utf16Access() {
+        }
+
+        private static long address(long offset) {
+            return ArrayAccessors.BYTE_BASE + offset * 2L;
+        }
+
+        /**
+         * @return low bytes of 4 ASCII chars, read as a native {@code long}, in the little-endian
+         * order
+         */
+        private static long lowBytes(long chars) {
+            // high bytes of ASCII chars are zero, so shifts merge pairs of bytes, then of chars
+            long pairs = (chars | (chars >>> 8)) & 0x0000FFFF0000FFFFL;
+            long bytes = (pairs | (pairs >>> 16)) & 0xFFFFFFFFL;
+            // in the big-endian order the first char is in the highest bits
+            return NATIVE_LITTLE_ENDIAN ? bytes : Integer.reverseBytes((int) bytes) & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public byte readByte(byte[] value, long offset) {
+            return (byte) MEMORY.readShort(value, address(offset));
+        }
+
+        @Override
+        public short readShort(byte[] value, long offset) {
+            long address = address(offset);
+            return (short) ((MEMORY.readShort(value, address) & 0xFF) |
+                    ((MEMORY.readShort(value, address + 2L) & 0xFF) << 8));
+        }
+
+        @Override
+        public int readInt(byte[] value, long offset) {
+            return (int) lowBytes(MEMORY.readLong(value, address(offset)));
+        }
+
+        @Override
+        public long readLong(byte[] value, long offset) {
+            long address = address(offset);
+            return lowBytes(MEMORY.readLong(value, address)) |
+                    (lowBytes(MEMORY.readLong(value, address + 8L)) << 32);
+        }
+
+        @Override
+        public ByteOrder byteOrder(byte[] value) {
+            return LITTLE_ENDIAN;
+        }
+
+        @Override
+        public ReadAccess<byte[]> reverseByteOrder() {
+            return REVERSE;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import java.nio.ByteOrder;
+
+/**
+ * Stop bit (unsigned LEB128) encoding of {@code long}s: 7 bits per byte, the least significant
+ * first, the highest bit of each byte is set if more bytes follow. Non-negative values below
+ * {@code 2 ^ (7 * n)} take {@code n} bytes, negative values take 10 bytes, so signed values should
+ * be zig-zag encoded first, to interleave them by absolute value: 0, -1, 1, -2, 2...
+ */
+final class VarInts {
+
+    static final int MAX_VAR_LONG_SIZE = 10;
+    private static final long STOP_BITS = 0x8080808080808080L;
+
+    private VarInts() {
+    }
+
+    static int varLongSize(long value) {
+        // 1 byte for each started 7 bits, 1 byte for 0
+        int bits = 64 - Long.numberOfLeadingZeros(value | 1L);
+        return (bits + 6) / 7;
+    }
+
+    static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    static <T> long readVarLong(ReadAccess<T> access, T handle, long offset) {
+        long value = 0L;
+        for (int shift = 0; ; shift += 7) {
+            int b = access.readByte(handle, offset++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+            if (shift == 63)
+                throw new IllegalStateException("stop bit encoded value is longer than 10 bytes");
+        }
+    }
+
+    /**
+     * Reads 8 bytes at once and decodes values of up to 8 bytes without branching on each byte,
+     * the caller should make sure that 8 bytes could be read.
+     */
+    static <T> long readVarLongFromLong(ReadAccess<T> access, T handle, long offset) {
+        long l = access.readLong(handle, offset);
+        if (access.byteOrder(handle) != ByteOrder.LITTLE_ENDIAN)
+            l = Long.reverseBytes(l);
+        // stop bits are clear stop bits, the first one is the last byte of the value
+        long stops = ~l & STOP_BITS;
+        if (stops == 0L)
+            return readVarLong(access, handle, offset);
+        int stopBit = Long.numberOfTrailingZeros(stops);
+        long x = stopBit == 63 ? l : l & ((1L << (stopBit + 1)) - 1L);
+        x &= ~STOP_BITS;
+        // compact the 7-bit groups: into 14 bits of 16, 28 bits of 32, 56 bits of 64
+        x = (x & 0x007F007F007F007FL) | ((x & 0x7F007F007F007F00L) >>> 1);
+        x = (x & 0x00003FFF00003FFFL) | ((x & 0x3FFF00003FFF0000L) >>> 2);
+        return (x & 0x000000000FFFFFFFL) | ((x & 0x0FFFFFFF00000000L) >>> 4);
+    }
+
+    static <T> int writeVarLong(WriteAccess<T> access, T handle, long offset, long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0L) {
+            access.writeByte(handle, offset++, (byte) (value | 0x80L));
+            value >>>= 7;
+            size++;
+        }
+        access.writeByte(handle, offset, (byte) value);
+        return size;
+    }
+}
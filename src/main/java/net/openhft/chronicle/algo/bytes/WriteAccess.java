@@ -69,6 +69,26 @@ interface WriteAccess<T> extends AccessCommon<T> {
 
     void writeDouble(T handle, long offset, double d);
 
+    /**
+     * Writes the value in the stop bit (unsigned LEB128) encoding, 7 bits per byte, with the
+     * highest bit set in all bytes but the last. Negative values take 10 bytes.
+     *
+     * @return the number of bytes written
+     */
+    default int writeVarLong(T handle, long offset, long value) {
+        return VarInts.writeVarLong(this, handle, offset, value);
+    }
+
+    /**
+     * Writes the zig-zag encoded value in the stop bit encoding, values of small magnitude take
+     * few bytes regardless of the sign.
+     *
+     * @return the number of bytes written
+     */
+    default int writeSignedVarLong(T handle, long offset, long value) {
+        return writeVarLong(handle, offset, VarInts.zigZagEncode(value));
+    }
+
     default void writeBytes(T handle, long offset, long len, byte b) {
         char c;
         int i;
@@ -259,16 +259,6 @@ class CityHash_1_1 {
         private BigEndian() {
         }
 
-        @Override
-        <T> long fetch64(ReadAccess<T> access, T in, long off) {
-            return reverseBytes(super.fetch64(access, in, off));
-        }
-
-        @Override
-        <T> int fetch32(ReadAccess<T> access, T in, long off) {
-            return Integer.reverseBytes(super.fetch32(access, in, off));
-        }
-
         @Override
         long toLittleEndian(long v) {
             return reverseBytes(v);
@@ -336,13 +326,8 @@ class CityHash_1_1 {
 
         @Override
         public <T> long hash(T input, ReadAccess<T> access, long off, long len) {
-            long hash;
-            if (access.byteOrder(input) == LITTLE_ENDIAN) {
-                hash = CityHash_1_1.INSTANCE.cityHash64(access, input, off, len);
-            } else {
-                hash = BigEndian.INSTANCE.cityHash64(access, input, off, len);
-            }
-            return finalizeHash(hash);
+            return finalizeHash(CityHash_1_1.INSTANCE.cityHash64(
+                    access.byteOrder(input, LITTLE_ENDIAN), input, off, len));
         }
 
         long finalizeHash(long hash) {
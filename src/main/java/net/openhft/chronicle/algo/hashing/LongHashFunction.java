@@ -16,6 +16,7 @@
 
 package net.openhft.chronicle.algo.hashing;
 
+import net.openhft.chronicle.algo.bytes.Access;
 import net.openhft.chronicle.algo.bytes.Accessor;
 import net.openhft.chronicle.algo.bytes.ReadAccess;
 import org.jetbrains.annotations.NotNull;
@@ -70,6 +71,12 @@ import static net.openhft.chronicle.algo.bytes.Accessor.*;
 public abstract class LongHashFunction implements Serializable {
     static final boolean NATIVE_LITTLE_ENDIAN = nativeOrder() == LITTLE_ENDIAN;
     private static final long serialVersionUID = 0L;
+    /**
+     * Larger buffers for UTF-8 encoding are not retained by threads
+     */
+    private static final int MAX_RETAINED_UTF8_BUFFER = 1 << 16;
+    private static final ThreadLocal<byte[]> UTF8_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[256]);
 
     /**
      * Constructor for use in subclasses.
@@ -424,6 +431,47 @@ public abstract class LongHashFunction implements Serializable {
         return hashNativeChars(input, off, len);
     }
 
+    /**
+     * Shortcut for {@link #hashUtf8(CharSequence, int, int) hashUtf8(input, 0, input.length())}.
+     */
+    public long hashUtf8(@NotNull CharSequence input) {
+        return hashUtf8(input, 0, input.length());
+    }
+
+    /**
+     * Returns the hash code for the UTF-8 encoding of the specified subsequence of the given
+     * {@code CharSequence}, i. e. the same as {@code hashBytes(input.subSequence(off, off + len)
+     * .toString().getBytes(UTF_8))}, unpaired surrogates are encoded as {@code '?'}.
+     *
+     * <p>ASCII subsequences are hashed in place, through {@link Accessor#asciiStringAccessor} or
+     * {@link ReadAccess#asciiCharSequenceAccess()}, others are encoded into a thread-local buffer
+     * first, so it doesn't allocate, except for buffers of long subsequences.
+     *
+     * @param input the char sequence to hash
+     * @param off   index of the first {@code char} in the subsequence to hash
+     * @param len   length of the subsequence to hash, in chars
+     * @return the hash code of the UTF-8 bytes of the specified subsequence
+     * @throws IndexOutOfBoundsException if {@code off < 0} or {@code off + len > input.length()}
+     *                                   or {@code len < 0}
+     */
+    public long hashUtf8(@NotNull CharSequence input, int off, int len) {
+        checkArrayOffs(input.length(), off, len);
+        if (Access.isAscii(input, off, len)) {
+            return input instanceof String ?
+                    hash(asciiStringAccessor((String) input), (String) input, off, len) :
+                    hash(input, ReadAccess.asciiCharSequenceAccess(), off, len);
+        }
+        byte[] buffer = UTF8_BUFFER.get();
+        long maxSize = len * 3L;
+        if (buffer.length < maxSize) {
+            buffer = new byte[(int) Math.min(maxSize, Integer.MAX_VALUE - 8)];
+            if (buffer.length <= MAX_RETAINED_UTF8_BUFFER)
+                UTF8_BUFFER.set(buffer);
+        }
+        int size = Access.encodeUtf8(input, off, len, buffer, 0);
+        return hashBytes(buffer, 0, size);
+    }
+
     long hashNativeChars(CharSequence input) {
         return hashNativeChars(input, 0, input.length());
     }
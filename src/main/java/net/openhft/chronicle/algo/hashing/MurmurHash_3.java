@@ -245,16 +245,6 @@ class MurmurHash_3 {
         private BigEndian() {
         }
 
-        @Override
-        <T> long fetch64(ReadAccess<T> access, T in, long off) {
-            return reverseBytes(super.fetch64(access, in, off));
-        }
-
-        @Override
-        <T> int fetch32(ReadAccess<T> access, T in, long off) {
-            return Integer.reverseBytes(super.fetch32(access, in, off));
-        }
-
         @Override
         long toLittleEndian(long v) {
             return reverseBytes(v);
@@ -322,12 +312,8 @@ class MurmurHash_3 {
 
         @Override
         public <T> long hash(T input, ReadAccess<T> access, long off, long len) {
-            long seed = seed();
-            if (access.byteOrder(input) == LITTLE_ENDIAN) {
-                return MurmurHash_3.INSTANCE.hash(seed, input, access, off, len);
-            } else {
-                return BigEndian.INSTANCE.hash(seed, input, access, off, len);
-            }
+            return MurmurHash_3.INSTANCE.hash(
+                    seed(), input, access.byteOrder(input, LITTLE_ENDIAN), off, len);
         }
     }
 
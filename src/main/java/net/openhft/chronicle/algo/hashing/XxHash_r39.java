@@ -180,17 +180,6 @@ class XxHash_r39 {
         private BigEndian() {
         }
 
-        @Override
-        <T> long fetch64(ReadAccess<T> access, T in, long off) {
-            return Long.reverseBytes(super.fetch64(access, in, off));
-        }
-
-        @Override
-        <T> long fetch32(ReadAccess<T> access, T in, long off) {
-            return Integer.reverseBytes(access.readInt(in, off)) & 0xFFFFFFFFL;
-        }
-// fetch8 is not overloaded, because endianness doesn't matter for single byte
-
         @Override
         long toLittleEndian(long v) {
             return Long.reverseBytes(v);
@@ -271,12 +260,8 @@ class XxHash_r39 {
 
         @Override
         public <T> long hash(T input, ReadAccess<T> access, long off, long len) {
-            long seed = seed();
-            if (access.byteOrder(input) == LITTLE_ENDIAN) {
-                return XxHash_r39.INSTANCE.xxHash64(seed, input, access, off, len);
-            } else {
-                return BigEndian.INSTANCE.xxHash64(seed, input, access, off, len);
-            }
+            return XxHash_r39.INSTANCE.xxHash64(
+                    seed(), input, access.byteOrder(input, LITTLE_ENDIAN), off, len);
         }
     }
 
@@ -20,6 +20,9 @@ import net.openhft.chronicle.algo.bytes.Access;
 import net.openhft.chronicle.core.Jvm;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongToIntFunction;
 
 public final class AcquisitionStrategies {
 
@@ -42,6 +45,110 @@ public final class AcquisitionStrategies {
         return new SpinLoopWriteWithWaitsAcquisitionStrategy<>(duration, unit);
     }
 
+    /**
+     * Returns a strategy, which spins until the lock is acquired or the duration elapses. Then,
+     * if the lock owner is dead, takes the lock over and calls the {@code recoveryHandler} to
+     * repair the protected data. Otherwise, throws {@code IllegalStateException}.
+     */
+    public static AcquisitionStrategy<RobustLockingStrategy, RuntimeException> spinLoopOrRecover(
+            long duration, TimeUnit unit, LockRecoveryHandler recoveryHandler) {
+        return new SpinLoopOrRecoverAcquisitionStrategy(duration, unit, recoveryHandler);
+    }
+
+    /**
+     * Equivalent to {@code adaptive(duration, unit, false)}.
+     */
+    public static <S extends LockingStrategy>
+    AcquisitionStrategy<S, RuntimeException> adaptive(long duration, TimeUnit unit) {
+        return adaptive(duration, unit, false);
+    }
+
+    /**
+     * Returns a strategy, which spins for a few microseconds, then yields a few times, then parks
+     * with exponential backoff from 1 microsecond up to 1 millisecond, until the lock is acquired
+     * or the duration elapses. Suits locks which might be held for milliseconds, when spinning
+     * would burn a core per waiter.
+     *
+     * @param learnWaitTime if {@code true}, the strategy tracks the average wait time per lock
+     *                      (per lock word offset, approximately), and spins longer when locks are
+     *                      typically acquired within the spin budget, or skips spinning when they
+     *                      are not
+     */
+    public static <S extends LockingStrategy>
+    AcquisitionStrategy<S, RuntimeException> adaptive(
+            long duration, TimeUnit unit, boolean learnWaitTime) {
+        return new AdaptiveAcquisitionStrategy<>(duration, unit, learnWaitTime);
+    }
+
+    /**
+     * Equivalent to {@code adaptiveOrFail(duration, unit, false)}.
+     */
+    public static <S extends LockingStrategy>
+    AcquisitionStrategy<S, RuntimeException> adaptiveOrFail(long duration, TimeUnit unit) {
+        return adaptiveOrFail(duration, unit, false);
+    }
+
+    /**
+     * Like {@link #adaptive(long, TimeUnit, boolean)}, but throws {@code IllegalStateException}
+     * if the lock is not acquired within the duration.
+     */
+    public static <S extends LockingStrategy>
+    AcquisitionStrategy<S, RuntimeException> adaptiveOrFail(
+            long duration, TimeUnit unit, boolean learnWaitTime) {
+        return new AdaptiveOrFailAcquisitionStrategy<>(duration, unit, learnWaitTime);
+    }
+
+    /**
+     * Like {@link #adaptiveOrFail}, but registers a wait while spinning, yielding and parking, as
+     * {@link #spinLoopRegisteringWaitOrFail} does.
+     */
+    public static <S extends ReadWriteWithWaitsLockingStrategy>
+    AcquisitionStrategy<S, RuntimeException> adaptiveRegisteringWaitOrFail(
+            long duration, TimeUnit unit, boolean learnWaitTime) {
+        return new AdaptiveWriteWithWaitsAcquisitionStrategy<>(duration, unit, learnWaitTime);
+    }
+
+    /**
+     * Returns a strategy, which spins for a few microseconds, then blocks until the lock holder
+     * {@link LockWaiters#wakeUp wakes it up}, or the duration elapses. Suits locks which might be
+     * held for long, e. g. by background processes, so that waiters don't consume CPU. Holders
+     * should release the locks through {@link LockWaiters#releaseAndWakeUp}.
+     */
+    public static <S extends LockingStrategy>
+    AcquisitionStrategy<S, RuntimeException> spinThenBlock(
+            long duration, TimeUnit unit, LockWaiters waiters) {
+        return new BlockingAcquisitionStrategy<>(duration, unit, waiters);
+    }
+
+    /**
+     * Like {@link #spinThenBlock}, but registers a wait while spinning and blocking, as {@link
+     * #spinLoopRegisteringWaitOrFail} does, and throws {@code IllegalStateException} if the lock
+     * is not acquired within the duration.
+     */
+    public static <S extends ReadWriteWithWaitsLockingStrategy>
+    AcquisitionStrategy<S, RuntimeException> spinThenBlockRegisteringWaitOrFail(
+            long duration, TimeUnit unit, LockWaiters waiters) {
+        return new BlockingWriteWithWaitsAcquisitionStrategy<>(duration, unit, waiters);
+    }
+
+    /**
+     * Returns a strategy, which records the latency, the number of failed tries and timeouts of
+     * acquisitions by the {@code delegate} to the statistics of the lock with the index returned by
+     * the {@code lockIndex} function of the lock offset, if {@link LockStatistics#enabled()}.
+     * Otherwise returns the {@code delegate}. Acquisitions which fail or throw, like the strategies
+     * which fail with {@code IllegalStateException}, are counted as timeouts.
+     */
+    public static <S extends LockingStrategy, E extends Exception, U>
+    AcquisitionStrategy<S, E> instrumented(
+            AcquisitionStrategy<S, E> delegate, LockStatistics statistics,
+            Access<U> statisticsAccess, U statisticsHandle, long statisticsOffset,
+            LongToIntFunction lockIndex) {
+        if (!LockStatistics.enabled())
+            return delegate;
+        return new InstrumentedAcquisitionStrategy<>(delegate, statistics,
+                statisticsAccess, statisticsHandle, statisticsOffset, lockIndex);
+    }
+
     private static class SpinLoopAcquisitionStrategy<S extends LockingStrategy>
             implements AcquisitionStrategy<S, RuntimeException> {
         private final long durationNanos;
@@ -63,7 +170,7 @@ public final class AcquisitionStrategies {
                 Jvm.nanoPause();
             } while (deadLineNanos - System.nanoTime() >= 0L); // overflow-cautious
             afterLoop(strategy, access, t, offset);
-            return end();
+            return end(strategy, access, t, offset);
         }
 
         <T> void beforeLoop(S strategy, Access<T> access, T t, long offset) {
@@ -72,7 +179,7 @@ public final class AcquisitionStrategies {
         <T> void afterLoop(S strategy, Access<T> access, T t, long offset) {
         }
 
-        boolean end() {
+        <T> boolean end(S strategy, Access<T> access, T t, long offset) {
             return false;
         }
     }
@@ -85,11 +192,43 @@ public final class AcquisitionStrategies {
         }
 
         @Override
-        boolean end() {
+        <T> boolean end(S strategy, Access<T> access, T t, long offset) {
             throw new IllegalStateException("Failed to acquire the lock");
         }
     }
 
+    private static class SpinLoopOrRecoverAcquisitionStrategy
+            extends SpinLoopAcquisitionStrategy<RobustLockingStrategy> {
+        private final LockRecoveryHandler recoveryHandler;
+
+        private SpinLoopOrRecoverAcquisitionStrategy(
+                long duration, TimeUnit unit, LockRecoveryHandler recoveryHandler) {
+            super(duration, unit);
+            this.recoveryHandler = recoveryHandler;
+        }
+
+        @Override
+        <T> boolean end(RobustLockingStrategy strategy, Access<T> access, T t, long offset) {
+            long state = strategy.getState(access, t, offset);
+            if (state == 0L) {
+                // the owner has released the lock just after the deadline
+                if (strategy.tryLock(access, t, offset))
+                    return true;
+            } else if (!strategy.isOwnerAlive(state) &&
+                    strategy.tryRecover(access, t, offset, state)) {
+                try {
+                    recoveryHandler.recover(strategy, access, t, offset, state);
+                } catch (RuntimeException | Error e) {
+                    access.writeOrderedLong(t, offset, state);
+                    throw e;
+                }
+                return true;
+            }
+            throw new IllegalStateException("Failed to acquire the lock, held by " +
+                    strategy.toString(strategy.getState(access, t, offset)));
+        }
+    }
+
     private static class SpinLoopWriteWithWaitsAcquisitionStrategy<
             S extends ReadWriteWithWaitsLockingStrategy>
             extends SpinLoopOrFailAcquisitionStrategy<S> {
@@ -108,4 +247,315 @@ public final class AcquisitionStrategies {
             strategy.deregisterWait(access, t, offset);
         }
     }
+
+    private static class AdaptiveAcquisitionStrategy<S extends LockingStrategy>
+            implements AcquisitionStrategy<S, RuntimeException> {
+        static final long DEFAULT_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+        static final long MIN_SPIN_NANOS = 500;
+        static final long MAX_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+        static final int YIELDS = 10;
+        static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+        static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+        /**
+         * Average wait times are kept in a small table, indexed by the lock word offset hash,
+         * distinct locks may share an entry
+         */
+        static final int WAIT_TIME_SLOTS = 64;
+        /**
+         * The weight of a new wait time in the exponentially weighted moving average is 1/8
+         */
+        static final int WAIT_TIME_WEIGHT_SHIFT = 3;
+
+        private final long durationNanos;
+        private final AtomicLongArray averageWaitNanos;
+
+        private AdaptiveAcquisitionStrategy(long duration, TimeUnit unit, boolean learnWaitTime) {
+            durationNanos = unit.toNanos(duration);
+            averageWaitNanos = learnWaitTime ? new AtomicLongArray(WAIT_TIME_SLOTS) : null;
+        }
+
+        private static int slot(long offset) {
+            long h = offset * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> (64 - Integer.numberOfTrailingZeros(WAIT_TIME_SLOTS)));
+        }
+
+        private long spinNanos(int slot) {
+            if (averageWaitNanos == null)
+                return DEFAULT_SPIN_NANOS;
+            long averageWait = averageWaitNanos.get(slot);
+            if (averageWait == 0L)
+                return DEFAULT_SPIN_NANOS;
+            // spin long enough for typical waits, when they are short, otherwise go straight to
+            // yielding and parking, after a single attempt
+            long spin = averageWait * 2;
+            return spin <= MAX_SPIN_NANOS ? Math.max(spin, MIN_SPIN_NANOS) : 0L;
+        }
+
+        private void learnWaitTime(int slot, long waitNanos) {
+            if (averageWaitNanos == null)
+                return;
+            long averageWait = averageWaitNanos.get(slot);
+            long newAverage = averageWait == 0L ? waitNanos :
+                    averageWait + ((waitNanos - averageWait) >> WAIT_TIME_WEIGHT_SHIFT);
+            // racy updates lose some samples, which is fine for a heuristic
+            averageWaitNanos.lazySet(slot, Math.max(newAverage, 1L));
+        }
+
+        @Override
+        public <T> boolean acquire(TryAcquireOperation<? super S> operation, S strategy,
+                                   Access<T> access, T t, long offset) {
+            if (operation.tryAcquire(strategy, access, t, offset))
+                return true;
+            long startNanos = System.nanoTime();
+            long deadLineNanos = startNanos + durationNanos;
+            int slot = slot(offset);
+            beforeLoop(strategy, access, t, offset);
+            if (tryAcquire(operation, strategy, access, t, offset, startNanos, deadLineNanos,
+                    spinNanos(slot))) {
+                learnWaitTime(slot, System.nanoTime() - startNanos);
+                return true;
+            }
+            learnWaitTime(slot, durationNanos);
+            afterLoop(strategy, access, t, offset);
+            return end();
+        }
+
+        private <T> boolean tryAcquire(TryAcquireOperation<? super S> operation, S strategy,
+                                       Access<T> access, T t, long offset,
+                                       long startNanos, long deadLineNanos, long spinNanos) {
+            long spinDeadLineNanos = startNanos + Math.min(spinNanos, durationNanos);
+            do {
+                if (operation.tryAcquire(strategy, access, t, offset))
+                    return true;
+                Jvm.nanoPause();
+            } while (spinDeadLineNanos - System.nanoTime() >= 0L); // overflow-cautious
+            for (int i = 0; i < YIELDS; i++) {
+                Thread.yield();
+                if (operation.tryAcquire(strategy, access, t, offset))
+                    return true;
+                if (deadLineNanos - System.nanoTime() < 0L)
+                    return false;
+            }
+            long parkNanos = MIN_PARK_NANOS;
+            long remainingNanos;
+            while ((remainingNanos = deadLineNanos - System.nanoTime()) >= 0L) {
+                LockSupport.parkNanos(Math.min(parkNanos, remainingNanos));
+                if (operation.tryAcquire(strategy, access, t, offset))
+                    return true;
+                parkNanos = Math.min(parkNanos << 1, MAX_PARK_NANOS);
+            }
+            return false;
+        }
+
+        <T> void beforeLoop(S strategy, Access<T> access, T t, long offset) {
+        }
+
+        <T> void afterLoop(S strategy, Access<T> access, T t, long offset) {
+        }
+
+        boolean end() {
+            return false;
+        }
+    }
+
+    private static class AdaptiveOrFailAcquisitionStrategy<S extends LockingStrategy>
+            extends AdaptiveAcquisitionStrategy<S> {
+
+        private AdaptiveOrFailAcquisitionStrategy(
+                long duration, TimeUnit unit, boolean learnWaitTime) {
+            super(duration, unit, learnWaitTime);
+        }
+
+        @Override
+        boolean end() {
+            throw new IllegalStateException("Failed to acquire the lock");
+        }
+    }
+
+    private static class AdaptiveWriteWithWaitsAcquisitionStrategy<
+            S extends ReadWriteWithWaitsLockingStrategy>
+            extends AdaptiveOrFailAcquisitionStrategy<S> {
+
+        private AdaptiveWriteWithWaitsAcquisitionStrategy(
+                long duration, TimeUnit unit, boolean learnWaitTime) {
+            super(duration, unit, learnWaitTime);
+        }
+
+        @Override
+        <T> void beforeLoop(S strategy, Access<T> access, T t, long offset) {
+            strategy.registerWait(access, t, offset);
+        }
+
+        @Override
+        <T> void afterLoop(S strategy, Access<T> access, T t, long offset) {
+            strategy.deregisterWait(access, t, offset);
+        }
+    }
+
+    private static class BlockingAcquisitionStrategy<S extends LockingStrategy>
+            implements AcquisitionStrategy<S, RuntimeException> {
+        private final long durationNanos;
+        private final LockWaiters waiters;
+
+        private BlockingAcquisitionStrategy(long duration, TimeUnit unit, LockWaiters waiters) {
+            durationNanos = unit.toNanos(duration);
+            this.waiters = waiters;
+        }
+
+        @Override
+        public <T> boolean acquire(TryAcquireOperation<? super S> operation, S strategy,
+                                   Access<T> access, T t, long offset) {
+            if (operation.tryAcquire(strategy, access, t, offset))
+                return true;
+            long startNanos = System.nanoTime();
+            long deadLineNanos = startNanos + durationNanos;
+            beforeLoop(strategy, access, t, offset);
+            long spinDeadLineNanos = startNanos +
+                    Math.min(AdaptiveAcquisitionStrategy.DEFAULT_SPIN_NANOS, durationNanos);
+            do {
+                if (operation.tryAcquire(strategy, access, t, offset))
+                    return true;
+                Jvm.nanoPause();
+            } while (spinDeadLineNanos - System.nanoTime() >= 0L); // overflow-cautious
+            if (block(operation, strategy, access, t, offset, deadLineNanos))
+                return true;
+            afterLoop(strategy, access, t, offset);
+            return end();
+        }
+
+        private <T> boolean block(TryAcquireOperation<? super S> operation, S strategy,
+                                  Access<T> access, T t, long offset, long deadLineNanos) {
+            waiters.beginWait(access, t, offset);
+            try {
+                long parkNanos = AdaptiveAcquisitionStrategy.MIN_PARK_NANOS;
+                long remainingNanos;
+                while (true) {
+                    // read the sequence before the try, not to miss a release just after it
+                    long sequence = waiters.sequence(access, t, offset);
+                    if (operation.tryAcquire(strategy, access, t, offset))
+                        return true;
+                    if ((remainingNanos = deadLineNanos - System.nanoTime()) < 0L)
+                        return false;
+                    if (waiters.park(access, t, offset, sequence,
+                            Math.min(parkNanos, remainingNanos))) {
+                        parkNanos = AdaptiveAcquisitionStrategy.MIN_PARK_NANOS;
+                    } else {
+                        parkNanos = Math.min(parkNanos << 1,
+                                AdaptiveAcquisitionStrategy.MAX_PARK_NANOS);
+                    }
+                }
+            } finally {
+                waiters.endWait(access, t, offset);
+            }
+        }
+
+        <T> void beforeLoop(S strategy, Access<T> access, T t, long offset) {
+        }
+
+        <T> void afterLoop(S strategy, Access<T> access, T t, long offset) {
+        }
+
+        boolean end() {
+            return false;
+        }
+    }
+
+    private static class BlockingWriteWithWaitsAcquisitionStrategy<
+            S extends ReadWriteWithWaitsLockingStrategy>
+            extends BlockingAcquisitionStrategy<S> {
+
+        private BlockingWriteWithWaitsAcquisitionStrategy(
+                long duration, TimeUnit unit, LockWaiters waiters) {
+            super(duration, unit, waiters);
+        }
+
+        @Override
+        <T> void beforeLoop(S strategy, Access<T> access, T t, long offset) {
+            strategy.registerWait(access, t, offset);
+        }
+
+        @Override
+        <T> void afterLoop(S strategy, Access<T> access, T t, long offset) {
+            strategy.deregisterWait(access, t, offset);
+        }
+
+        @Override
+        boolean end() {
+            throw new IllegalStateException("Failed to acquire the lock");
+        }
+    }
+
+    /**
+     * Counts tries of the operation, reused by the thread not to allocate per acquisition
+     */
+    private static final class CountingTryAcquireOperation
+            implements TryAcquireOperation<LockingStrategy> {
+        @SuppressWarnings("rawtypes")
+        TryAcquireOperation operation;
+        long tries;
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> boolean tryAcquire(LockingStrategy strategy, Access<T> access, T t,
+                                      long offset) {
+            tries++;
+            return operation.tryAcquire(strategy, access, t, offset);
+        }
+    }
+
+    private static final class InstrumentedAcquisitionStrategy<
+            S extends LockingStrategy, E extends Exception, U>
+            implements AcquisitionStrategy<S, E> {
+        private static final ThreadLocal<CountingTryAcquireOperation> COUNTING_OPERATION =
+                ThreadLocal.withInitial(CountingTryAcquireOperation::new);
+
+        private final AcquisitionStrategy<S, E> delegate;
+        private final LockStatistics statistics;
+        private final Access<U> statisticsAccess;
+        private final U statisticsHandle;
+        private final long statisticsOffset;
+        private final LongToIntFunction lockIndex;
+
+        private InstrumentedAcquisitionStrategy(
+                AcquisitionStrategy<S, E> delegate, LockStatistics statistics,
+                Access<U> statisticsAccess, U statisticsHandle, long statisticsOffset,
+                LongToIntFunction lockIndex) {
+            this.delegate = delegate;
+            this.statistics = statistics;
+            this.statisticsAccess = statisticsAccess;
+            this.statisticsHandle = statisticsHandle;
+            this.statisticsOffset = statisticsOffset;
+            this.lockIndex = lockIndex;
+        }
+
+        @Override
+        public <T> boolean acquire(TryAcquireOperation<? super S> operation, S strategy,
+                                   Access<T> access, T t, long offset) throws E {
+            CountingTryAcquireOperation counting = COUNTING_OPERATION.get();
+            // an operation might acquire another instrumented lock, restore the outer count then
+            TryAcquireOperation<?> outerOperation = counting.operation;
+            long outerTries = counting.tries;
+            counting.operation = operation;
+            counting.tries = 0L;
+            boolean acquired = false;
+            long start = System.nanoTime();
+            try {
+                acquired = delegate.acquire(counting, strategy, access, t, offset);
+                return acquired;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                long tries = counting.tries;
+                counting.operation = outerOperation;
+                counting.tries = outerTries;
+                int lock = lockIndex.applyAsInt(offset);
+                if (acquired) {
+                    statistics.recordAcquisition(statisticsAccess, statisticsHandle,
+                            statisticsOffset, lock, nanos, Math.max(tries - 1, 0L));
+                } else {
+                    statistics.recordTimeout(statisticsAccess, statisticsHandle,
+                            statisticsOffset, lock, nanos, tries);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.core.Jvm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link java.util.concurrent.locks.StampedLock}-like view of a stamped lock word at the given
+ * {@code offset} of the {@code handle}, e. g. in shared memory, to use the same lock from several
+ * processes. Views of the same lock word are interchangeable, a stamp obtained from one view
+ * could be validated or released via another.
+ * <p>
+ * Blocking methods spin, so locks should be held for short periods of time.
+ *
+ * @param <T> the type of the handle
+ * @see StampedLockingStrategy
+ */
+public final class ChronicleStampedLock<T> {
+
+    private final StampedLockingStrategy strategy;
+    private final Access<T> access;
+    private final T handle;
+    private final long offset;
+
+    public ChronicleStampedLock(Access<T> access, T handle, long offset) {
+        this(VanillaStampedLockingStrategy.instance(), access, handle, offset);
+    }
+
+    public ChronicleStampedLock(StampedLockingStrategy strategy,
+                                Access<T> access, T handle, long offset) {
+        this.strategy = strategy;
+        this.access = access;
+        this.handle = handle;
+        this.offset = offset;
+    }
+
+    public StampedLockingStrategy lockingStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return a stamp to {@link #validate} later, or 0 if write-locked
+     */
+    public long tryOptimisticRead() {
+        return strategy.tryOptimisticRead(access, handle, offset);
+    }
+
+    /**
+     * @return {@code true} if the lock has not been write-locked since the issuance of the given
+     * stamp
+     */
+    public boolean validate(long stamp) {
+        return strategy.validate(access, handle, offset, stamp);
+    }
+
+    /**
+     * @return a write stamp, or 0 if the lock is not available
+     */
+    public long tryWriteLock() {
+        return strategy.tryStampedWriteLock(access, handle, offset);
+    }
+
+    /**
+     * @return a write stamp, or 0 if the lock is not acquired within the given time
+     */
+    public long tryWriteLock(long time, TimeUnit unit) {
+        long stamp = tryWriteLock();
+        if (stamp != 0L)
+            return stamp;
+        long deadLineNanos = System.nanoTime() + unit.toNanos(time);
+        do {
+            Jvm.nanoPause();
+            if ((stamp = tryWriteLock()) != 0L)
+                return stamp;
+        } while (deadLineNanos - System.nanoTime() >= 0L); // overflow-cautious
+        return 0L;
+    }
+
+    /**
+     * Spins until the write lock is acquired.
+     *
+     * @return a write stamp
+     */
+    public long writeLock() {
+        long stamp;
+        while ((stamp = tryWriteLock()) == 0L)
+            Jvm.nanoPause();
+        return stamp;
+    }
+
+    /**
+     * @return a read stamp, or 0 if write-locked
+     */
+    public long tryReadLock() {
+        return strategy.tryStampedReadLock(access, handle, offset);
+    }
+
+    /**
+     * @return a read stamp, or 0 if the lock is not acquired within the given time
+     */
+    public long tryReadLock(long time, TimeUnit unit) {
+        long stamp = tryReadLock();
+        if (stamp != 0L)
+            return stamp;
+        long deadLineNanos = System.nanoTime() + unit.toNanos(time);
+        do {
+            Jvm.nanoPause();
+            if ((stamp = tryReadLock()) != 0L)
+                return stamp;
+        } while (deadLineNanos - System.nanoTime() >= 0L); // overflow-cautious
+        return 0L;
+    }
+
+    /**
+     * Spins until the read lock is acquired.
+     *
+     * @return a read stamp
+     */
+    public long readLock() {
+        long stamp;
+        while ((stamp = tryReadLock()) == 0L)
+            Jvm.nanoPause();
+        return stamp;
+    }
+
+    /**
+     * @throws IllegalMonitorStateException if the stamp doesn't match the current lock state
+     */
+    public void unlock(long stamp) {
+        strategy.unlock(access, handle, offset, stamp);
+    }
+
+    /**
+     * @throws IllegalMonitorStateException if the stamp doesn't match the current read lock
+     */
+    public void unlockRead(long stamp) {
+        strategy.unlockRead(access, handle, offset, stamp);
+    }
+
+    /**
+     * @throws IllegalMonitorStateException if the stamp doesn't match the current write lock
+     */
+    public void unlockWrite(long stamp) {
+        strategy.unlockWrite(access, handle, offset, stamp);
+    }
+
+    /**
+     * @return a write stamp, or 0 on failure
+     * @see StampedLockingStrategy#tryConvertToWriteLock
+     */
+    public long tryConvertToWriteLock(long stamp) {
+        return strategy.tryConvertToWriteLock(access, handle, offset, stamp);
+    }
+
+    /**
+     * @return a read stamp, or 0 on failure
+     * @see StampedLockingStrategy#tryConvertToReadLock
+     */
+    public long tryConvertToReadLock(long stamp) {
+        return strategy.tryConvertToReadLock(access, handle, offset, stamp);
+    }
+
+    /**
+     * @return an optimistic stamp, or 0 on failure
+     * @see StampedLockingStrategy#tryConvertToOptimisticRead
+     */
+    public long tryConvertToOptimisticRead(long stamp) {
+        return strategy.tryConvertToOptimisticRead(access, handle, offset, stamp);
+    }
+
+    public int getReadLockCount() {
+        return strategy.readLockCount(strategy.getState(access, handle, offset));
+    }
+
+    public boolean isReadLocked() {
+        return strategy.isReadLocked(strategy.getState(access, handle, offset));
+    }
+
+    public boolean isWriteLocked() {
+        return strategy.isWriteLocked(strategy.getState(access, handle, offset));
+    }
+
+    /**
+     * Resets the lock word to the unlocked state, e. g. when the lock is created in newly
+     * allocated memory.
+     */
+    public void reset() {
+        strategy.reset(access, handle, offset);
+    }
+
+    @Override
+    public String toString() {
+        return "ChronicleStampedLock" + strategy.toString(strategy.getState(access, handle, offset));
+    }
+}
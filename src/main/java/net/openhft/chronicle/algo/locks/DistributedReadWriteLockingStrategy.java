@@ -0,0 +1,440 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+import net.openhft.chronicle.core.Jvm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-write lock with distributed reader indicators, after BRAVO (D. Dice, A. Kogan, BRAVO -
+ * Biased Locking for Reader-Writer Locks). The lock occupies a cache line of the header, followed
+ * by {@code slots} cache lines, each with a reader counter: <pre>
+ * offset + 0:  header word, the same as in {@link VanillaReadWriteWithWaitsLockingStrategy}, with
+ *              the read bias bit
+ * offset + 8:  System.nanoTime() until which the read bias could not be enabled
+ * offset + 64 + 64 * i: reader counter of the slot i
+ * </pre>
+ * While the read bias is enabled, readers increment the counter of the slot, chosen by the
+ * process and thread ids, so readers in different threads don't write to the same cache line.
+ * A writer revokes the bias and waits until the slot counters drain, readers then use the count in
+ * the header word, until a reader re-enables the bias after a period proportional to the time the
+ * revocation took. Read unlocks decrement the own slot counter if it is positive, or the header
+ * count otherwise, so the sum of all counters is always the number of readers. Upgrades move the
+ * read lock of the thread to the header count, and exchange it there for the write lock.
+ * <p>
+ * The offset of the lock should be cache line-aligned. {@link #getState} returns the header word,
+ * readers using slots are not reflected in it, see {@link #readLockCount(ReadAccess, Object,
+ * long)}. Cross-process bias inhibition relies on {@code System.nanoTime()} being system-wide,
+ * as it is on Linux.
+ */
+public final class DistributedReadWriteLockingStrategy extends AbstractReadWriteLockingStrategy
+        implements ReadWriteWithWaitsLockingStrategy {
+
+    static final int RW_LOCK_LIMIT = 30;
+    static final long RW_READ_LOCKED = 1L;
+    static final long RW_WRITE_WAITING = 1L << RW_LOCK_LIMIT;
+    static final long RW_WRITE_LOCKED = 1L << 2 * RW_LOCK_LIMIT;
+    static final long READ_BIAS = RW_WRITE_LOCKED << 1;
+    static final int RW_LOCK_MASK = (1 << RW_LOCK_LIMIT) - 1;
+    static final int CACHE_LINE = 64;
+    static final int INHIBIT_UNTIL_OFFSET = 8;
+    /**
+     * The bias is inhibited for this number of revocation durations, BRAVO's N
+     */
+    static final int INHIBIT_MULTIPLIER = 9;
+    static final long MIN_INHIBIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final int slots;
+    private final int slotShift;
+
+    /**
+     * @param slots the number of reader slots, a power of 2, e. g. the number of CPUs
+     * @throws IllegalArgumentException if {@code slots} is not a positive power of 2
+     */
+    public DistributedReadWriteLockingStrategy(int slots) {
+        if (slots <= 0 || Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException(
+                    "slots should be a positive power of 2, " + slots + " given");
+        }
+        this.slots = slots;
+        this.slotShift = 64 - Integer.numberOfTrailingZeros(slots);
+    }
+
+    static int rwReadLocked(long lock) {
+        return (int) (lock & RW_LOCK_MASK);
+    }
+
+    static int rwWriteWaiting(long lock) {
+        return (int) ((lock >>> RW_LOCK_LIMIT) & RW_LOCK_MASK);
+    }
+
+    static boolean rwWriteLocked(long lock) {
+        return (lock & RW_WRITE_LOCKED) != 0L;
+    }
+
+    static boolean readBias(long lock) {
+        return (lock & READ_BIAS) != 0L;
+    }
+
+    static <T> long read(ReadAccess<T> access, T t, long offset) {
+        return access.readVolatileLong(t, offset);
+    }
+
+    static <T> boolean cas(Access<T> access, T t, long offset, long expected, long x) {
+        return access.compareAndSwapLong(t, offset, expected, x);
+    }
+
+    public int slots() {
+        return slots;
+    }
+
+    private long slotOffset(long offset, int slot) {
+        return offset + CACHE_LINE + (long) slot * CACHE_LINE;
+    }
+
+    private long currentSlotOffset(long offset) {
+        if (slots == 1)
+            return slotOffset(offset, 0);
+        long h = (Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) ^
+                (Jvm.getProcessId() * 0xC2B2AE3D27D4EB4FL);
+        return slotOffset(offset, (int) ((h * 0x9E3779B97F4A7C15L) >>> slotShift));
+    }
+
+    private static <T> long addToSlot(Access<T> access, T t, long slotOffset, long delta) {
+        for (; ; ) {
+            long count = read(access, t, slotOffset);
+            if (cas(access, t, slotOffset, count, count + delta))
+                return count + delta;
+        }
+    }
+
+    private <T> boolean slotsDrained(Access<T> access, T t, long offset) {
+        for (int i = 0; i < slots; i++) {
+            if (read(access, t, slotOffset(offset, i)) != 0L)
+                return false;
+        }
+        return true;
+    }
+
+    private <T> void tryEnableReadBias(Access<T> access, T t, long offset) {
+        long inhibitUntil = read(access, t, offset + INHIBIT_UNTIL_OFFSET);
+        if (System.nanoTime() - inhibitUntil < 0L)
+            return;
+        long lock = read(access, t, offset);
+        if (!readBias(lock) && !rwWriteLocked(lock) && rwWriteWaiting(lock) == 0)
+            cas(access, t, offset, lock, lock | READ_BIAS);
+    }
+
+    @Override
+    public <T> boolean tryReadLock(Access<T> access, T t, long offset) {
+        long lock = read(access, t, offset);
+        if (readBias(lock)) {
+            long slotOffset = currentSlotOffset(offset);
+            // the CAS of the slot is ordered before the read of the bias, and the writer's
+            // revoking CAS is ordered before it reads the slots: one of them sees the other
+            addToSlot(access, t, slotOffset, 1L);
+            if (readBias(read(access, t, offset)))
+                return true;
+            addToSlot(access, t, slotOffset, -1L);
+            lock = read(access, t, offset);
+        }
+        if (rwWriteLocked(lock) || rwWriteWaiting(lock) > 0)
+            return false;
+        int readersLocked = rwReadLocked(lock);
+        if (readersLocked >= RW_LOCK_MASK)
+            throw new IllegalMonitorStateException("readersLocked has reached a limit of " +
+                    readersLocked);
+        if (!cas(access, t, offset, lock, lock + RW_READ_LOCKED))
+            return false;
+        tryEnableReadBias(access, t, offset);
+        return true;
+    }
+
+    @Override
+    public <T> boolean tryWriteLock(Access<T> access, T t, long offset) {
+        return tryWriteLock(access, t, offset, 0L);
+    }
+
+    private <T> boolean tryWriteLock(Access<T> access, T t, long offset, long waitDelta) {
+        long lock = read(access, t, offset);
+        if (rwReadLocked(lock) > 0)
+            return false;
+        return tryWriteLock(access, t, offset, lock, 0L, waitDelta);
+    }
+
+    /**
+     * Exchanges {@code readLocks} read locks of the header count for the write lock, in one CAS
+     * from {@code lock}, then checks the slots. If some slot readers are not drained yet, the
+     * exchange is reverted, so the caller holds the read locks again.
+     */
+    private <T> boolean tryWriteLock(Access<T> access, T t, long offset, long lock,
+                                     long readLocks, long waitDelta) {
+        if (rwReadLocked(lock) != readLocks || rwWriteLocked(lock))
+            return false;
+        if (waitDelta != 0L && rwWriteWaiting(lock) <= 0)
+            throw new IllegalMonitorStateException("writersWaiting has underflowed");
+        long readLocked = readLocks * RW_READ_LOCKED;
+        long writeLocked = (lock & ~READ_BIAS) - readLocked + RW_WRITE_LOCKED + waitDelta;
+        if (!cas(access, t, offset, lock, writeLocked))
+            return false;
+        // slots are checked even if the bias is already revoked: the revocation could have
+        // failed, leaving slot readers which are not drained yet
+        boolean revoked = readBias(lock);
+        long revocationStart = System.nanoTime();
+        if (slotsDrained(access, t, offset)) {
+            if (revoked) {
+                long now = System.nanoTime();
+                long inhibitNanos = Math.max(
+                        (now - revocationStart) * INHIBIT_MULTIPLIER, MIN_INHIBIT_NANOS);
+                access.writeOrderedLong(t, offset + INHIBIT_UNTIL_OFFSET, now + inhibitNanos);
+            }
+            return true;
+        }
+        // the bias stays revoked, so slot readers drain, and the writer could retry
+        if (revoked) {
+            access.writeOrderedLong(t, offset + INHIBIT_UNTIL_OFFSET,
+                    System.nanoTime() + MIN_INHIBIT_NANOS);
+        }
+        for (; ; ) {
+            lock = read(access, t, offset);
+            if (cas(access, t, offset, lock,
+                    lock - RW_WRITE_LOCKED - waitDelta + readLocked))
+                return false;
+        }
+    }
+
+    /**
+     * Upgrades if the read lock of the calling thread is the only one held. A read lock counted in
+     * the slot of the thread is moved to the header count first, then it is exchanged for the
+     * write lock, so when the upgrade fails the caller still holds its read lock, and no other
+     * writer could have acquired the lock in between.
+     *
+     * @throws IllegalMonitorStateException if the read lock is not held
+     */
+    @Override
+    public <T> boolean tryUpgradeReadToWriteLock(Access<T> access, T t, long offset) {
+        return tryUpgradeReadToWriteLock(access, t, offset, 0L);
+    }
+
+    private <T> boolean tryUpgradeReadToWriteLock(
+            Access<T> access, T t, long offset, long waitDelta) {
+        moveSlotReadLockToHeader(access, t, offset);
+        long lock = read(access, t, offset);
+        if (rwReadLocked(lock) <= 0)
+            throw new IllegalMonitorStateException("readerLock underflow");
+        return tryWriteLock(access, t, offset, lock, 1L, waitDelta);
+    }
+
+    /**
+     * Moves a read lock from the slot of the calling thread to the header count, if the slot
+     * counter is positive, the same way as {@link #readUnlock} chooses the counter. The header
+     * count is incremented before the slot counter is decremented, so the lock is held throughout.
+     */
+    private <T> void moveSlotReadLockToHeader(Access<T> access, T t, long offset) {
+        long slotOffset = currentSlotOffset(offset);
+        if (read(access, t, slotOffset) <= 0L)
+            return;
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (rwWriteLocked(lock)) {
+                // a writer checking the slots sees this read lock and backs off
+                Jvm.nanoPause();
+                continue;
+            }
+            int readersLocked = rwReadLocked(lock);
+            if (readersLocked >= RW_LOCK_MASK)
+                throw new IllegalMonitorStateException("readersLocked has reached a limit of " +
+                        readersLocked);
+            if (cas(access, t, offset, lock, lock + RW_READ_LOCKED))
+                break;
+        }
+        for (; ; ) {
+            long count = read(access, t, slotOffset);
+            if (count <= 0L)
+                break;
+            if (cas(access, t, slotOffset, count, count - 1L))
+                return;
+        }
+        // another thread of the slot has drained it, the read lock was counted in the header
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (cas(access, t, offset, lock, lock - RW_READ_LOCKED))
+                return;
+        }
+    }
+
+    @Override
+    public <T> void readUnlock(Access<T> access, T t, long offset) {
+        long slotOffset = currentSlotOffset(offset);
+        for (; ; ) {
+            long count = read(access, t, slotOffset);
+            if (count <= 0L)
+                break;
+            if (cas(access, t, slotOffset, count, count - 1L))
+                return;
+        }
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (rwReadLocked(lock) <= 0)
+                throw new IllegalMonitorStateException("readerLock underflow");
+            if (cas(access, t, offset, lock, lock - RW_READ_LOCKED))
+                return;
+        }
+    }
+
+    @Override
+    public <T> void writeUnlock(Access<T> access, T t, long offset) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (!rwWriteLocked(lock))
+                throw new IllegalMonitorStateException("writersLock underflow");
+            if (cas(access, t, offset, lock, lock - RW_WRITE_LOCKED))
+                return;
+        }
+    }
+
+    @Override
+    public <T> void downgradeWriteToReadLock(Access<T> access, T t, long offset) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (!rwWriteLocked(lock))
+                throw new IllegalMonitorStateException("writersLock underflow");
+            if (cas(access, t, offset, lock, lock - RW_WRITE_LOCKED + RW_READ_LOCKED))
+                return;
+        }
+    }
+
+    @Override
+    public <T> void registerWait(Access<T> access, T t, long offset) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            int writersWaiting = rwWriteWaiting(lock);
+            if (writersWaiting >= RW_LOCK_MASK)
+                throw new IllegalMonitorStateException("writersWaiting has reached a limit of " +
+                        writersWaiting);
+            if (cas(access, t, offset, lock, lock + RW_WRITE_WAITING))
+                break;
+        }
+    }
+
+    @Override
+    public <T> void deregisterWait(Access<T> access, T t, long offset) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            int writersWaiting = rwWriteWaiting(lock);
+            if (writersWaiting <= 0)
+                throw new IllegalMonitorStateException("writersWaiting has underflowed");
+            if (cas(access, t, offset, lock, lock - RW_WRITE_WAITING))
+                break;
+        }
+    }
+
+    @Override
+    public <T> boolean tryWriteLockAndDeregisterWait(Access<T> access, T t, long offset) {
+        return tryWriteLock(access, t, offset, -RW_WRITE_WAITING);
+    }
+
+    @Override
+    public <T> boolean tryUpgradeReadToWriteLockAndDeregisterWait(
+            Access<T> access, T t, long offset) {
+        return tryUpgradeReadToWriteLock(access, t, offset, -RW_WRITE_WAITING);
+    }
+
+    @Override
+    public <T> void reset(Access<T> access, T t, long offset) {
+        for (int i = 0; i < slots; i++)
+            access.writeOrderedLong(t, slotOffset(offset, i), 0L);
+        access.writeOrderedLong(t, offset + INHIBIT_UNTIL_OFFSET, 0L);
+        access.writeOrderedLong(t, offset, 0L);
+    }
+
+    @Override
+    public <T> void resetKeepingWaits(Access<T> access, T t, long offset) {
+        for (int i = 0; i < slots; i++)
+            access.writeOrderedLong(t, slotOffset(offset, i), 0L);
+        while (true) {
+            long lock = read(access, t, offset);
+            long onlyWaits = lock & ((long) RW_LOCK_MASK) << RW_LOCK_LIMIT;
+            if (cas(access, t, offset, lock, onlyWaits))
+                return;
+        }
+    }
+
+    @Override
+    public long resetState() {
+        return 0L;
+    }
+
+    @Override
+    public <T> long getState(ReadAccess<T> access, T t, long offset) {
+        return read(access, t, offset);
+    }
+
+    /**
+     * @return the number of read locks held, including those counted in the slots
+     */
+    public <T> int readLockCount(ReadAccess<T> access, T t, long offset) {
+        long count = rwReadLocked(read(access, t, offset));
+        for (int i = 0; i < slots; i++)
+            count += access.readVolatileLong(t, slotOffset(offset, i));
+        return (int) count;
+    }
+
+    @Override
+    public boolean isWriteLocked(long state) {
+        return rwWriteLocked(state);
+    }
+
+    /**
+     * @return the number of read locks counted in the header word, excluding those in the slots
+     */
+    @Override
+    public int readLockCount(long state) {
+        return rwReadLocked(state);
+    }
+
+    @Override
+    public int waitCount(long state) {
+        return rwWriteWaiting(state);
+    }
+
+    @Override
+    public boolean isLocked(long state) {
+        return isReadLocked(state) || isWriteLocked(state);
+    }
+
+    @Override
+    public int lockCount(long state) {
+        return rwReadLocked(state) + (rwWriteLocked(state) ? 1 : 0);
+    }
+
+    @Override
+    public String toString(long state) {
+        return "[read locks = " + readLockCount(state) +
+                ", write locked = " + isWriteLocked(state) +
+                ", waits = " + waitCount(state) +
+                ", read bias = " + readBias(state) + "]";
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return CACHE_LINE + slots * CACHE_LINE;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+
+import java.util.function.LongToIntFunction;
+
+/**
+ * See {@link LockStatistics#instrumented}.
+ */
+final class InstrumentedLockingStrategy<U> implements LockingStrategy {
+    private final LockingStrategy delegate;
+    private final LockStatistics statistics;
+    private final Access<U> statisticsAccess;
+    private final U statisticsHandle;
+    private final long statisticsOffset;
+    private final LongToIntFunction lockIndex;
+
+    InstrumentedLockingStrategy(LockingStrategy delegate, LockStatistics statistics,
+                                Access<U> statisticsAccess, U statisticsHandle,
+                                long statisticsOffset, LongToIntFunction lockIndex) {
+        this.delegate = delegate;
+        this.statistics = statistics;
+        this.statisticsAccess = statisticsAccess;
+        this.statisticsHandle = statisticsHandle;
+        this.statisticsOffset = statisticsOffset;
+        this.lockIndex = lockIndex;
+    }
+
+    @Override
+    public <T> boolean tryLock(Access<T> access, T t, long offset) {
+        if (!delegate.tryLock(access, t, offset))
+            return false;
+        statistics.recordLocked(statisticsAccess, statisticsHandle, statisticsOffset,
+                lockIndex.applyAsInt(offset), System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public <T> void unlock(Access<T> access, T t, long offset) {
+        // only the holder could record the hold, and only before the lock is released
+        if (delegate.isLocked(delegate.getState(access, t, offset))) {
+            statistics.recordUnlocked(statisticsAccess, statisticsHandle, statisticsOffset,
+                    lockIndex.applyAsInt(offset), System.nanoTime());
+        }
+        delegate.unlock(access, t, offset);
+    }
+
+    @Override
+    public <T> void reset(Access<T> access, T t, long offset) {
+        delegate.reset(access, t, offset);
+    }
+
+    @Override
+    public long resetState() {
+        return delegate.resetState();
+    }
+
+    @Override
+    public <T> long getState(ReadAccess<T> access, T t, long offset) {
+        return delegate.getState(access, t, offset);
+    }
+
+    @Override
+    public boolean isLocked(long state) {
+        return delegate.isLocked(state);
+    }
+
+    @Override
+    public int lockCount(long state) {
+        return delegate.lockCount(state);
+    }
+
+    @Override
+    public String toString(long state) {
+        return delegate.toString(state);
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return delegate.sizeInBytes();
+    }
+}
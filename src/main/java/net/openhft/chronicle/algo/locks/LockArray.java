@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+
+import java.util.Arrays;
+
+import static net.openhft.chronicle.algo.MemoryUnit.BYTES;
+import static net.openhft.chronicle.algo.MemoryUnit.CACHE_LINES;
+
+/**
+ * Array of lock words of the same {@link LockingStrategy}, laid out contiguously, e. g. to protect
+ * a large number of entries by hash-striped locks. Each lock occupies {@link #stride()} bytes,
+ * the {@link LockingStrategy#sizeInBytes() size of the lock}, or the size aligned to cache lines,
+ * if the array is padded not to share cache lines between locks.
+ * <p>
+ * Operations on several stripes acquire the locks in the ascending order of stripes, so two
+ * multi-stripe operations never deadlock with each other, and roll back the acquired locks if
+ * some lock could not be acquired.
+ */
+public final class LockArray<S extends LockingStrategy> {
+    private final S strategy;
+    private final int stripes;
+    private final long stride;
+
+    /**
+     * Equivalent to {@code new LockArray(strategy, stripes, false)}.
+     */
+    public LockArray(S strategy, int stripes) {
+        this(strategy, stripes, false);
+    }
+
+    /**
+     * @param stripes          the number of locks
+     * @param cacheLinePadding whether each lock should occupy whole cache lines, the offset of the
+     *                         array should be cache line-aligned then
+     * @throws IllegalArgumentException if {@code stripes} is not positive
+     */
+    public LockArray(S strategy, int stripes, boolean cacheLinePadding) {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("stripes should be positive, " + stripes + " given");
+        this.strategy = strategy;
+        this.stripes = stripes;
+        this.stride = cacheLinePadding ?
+                CACHE_LINES.align(strategy.sizeInBytes(), BYTES) : strategy.sizeInBytes();
+    }
+
+    public S strategy() {
+        return strategy;
+    }
+
+    public int stripes() {
+        return stripes;
+    }
+
+    /**
+     * @return the distance between consecutive locks, in bytes
+     */
+    public long stride() {
+        return stride;
+    }
+
+    public long sizeInBytes() {
+        return stride * stripes;
+    }
+
+    /**
+     * @return the offset of the lock of the stripe, in the array at the given offset
+     */
+    public long lockOffset(long offset, int stripe) {
+        if (stripe < 0 || stripe >= stripes)
+            throw new IndexOutOfBoundsException("stripe: " + stripe + ", stripes: " + stripes);
+        return offset + stripe * stride;
+    }
+
+    /**
+     * @param hash a well mixed hash, e. g. computed by a {@link LongHashFunction}
+     * @return the stripe for the hash, determined by the higher bits of the hash
+     */
+    public int stripe(long hash) {
+        return (int) (((hash >>> 32) * stripes) >>> 32);
+    }
+
+    /**
+     * @return the stripe for the key, hashed by the given function
+     */
+    public int stripe(LongHashFunction hashFunction, long key) {
+        return stripe(hashFunction.hashLong(key));
+    }
+
+    /**
+     * Resets all locks of the array.
+     */
+    public <T> void resetAll(Access<T> access, T t, long offset) {
+        for (int stripe = 0; stripe < stripes; stripe++)
+            strategy.reset(access, t, lockOffset(offset, stripe));
+    }
+
+    public <T, E extends Exception> boolean acquire(
+            AcquisitionStrategy<S, E> acquisitionStrategy, TryAcquireOperation<? super S> operation,
+            Access<T> access, T t, long offset, int stripe) throws E {
+        return acquisitionStrategy.acquire(
+                operation, strategy, access, t, lockOffset(offset, stripe));
+    }
+
+    public <T> void release(ReleaseOperation<? super S> operation,
+                            Access<T> access, T t, long offset, int stripe) {
+        operation.release(strategy, access, t, lockOffset(offset, stripe));
+    }
+
+    /**
+     * Acquires the locks of all given stripes, in the ascending order. Equal stripes are acquired
+     * once. If some lock is not acquired, or the acquisition throws, the locks acquired by this
+     * call are released with the {@code releaseOperation}, in the reverse order.
+     *
+     * @param stripes the stripes to lock, sorted by this method in place, to be passed to {@link
+     *                #releaseAll} then
+     * @return {@code true} if all locks are acquired, {@code false} if none is held on return
+     */
+    public <T, E extends Exception> boolean acquireAll(
+            AcquisitionStrategy<S, E> acquisitionStrategy, TryAcquireOperation<? super S> operation,
+            ReleaseOperation<? super S> releaseOperation,
+            Access<T> access, T t, long offset, int[] stripes) throws E {
+        Arrays.sort(stripes);
+        int acquired = 0;
+        try {
+            for (; acquired < stripes.length; acquired++) {
+                if (acquired > 0 && stripes[acquired] == stripes[acquired - 1])
+                    continue;
+                if (!acquire(acquisitionStrategy, operation, access, t, offset,
+                        stripes[acquired])) {
+                    break;
+                }
+            }
+        } finally {
+            if (acquired < stripes.length)
+                release(releaseOperation, access, t, offset, stripes, acquired);
+        }
+        return acquired == stripes.length;
+    }
+
+    /**
+     * Releases the locks of all given stripes, acquired by {@link #acquireAll}, in the reverse
+     * order.
+     *
+     * @param stripes the stripes, sorted, as left by {@link #acquireAll}
+     */
+    public <T> void releaseAll(ReleaseOperation<? super S> operation,
+                               Access<T> access, T t, long offset, int[] stripes) {
+        release(operation, access, t, offset, stripes, stripes.length);
+    }
+
+    /**
+     * Releases locks of the first {@code count} sorted stripes, in the reverse order
+     */
+    private <T> void release(ReleaseOperation<? super S> operation,
+                             Access<T> access, T t, long offset, int[] stripes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            if (i > 0 && stripes[i] == stripes[i - 1])
+                continue;
+            release(operation, access, t, offset, stripes[i]);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+
+/**
+ * Callback to repair the data, protected by a {@link RobustLockingStrategy} lock, after the lock
+ * is taken over from a dead owner.
+ */
+public interface LockRecoveryHandler {
+
+    /**
+     * Called holding the lock, taken over from the dead owner. If this method throws, the lock
+     * state is restored to {@code deadOwnerState}, so the next acquirer attempts the recovery
+     * again.
+     *
+     * @param deadOwnerState the state of the lock when it has been taken over
+     */
+    <T> void recover(RobustLockingStrategy strategy, Access<T> access, T t, long offset,
+                     long deadOwnerState);
+}
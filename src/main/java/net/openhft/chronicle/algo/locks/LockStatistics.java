@@ -0,0 +1,336 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+import net.openhft.chronicle.core.Jvm;
+
+import java.util.Arrays;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Off-heap contention and hold time counters of a number of locks, e. g. of the stripes of
+ * a segmented structure. The counters could live in shared memory, next to the locks, so that
+ * hot locks could be found by an external process. Each lock has four cache lines of counters:
+ * <pre>
+ * long 0:       the number of acquisitions
+ * long 1:       the number of timed out acquisitions
+ * long 2:       the number of failed tries to acquire, i. e. spins
+ * long 3, 4:    the total and the maximum acquisition latency, in nanoseconds
+ * long 5, 6, 7: the number of holds, the total and the maximum hold time, in nanoseconds
+ * long 8:       System.nanoTime() when the lock was acquired by the current holder
+ * long 16..31:  the acquisition latency histogram, see {@link #bucket(long)}
+ * </pre>
+ * Counters are updated by {@link AcquisitionStrategies#instrumented instrumented acquisition
+ * strategies} and {@link #instrumented instrumented locking strategies}, which are returned only
+ * if {@link #enabled()} at the time of decoration, otherwise the uninstrumented delegates are
+ * returned, so disabled instrumentation costs nothing.
+ */
+public final class LockStatistics {
+
+    /**
+     * The system property to enable lock instrumentation, {@code false} by default
+     */
+    public static final String ENABLED_PROPERTY = "chronicle.algo.locks.statistics";
+    public static final int HISTOGRAM_BUCKETS = 16;
+    static final int ACQUISITIONS = 0;
+    static final int TIMEOUTS = 1;
+    static final int SPINS = 2;
+    static final int ACQUIRE_NANOS = 3;
+    static final int MAX_ACQUIRE_NANOS = 4;
+    static final int HOLDS = 5;
+    static final int HOLD_NANOS = 6;
+    static final int MAX_HOLD_NANOS = 7;
+    static final int LOCKED_AT = 8;
+    static final int HISTOGRAM = 16;
+    static final int LOCK_STATISTICS_SIZE = (HISTOGRAM + HISTOGRAM_BUCKETS) * 8;
+    /**
+     * The bucket 1 counts latencies from 64 nanoseconds
+     */
+    static final int FIRST_BUCKET_SHIFT = 6;
+
+    private final int locks;
+
+    /**
+     * @param locks the number of locks to count for
+     * @throws IllegalArgumentException if {@code locks} is not positive
+     */
+    public LockStatistics(int locks) {
+        if (locks <= 0)
+            throw new IllegalArgumentException("locks should be positive, " + locks + " given");
+        this.locks = locks;
+    }
+
+    /**
+     * @return whether lock instrumentation is enabled by the {@link #ENABLED_PROPERTY} system
+     * property
+     */
+    public static boolean enabled() {
+        return Jvm.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Returns a locking strategy, recording acquisitions by {@code tryLock()} and hold times, until
+     * {@code unlock()}, to the statistics of the lock with the index returned by the {@code
+     * lockIndex} function of the lock offset, if {@link #enabled()}. Otherwise returns the
+     * {@code delegate}. Only exclusive locks could be instrumented, because hold times of
+     * shared locks could not be attributed to holders.
+     */
+    public static <U> LockingStrategy instrumented(
+            LockingStrategy delegate, LockStatistics statistics,
+            Access<U> statisticsAccess, U statisticsHandle, long statisticsOffset,
+            LongToIntFunction lockIndex) {
+        if (!enabled())
+            return delegate;
+        return new InstrumentedLockingStrategy<>(delegate, statistics,
+                statisticsAccess, statisticsHandle, statisticsOffset, lockIndex);
+    }
+
+    /**
+     * @return the index of the histogram bucket for the latency: 0 for latencies below 64
+     * nanoseconds, {@code i} for latencies from {@code 2 ^ (i + 5)} to {@code 2 ^ (i + 6)}
+     * nanoseconds, the last bucket for latencies from about a millisecond
+     */
+    public static int bucket(long nanos) {
+        int bucket = 64 - Long.numberOfLeadingZeros(nanos) - FIRST_BUCKET_SHIFT;
+        return bucket <= 0 ? 0 : Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+    }
+
+    /**
+     * @return the lowest latency counted in the bucket, in nanoseconds
+     */
+    public static long bucketLowerBoundNanos(int bucket) {
+        return bucket == 0 ? 0L : 1L << (bucket + FIRST_BUCKET_SHIFT - 1);
+    }
+
+    static <T> void add(Access<T> access, T t, long offset, long delta) {
+        access.getAndAddLong(t, offset, delta);
+    }
+
+    static <T> void max(Access<T> access, T t, long offset, long x) {
+        long value;
+        do {
+            value = access.readVolatileLong(t, offset);
+        } while (x > value && !access.compareAndSwapLong(t, offset, value, x));
+    }
+
+    public int locks() {
+        return locks;
+    }
+
+    public long sizeInBytes() {
+        return (long) locks * LOCK_STATISTICS_SIZE;
+    }
+
+    private long counter(long offset, int lock, int counter) {
+        if (lock < 0 || lock >= locks)
+            throw new IndexOutOfBoundsException("lock: " + lock + ", locks: " + locks);
+        return offset + (long) lock * LOCK_STATISTICS_SIZE + counter * 8L;
+    }
+
+    /**
+     * Sets all counters of all locks to 0.
+     */
+    public <T> void reset(Access<T> access, T t, long offset) {
+        access.writeBytes(t, offset, sizeInBytes(), (byte) 0);
+    }
+
+    /**
+     * Records a successful acquisition of the lock.
+     *
+     * @param nanos the time the acquisition took
+     * @param spins the number of failed tries to acquire, before the successful one
+     */
+    public <T> void recordAcquisition(Access<T> access, T t, long offset, int lock,
+                                      long nanos, long spins) {
+        add(access, t, counter(offset, lock, ACQUISITIONS), 1L);
+        recordLatency(access, t, offset, lock, nanos, spins);
+    }
+
+    /**
+     * Records an acquisition of the lock, which failed after the given time.
+     */
+    public <T> void recordTimeout(Access<T> access, T t, long offset, int lock,
+                                  long nanos, long spins) {
+        add(access, t, counter(offset, lock, TIMEOUTS), 1L);
+        recordLatency(access, t, offset, lock, nanos, spins);
+    }
+
+    private <T> void recordLatency(Access<T> access, T t, long offset, int lock,
+                                   long nanos, long spins) {
+        if (spins != 0L)
+            add(access, t, counter(offset, lock, SPINS), spins);
+        add(access, t, counter(offset, lock, ACQUIRE_NANOS), nanos);
+        max(access, t, counter(offset, lock, MAX_ACQUIRE_NANOS), nanos);
+        add(access, t, counter(offset, lock, HISTOGRAM + bucket(nanos)), 1L);
+    }
+
+    /**
+     * Records the start of a hold of the exclusive lock, should be called by the lock holder.
+     */
+    public <T> void recordLocked(Access<T> access, T t, long offset, int lock, long nanoTime) {
+        access.writeOrderedLong(t, counter(offset, lock, LOCKED_AT), nanoTime);
+    }
+
+    /**
+     * Records the end of the hold of the exclusive lock, started by {@link #recordLocked}, should be
+     * called by the lock holder before releasing the lock.
+     */
+    public <T> void recordUnlocked(Access<T> access, T t, long offset, int lock, long nanoTime) {
+        long holdNanos = nanoTime - access.readVolatileLong(t, counter(offset, lock, LOCKED_AT));
+        add(access, t, counter(offset, lock, HOLDS), 1L);
+        add(access, t, counter(offset, lock, HOLD_NANOS), holdNanos);
+        max(access, t, counter(offset, lock, MAX_HOLD_NANOS), holdNanos);
+    }
+
+    /**
+     * @return the copy of the counters of the lock, counters updated concurrently might be
+     * inconsistent with each other
+     */
+    public <T> Snapshot snapshot(ReadAccess<T> access, T t, long offset, int lock) {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++)
+            histogram[i] = access.readVolatileLong(t, counter(offset, lock, HISTOGRAM + i));
+        return new Snapshot(lock,
+                access.readVolatileLong(t, counter(offset, lock, ACQUISITIONS)),
+                access.readVolatileLong(t, counter(offset, lock, TIMEOUTS)),
+                access.readVolatileLong(t, counter(offset, lock, SPINS)),
+                access.readVolatileLong(t, counter(offset, lock, ACQUIRE_NANOS)),
+                access.readVolatileLong(t, counter(offset, lock, MAX_ACQUIRE_NANOS)),
+                access.readVolatileLong(t, counter(offset, lock, HOLDS)),
+                access.readVolatileLong(t, counter(offset, lock, HOLD_NANOS)),
+                access.readVolatileLong(t, counter(offset, lock, MAX_HOLD_NANOS)),
+                histogram);
+    }
+
+    /**
+     * @return the index of the lock with the greatest total acquisition latency, i. e. the most
+     * contended one
+     */
+    public <T> int hottestLock(ReadAccess<T> access, T t, long offset) {
+        int hottest = 0;
+        long maxNanos = -1L;
+        for (int lock = 0; lock < locks; lock++) {
+            long nanos = access.readVolatileLong(t, counter(offset, lock, ACQUIRE_NANOS));
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+                hottest = lock;
+            }
+        }
+        return hottest;
+    }
+
+    /**
+     * Counters of a lock, at the moment of {@link #snapshot}.
+     */
+    public static final class Snapshot {
+        private final int lock;
+        private final long acquisitions;
+        private final long timeouts;
+        private final long spins;
+        private final long totalAcquireNanos;
+        private final long maxAcquireNanos;
+        private final long holds;
+        private final long totalHoldNanos;
+        private final long maxHoldNanos;
+        private final long[] acquireLatencyHistogram;
+
+        Snapshot(int lock, long acquisitions, long timeouts, long spins,
+                 long totalAcquireNanos, long maxAcquireNanos,
+                 long holds, long totalHoldNanos, long maxHoldNanos,
+                 long[] acquireLatencyHistogram) {
+            this.lock = lock;
+            this.acquisitions = acquisitions;
+            this.timeouts = timeouts;
+            this.spins = spins;
+            this.totalAcquireNanos = totalAcquireNanos;
+            this.maxAcquireNanos = maxAcquireNanos;
+            this.holds = holds;
+            this.totalHoldNanos = totalHoldNanos;
+            this.maxHoldNanos = maxHoldNanos;
+            this.acquireLatencyHistogram = acquireLatencyHistogram;
+        }
+
+        public int lock() {
+            return lock;
+        }
+
+        public long acquisitions() {
+            return acquisitions;
+        }
+
+        public long timeouts() {
+            return timeouts;
+        }
+
+        public long spins() {
+            return spins;
+        }
+
+        public long totalAcquireNanos() {
+            return totalAcquireNanos;
+        }
+
+        public long maxAcquireNanos() {
+            return maxAcquireNanos;
+        }
+
+        /**
+         * @return the mean latency of both successful and timed out acquisitions, in nanoseconds
+         */
+        public double meanAcquireNanos() {
+            long count = acquisitions + timeouts;
+            return count == 0L ? 0.0 : (double) totalAcquireNanos / count;
+        }
+
+        public long holds() {
+            return holds;
+        }
+
+        public long totalHoldNanos() {
+            return totalHoldNanos;
+        }
+
+        public long maxHoldNanos() {
+            return maxHoldNanos;
+        }
+
+        public double meanHoldNanos() {
+            return holds == 0L ? 0.0 : (double) totalHoldNanos / holds;
+        }
+
+        /**
+         * @return the number of acquisitions in the bucket, see {@link LockStatistics#bucket}
+         */
+        public long acquireLatencyCount(int bucket) {
+            return acquireLatencyHistogram[bucket];
+        }
+
+        @Override
+        public String toString() {
+            return "[lock = " + lock + ", acquisitions = " + acquisitions +
+                    ", timeouts = " + timeouts + ", spins = " + spins +
+                    ", acquire ns: mean = " + (long) meanAcquireNanos() +
+                    ", max = " + maxAcquireNanos +
+                    ", holds = " + holds + ", hold ns: mean = " + (long) meanHoldNanos() +
+                    ", max = " + maxHoldNanos +
+                    ", histogram = " + Arrays.toString(acquireLatencyHistogram) + "]";
+        }
+    }
+}
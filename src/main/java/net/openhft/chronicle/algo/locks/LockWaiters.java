@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.LockSupport;
+
+import static net.openhft.chronicle.core.UnsafeMemory.UNSAFE;
+
+/**
+ * Wake-up channel for threads blocked waiting for locks, see {@link
+ * AcquisitionStrategies#spinThenBlock}. Each lock has a wake word of {@link #SIZE_IN_BYTES} bytes,
+ * at the fixed {@code distance} from the lock offset, e. g. in the padding after the lock: <pre>
+ * wake word + 0: the wake-up sequence, incremented by {@link #wakeUp} if there are sleepers
+ * wake word + 8: the number of sleepers, threads blocked waiting for the lock
+ * </pre>
+ * Sleepers in the process of the lock holder are unparked by {@link #wakeUp} at once, through
+ * a registry of parked threads, local to the process. Sleepers in other processes could not be
+ * signalled, so they park with exponential backoff from 1 microsecond up to 1 millisecond,
+ * checking the wake-up sequence, like a futex word, with bounded latency and without burning
+ * a CPU.
+ * <p>
+ * Lock holders should release locks through {@link #releaseAndWakeUp}, or call {@link #wakeUp}
+ * after releasing. If the wake word is read by {@code wakeUp} when nobody sleeps, it is the only
+ * cost of the wake-up for the holder.
+ */
+public final class LockWaiters {
+
+    public static final int SIZE_IN_BYTES = 16;
+    static final int SLEEPERS_OFFSET = 8;
+    /**
+     * Parked threads by wake word, keys of different handles might collide, which only causes
+     * spurious wake-ups
+     */
+    private static final ConcurrentMap<Long, Set<Thread>> PARKED = new ConcurrentHashMap<>();
+
+    private final long distance;
+
+    /**
+     * @param distance the offset of the wake word relative to the lock offset, may be negative
+     */
+    public LockWaiters(long distance) {
+        this.distance = distance;
+    }
+
+    static <T> long read(ReadAccess<T> access, T t, long offset) {
+        return access.readVolatileLong(t, offset);
+    }
+
+    static <T> void add(Access<T> access, T t, long offset, long delta) {
+        access.getAndAddLong(t, offset, delta);
+    }
+
+    private static Long key(Object t, long wakeWordOffset) {
+        return t == null ? wakeWordOffset : wakeWordOffset ^ System.identityHashCode(t);
+    }
+
+    public long distance() {
+        return distance;
+    }
+
+    public long wakeWordOffset(long lockOffset) {
+        return lockOffset + distance;
+    }
+
+    public <T> void reset(Access<T> access, T t, long lockOffset) {
+        long wakeWordOffset = wakeWordOffset(lockOffset);
+        access.writeLong(t, wakeWordOffset, 0L);
+        access.writeOrderedLong(t, wakeWordOffset + SLEEPERS_OFFSET, 0L);
+    }
+
+    /**
+     * @return the number of threads blocked waiting for the lock
+     */
+    public <T> long sleepers(ReadAccess<T> access, T t, long lockOffset) {
+        return read(access, t, wakeWordOffset(lockOffset) + SLEEPERS_OFFSET);
+    }
+
+    <T> long sequence(ReadAccess<T> access, T t, long lockOffset) {
+        return read(access, t, wakeWordOffset(lockOffset));
+    }
+
+    /**
+     * Wakes up threads blocked waiting for the lock, should be called after the lock is released.
+     */
+    public <T> void wakeUp(Access<T> access, T t, long lockOffset) {
+        // the release of the lock shouldn't be reordered with the read of sleepers, otherwise
+        // a sleeper might fail to acquire the lock, but not be woken up
+        UNSAFE.fullFence();
+        long wakeWordOffset = wakeWordOffset(lockOffset);
+        if (read(access, t, wakeWordOffset + SLEEPERS_OFFSET) == 0L)
+            return;
+        add(access, t, wakeWordOffset, 1L);
+        Set<Thread> parked = PARKED.get(key(t, wakeWordOffset));
+        if (parked != null) {
+            for (Thread thread : parked)
+                LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Releases the lock with the operation and wakes up threads blocked waiting for it.
+     */
+    public <S extends LockingStrategy, T> void releaseAndWakeUp(
+            ReleaseOperation<? super S> operation, S strategy, Access<T> access, T t,
+            long lockOffset) {
+        operation.release(strategy, access, t, lockOffset);
+        wakeUp(access, t, lockOffset);
+    }
+
+    /**
+     * Counts the current thread as a sleeper, should be called before the last try to acquire
+     * the lock, followed by {@link #park} calls and {@link #endWait}.
+     */
+    <T> void beginWait(Access<T> access, T t, long lockOffset) {
+        long wakeWordOffset = wakeWordOffset(lockOffset);
+        Thread thread = Thread.currentThread();
+        PARKED.compute(key(t, wakeWordOffset), (k, threads) -> {
+            if (threads == null)
+                threads = ConcurrentHashMap.newKeySet();
+            threads.add(thread);
+            return threads;
+        });
+        add(access, t, wakeWordOffset + SLEEPERS_OFFSET, 1L);
+    }
+
+    /**
+     * Parks until the wake-up sequence changes from {@code sequence}, or for {@code parkNanos}.
+     *
+     * @return whether the sequence has changed, i. e. the lock has been released
+     */
+    <T> boolean park(Access<T> access, T t, long lockOffset, long sequence, long parkNanos) {
+        if (sequence(access, t, lockOffset) == sequence)
+            LockSupport.parkNanos(this, parkNanos);
+        return sequence(access, t, lockOffset) != sequence;
+    }
+
+    <T> void endWait(Access<T> access, T t, long lockOffset) {
+        long wakeWordOffset = wakeWordOffset(lockOffset);
+        add(access, t, wakeWordOffset + SLEEPERS_OFFSET, -1L);
+        Thread thread = Thread.currentThread();
+        PARKED.computeIfPresent(key(t, wakeWordOffset), (k, threads) -> {
+            threads.remove(thread);
+            return threads.isEmpty() ? null : threads;
+        });
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bitset.BitSetFrame;
+import net.openhft.chronicle.algo.bitset.ConcurrentFlatBitSetFrame;
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+
+import static net.openhft.chronicle.algo.MemoryUnit.*;
+import static net.openhft.chronicle.algo.locks.TicketLockingStrategy.pause;
+
+/**
+ * Exclusive queue lock after MCS (J. Mellor-Crummey, M. Scott, Algorithms for Scalable
+ * Synchronization on Shared-Memory Multiprocessors) for heavily contended locks. Each thread
+ * holding or waiting for the lock owns a queue node, and waiters spin on their own nodes, so
+ * a release invalidates the cache line of a single waiter, rather than of all of them, like with
+ * {@link TicketLockingStrategy} or CAS loops on a single word.
+ * <p>
+ * Queue nodes could not be referenced by pointers in shared memory, so they live in a
+ * pre-allocated node area after the lock word and are addressed by indexes: <pre>
+ * offset + 0:  the index + 1 of the tail node of the queue, 0 if the lock is free
+ * offset + 8:  the index + 1 of the node of the lock holder
+ * offset + 64: the bit set of allocated nodes
+ * then, a cache line per node: the index + 1 of the next node in the queue, 0 if none, and the
+ * flag, set while the thread owning the node waits for the lock
+ * </pre>
+ * The number of nodes limits the number of threads holding or waiting for the lock at once,
+ * {@link #lock} spins until a node is freed if all nodes are taken. The offset of the lock should
+ * be cache line-aligned.
+ * <p>
+ * {@link #tryLock} acquires the lock only if nobody holds or waits for it, so {@link
+ * AcquisitionStrategy AcquisitionStrategies} built on it don't queue. A thread which enqueued
+ * its node could not leave the queue until it gets the lock, so there is no timed queued lock.
+ * If a process dies holding or waiting for the lock, the lock could only be {@link #reset}.
+ */
+public final class McsQueueLockingStrategy implements LockingStrategy {
+
+    static final int CACHE_LINE = 64;
+    static final int HOLDER_OFFSET = 8;
+    static final int WAITING_OFFSET = 8;
+
+    private final int nodes;
+    private final BitSetFrame allocatedNodes;
+    private final int allocatedNodesSizeInBytes;
+
+    /**
+     * @param nodes the number of queue nodes, i. e. the maximum number of threads holding or
+     *              waiting for the lock at once
+     * @throws IllegalArgumentException if {@code nodes} is not positive
+     */
+    public McsQueueLockingStrategy(int nodes) {
+        if (nodes <= 0)
+            throw new IllegalArgumentException("nodes should be positive, " + nodes + " given");
+        this.nodes = nodes;
+        this.allocatedNodes = new ConcurrentFlatBitSetFrame(LONGS.align(nodes, BITS));
+        this.allocatedNodesSizeInBytes =
+                (int) CACHE_LINES.align(allocatedNodes.sizeInBytes(), BYTES);
+    }
+
+    static <T> long read(ReadAccess<T> access, T t, long offset) {
+        return access.readVolatileLong(t, offset);
+    }
+
+    static <T> boolean cas(Access<T> access, T t, long offset, long expected, long x) {
+        return access.compareAndSwapLong(t, offset, expected, x);
+    }
+
+    public int nodes() {
+        return nodes;
+    }
+
+    private long allocatedNodesOffset(long offset) {
+        return offset + CACHE_LINE;
+    }
+
+    private long nodeOffset(long offset, long node) {
+        return offset + CACHE_LINE + allocatedNodesSizeInBytes + node * CACHE_LINE;
+    }
+
+    /**
+     * @return the index of the allocated node, or {@link BitSetFrame#NOT_FOUND} if all nodes are
+     * taken
+     */
+    private <T> long allocateNode(Access<T> access, T t, long offset) {
+        long bitsOffset = allocatedNodesOffset(offset);
+        // start the search from a node depending on the thread, not to contend on the first word
+        long from = (Thread.currentThread().getId() * 0x9E3779B97F4A7C15L >>> 1) % nodes;
+        long node = allocateNodeFrom(access, t, bitsOffset, from);
+        if (node == BitSetFrame.NOT_FOUND && from != 0)
+            node = allocateNodeFrom(access, t, bitsOffset, 0);
+        if (node != BitSetFrame.NOT_FOUND) {
+            long nodeOffset = nodeOffset(offset, node);
+            access.writeLong(t, nodeOffset, 0L);
+            access.writeLong(t, nodeOffset + WAITING_OFFSET, 1L);
+        }
+        return node;
+    }
+
+    /**
+     * The bit set is long-aligned, bits of the last word beyond the number of nodes are clear in
+     * zeroed memory, so a bit claimed there is given back, rather than addressing a node outside
+     * of the lock.
+     */
+    private <T> long allocateNodeFrom(Access<T> access, T t, long bitsOffset, long from) {
+        long node = allocatedNodes.setNextClearBit(access, t, bitsOffset, from);
+        if (node >= nodes) {
+            allocatedNodes.clear(access, t, bitsOffset, node);
+            return BitSetFrame.NOT_FOUND;
+        }
+        return node;
+    }
+
+    private <T> void freeNode(Access<T> access, T t, long offset, long node) {
+        allocatedNodes.clear(access, t, allocatedNodesOffset(offset), node);
+    }
+
+    @Override
+    public <T> boolean tryLock(Access<T> access, T t, long offset) {
+        if (read(access, t, offset) != 0L)
+            return false;
+        long node = allocateNode(access, t, offset);
+        if (node == BitSetFrame.NOT_FOUND)
+            return false;
+        if (cas(access, t, offset, 0L, node + 1)) {
+            access.writeOrderedLong(t, offset + HOLDER_OFFSET, node + 1);
+            return true;
+        }
+        freeNode(access, t, offset, node);
+        return false;
+    }
+
+    /**
+     * Enqueues a node and spins on it until the predecessor in the queue hands the lock over.
+     */
+    public <T> void lock(Access<T> access, T t, long offset) {
+        long node;
+        for (int spins = 0; (node = allocateNode(access, t, offset)) == BitSetFrame.NOT_FOUND;
+             spins++) {
+            pause(spins);
+        }
+        long tail = access.getAndSetLong(t, offset, node + 1);
+        if (tail != 0L) {
+            long nodeOffset = nodeOffset(offset, node);
+            access.writeOrderedLong(t, nodeOffset(offset, tail - 1), node + 1);
+            for (int spins = 0; read(access, t, nodeOffset + WAITING_OFFSET) != 0L; spins++)
+                pause(spins);
+        }
+        access.writeOrderedLong(t, offset + HOLDER_OFFSET, node + 1);
+    }
+
+    /**
+     * Hands the lock over to the next node in the queue, if any.
+     *
+     * @throws IllegalMonitorStateException if the lock is not held
+     */
+    @Override
+    public <T> void unlock(Access<T> access, T t, long offset) {
+        long holder = read(access, t, offset + HOLDER_OFFSET);
+        if (holder == 0L || read(access, t, offset) == 0L)
+            throw new IllegalMonitorStateException("lock is not held");
+        long node = holder - 1;
+        long nodeOffset = nodeOffset(offset, node);
+        access.writeOrderedLong(t, offset + HOLDER_OFFSET, 0L);
+        long next = read(access, t, nodeOffset);
+        if (next == 0L) {
+            if (cas(access, t, offset, holder, 0L)) {
+                freeNode(access, t, offset, node);
+                return;
+            }
+            // a successor swapped the tail, but hasn't linked itself yet
+            for (int spins = 0; (next = read(access, t, nodeOffset)) == 0L; spins++)
+                pause(spins);
+        }
+        access.writeOrderedLong(t, nodeOffset(offset, next - 1) + WAITING_OFFSET, 0L);
+        freeNode(access, t, offset, node);
+    }
+
+    @Override
+    public <T> void reset(Access<T> access, T t, long offset) {
+        allocatedNodes.clearAll(access, t, allocatedNodesOffset(offset));
+        access.writeLong(t, offset + HOLDER_OFFSET, 0L);
+        access.writeOrderedLong(t, offset, 0L);
+    }
+
+    @Override
+    public long resetState() {
+        return 0L;
+    }
+
+    /**
+     * @return the tail node word, non-zero if the lock is held
+     */
+    @Override
+    public <T> long getState(ReadAccess<T> access, T t, long offset) {
+        return read(access, t, offset);
+    }
+
+    @Override
+    public boolean isLocked(long state) {
+        return state != 0L;
+    }
+
+    @Override
+    public int lockCount(long state) {
+        return isLocked(state) ? 1 : 0;
+    }
+
+    /**
+     * @return the number of threads holding or waiting for the lock, counting allocated nodes
+     */
+    public <T> long queueLength(Access<T> access, T t, long offset) {
+        long bitsOffset = allocatedNodesOffset(offset);
+        long length = 0L;
+        for (long node = allocatedNodes.nextSetBit(access, t, bitsOffset, 0L);
+             node != BitSetFrame.NOT_FOUND && node < nodes;
+             node = allocatedNodes.nextSetBit(access, t, bitsOffset, node + 1)) {
+            length++;
+        }
+        return length;
+    }
+
+    @Override
+    public String toString(long state) {
+        return "[locked = " + isLocked(state) + ", tail = " + (state - 1) + "]";
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return CACHE_LINE + allocatedNodesSizeInBytes + nodes * CACHE_LINE;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+
+import static net.openhft.chronicle.algo.locks.TicketLockingStrategy.pause;
+
+/**
+ * Phase-fair read-write ticket lock (PF-T, B. Brandenburg, J. Anderson, Spin-Based Reader-Writer
+ * Synchronization for Multiprocessor Real-Time Systems) in a single {@code long} word of four
+ * 16-bit fields, from lower to higher:
+ * <ul>
+ *     <li>{@code rin}: readers arrived, counted in units of 4, the lowest 2 bits are the writer
+ *     present bit and the writer phase bit</li>
+ *     <li>{@code rout}: readers departed, in units of 4</li>
+ *     <li>{@code win}: the next writer ticket</li>
+ *     <li>{@code wout}: the writer ticket being served</li>
+ * </ul>
+ * With the blocking {@link #readLock} and {@link #writeLock}, writers are served in FIFO order,
+ * and reader and writer phases alternate: readers wait for at most one writer, and a writer waits
+ * for at most one reader phase after the writers before it.
+ * <p>
+ * The {@code try*} methods acquire the lock only when it is available without waiting, they don't
+ * take tickets. Up to 16383 readers may hold or wait for the lock.
+ */
+public final class PhaseFairReadWriteLockingStrategy extends AbstractReadWriteLockingStrategy {
+
+    static final int FIELD_BITS = 16;
+    static final long FIELD_MASK = (1L << FIELD_BITS) - 1;
+    static final int RIN_SHIFT = 0;
+    static final int ROUT_SHIFT = FIELD_BITS;
+    static final int WIN_SHIFT = 2 * FIELD_BITS;
+    static final int WOUT_SHIFT = 3 * FIELD_BITS;
+    static final long READER = 4L;
+    static final long WRITER_PHASE = 1L;
+    static final long WRITER_PRESENT = 2L;
+    static final long WRITER_BITS = WRITER_PRESENT | WRITER_PHASE;
+    private static final PhaseFairReadWriteLockingStrategy INSTANCE =
+            new PhaseFairReadWriteLockingStrategy();
+
+    private PhaseFairReadWriteLockingStrategy() {
+    }
+
+    public static PhaseFairReadWriteLockingStrategy instance() {
+        return INSTANCE;
+    }
+
+    static long field(long lock, int shift) {
+        return (lock >>> shift) & FIELD_MASK;
+    }
+
+    /**
+     * Adds to the 16-bit field, wrapping within the field
+     */
+    static long add(long lock, int shift, long delta) {
+        long value = (field(lock, shift) + delta) & FIELD_MASK;
+        return (lock & ~(FIELD_MASK << shift)) | (value << shift);
+    }
+
+    static long rin(long lock) {
+        return field(lock, RIN_SHIFT);
+    }
+
+    static long rout(long lock) {
+        return field(lock, ROUT_SHIFT);
+    }
+
+    static long win(long lock) {
+        return field(lock, WIN_SHIFT);
+    }
+
+    static long wout(long lock) {
+        return field(lock, WOUT_SHIFT);
+    }
+
+    static int readers(long lock) {
+        return (int) ((((rin(lock) & ~WRITER_BITS) - rout(lock)) & FIELD_MASK) / READER);
+    }
+
+    static boolean writerPresent(long lock) {
+        return (rin(lock) & WRITER_PRESENT) != 0;
+    }
+
+    static boolean writersQueued(long lock) {
+        return win(lock) != wout(lock);
+    }
+
+    static <T> long read(ReadAccess<T> access, T t, long offset) {
+        return access.readVolatileLong(t, offset);
+    }
+
+    static <T> boolean cas(Access<T> access, T t, long offset, long expected, long x) {
+        return access.compareAndSwapLong(t, offset, expected, x);
+    }
+
+    private static void checkReadersLimit(long lock) {
+        if (readers(lock) >= FIELD_MASK / READER)
+            throw new IllegalMonitorStateException("readersLocked has reached a limit of " +
+                    readers(lock));
+    }
+
+    /**
+     * @return the write-locked state with the given writer ticket, reading {@code rin} with the
+     * writer bits clear
+     */
+    private static long writeLocked(long lock, long ticket) {
+        return add(lock, WIN_SHIFT, 1) | WRITER_PRESENT | (ticket & WRITER_PHASE);
+    }
+
+    /**
+     * Arrives as a reader and spins while a writer, present at the time of arrival, holds
+     * or waits for the lock.
+     */
+    public <T> void readLock(Access<T> access, T t, long offset) {
+        long lock;
+        do {
+            lock = read(access, t, offset);
+            checkReadersLimit(lock);
+        } while (!cas(access, t, offset, lock, add(lock, RIN_SHIFT, READER)));
+        long writerBits = rin(lock) & WRITER_BITS;
+        if (writerBits == 0)
+            return;
+        // the present writer's phase ends when the writer bits change
+        for (int spins = 0; (rin(read(access, t, offset)) & WRITER_BITS) == writerBits; spins++)
+            pause(spins);
+    }
+
+    /**
+     * Takes a writer ticket, spins until it is served, then blocks new readers and spins until
+     * the readers arrived before depart.
+     */
+    public <T> void writeLock(Access<T> access, T t, long offset) {
+        long lock;
+        do {
+            lock = read(access, t, offset);
+        } while (!cas(access, t, offset, lock, add(lock, WIN_SHIFT, 1)));
+        long ticket = win(lock);
+        for (int spins = 0; wout(lock = read(access, t, offset)) != ticket; spins++)
+            pause(spins);
+        while (!cas(access, t, offset, lock,
+                lock | WRITER_PRESENT | (ticket & WRITER_PHASE))) {
+            lock = read(access, t, offset);
+        }
+        long readersArrived = rin(lock);
+        for (int spins = 0; rout(read(access, t, offset)) != readersArrived; spins++)
+            pause(spins);
+    }
+
+    @Override
+    public <T> boolean tryReadLock(Access<T> access, T t, long offset) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (writerPresent(lock))
+                return false;
+            checkReadersLimit(lock);
+            if (cas(access, t, offset, lock, add(lock, RIN_SHIFT, READER)))
+                return true;
+        }
+    }
+
+    @Override
+    public <T> boolean tryWriteLock(Access<T> access, T t, long offset) {
+        long lock = read(access, t, offset);
+        if (writerPresent(lock) || writersQueued(lock) || readers(lock) != 0)
+            return false;
+        return cas(access, t, offset, lock, writeLocked(lock, win(lock)));
+    }
+
+    @Override
+    public <T> boolean tryUpgradeReadToWriteLock(Access<T> access, T t, long offset) {
+        long lock = read(access, t, offset);
+        int readers = readers(lock);
+        if (readers <= 0)
+            throw new IllegalMonitorStateException("read lock is not held");
+        // a present writer waits for this reader to depart
+        if (readers != 1 || writersQueued(lock))
+            return false;
+        return cas(access, t, offset, lock,
+                writeLocked(add(lock, ROUT_SHIFT, READER), win(lock)));
+    }
+
+    @Override
+    public <T> void readUnlock(Access<T> access, T t, long offset) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (readers(lock) <= 0)
+                throw new IllegalMonitorStateException("readerLock underflow");
+            if (cas(access, t, offset, lock, add(lock, ROUT_SHIFT, READER)))
+                return;
+        }
+    }
+
+    @Override
+    public <T> void writeUnlock(Access<T> access, T t, long offset) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (!writerPresent(lock))
+                throw new IllegalMonitorStateException("write lock is not held");
+            long unlocked = add(lock & ~WRITER_BITS, WOUT_SHIFT, 1);
+            if (cas(access, t, offset, lock, unlocked))
+                return;
+        }
+    }
+
+    @Override
+    public <T> void downgradeWriteToReadLock(Access<T> access, T t, long offset) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (!writerPresent(lock))
+                throw new IllegalMonitorStateException("write lock is not held");
+            long readLocked = add(add(lock & ~WRITER_BITS, WOUT_SHIFT, 1), RIN_SHIFT, READER);
+            if (cas(access, t, offset, lock, readLocked))
+                return;
+        }
+    }
+
+    /**
+     * @return {@code true} if a writer holds the lock, or waits for the readers arrived before it
+     * to depart
+     */
+    @Override
+    public boolean isWriteLocked(long state) {
+        return writerPresent(state);
+    }
+
+    /**
+     * @return the number of readers holding the lock, including readers waiting for the present
+     * writer to depart
+     */
+    @Override
+    public int readLockCount(long state) {
+        return readers(state);
+    }
+
+    @Override
+    public <T> void reset(Access<T> access, T t, long offset) {
+        access.writeOrderedLong(t, offset, 0L);
+    }
+
+    @Override
+    public long resetState() {
+        return 0L;
+    }
+
+    @Override
+    public <T> long getState(ReadAccess<T> access, T t, long offset) {
+        return read(access, t, offset);
+    }
+
+    @Override
+    public boolean isLocked(long state) {
+        return writerPresent(state) || readers(state) != 0;
+    }
+
+    @Override
+    public int lockCount(long state) {
+        return readers(state) + (writerPresent(state) ? 1 : 0);
+    }
+
+    /**
+     * @return the number of writers, waiting for their tickets to be served
+     */
+    public int waitCount(long state) {
+        int queued = (int) ((win(state) - wout(state)) & FIELD_MASK);
+        return writerPresent(state) ? queued - 1 : queued;
+    }
+
+    @Override
+    public String toString(long state) {
+        return "[read locks = " + readLockCount(state) +
+                ", write locked = " + isWriteLocked(state) +
+                ", waits = " + waitCount(state) + "]";
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return 8;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+
+public final class ReleaseOperations {
+
+    private static final ReleaseOperation<LockingStrategy> UNLOCK =
+            new ReleaseOperation<LockingStrategy>() {
+                @Override
+                public <T> void release(LockingStrategy strategy,
+                                        Access<T> access, T obj, long offset) {
+                    strategy.unlock(access, obj, offset);
+                }
+            };
+    private static final ReleaseOperation<ReadWriteLockingStrategy> READ_UNLOCK =
+            new ReleaseOperation<ReadWriteLockingStrategy>() {
+                @Override
+                public <T> void release(ReadWriteLockingStrategy strategy,
+                                        Access<T> access, T obj, long offset) {
+                    strategy.readUnlock(access, obj, offset);
+                }
+            };
+    private static final ReleaseOperation<ReadWriteLockingStrategy> WRITE_UNLOCK =
+            new ReleaseOperation<ReadWriteLockingStrategy>() {
+                @Override
+                public <T> void release(ReadWriteLockingStrategy strategy,
+                                        Access<T> access, T obj, long offset) {
+                    strategy.writeUnlock(access, obj, offset);
+                }
+            };
+    private static final ReleaseOperation<ReadWriteUpdateLockingStrategy> UPDATE_UNLOCK =
+            new ReleaseOperation<ReadWriteUpdateLockingStrategy>() {
+                @Override
+                public <T> void release(ReadWriteUpdateLockingStrategy strategy,
+                                        Access<T> access, T obj, long offset) {
+                    strategy.updateUnlock(access, obj, offset);
+                }
+            };
+
+    private ReleaseOperations() {
+    }
+
+    public static ReleaseOperation<LockingStrategy> unlock() {
+        return UNLOCK;
+    }
+
+    public static ReleaseOperation<ReadWriteLockingStrategy> readUnlock() {
+        return READ_UNLOCK;
+    }
+
+    public static ReleaseOperation<ReadWriteLockingStrategy> writeUnlock() {
+        return WRITE_UNLOCK;
+    }
+
+    public static ReleaseOperation<ReadWriteUpdateLockingStrategy> updateUnlock() {
+        return UPDATE_UNLOCK;
+    }
+}
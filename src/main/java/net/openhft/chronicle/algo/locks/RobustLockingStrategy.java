@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+import net.openhft.chronicle.core.Jvm;
+
+/**
+ * Exclusive lock, which records the owner in the lock word: the process id in the higher 32 bits,
+ * and the lower 32 bits of the owner thread id in the lower 32 bits. The unlocked state is 0.
+ * <p>
+ * If the owner dies holding the lock, another process could detect it with {@link
+ * #isOwnerAlive} and take the lock over with {@link #tryRecover}, see {@link
+ * AcquisitionStrategies#spinLoopOrRecover}. Process ids are reused by the OS, so a process
+ * started with the dead owner's id makes the owner look alive.
+ */
+public final class RobustLockingStrategy implements LockingStrategy {
+
+    private static final RobustLockingStrategy INSTANCE = new RobustLockingStrategy();
+
+    private RobustLockingStrategy() {
+    }
+
+    public static RobustLockingStrategy instance() {
+        return INSTANCE;
+    }
+
+    static long owner(int processId, long threadId) {
+        return ((long) processId << 32) | (threadId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the lock state, identifying the current thread as the owner
+     */
+    public static long currentOwner() {
+        return owner(Jvm.getProcessId(), Thread.currentThread().getId());
+    }
+
+    static <T> long read(ReadAccess<T> access, T t, long offset) {
+        return access.readVolatileLong(t, offset);
+    }
+
+    @Override
+    public <T> boolean tryLock(Access<T> access, T t, long offset) {
+        return read(access, t, offset) == 0L &&
+                access.compareAndSwapLong(t, offset, 0L, currentOwner());
+    }
+
+    /**
+     * @throws IllegalMonitorStateException if the lock is not held by the current thread
+     */
+    @Override
+    public <T> void unlock(Access<T> access, T t, long offset) {
+        long lock = read(access, t, offset);
+        if (lock != currentOwner())
+            throw new IllegalMonitorStateException("lock is held by " + toString(lock));
+        access.writeOrderedLong(t, offset, 0L);
+    }
+
+    /**
+     * Takes the lock over from the dead owner, if the lock state is still {@code deadOwnerState}.
+     *
+     * @param deadOwnerState the lock state, read before checking the owner is dead
+     * @return {@code true} if the lock is taken over by the current thread
+     */
+    public <T> boolean tryRecover(Access<T> access, T t, long offset, long deadOwnerState) {
+        return deadOwnerState != 0L &&
+                access.compareAndSwapLong(t, offset, deadOwnerState, currentOwner());
+    }
+
+    public int ownerProcessId(long state) {
+        return (int) (state >>> 32);
+    }
+
+    /**
+     * @return the lower 32 bits of the owner thread id
+     */
+    public int ownerThreadId(long state) {
+        return (int) state;
+    }
+
+    /**
+     * Checks if the owner process is alive, and if the owner is in the current process, if the
+     * owner thread is alive. This is a slow operation.
+     *
+     * @return {@code false} if the lock is not held, or the owner is dead
+     */
+    public boolean isOwnerAlive(long state) {
+        if (state == 0L)
+            return false;
+        int processId = ownerProcessId(state);
+        if (processId != Jvm.getProcessId())
+            return Jvm.isProcessAlive(processId);
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ((int) thread.getId() == ownerThreadId(state))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public <T> void reset(Access<T> access, T t, long offset) {
+        access.writeOrderedLong(t, offset, 0L);
+    }
+
+    @Override
+    public long resetState() {
+        return 0L;
+    }
+
+    @Override
+    public <T> long getState(ReadAccess<T> access, T t, long offset) {
+        return read(access, t, offset);
+    }
+
+    @Override
+    public boolean isLocked(long state) {
+        return state != 0L;
+    }
+
+    @Override
+    public int lockCount(long state) {
+        return isLocked(state) ? 1 : 0;
+    }
+
+    @Override
+    public String toString(long state) {
+        return isLocked(state) ?
+                "[owner process = " + ownerProcessId(state) +
+                        ", owner thread = " + ownerThreadId(state) + "]" :
+                "[unlocked]";
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return 8;
+    }
+}
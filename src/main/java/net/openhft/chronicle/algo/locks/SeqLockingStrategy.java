@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+import net.openhft.chronicle.core.Jvm;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * Sequence lock (seqlock) in a single {@code long} word, for records with a single writer (or
+ * writers serialized by this lock) and many readers, e. g. in other processes. Readers never write
+ * to shared memory: they read the sequence, read the record, and retry if the sequence has changed
+ * meanwhile. <pre>{@code
+ * long seq;
+ * do {
+ *     seq = strategy.beginRead(access, t, offset);
+ *     // read the record, without acting on the values read
+ * } while (strategy.retryRead(access, t, offset, seq));}</pre>
+ * <p>
+ * The sequence is odd while a write is in progress. As a {@link LockingStrategy}, {@code
+ * tryLock()} and {@code unlock()} are {@link #tryBeginWrite} and {@link #endWrite}.
+ */
+public final class SeqLockingStrategy implements LockingStrategy {
+
+    private static final SeqLockingStrategy INSTANCE = new SeqLockingStrategy();
+
+    private SeqLockingStrategy() {
+    }
+
+    public static SeqLockingStrategy instance() {
+        return INSTANCE;
+    }
+
+    static boolean writing(long sequence) {
+        return (sequence & 1L) != 0L;
+    }
+
+    static <T> long read(ReadAccess<T> access, T t, long offset) {
+        return access.readVolatileLong(t, offset);
+    }
+
+    /**
+     * Starts a write, unless another write is in progress.
+     *
+     * @return {@code true} if the write is started
+     */
+    public <T> boolean tryBeginWrite(Access<T> access, T t, long offset) {
+        long sequence = read(access, t, offset);
+        // CAS is also the fence, which keeps the record writes after the sequence write
+        return !writing(sequence) &&
+                access.compareAndSwapLong(t, offset, sequence, sequence + 1L);
+    }
+
+    /**
+     * Spins until other writes complete and starts a write.
+     */
+    public <T> void beginWrite(Access<T> access, T t, long offset) {
+        while (!tryBeginWrite(access, t, offset))
+            Jvm.nanoPause();
+    }
+
+    /**
+     * Completes the write, started with {@link #beginWrite} or {@link #tryBeginWrite}.
+     *
+     * @throws IllegalMonitorStateException if a write is not in progress
+     */
+    public <T> void endWrite(Access<T> access, T t, long offset) {
+        long sequence = read(access, t, offset);
+        if (!writing(sequence))
+            throw new IllegalMonitorStateException("write is not in progress");
+        access.writeOrderedLong(t, offset, sequence + 1L);
+    }
+
+    /**
+     * Spins until a write in progress, if any, completes.
+     *
+     * @return the sequence to pass to {@link #retryRead}
+     */
+    public <T> long beginRead(ReadAccess<T> access, T t, long offset) {
+        long sequence;
+        while (writing(sequence = read(access, t, offset)))
+            Jvm.nanoPause();
+        return sequence;
+    }
+
+    /**
+     * @param sequence the sequence returned from {@link #beginRead}
+     * @return {@code true} if the record has been written since the {@code sequence}, so values
+     * read should be discarded and the read retried
+     */
+    public <T> boolean retryRead(ReadAccess<T> access, T t, long offset, long sequence) {
+        // the record reads shouldn't be reordered after the read of the sequence
+        MEMORY.loadFence();
+        return read(access, t, offset) != sequence;
+    }
+
+    /**
+     * Copies the record of {@code length} bytes at {@code recordOffset} into the target, retrying
+     * until the copy is consistent.
+     *
+     * @return the sequence of the copied record
+     */
+    public <T, U> long readRecord(Access<T> access, T t, long offset, long recordOffset,
+                                  Access<U> targetAccess, U target, long targetOffset,
+                                  long length) {
+        long sequence;
+        do {
+            sequence = beginRead(access, t, offset);
+            Access.copy(access, t, recordOffset, targetAccess, target, targetOffset, length);
+        } while (retryRead(access, t, offset, sequence));
+        return sequence;
+    }
+
+    /**
+     * Writes {@code length} bytes of the source into the record at {@code recordOffset} under the
+     * sequence.
+     */
+    public <S, T> void writeRecord(ReadAccess<S> sourceAccess, S source, long sourceOffset,
+                                   Access<T> access, T t, long offset, long recordOffset,
+                                   long length) {
+        beginWrite(access, t, offset);
+        try {
+            Access.copy(sourceAccess, source, sourceOffset, access, t, recordOffset, length);
+        } finally {
+            endWrite(access, t, offset);
+        }
+    }
+
+    @Override
+    public <T> boolean tryLock(Access<T> access, T t, long offset) {
+        return tryBeginWrite(access, t, offset);
+    }
+
+    @Override
+    public <T> void unlock(Access<T> access, T t, long offset) {
+        endWrite(access, t, offset);
+    }
+
+    @Override
+    public <T> void reset(Access<T> access, T t, long offset) {
+        access.writeOrderedLong(t, offset, 0L);
+    }
+
+    @Override
+    public long resetState() {
+        return 0L;
+    }
+
+    @Override
+    public <T> long getState(ReadAccess<T> access, T t, long offset) {
+        return read(access, t, offset);
+    }
+
+    @Override
+    public boolean isLocked(long state) {
+        return writing(state);
+    }
+
+    @Override
+    public int lockCount(long state) {
+        return writing(state) ? 1 : 0;
+    }
+
+    @Override
+    public String toString(long state) {
+        return "[sequence = " + state + ", writing = " + writing(state) + "]";
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return 8;
+    }
+}
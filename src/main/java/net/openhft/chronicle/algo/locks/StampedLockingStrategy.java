@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+
+/**
+ * Read-write locking strategy, which additionally supports optimistic reads, following the API
+ * of {@link java.util.concurrent.locks.StampedLock}. Operations returning stamps return 0 on
+ * failure.
+ * <p>
+ * Optimistic readers don't write to the lock word, so read-mostly data scale with the number of
+ * readers: <pre>{@code
+ * long stamp = strategy.tryOptimisticRead(access, t, offset);
+ * // read the guarded data
+ * if (!strategy.validate(access, t, offset, stamp)) {
+ *     // fall back to the read lock
+ * }}</pre>
+ */
+public interface StampedLockingStrategy extends ReadWriteLockingStrategy {
+
+    /**
+     * @return a stamp to {@link #validate} later, or 0 if write-locked
+     */
+    <T> long tryOptimisticRead(ReadAccess<T> access, T t, long offset);
+
+    /**
+     * @return {@code true} if the lock has not been write-locked since the issuance of the given
+     * stamp, {@code false} if the stamp is 0
+     */
+    <T> boolean validate(ReadAccess<T> access, T t, long offset, long stamp);
+
+    /**
+     * @return a read stamp, or 0 if write-locked
+     */
+    <T> long tryStampedReadLock(Access<T> access, T t, long offset);
+
+    /**
+     * @return a write stamp, or 0 if locked
+     */
+    <T> long tryStampedWriteLock(Access<T> access, T t, long offset);
+
+    /**
+     * @throws IllegalMonitorStateException if the stamp doesn't match the current read lock
+     */
+    <T> void unlockRead(Access<T> access, T t, long offset, long stamp);
+
+    /**
+     * @throws IllegalMonitorStateException if the stamp doesn't match the current write lock
+     */
+    <T> void unlockWrite(Access<T> access, T t, long offset, long stamp);
+
+    /**
+     * Releases the read or the write lock, corresponding to the given stamp.
+     *
+     * @throws IllegalMonitorStateException if the stamp doesn't match the current lock state
+     */
+    <T> void unlock(Access<T> access, T t, long offset, long stamp);
+
+    /**
+     * If the stamp represents holding the write lock, returns it. If it is a read stamp of the only
+     * reader, or a valid optimistic stamp and the lock is free, atomically acquires the write lock
+     * and returns a write stamp.
+     *
+     * @return a write stamp, or 0 on failure
+     */
+    <T> long tryConvertToWriteLock(Access<T> access, T t, long offset, long stamp);
+
+    /**
+     * If the stamp represents holding the write lock, atomically releases it and acquires the read
+     * lock. If it is a read stamp, returns it. If it is a valid optimistic stamp, acquires the
+     * read lock.
+     *
+     * @return a read stamp, or 0 on failure
+     */
+    <T> long tryConvertToReadLock(Access<T> access, T t, long offset, long stamp);
+
+    /**
+     * If the stamp represents holding a lock, releases it and returns an optimistic stamp. If it
+     * is an optimistic stamp, returns it if validated.
+     *
+     * @return an optimistic stamp, or 0 on failure
+     */
+    <T> long tryConvertToOptimisticRead(Access<T> access, T t, long offset, long stamp);
+}
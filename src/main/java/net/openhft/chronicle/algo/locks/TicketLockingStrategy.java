@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+import net.openhft.chronicle.core.Jvm;
+
+/**
+ * Exclusive ticket lock in a single {@code long} word: the higher 32 bits are the next ticket to
+ * take, the lower 32 bits are the ticket being served. {@link #lock} takes a ticket and spins until
+ * it is served, so waiters acquire the lock in FIFO order, in whatever processes they are.
+ * <p>
+ * {@link #tryLock} acquires the lock only if it is free and nobody waits, it doesn't take a
+ * ticket, so {@link AcquisitionStrategy AcquisitionStrategies} built on it are not fair. A taken
+ * ticket could not be abandoned, so there is no timed fair lock.
+ */
+public final class TicketLockingStrategy implements LockingStrategy {
+
+    static final long TICKET = 1L << 32;
+    static final long SERVING_MASK = TICKET - 1;
+    /**
+     * Waiters for tickets yield after spinning for a while, because if there are more waiting
+     * threads than CPUs, the thread with the ticket being served might be descheduled
+     */
+    static final int SPINS_BEFORE_YIELD = 1000;
+    private static final TicketLockingStrategy INSTANCE = new TicketLockingStrategy();
+
+    private TicketLockingStrategy() {
+    }
+
+    public static TicketLockingStrategy instance() {
+        return INSTANCE;
+    }
+
+    static int nextTicket(long lock) {
+        return (int) (lock >>> 32);
+    }
+
+    static int serving(long lock) {
+        return (int) lock;
+    }
+
+    static void pause(int spins) {
+        if (spins < SPINS_BEFORE_YIELD) {
+            Jvm.nanoPause();
+        } else {
+            Thread.yield();
+        }
+    }
+
+    static <T> long read(ReadAccess<T> access, T t, long offset) {
+        return access.readVolatileLong(t, offset);
+    }
+
+    static <T> boolean cas(Access<T> access, T t, long offset, long expected, long x) {
+        return access.compareAndSwapLong(t, offset, expected, x);
+    }
+
+    @Override
+    public <T> boolean tryLock(Access<T> access, T t, long offset) {
+        long lock = read(access, t, offset);
+        return nextTicket(lock) == serving(lock) && cas(access, t, offset, lock, lock + TICKET);
+    }
+
+    /**
+     * Takes a ticket and spins until it is served.
+     */
+    public <T> void lock(Access<T> access, T t, long offset) {
+        int ticket = nextTicket(access.getAndAddLong(t, offset, TICKET));
+        for (int spins = 0; serving(read(access, t, offset)) != ticket; spins++)
+            pause(spins);
+    }
+
+    @Override
+    public <T> void unlock(Access<T> access, T t, long offset) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (nextTicket(lock) == serving(lock))
+                throw new IllegalMonitorStateException("lock is not held");
+            // only the holder updates the ticket being served, so it could be incremented without
+            // a CAS, unless the increment carries over into the next ticket
+            if (serving(lock) != (int) SERVING_MASK) {
+                access.getAndAddLong(t, offset, 1L);
+                return;
+            }
+            // tickets could be taken concurrently, so update the whole word
+            long served = (lock & ~SERVING_MASK) | ((lock + 1) & SERVING_MASK);
+            if (cas(access, t, offset, lock, served))
+                return;
+        }
+    }
+
+    @Override
+    public <T> void reset(Access<T> access, T t, long offset) {
+        access.writeOrderedLong(t, offset, 0L);
+    }
+
+    @Override
+    public long resetState() {
+        return 0L;
+    }
+
+    @Override
+    public <T> long getState(ReadAccess<T> access, T t, long offset) {
+        return read(access, t, offset);
+    }
+
+    @Override
+    public boolean isLocked(long state) {
+        return nextTicket(state) != serving(state);
+    }
+
+    @Override
+    public int lockCount(long state) {
+        return isLocked(state) ? 1 : 0;
+    }
+
+    /**
+     * @return the number of threads waiting for their tickets to be served
+     */
+    public int waitCount(long state) {
+        return Math.max(nextTicket(state) - serving(state) - 1, 0);
+    }
+
+    @Override
+    public String toString(long state) {
+        return "[locked = " + isLocked(state) + ", waits = " + waitCount(state) + "]";
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return 8;
+    }
+}
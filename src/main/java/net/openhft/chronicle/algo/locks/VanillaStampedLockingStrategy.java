@@ -0,0 +1,302 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * Stamped lock in a single {@code long} word: the lower 24 bits are the read lock count, the next
+ * bit is the write lock bit, and the rest is the version, incremented with each write unlock (by
+ * carry from the write lock bit).
+ * <p>
+ * Stamps keep the version and the write lock bit of the state they were issued for, and tell the
+ * mode in the lowest bits: 1 for optimistic, 2 for read, 0 for write stamps (those have the write
+ * lock bit set, so they are not 0 anyway).
+ * <p>
+ * Readers don't wait for writers, so a continuous stream of readers could starve writers.
+ */
+public final class VanillaStampedLockingStrategy extends AbstractReadWriteLockingStrategy
+        implements StampedLockingStrategy {
+
+    static final int READ_BITS = 24;
+    static final long READ_LOCKED = 1L;
+    static final long READ_MASK = (1L << READ_BITS) - 1;
+    static final long WRITE_LOCKED = 1L << READ_BITS;
+    static final long LOCKED_MASK = READ_MASK | WRITE_LOCKED;
+    /**
+     * The version and the write lock bit
+     */
+    static final long STAMP_MASK = ~READ_MASK;
+    static final long OPTIMISTIC_STAMP = 1L;
+    static final long READ_STAMP = 2L;
+    private static final StampedLockingStrategy INSTANCE = new VanillaStampedLockingStrategy();
+
+    private VanillaStampedLockingStrategy() {
+    }
+
+    public static StampedLockingStrategy instance() {
+        return INSTANCE;
+    }
+
+    static int readLocked(long lock) {
+        return (int) (lock & READ_MASK);
+    }
+
+    static boolean writeLocked(long lock) {
+        return (lock & WRITE_LOCKED) != 0;
+    }
+
+    static boolean sameVersion(long lock, long stamp) {
+        return (lock & STAMP_MASK) == (stamp & STAMP_MASK);
+    }
+
+    static <T> long read(ReadAccess<T> access, T t, long offset) {
+        return access.readVolatileLong(t, offset);
+    }
+
+    static <T> boolean cas(Access<T> access, T t, long offset, long expected, long x) {
+        return access.compareAndSwapLong(t, offset, expected, x);
+    }
+
+    private static void checkReadLockLimit(long lock) {
+        if (readLocked(lock) >= READ_MASK)
+            throw new IllegalMonitorStateException("readersLocked has reached a limit of " +
+                    readLocked(lock));
+    }
+
+    @Override
+    public <T> long tryOptimisticRead(ReadAccess<T> access, T t, long offset) {
+        long lock = read(access, t, offset);
+        return writeLocked(lock) ? 0L : (lock & STAMP_MASK) | OPTIMISTIC_STAMP;
+    }
+
+    @Override
+    public <T> boolean validate(ReadAccess<T> access, T t, long offset, long stamp) {
+        // reads of the guarded data shouldn't be reordered after the read of the lock state
+        MEMORY.loadFence();
+        return stamp != 0L && sameVersion(read(access, t, offset), stamp);
+    }
+
+    @Override
+    public <T> long tryStampedReadLock(Access<T> access, T t, long offset) {
+        while (true) {
+            long lock = read(access, t, offset);
+            if (writeLocked(lock))
+                return 0L;
+            checkReadLockLimit(lock);
+            // retry if other readers interfere, only writers make the read lock fail
+            if (cas(access, t, offset, lock, lock + READ_LOCKED))
+                return (lock & STAMP_MASK) | READ_STAMP;
+        }
+    }
+
+    @Override
+    public <T> long tryStampedWriteLock(Access<T> access, T t, long offset) {
+        long lock = read(access, t, offset);
+        if ((lock & LOCKED_MASK) != 0L)
+            return 0L;
+        long writeLock = lock + WRITE_LOCKED;
+        return cas(access, t, offset, lock, writeLock) ? writeLock & STAMP_MASK : 0L;
+    }
+
+    @Override
+    public <T> boolean tryReadLock(Access<T> access, T t, long offset) {
+        return tryStampedReadLock(access, t, offset) != 0L;
+    }
+
+    @Override
+    public <T> boolean tryWriteLock(Access<T> access, T t, long offset) {
+        return tryStampedWriteLock(access, t, offset) != 0L;
+    }
+
+    @Override
+    public <T> boolean tryUpgradeReadToWriteLock(Access<T> access, T t, long offset) {
+        long lock = read(access, t, offset);
+        int readersLocked = readLocked(lock);
+        if (readersLocked <= 0)
+            throw new IllegalMonitorStateException("read lock is not held");
+        return readersLocked == 1 &&
+                cas(access, t, offset, lock, lock - READ_LOCKED + WRITE_LOCKED);
+    }
+
+    @Override
+    public <T> void readUnlock(Access<T> access, T t, long offset) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (readLocked(lock) <= 0)
+                throw new IllegalMonitorStateException("readerLock underflow");
+            if (cas(access, t, offset, lock, lock - READ_LOCKED))
+                return;
+        }
+    }
+
+    @Override
+    public <T> void writeUnlock(Access<T> access, T t, long offset) {
+        long lock = read(access, t, offset);
+        if (!writeLocked(lock))
+            throw new IllegalMonitorStateException("write lock is not held");
+        // nobody else could change the state while it is write-locked,
+        // adding the write lock bit clears it and increments the version
+        access.writeOrderedLong(t, offset, lock + WRITE_LOCKED);
+    }
+
+    @Override
+    public <T> void downgradeWriteToReadLock(Access<T> access, T t, long offset) {
+        long lock = read(access, t, offset);
+        if (!writeLocked(lock))
+            throw new IllegalMonitorStateException("write lock is not held");
+        access.writeOrderedLong(t, offset, lock + WRITE_LOCKED + READ_LOCKED);
+    }
+
+    @Override
+    public <T> void unlockRead(Access<T> access, T t, long offset, long stamp) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if ((stamp & READ_MASK) != READ_STAMP || !sameVersion(lock, stamp) ||
+                    readLocked(lock) <= 0) {
+                throw new IllegalMonitorStateException("stamp " + stamp +
+                        " doesn't match the read lock " + toString(lock));
+            }
+            if (cas(access, t, offset, lock, lock - READ_LOCKED))
+                return;
+        }
+    }
+
+    @Override
+    public <T> void unlockWrite(Access<T> access, T t, long offset, long stamp) {
+        long lock = read(access, t, offset);
+        if (!writeLocked(stamp) || !sameVersion(lock, stamp)) {
+            throw new IllegalMonitorStateException("stamp " + stamp +
+                    " doesn't match the write lock " + toString(lock));
+        }
+        access.writeOrderedLong(t, offset, lock + WRITE_LOCKED);
+    }
+
+    @Override
+    public <T> void unlock(Access<T> access, T t, long offset, long stamp) {
+        if (writeLocked(stamp)) {
+            unlockWrite(access, t, offset, stamp);
+        } else {
+            unlockRead(access, t, offset, stamp);
+        }
+    }
+
+    @Override
+    public <T> long tryConvertToWriteLock(Access<T> access, T t, long offset, long stamp) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (stamp == 0L || !sameVersion(lock, stamp))
+                return 0L;
+            if (writeLocked(stamp))
+                return stamp;
+            long writeLock;
+            if ((stamp & READ_MASK) == READ_STAMP) {
+                if (readLocked(lock) != 1)
+                    return 0L;
+                writeLock = lock - READ_LOCKED + WRITE_LOCKED;
+            } else {
+                if (readLocked(lock) != 0)
+                    return 0L;
+                writeLock = lock + WRITE_LOCKED;
+            }
+            if (cas(access, t, offset, lock, writeLock))
+                return writeLock & STAMP_MASK;
+        }
+    }
+
+    @Override
+    public <T> long tryConvertToReadLock(Access<T> access, T t, long offset, long stamp) {
+        for (; ; ) {
+            long lock = read(access, t, offset);
+            if (stamp == 0L || !sameVersion(lock, stamp))
+                return 0L;
+            if (writeLocked(stamp)) {
+                long readLock = lock + WRITE_LOCKED + READ_LOCKED;
+                access.writeOrderedLong(t, offset, readLock);
+                return (readLock & STAMP_MASK) | READ_STAMP;
+            }
+            if ((stamp & READ_MASK) == READ_STAMP)
+                return stamp;
+            checkReadLockLimit(lock);
+            if (cas(access, t, offset, lock, lock + READ_LOCKED))
+                return (lock & STAMP_MASK) | READ_STAMP;
+        }
+    }
+
+    @Override
+    public <T> long tryConvertToOptimisticRead(Access<T> access, T t, long offset, long stamp) {
+        if (stamp == 0L)
+            return 0L;
+        if ((stamp & READ_MASK) == OPTIMISTIC_STAMP)
+            return validate(access, t, offset, stamp) ? stamp : 0L;
+        long lock = read(access, t, offset);
+        if (!sameVersion(lock, stamp))
+            return 0L;
+        unlock(access, t, offset, stamp);
+        return tryOptimisticRead(access, t, offset);
+    }
+
+    @Override
+    public boolean isWriteLocked(long state) {
+        return writeLocked(state);
+    }
+
+    @Override
+    public int readLockCount(long state) {
+        return readLocked(state);
+    }
+
+    @Override
+    public <T> void reset(Access<T> access, T t, long offset) {
+        access.writeOrderedLong(t, offset, 0L);
+    }
+
+    @Override
+    public long resetState() {
+        return 0L;
+    }
+
+    @Override
+    public <T> long getState(ReadAccess<T> access, T t, long offset) {
+        return read(access, t, offset);
+    }
+
+    @Override
+    public boolean isLocked(long state) {
+        return (state & LOCKED_MASK) != 0L;
+    }
+
+    @Override
+    public int lockCount(long state) {
+        return readLocked(state) + (writeLocked(state) ? 1 : 0);
+    }
+
+    @Override
+    public String toString(long state) {
+        return "[read locks = " + readLockCount(state) +
+                ", write locked = " + isWriteLocked(state) +
+                ", version = " + (state >>> (READ_BITS + 1)) + "]";
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return 8;
+    }
+}
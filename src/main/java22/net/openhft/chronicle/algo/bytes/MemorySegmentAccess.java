@@ -0,0 +1,246 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * {@code Access} to {@link MemorySegment}s, heap or native, e. g. mapped with {@code
+ * FileChannel.map(mode, offset, size, arena)}. Offsets are relative to the start of the segment,
+ * accesses are bounds-checked and fail with {@code IllegalStateException} after the segment's
+ * arena is closed.
+ * <p>
+ * Plain reads and writes may be unaligned. Volatile reads, ordered writes, CAS and the other
+ * atomic updates go through {@code VarHandle}s, so, unlike with {@link NativeAccess}, they require the offset to be
+ * naturally aligned, e. g. to 8 bytes for {@code long}s, the {@code IllegalArgumentException} is
+ * thrown otherwise. Lock words and bit set words are aligned, if the structure offset is.
+ * <p>
+ * Available on Java 22 and later, from the multi-release jar.
+ */
+public final class MemorySegmentAccess implements Access<MemorySegment> {
+
+    public static final MemorySegmentAccess INSTANCE = new MemorySegmentAccess();
+
+    private static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT_UNALIGNED;
+    private static final ValueLayout.OfChar CHAR = ValueLayout.JAVA_CHAR_UNALIGNED;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED;
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED;
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED;
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE_UNALIGNED;
+    private static final VarHandle ATOMIC_INT = ValueLayout.JAVA_INT.varHandle();
+    private static final VarHandle ATOMIC_LONG = ValueLayout.JAVA_LONG.varHandle();
+
+    private MemorySegmentAccess() {
+    }
+
+    /**
+     * @return {@code Accessor} to memory segments, which are their own {@code Access} handles,
+     * indexed by bytes from the start of the segment
+     */
+    public static Accessor.Full<MemorySegment, MemorySegment> accessor() {
+        return SegmentAccessor.INSTANCE;
+    }
+
+    @Override
+    public byte readByte(MemorySegment segment, long offset) {
+        return segment.get(ValueLayout.JAVA_BYTE, offset);
+    }
+
+    @Override
+    public short readShort(MemorySegment segment, long offset) {
+        return segment.get(SHORT, offset);
+    }
+
+    @Override
+    public char readChar(MemorySegment segment, long offset) {
+        return segment.get(CHAR, offset);
+    }
+
+    @Override
+    public int readInt(MemorySegment segment, long offset) {
+        return segment.get(INT, offset);
+    }
+
+    @Override
+    public long readLong(MemorySegment segment, long offset) {
+        return segment.get(LONG, offset);
+    }
+
+    @Override
+    public float readFloat(MemorySegment segment, long offset) {
+        return segment.get(FLOAT, offset);
+    }
+
+    @Override
+    public double readDouble(MemorySegment segment, long offset) {
+        return segment.get(DOUBLE, offset);
+    }
+
+    @Override
+    public int readVolatileInt(MemorySegment segment, long offset) {
+        return (int) ATOMIC_INT.getVolatile(segment, offset);
+    }
+
+    @Override
+    public long readVolatileLong(MemorySegment segment, long offset) {
+        return (long) ATOMIC_LONG.getVolatile(segment, offset);
+    }
+
+    @Override
+    public void writeByte(MemorySegment segment, long offset, byte i8) {
+        segment.set(ValueLayout.JAVA_BYTE, offset, i8);
+    }
+
+    @Override
+    public void writeShort(MemorySegment segment, long offset, short i) {
+        segment.set(SHORT, offset, i);
+    }
+
+    @Override
+    public void writeChar(MemorySegment segment, long offset, char c) {
+        segment.set(CHAR, offset, c);
+    }
+
+    @Override
+    public void writeInt(MemorySegment segment, long offset, int i) {
+        segment.set(INT, offset, i);
+    }
+
+    @Override
+    public void writeOrderedInt(MemorySegment segment, long offset, int i) {
+        ATOMIC_INT.setRelease(segment, offset, i);
+    }
+
+    @Override
+    public void writeLong(MemorySegment segment, long offset, long i) {
+        segment.set(LONG, offset, i);
+    }
+
+    @Override
+    public void writeOrderedLong(MemorySegment segment, long offset, long i) {
+        ATOMIC_LONG.setRelease(segment, offset, i);
+    }
+
+    @Override
+    public void writeFloat(MemorySegment segment, long offset, float d) {
+        segment.set(FLOAT, offset, d);
+    }
+
+    @Override
+    public void writeDouble(MemorySegment segment, long offset, double d) {
+        segment.set(DOUBLE, offset, d);
+    }
+
+    @Override
+    public void writeBytes(MemorySegment segment, long offset, long len, byte b) {
+        segment.asSlice(offset, len).fill(b);
+    }
+
+    @Override
+    public void zeroOut(MemorySegment segment, long offset, long len) {
+        segment.asSlice(offset, len).fill((byte) 0);
+    }
+
+    @Override
+    public ByteOrder byteOrder(MemorySegment segment) {
+        return ByteOrder.nativeOrder();
+    }
+
+    @Override
+    public boolean compareAndSwapInt(MemorySegment segment, long offset, int expected, int value) {
+        return ATOMIC_INT.compareAndSet(segment, offset, expected, value);
+    }
+
+    @Override
+    public boolean compareAndSwapLong(MemorySegment segment, long offset,
+                                      long expected, long value) {
+        return ATOMIC_LONG.compareAndSet(segment, offset, expected, value);
+    }
+
+    @Override
+    public int getAndAddInt(MemorySegment segment, long offset, int delta) {
+        return (int) ATOMIC_INT.getAndAdd(segment, offset, delta);
+    }
+
+    @Override
+    public int getAndSetInt(MemorySegment segment, long offset, int value) {
+        return (int) ATOMIC_INT.getAndSet(segment, offset, value);
+    }
+
+    @Override
+    public int getAndBitwiseOrInt(MemorySegment segment, long offset, int mask) {
+        return (int) ATOMIC_INT.getAndBitwiseOr(segment, offset, mask);
+    }
+
+    @Override
+    public int getAndBitwiseAndInt(MemorySegment segment, long offset, int mask) {
+        return (int) ATOMIC_INT.getAndBitwiseAnd(segment, offset, mask);
+    }
+
+    @Override
+    public int getAndBitwiseXorInt(MemorySegment segment, long offset, int mask) {
+        return (int) ATOMIC_INT.getAndBitwiseXor(segment, offset, mask);
+    }
+
+    @Override
+    public long getAndAddLong(MemorySegment segment, long offset, long delta) {
+        return (long) ATOMIC_LONG.getAndAdd(segment, offset, delta);
+    }
+
+    @Override
+    public long getAndSetLong(MemorySegment segment, long offset, long value) {
+        return (long) ATOMIC_LONG.getAndSet(segment, offset, value);
+    }
+
+    @Override
+    public long getAndBitwiseOrLong(MemorySegment segment, long offset, long mask) {
+        return (long) ATOMIC_LONG.getAndBitwiseOr(segment, offset, mask);
+    }
+
+    @Override
+    public long getAndBitwiseAndLong(MemorySegment segment, long offset, long mask) {
+        return (long) ATOMIC_LONG.getAndBitwiseAnd(segment, offset, mask);
+    }
+
+    @Override
+    public long getAndBitwiseXorLong(MemorySegment segment, long offset, long mask) {
+        return (long) ATOMIC_LONG.getAndBitwiseXor(segment, offset, mask);
+    }
+
+    enum SegmentAccessor implements Accessor.Full<MemorySegment, MemorySegment> {
+        INSTANCE;
+
+        @Override
+        public Access<MemorySegment> access() {
+            return MemorySegmentAccess.INSTANCE;
+        }
+
+        @Override
+        public MemorySegment handle(MemorySegment segment) {
+            return segment;
+        }
+
+        @Override
+        public long offset(MemorySegment segment, long index) {
+            return index;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.MemoryUnit;
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static net.openhft.chronicle.algo.bitset.BitSetFrame.NOT_FOUND;
+import static org.junit.Assert.*;
+
+public class ConcurrentBitSetSlotAllocatorTest {
+
+    private static final int SIZE = 4096;
+    // not 0, to check that the offset is respected
+    private static final long OFFSET = 8;
+
+    private final ConcurrentFlatBitSetFrame frame = new ConcurrentFlatBitSetFrame(SIZE);
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private final Access<BytesStore> access = Access.checkedBytesStoreAccess();
+    private final BytesStore<?, ?> bits =
+            BytesStore.wrap(ByteBuffer.allocateDirect((int) (MemoryUnit.BITS.toBytes(SIZE) + OFFSET)));
+
+    @Test
+    public void allocatesEverySlotOnceThenFails() {
+        ConcurrentBitSetSlotAllocator allocator = new ConcurrentBitSetSlotAllocator(frame, 4);
+        assertEquals(4, allocator.regions());
+        java.util.BitSet seen = new java.util.BitSet(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            long slot = allocator.allocate(access, bits, OFFSET);
+            assertNotEquals(NOT_FOUND, slot);
+            assertFalse("slot " + slot + " allocated twice", seen.get((int) slot));
+            seen.set((int) slot);
+        }
+        assertEquals(NOT_FOUND, allocator.allocate(access, bits, OFFSET));
+        assertEquals(SIZE, allocator.allocationCount());
+        assertEquals(1, allocator.failureCount());
+        assertEquals(SIZE, frame.cardinality(access, bits, OFFSET));
+
+        allocator.free(access, bits, OFFSET, 100);
+        assertEquals(100, allocator.allocate(access, bits, OFFSET));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void freeingFreeSlotFails() {
+        ConcurrentBitSetSlotAllocator allocator = new ConcurrentBitSetSlotAllocator(frame);
+        allocator.free(access, bits, OFFSET, 1);
+    }
+
+    @Test
+    public void allocatesContinuousSlots() {
+        ConcurrentBitSetSlotAllocator allocator = new ConcurrentBitSetSlotAllocator(frame, 1);
+        long first = allocator.allocate(access, bits, OFFSET, 8);
+        long second = allocator.allocate(access, bits, OFFSET, 8);
+        assertEquals(0, first);
+        assertEquals(8, second);
+        for (long i = first; i < second + 8; i++)
+            assertTrue(frame.get(access, bits, OFFSET, i));
+        assertFalse(frame.get(access, bits, OFFSET, second + 8));
+        allocator.free(access, bits, OFFSET, first, 8);
+        assertEquals(first, allocator.allocate(access, bits, OFFSET, 8));
+    }
+
+    @Test
+    public void freeingPartlyFreeRangeFails() {
+        ConcurrentBitSetSlotAllocator allocator = new ConcurrentBitSetSlotAllocator(frame, 1);
+        long first = allocator.allocate(access, bits, OFFSET, 8);
+        allocator.free(access, bits, OFFSET, first + 5);
+        try {
+            allocator.free(access, bits, OFFSET, first, 8);
+            fail("slot " + (first + 5) + " is not allocated");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        // the slots before the free one are restored
+        assertEquals(7, frame.cardinality(access, bits, OFFSET));
+        assertFalse(frame.get(access, bits, OFFSET, first + 5));
+    }
+
+    @Test
+    public void freeingThreadsDoNotTakeRegions() throws Exception {
+        ConcurrentBitSetSlotAllocator allocator = new ConcurrentBitSetSlotAllocator(frame, 4);
+        long slot = allocator.allocate(access, bits, OFFSET);
+        // a consumer thread frees the slot, then the allocating threads take the next regions
+        Thread consumer = new Thread(() -> allocator.free(access, bits, OFFSET, slot));
+        consumer.start();
+        consumer.join();
+        assertFalse(frame.get(access, bits, OFFSET, slot));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Long>> firstSlots = new ArrayList<>();
+            CyclicBarrier barrier = new CyclicBarrier(3);
+            for (int t = 0; t < 3; t++) {
+                firstSlots.add(executor.submit(() -> {
+                    barrier.await();
+                    return allocator.allocate(access, bits, OFFSET);
+                }));
+            }
+            java.util.BitSet regions = new java.util.BitSet();
+            regions.set((int) (slot / (SIZE / 4)));
+            for (Future<Long> first : firstSlots)
+                regions.set((int) (first.get() / (SIZE / 4)));
+            assertEquals(4, regions.cardinality());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void threadsStartInDifferentRegions() throws Exception {
+        ConcurrentBitSetSlotAllocator allocator = new ConcurrentBitSetSlotAllocator(frame, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> firstSlots = new ArrayList<>();
+            CyclicBarrier barrier = new CyclicBarrier(4);
+            for (int t = 0; t < 4; t++) {
+                firstSlots.add(executor.submit(() -> {
+                    barrier.await();
+                    return allocator.allocate(access, bits, OFFSET);
+                }));
+            }
+            java.util.BitSet regions = new java.util.BitSet();
+            for (Future<Long> slot : firstSlots)
+                regions.set((int) (slot.get() / (SIZE / 4)));
+            assertEquals(4, regions.cardinality());
+            assertEquals(0, allocator.regionOverflowCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentAllocationsNeverOverlap() throws Exception {
+        ConcurrentBitSetSlotAllocator allocator = new ConcurrentBitSetSlotAllocator(frame, 8);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            ConcurrentHashMap<Long, Boolean> owned = new ConcurrentHashMap<>();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    List<Long> mine = new ArrayList<>();
+                    for (int round = 0; round < 20; round++) {
+                        for (int i = 0; i < SIZE / threads; i++) {
+                            long slot = allocator.allocate(access, bits, OFFSET);
+                            if (slot == NOT_FOUND)
+                                break;
+                            assertNull("slot " + slot + " allocated twice",
+                                    owned.put(slot, Boolean.TRUE));
+                            mine.add(slot);
+                        }
+                        for (Long slot : mine) {
+                            owned.remove(slot);
+                            allocator.free(access, bits, OFFSET, slot);
+                        }
+                        mine.clear();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get(30, TimeUnit.SECONDS);
+            assertEquals(0, frame.cardinality(access, bits, OFFSET));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
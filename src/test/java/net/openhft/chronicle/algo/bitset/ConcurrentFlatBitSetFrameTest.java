@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.MemoryUnit;
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.openhft.chronicle.algo.bitset.BitSetFrame.NOT_FOUND;
+import static org.junit.Assert.*;
+
+public class ConcurrentFlatBitSetFrameTest {
+
+    private static final int SIZE = 8192;
+
+    private final ConcurrentFlatBitSetFrame frame = new ConcurrentFlatBitSetFrame(SIZE, true);
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private final Access<BytesStore> access = Access.checkedBytesStoreAccess();
+    private final BytesStore<?, ?> bits =
+            BytesStore.wrap(ByteBuffer.allocateDirect((int) MemoryUnit.BITS.toBytes(SIZE)));
+
+    @Test
+    public void claimsRangesLongerThanNativeWord() {
+        frame.clearAll(access, bits, 0);
+        assertEquals(0, frame.setNextNContinuousClearBits(access, bits, 0, 0, 100));
+        assertEquals(100, frame.setNextNContinuousClearBits(access, bits, 0, 0, 200));
+        assertEquals(300, frame.cardinality(access, bits, 0));
+        frame.clear(access, bits, 0, 150);
+        // the hole at 150 is too small, the next fit is after 300
+        assertEquals(300, frame.setNextNContinuousClearBits(access, bits, 0, 0, 2));
+        assertEquals(SIZE - 70, frame.setPreviousNContinuousClearBits(access, bits, 0, SIZE, 70));
+        assertEquals(NOT_FOUND, frame.setNextNContinuousClearBits(access, bits, 0, SIZE - 10, 20));
+    }
+
+    @Test
+    public void concurrentMultiWordClaimsNeverOverlap() throws Exception {
+        frame.clearAll(access, bits, 0);
+        int threads = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+        // 0 - free, otherwise the id of the owning thread
+        AtomicIntegerArray owners = new AtomicIntegerArray(SIZE);
+        AtomicLong claims = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 1; t <= threads; t++) {
+                int id = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(id);
+                    List<long[]> mine = new ArrayList<>();
+                    barrier.await();
+                    for (int i = 0; i < 2000; i++) {
+                        int n = 1 + random.nextInt(150);
+                        long from = random.nextBoolean() ? 0 : random.nextInt(SIZE);
+                        long start = random.nextBoolean() ?
+                                frame.setNextNContinuousClearBits(access, bits, 0, from, n) :
+                                frame.setPreviousNContinuousClearBits(access, bits, 0, from, n);
+                        if (start != NOT_FOUND) {
+                            claims.incrementAndGet();
+                            for (long b = start; b < start + n; b++) {
+                                assertTrue("bit " + b + " claimed twice",
+                                        owners.compareAndSet((int) b, 0, id));
+                            }
+                            mine.add(new long[]{start, n});
+                        }
+                        if (!mine.isEmpty() && (start == NOT_FOUND || random.nextInt(3) == 0)) {
+                            long[] range = mine.remove(random.nextInt(mine.size()));
+                            for (long b = range[0]; b < range[0] + range[1]; b++)
+                                assertTrue(owners.compareAndSet((int) b, id, 0));
+                            frame.clearRange(access, bits, 0, range[0], range[0] + range[1]);
+                        }
+                    }
+                    for (long[] range : mine) {
+                        for (long b = range[0]; b < range[0] + range[1]; b++)
+                            assertTrue(owners.compareAndSet((int) b, id, 0));
+                        frame.clearRange(access, bits, 0, range[0], range[0] + range[1]);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(claims.get() > 0);
+        assertEquals(0, frame.cardinality(access, bits, 0));
+    }
+}
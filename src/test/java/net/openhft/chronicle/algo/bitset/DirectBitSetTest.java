@@ -48,6 +48,7 @@ public class DirectBitSetTest {
         int capacityInBytes = (int) MemoryUnit.BITS.toBytes(256);
         BytesStore bytes1 = BytesStore.wrap(ByteBuffer.allocateDirect(capacityInBytes));
         BytesStore bytes2 = BytesStore.wrap(ByteBuffer.allocateDirect(capacityInBytes));
+        BytesStore bytes3 = BytesStore.wrap(ByteBuffer.allocateDirect(capacityInBytes));
         return Arrays.asList(new Object[][]{
                 {
                         new ReusableBitSet(
@@ -77,6 +78,27 @@ public class DirectBitSetTest {
                                 ByteBuffer.allocateDirect(capacityInBytes),
                                 0)
                 },
+                {
+                        new ReusableBitSet(
+                                new ConcurrentFlatBitSetFrame(256, true),
+                                Access.checkedBytesStoreAccess(),
+                                bytes3,
+                                0)
+                },
+                {
+                        new ReusableBitSet(
+                                new ConcurrentFlatBitSetFrame(256),
+                                checkedByteBufferAccess(),
+                                ByteBuffer.allocate(capacityInBytes),
+                                0)
+                },
+                {
+                        new ReusableBitSet(
+                                new ConcurrentFlatBitSetFrame(256),
+                                checkedByteBufferAccess(),
+                                ByteBuffer.allocateDirect(capacityInBytes),
+                                0)
+                },
 
         });
     }
@@ -536,7 +558,7 @@ public class DirectBitSetTest {
 
     @Test
     public void testSetNextNContinuousClearBitsCrossLongCase() {
-        if (concurrentBS())
+        if (singleWordRangesOnly())
             return;
         long size = bs.logicalSize();
         for (int n : new int[]{3, 7, 13, 31, 33, 63, 65, 100, 127, 128, 129, 254, 255}) {
@@ -647,6 +669,10 @@ public class DirectBitSetTest {
         return bs.frame instanceof ConcurrentFlatBitSetFrame;
     }
 
+    public boolean singleWordRangesOnly() {
+        return concurrentBS() && !((ConcurrentFlatBitSetFrame) bs.frame).multiWordRangeClaims();
+    }
+
     @Test
     public void testSetPreviousNContinuousClearBitsWithinLongCase() {
         long size = (bs.logicalSize() + 63) / 64 * 64;
@@ -684,7 +710,7 @@ public class DirectBitSetTest {
 
     @Test
     public void testSetPreviousNContinuousClearBitsCrossLongCase() {
-        if (concurrentBS())
+        if (singleWordRangesOnly())
             return;
         long size = bs.logicalSize();
         for (int n : new int[]{3, 7, 13, 31, 33, 63}) {
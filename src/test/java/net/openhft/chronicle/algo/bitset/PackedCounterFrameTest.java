@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(value = Parameterized.class)
+public class PackedCounterFrameTest {
+    private static final int SIZE = 1000;
+    private static final long OFFSET = 8;
+
+    private final PackedCounterFrame frame;
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private final Access<BytesStore> access = Access.checkedBytesStoreAccess();
+    private final BytesStore<?, ?> counters;
+
+    public PackedCounterFrameTest(String name, PackedCounterFrame frame) {
+        this.frame = frame;
+        counters = BytesStore.wrap(ByteBuffer.allocateDirect((int) (OFFSET + frame.sizeInBytes())));
+        frame.clearAll(access, counters, OFFSET);
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        List<Object[]> data = new ArrayList<>();
+        for (int bits : new int[]{2, 4, 8}) {
+            data.add(new Object[]{"single " + bits,
+                    new SingleThreadedPackedCounterFrame(SIZE, bits)});
+            data.add(new Object[]{"concurrent " + bits,
+                    new ConcurrentPackedCounterFrame(SIZE, bits)});
+        }
+        return data;
+    }
+
+    @Test
+    public void geometry() {
+        assertEquals(SIZE, frame.size());
+        assertEquals((1 << frame.bitsPerCounter()) - 1, frame.maxValue());
+        assertEquals(0, frame.sizeInBytes() % 8);
+        assertTrue(frame.sizeInBytes() * 8 >= (long) SIZE * frame.bitsPerCounter());
+        assertTrue(frame.sizeInBytes() * 8 < (long) SIZE * frame.bitsPerCounter() + 64);
+    }
+
+    @Test
+    public void behavesLikeIntArray() {
+        Random random = new Random(frame.bitsPerCounter());
+        int max = frame.maxValue();
+        int[] model = new int[SIZE];
+        for (int i = 0; i < 20000; i++) {
+            int index = random.nextInt(SIZE);
+            switch (random.nextInt(4)) {
+                case 0: {
+                    int value = random.nextInt(max + 1);
+                    frame.set(access, counters, OFFSET, index, value);
+                    model[index] = value;
+                    break;
+                }
+                case 1:
+                    model[index] = Math.min(model[index] + 1, max);
+                    assertEquals(model[index], frame.increment(access, counters, OFFSET, index));
+                    break;
+                case 2:
+                    model[index] = Math.max(model[index] - 1, 0);
+                    assertEquals(model[index], frame.decrement(access, counters, OFFSET, index));
+                    break;
+                default: {
+                    int delta = random.nextInt(4 * max + 1) - 2 * max;
+                    model[index] = Math.max(0, Math.min(model[index] + delta, max));
+                    assertEquals(model[index], frame.add(access, counters, OFFSET, index, delta));
+                    break;
+                }
+            }
+            assertEquals(model[index], frame.get(access, counters, OFFSET, index));
+
+            int from = random.nextInt(SIZE + 1);
+            int to = from + random.nextInt(SIZE - from + 1);
+            long sum = 0;
+            int min = max;
+            for (int j = from; j < to; j++) {
+                sum += model[j];
+                min = Math.min(min, model[j]);
+            }
+            assertEquals(sum, frame.sum(access, counters, OFFSET, from, to));
+            assertEquals(min, frame.min(access, counters, OFFSET, from, to));
+
+            long[] indexes = new long[random.nextInt(5)];
+            min = max;
+            for (int j = 0; j < indexes.length; j++) {
+                indexes[j] = random.nextInt(SIZE);
+                min = Math.min(min, model[(int) indexes[j]]);
+            }
+            assertEquals(min, frame.min(access, counters, OFFSET, indexes));
+        }
+        for (int i = 0; i < SIZE; i++)
+            assertEquals(model[i], frame.get(access, counters, OFFSET, i));
+        // the offset is respected
+        assertEquals(0L, counters.readLong(0));
+    }
+
+    @Test
+    public void sumOfSaturatedCounters() {
+        for (int i = 0; i < SIZE; i++)
+            frame.set(access, counters, OFFSET, i, frame.maxValue());
+        assertEquals((long) SIZE * frame.maxValue(), frame.sum(access, counters, OFFSET, 0, SIZE));
+        assertEquals(frame.maxValue(), frame.min(access, counters, OFFSET, 0, SIZE));
+        frame.clearAll(access, counters, OFFSET);
+        assertEquals(0, frame.sum(access, counters, OFFSET, 0, SIZE));
+    }
+
+    @Test
+    public void extremeDeltasSaturateWithoutOverflow() {
+        frame.set(access, counters, OFFSET, 0, 1);
+        assertEquals(frame.maxValue(), frame.add(access, counters, OFFSET, 0, Integer.MAX_VALUE));
+        assertEquals(frame.maxValue(), frame.add(access, counters, OFFSET, 0, Integer.MAX_VALUE));
+        assertEquals(0, frame.add(access, counters, OFFSET, 0, Integer.MIN_VALUE));
+        frame.set(access, counters, OFFSET, 1, 1);
+        assertEquals(0, frame.add(access, counters, OFFSET, 1, Integer.MIN_VALUE));
+        assertEquals(0, frame.add(access, counters, OFFSET, 1, Integer.MIN_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setOutOfRangeValue() {
+        frame.set(access, counters, OFFSET, 0, frame.maxValue() + 1);
+    }
+
+    @Test
+    public void concurrentIncrementsAreNotLost() throws Exception {
+        if (!(frame instanceof ConcurrentPackedCounterFrame))
+            return;
+        int threads = 4;
+        // neighbouring counters share the same words, each thread increments its own
+        // counters up to the max value
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int round = 0; round < frame.maxValue(); round++) {
+                        for (int i = thread; i < SIZE; i += threads)
+                            frame.increment(access, counters, OFFSET, i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < SIZE; i++)
+            assertEquals(frame.maxValue(), frame.get(access, counters, OFFSET, i));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static net.openhft.chronicle.algo.bitset.BitSetFrame.NOT_FOUND;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(value = Parameterized.class)
+public class RankSelectIndexTest {
+    // not a multiple of the 512-bit block
+    private static final long SIZE = 64 * 1037;
+    private static final long BITS_OFFSET = 8;
+
+    private final double density;
+    private final SingleThreadedFlatBitSetFrame frame = new SingleThreadedFlatBitSetFrame(SIZE);
+    private final RankSelectIndex index = new RankSelectIndex(frame);
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private final Access<BytesStore> access = Access.checkedBytesStoreAccess();
+    private final BytesStore<?, ?> store;
+    private final long indexOffset;
+
+    public RankSelectIndexTest(double density) {
+        this.density = density;
+        indexOffset = BITS_OFFSET + frame.sizeInBytes();
+        store = BytesStore.wrap(ByteBuffer.allocateDirect((int) (indexOffset + index.sizeInBytes())));
+    }
+
+    @Parameterized.Parameters(name = "density={0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{{0.0}, {0.0001}, {0.01}, {0.5}, {0.99}, {1.0}});
+    }
+
+    @Test
+    public void rankAndSelectAgreeWithNaive() {
+        Random random = new Random(42);
+        frame.clearAll(access, store, BITS_OFFSET);
+        for (long i = 0; i < SIZE; i++) {
+            if (random.nextDouble() < density)
+                frame.set(access, store, BITS_OFFSET, i);
+        }
+        index.build(access, store, BITS_OFFSET, indexOffset);
+        checkAgainstNaive();
+    }
+
+    @Test
+    public void rebuildAfterChanges() {
+        frame.setAll(access, store, BITS_OFFSET);
+        index.build(access, store, BITS_OFFSET, indexOffset);
+        assertEquals(SIZE, index.cardinality(access, store, indexOffset));
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            long from = random.nextInt((int) SIZE);
+            frame.clearRange(access, store, BITS_OFFSET, from,
+                    Math.min(SIZE, from + random.nextInt((int) (SIZE * density) + 2)));
+        }
+        index.build(access, store, BITS_OFFSET, indexOffset);
+        checkAgainstNaive();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onlyFlatBitSetsAreSupported() {
+        new RankSelectIndex(new StripedBitSetFrame(1024, 2));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rankBeyondLogicalSize() {
+        index.build(access, store, BITS_OFFSET, indexOffset);
+        index.rank1(access, store, BITS_OFFSET, indexOffset, SIZE + 1);
+    }
+
+    private void checkAgainstNaive() {
+        long rank = 0;
+        for (long i = 0; i < SIZE; i++) {
+            assertEquals(rank, index.rank1(access, store, BITS_OFFSET, indexOffset, i));
+            assertEquals(i - rank, index.rank0(access, store, BITS_OFFSET, indexOffset, i));
+            if (frame.get(access, store, BITS_OFFSET, i)) {
+                assertEquals(i, index.select1(access, store, BITS_OFFSET, indexOffset, rank));
+                rank++;
+            }
+        }
+        assertEquals(rank, index.rank1(access, store, BITS_OFFSET, indexOffset, SIZE));
+        assertEquals(rank, index.cardinality(access, store, indexOffset));
+        assertEquals(frame.cardinality(access, store, BITS_OFFSET), rank);
+        assertEquals(NOT_FOUND, index.select1(access, store, BITS_OFFSET, indexOffset, rank));
+        assertEquals(NOT_FOUND, index.select1(access, store, BITS_OFFSET, indexOffset, -1));
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.bitset;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static net.openhft.chronicle.algo.bitset.BitSetFrame.NOT_FOUND;
+import static org.junit.Assert.*;
+
+@RunWith(value = Parameterized.class)
+public class StripedBitSetFrameTest {
+
+    private final StripedBitSetFrame frame;
+    private final SingleThreadedFlatBitSetFrame reference;
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private final Access<BytesStore> access = Access.checkedBytesStoreAccess();
+    private final BytesStore<?, ?> bits;
+    private final BytesStore<?, ?> referenceBits;
+
+    public StripedBitSetFrameTest(int stripes) {
+        frame = new StripedBitSetFrame(1000, stripes);
+        reference = new SingleThreadedFlatBitSetFrame(frame.logicalSize());
+        bits = BytesStore.wrap(ByteBuffer.allocateDirect((int) frame.sizeInBytes()));
+        referenceBits = BytesStore.wrap(ByteBuffer.allocateDirect((int) reference.sizeInBytes()));
+    }
+
+    @Parameterized.Parameters(name = "stripes={0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{{1}, {2}, {8}});
+    }
+
+    @Test
+    public void geometry() {
+        assertTrue(frame.logicalSize() >= 1000);
+        assertEquals(0, frame.sizeInBytes() % 64);
+        assertEquals(frame.sizeInBytes(), frame.algorithm().sizeInBytes(1000));
+        long max = frame.algorithm().maxLogicalSizeFittingSameSizeInBytes(1000);
+        assertEquals(frame.sizeInBytes(), new StripedBitSetFrame(max, frame.stripes()).sizeInBytes());
+    }
+
+    @Test
+    public void behavesLikeFlatBitSet() {
+        Random random = new Random(frame.stripes());
+        long size = frame.logicalSize();
+        for (int i = 0; i < 2000; i++) {
+            long a = random.nextInt((int) size);
+            long b = a + random.nextInt((int) (size - a) + 1);
+            switch (random.nextInt(10)) {
+                case 0:
+                    frame.set(access, bits, 0, a);
+                    reference.set(access, referenceBits, 0, a);
+                    break;
+                case 1:
+                    assertEquals(reference.clearIfSet(access, referenceBits, 0, a),
+                            frame.clearIfSet(access, bits, 0, a));
+                    break;
+                case 2:
+                    frame.flipRange(access, bits, 0, a, b);
+                    reference.flipRange(access, referenceBits, 0, a, b);
+                    break;
+                case 3:
+                    frame.setRange(access, bits, 0, a, b);
+                    reference.setRange(access, referenceBits, 0, a, b);
+                    break;
+                case 4:
+                    frame.clearRange(access, bits, 0, a, b);
+                    reference.clearRange(access, referenceBits, 0, a, b);
+                    break;
+                case 5:
+                    assertEquals(reference.setNextClearBit(access, referenceBits, 0, a),
+                            frame.setNextClearBit(access, bits, 0, a));
+                    break;
+                case 6: {
+                    int n = 1 + random.nextInt(100);
+                    assertEquals(reference.setNextNContinuousClearBits(access, referenceBits, 0, a, n),
+                            frame.setNextNContinuousClearBits(access, bits, 0, a, n));
+                    break;
+                }
+                case 7: {
+                    // the flat frame searches backwards for at most 64 bits
+                    int n = 1 + random.nextInt(64);
+                    assertEquals(
+                            reference.setPreviousNContinuousClearBits(access, referenceBits, 0, a, n),
+                            frame.setPreviousNContinuousClearBits(access, bits, 0, a, n));
+                    break;
+                }
+                case 8: {
+                    // the flat frame clears runs of at most 64 bits
+                    int n = 1 + random.nextInt(64);
+                    assertEquals(reference.clearNextNContinuousSetBits(access, referenceBits, 0, a, n),
+                            frame.clearNextNContinuousSetBits(access, bits, 0, a, n));
+                    break;
+                }
+                default: {
+                    int n = 1 + random.nextInt(64);
+                    assertEquals(
+                            reference.clearPreviousNContinuousSetBits(access, referenceBits, 0, a, n),
+                            frame.clearPreviousNContinuousSetBits(access, bits, 0, a, n));
+                    break;
+                }
+            }
+            assertEquals(reference.cardinality(access, referenceBits, 0),
+                    frame.cardinality(access, bits, 0));
+            assertEquals(reference.nextSetBit(access, referenceBits, 0, a),
+                    frame.nextSetBit(access, bits, 0, a));
+            assertEquals(reference.nextClearBit(access, referenceBits, 0, a),
+                    frame.nextClearBit(access, bits, 0, a));
+            assertEquals(reference.previousSetBit(access, referenceBits, 0, b),
+                    frame.previousSetBit(access, bits, 0, b));
+            assertEquals(reference.previousClearBit(access, referenceBits, 0, b),
+                    frame.previousClearBit(access, bits, 0, b));
+            assertEquals(reference.isRangeSet(access, referenceBits, 0, a, b),
+                    frame.isRangeSet(access, bits, 0, a, b));
+            assertEquals(reference.isRangeClear(access, referenceBits, 0, a, b),
+                    frame.isRangeClear(access, bits, 0, a, b));
+        }
+        for (long i = 0; i < size; i++)
+            assertEquals(reference.get(access, referenceBits, 0, i), frame.get(access, bits, 0, i));
+        BitSetFrame.Bits expected = reference.setBits().reset(access, referenceBits, 0);
+        BitSetFrame.Bits actual = frame.setBits().reset(access, bits, 0);
+        long index;
+        do {
+            index = expected.next(access, referenceBits, 0);
+            assertEquals(index, actual.next(access, bits, 0));
+        } while (index != NOT_FOUND);
+    }
+
+    @Test
+    public void consecutiveIndexesAreInDifferentCacheLines() {
+        if (frame.stripes() == 1)
+            return;
+        frame.clearAll(access, bits, 0);
+        frame.set(access, bits, 0, 0);
+        frame.set(access, bits, 0, 1);
+        // the first long of the first and the second stripes
+        assertEquals(1L, bits.readLong(0));
+        assertEquals(1L, bits.readLong(frame.sizeInBytes() / frame.stripes()));
+    }
+
+    @Test
+    public void clearContinuousRangesAcrossStripes() {
+        frame.clearAll(access, bits, 0);
+        // consecutive indexes are in different stripes, the run crosses the stripe boundaries
+        frame.setRange(access, bits, 0, 3, 40);
+        frame.clear(access, bits, 0, 10);
+        assertEquals(11, frame.clearNextNContinuousSetBits(access, bits, 0, 0, 20));
+        assertTrue(frame.isRangeClear(access, bits, 0, 11, 31));
+        assertTrue(frame.isRangeSet(access, bits, 0, 3, 10));
+        assertTrue(frame.isRangeSet(access, bits, 0, 31, 40));
+        assertEquals(NOT_FOUND, frame.clearNextNContinuousSetBits(access, bits, 0, 0, 10));
+
+        assertEquals(33, frame.clearPreviousNContinuousSetBits(access, bits, 0, 39, 7));
+        assertTrue(frame.isRangeClear(access, bits, 0, 33, 40));
+        assertEquals(3, frame.clearPreviousNContinuousSetBits(access, bits, 0, 20, 7));
+        assertTrue(frame.isRangeClear(access, bits, 0, 3, 10));
+        assertEquals(2, frame.cardinality(access, bits, 0));
+        assertEquals(NOT_FOUND, frame.clearPreviousNContinuousSetBits(access, bits, 0, 32, 3));
+    }
+
+    @Test
+    public void concurrentReleasesNeverOverlap() throws Exception {
+        frame.setAll(access, bits, 0);
+        int threads = 4;
+        int n = 3;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    List<Long> mine = new ArrayList<>();
+                    long start;
+                    while ((start = frame.clearNextNContinuousSetBits(access, bits, 0, 0, n)) !=
+                            NOT_FOUND) {
+                        for (long i = start; i < start + n; i++)
+                            mine.add(i);
+                    }
+                    return mine;
+                }));
+            }
+            Set<Long> all = new HashSet<>();
+            for (Future<List<Long>> future : futures) {
+                for (Long index : future.get(30, TimeUnit.SECONDS))
+                    assertTrue("index " + index + " released twice", all.add(index));
+            }
+            assertEquals(frame.logicalSize() - frame.cardinality(access, bits, 0), all.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentAllocationsNeverOverlap() throws Exception {
+        frame.clearAll(access, bits, 0);
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    List<Long> mine = new ArrayList<>();
+                    long index;
+                    while ((index = frame.setNextClearBit(access, bits, 0, 0)) != NOT_FOUND)
+                        mine.add(index);
+                    return mine;
+                }));
+            }
+            Set<Long> all = new HashSet<>();
+            for (Future<List<Long>> future : futures) {
+                for (Long index : future.get(30, TimeUnit.SECONDS))
+                    assertTrue("index " + index + " allocated twice", all.add(index));
+            }
+            assertEquals(frame.logicalSize(), all.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(value = Parameterized.class)
+public class AccessAtomicsTest {
+
+    private static final ByteBuffer NATIVE_MEMORY = ByteBuffer.allocateDirect(64);
+
+    private final Access<Object> access;
+    private final Object handle;
+    private final long offset;
+
+    @SuppressWarnings("unchecked")
+    public AccessAtomicsTest(String name, Access<?> access, Object handle, long offset) {
+        this.access = (Access<Object>) access;
+        this.handle = handle;
+        this.offset = offset;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+                {"native", Access.nativeAccess(), null, MEMORY.address(NATIVE_MEMORY) + 8},
+                {"bytesStore", Access.checkedBytesStoreAccess(),
+                        BytesStore.wrap(ByteBuffer.allocateDirect(64)), 8L},
+                {"nativeOrderByteBuffer", Access.checkedByteBufferAccess(),
+                        ByteBuffer.allocate(64).order(ByteOrder.nativeOrder()), 8L},
+                {"bigEndianByteBuffer", Access.checkedByteBufferAccess(),
+                        ByteBuffer.allocateDirect(64).order(ByteOrder.BIG_ENDIAN), 8L},
+                {"littleEndianByteBuffer", Access.checkedByteBufferAccess(),
+                        ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN), 8L},
+        });
+    }
+
+    @Test
+    public void longOperations() {
+        access.writeOrderedLong(handle, offset, 10L);
+        assertEquals(10L, access.getAndAddLong(handle, offset, 5L));
+        assertEquals(12L, access.addAndGetLong(handle, offset, -3L));
+        assertEquals(12L, access.getAndSetLong(handle, offset, 0b1100L));
+        assertEquals(0b1100L, access.getAndBitwiseOrLong(handle, offset, 0b0011L));
+        assertEquals(0b1111L, access.getAndBitwiseAndLong(handle, offset, 0b0110L));
+        assertEquals(0b0110L, access.getAndBitwiseXorLong(handle, offset, -1L));
+        assertEquals(~0b0110L, access.readVolatileLong(handle, offset));
+    }
+
+    @Test
+    public void intOperations() {
+        access.writeOrderedInt(handle, offset, 10);
+        assertEquals(10, access.getAndAddInt(handle, offset, 5));
+        assertEquals(12, access.addAndGetInt(handle, offset, -3));
+        assertEquals(12, access.getAndSetInt(handle, offset, 0b1100));
+        assertEquals(0b1100, access.getAndBitwiseOrInt(handle, offset, 0b0011));
+        assertEquals(0b1111, access.getAndBitwiseAndInt(handle, offset, 0b0110));
+        assertEquals(0b0110, access.getAndBitwiseXorInt(handle, offset, -1));
+        assertEquals(~0b0110, access.readVolatileInt(handle, offset));
+    }
+
+    @Test
+    public void concurrentAddsAreNotLost() throws Exception {
+        access.writeOrderedLong(handle, offset, 0L);
+        int threads = 4, adds = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                futures[t] = executor.submit(() -> {
+                    for (int i = 0; i < adds; i++)
+                        access.getAndAddLong(handle, offset, 1L);
+                });
+            }
+            for (Future<?> future : futures)
+                future.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals((long) threads * adds, access.readVolatileLong(handle, offset));
+    }
+}
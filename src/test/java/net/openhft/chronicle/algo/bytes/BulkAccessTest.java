@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+import static org.junit.Assert.*;
+
+@RunWith(value = Parameterized.class)
+public class BulkAccessTest {
+
+    private static final int SIZE = 300;
+    private static final List<ByteBuffer> NATIVE_MEMORY = new ArrayList<>();
+
+    private final Region source;
+    private final Region target;
+
+    public BulkAccessTest(String name, Region source, Region target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        List<Object[]> data = new ArrayList<>();
+        String[] kinds = {"native", "array", "heapBuffer", "directBuffer", "directStore", "heapStore"};
+        for (String from : kinds) {
+            for (String to : kinds)
+                data.add(new Object[]{from + "->" + to, region(from), region(to)});
+        }
+        return data;
+    }
+
+    private static Region region(String kind) {
+        switch (kind) {
+            case "native": {
+                ByteBuffer memory = ByteBuffer.allocateDirect(SIZE);
+                NATIVE_MEMORY.add(memory);
+                return new Region(Access.nativeAccess(), null, MEMORY.address(memory));
+            }
+            case "array":
+                return new Region(Access.nativeAccess(), new byte[SIZE], ArrayAccessors.BYTE_BASE);
+            case "heapBuffer":
+                return new Region(Access.checkedByteBufferAccess(), ByteBuffer.allocate(SIZE), 0);
+            case "directBuffer":
+                return new Region(Access.checkedByteBufferAccess(), ByteBuffer.allocateDirect(SIZE), 0);
+            case "directStore":
+                return new Region(Access.checkedBytesStoreAccess(),
+                        BytesStore.wrap(ByteBuffer.allocateDirect(SIZE)), 0);
+            default:
+                return new Region(Access.checkedBytesStoreAccess(),
+                        BytesStore.wrap(new byte[SIZE]), 0);
+        }
+    }
+
+    @Test
+    public void copyThenMismatch() {
+        Random random = new Random(0);
+        for (int i = 0; i < SIZE; i++)
+            source.access.writeByte(source.handle, source.offset + i, (byte) random.nextInt());
+        target.access.zeroOut(target.handle, target.offset, SIZE);
+        for (int len : new int[]{0, 1, 7, 8, 9, 64, 255}) {
+            int from = 3;
+            Access.copy(source.access, source.handle, source.offset + from,
+                    target.access, target.handle, target.offset + from, len);
+            assertEquals(-1L, Access.mismatch(source.access, source.handle, source.offset + from,
+                    target.access, target.handle, target.offset + from, len));
+            assertTrue(Access.equivalent(source.access, source.handle, source.offset + from,
+                    target.access, target.handle, target.offset + from, len));
+        }
+        for (int index : new int[]{0, 5, 8, 63, 100, 257}) {
+            byte b = target.access.readByte(target.handle, target.offset + index);
+            Access.copy(source.access, source.handle, source.offset,
+                    target.access, target.handle, target.offset, SIZE);
+            target.access.writeByte(target.handle, target.offset + index, (byte) ~b);
+            assertEquals(index, Access.mismatch(source.access, source.handle, source.offset,
+                    target.access, target.handle, target.offset, SIZE));
+            assertFalse(Access.equivalent(source.access, source.handle, source.offset,
+                    target.access, target.handle, target.offset, SIZE));
+            assertEquals(-1L, Access.mismatch(source.access, source.handle, source.offset,
+                    target.access, target.handle, target.offset, index));
+        }
+    }
+
+    @Test
+    public void compareIsUnsignedLexicographic() {
+        Random random = new Random(1);
+        byte[] bytes1 = new byte[SIZE], bytes2 = new byte[SIZE];
+        for (int i = 0; i < 1000; i++) {
+            int len1 = random.nextInt(40), len2 = random.nextInt(40);
+            // mostly equal prefixes, to differ in any position of a long or in the tail
+            random.nextBytes(bytes1);
+            System.arraycopy(bytes1, 0, bytes2, 0, SIZE);
+            if (random.nextInt(4) != 0)
+                bytes2[random.nextInt(40)] = (byte) random.nextInt();
+            for (int j = 0; j < 40; j++) {
+                source.access.writeByte(source.handle, source.offset + j, bytes1[j]);
+                target.access.writeByte(target.handle, target.offset + j, bytes2[j]);
+            }
+            int expected = Integer.signum(compareUnsigned(bytes1, len1, bytes2, len2));
+            assertEquals(expected, Integer.signum(Access.compare(
+                    source.access, source.handle, source.offset, len1,
+                    target.access, target.handle, target.offset, len2)));
+        }
+    }
+
+    @Test
+    public void binarySearchOverKeyBlock() {
+        int keySize = 12, keys = SIZE / keySize;
+        Random random = new Random(2);
+        long[] sorted = random.longs(keys).sorted().toArray();
+        for (int k = 0; k < keys; k++) {
+            // big-endian, sign bit flipped, and 4 trailing bytes, for unsigned byte order
+            long key = sorted[k] ^ Long.MIN_VALUE;
+            for (int b = 0; b < 8; b++) {
+                source.access.writeByte(source.handle, source.offset + k * keySize + b,
+                        (byte) (key >>> (56 - b * 8)));
+            }
+            source.access.writeInt(source.handle, source.offset + k * keySize + 8, k);
+        }
+        for (int k = 0; k < keys; k++) {
+            Access.copy(source.access, source.handle, source.offset + k * keySize,
+                    target.access, target.handle, target.offset, keySize);
+            int low = 0, high = keys - 1, found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = Access.compare(source.access, source.handle, source.offset + mid * keySize,
+                        keySize, target.access, target.handle, target.offset, keySize);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    found = mid;
+                    break;
+                }
+            }
+            assertEquals(k, found);
+        }
+    }
+
+    private static int compareUnsigned(byte[] bytes1, int len1, byte[] bytes2, int len2) {
+        for (int i = 0; i < Math.min(len1, len2); i++) {
+            int cmp = (bytes1[i] & 0xFF) - (bytes2[i] & 0xFF);
+            if (cmp != 0)
+                return cmp;
+        }
+        return len1 - len2;
+    }
+
+    @Test
+    public void fill() {
+        target.access.writeBytes(target.handle, target.offset, SIZE, (byte) 1);
+        target.access.writeBytes(target.handle, target.offset + 5, 250, (byte) 0x7F);
+        target.access.zeroOut(target.handle, target.offset + 100, 11);
+        for (int i = 0; i < SIZE; i++) {
+            byte expected = i < 5 || i >= 255 ? 1 : i >= 100 && i < 111 ? 0 : (byte) 0x7F;
+            assertEquals(expected, target.access.readByte(target.handle, target.offset + i));
+        }
+    }
+
+    static final class Region {
+        final Access<Object> access;
+        final Object handle;
+        final long offset;
+
+        @SuppressWarnings("unchecked")
+        Region(Access<?> access, Object handle, long offset) {
+            this.access = (Access<Object>) access;
+            this.handle = handle;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+
+import static org.junit.Assert.*;
+
+public class ByteBufferAccessTest {
+
+    private final Access<ByteBuffer> access = Access.checkedByteBufferAccess();
+
+    @Test
+    public void atomicOperationsUseBufferOrder() {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            for (ByteBuffer buffer : new ByteBuffer[]{
+                    ByteBuffer.allocate(32).order(order), ByteBuffer.allocateDirect(32).order(order)}) {
+                access.writeOrderedLong(buffer, 8, 0x0102030405060708L);
+                assertEquals(0x0102030405060708L, buffer.getLong(8));
+                assertEquals(0x0102030405060708L, access.readVolatileLong(buffer, 8));
+                assertFalse(access.compareAndSwapLong(buffer, 8, 0, 1));
+                assertTrue(access.compareAndSwapLong(buffer, 8, 0x0102030405060708L, -2L));
+                assertEquals(-2L, buffer.getLong(8));
+
+                access.writeOrderedInt(buffer, 4, 0x01020304);
+                assertEquals(0x01020304, buffer.getInt(4));
+                assertEquals(0x01020304, access.readVolatileInt(buffer, 4));
+                assertTrue(access.compareAndSwapInt(buffer, 4, 0x01020304, 0x05060708));
+                assertEquals(0x05060708, buffer.getInt(4));
+            }
+        }
+    }
+
+    @Test
+    public void heapBufferSliceIsAccessedFromItsArrayOffset() {
+        ByteBuffer array = ByteBuffer.allocate(32);
+        array.position(8);
+        ByteBuffer slice = array.slice();
+        assertTrue(access.compareAndSwapLong(slice, 0, 0, 42));
+        assertEquals(42, array.getLong(8));
+        assertEquals(42, access.readVolatileLong(slice, 0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void casBeyondLimitThrows() {
+        access.compareAndSwapLong(ByteBuffer.allocateDirect(16), 12, 0, 1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void volatileReadAtNegativeOffsetThrows() {
+        access.readVolatileInt(ByteBuffer.allocate(16), -4);
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void orderedWriteToReadOnlyBufferThrows() {
+        access.writeOrderedInt(ByteBuffer.allocateDirect(16).asReadOnlyBuffer(), 0, 1);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import net.openhft.chronicle.algo.bitset.ConcurrentFlatBitSetFrame;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CheckedAccessTest {
+
+    private final BytesStore<?, ?> store = BytesStore.nativeStoreWithFixedCapacity(64);
+    private final long address = store.addressForRead(0);
+    private final Access<Object> access = new CheckedAccess<>(Access.nativeAccess(), address, 64);
+
+    @After
+    public void tearDown() {
+        store.releaseLast();
+    }
+
+    @Test
+    public void accessesWithinTheRegionAreDelegated() {
+        access.writeLong(null, address + 56, 42L);
+        assertEquals(42L, Access.nativeAccess().readLong(null, address + 56));
+        assertEquals(42L, access.getAndAddLong(null, address + 56, 1L));
+        assertTrue(access.compareAndSwapInt(null, address, 0, 1));
+        access.writeBytes(null, address, 64, (byte) 0);
+        ConcurrentFlatBitSetFrame frame = new ConcurrentFlatBitSetFrame(512);
+        frame.setRange(access, null, address, 0, 512);
+        assertEquals(512, frame.cardinality(access, null, address));
+    }
+
+    @Test
+    public void accessesOutOfTheRegionThrow() {
+        long[] offsets = {address - 1, address + 57, address + 64, Long.MAX_VALUE};
+        for (long offset : offsets) {
+            try {
+                access.readLong(null, offset);
+                fail("offset " + offset + " is out of the region");
+            } catch (IndexOutOfBoundsException expected) {
+                // expected
+            }
+        }
+        try {
+            access.writeBytes(null, address + 1, 64, (byte) 0);
+            fail("range is out of the region");
+        } catch (IndexOutOfBoundsException expected) {
+            // expected
+        }
+        try {
+            Access.copy(access, null, address, access, null, address + 8, 64);
+            fail("range is out of the region");
+        } catch (IndexOutOfBoundsException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void wrapReturnsTheDelegateUnlessEnabled() {
+        Access<Object> wrapped = CheckedAccess.wrap(Access.nativeAccess(), address, 64);
+        assertEquals(CheckedAccess.enabled(), wrapped instanceof CheckedAccess);
+        if (!CheckedAccess.enabled())
+            assertSame(Access.nativeAccess(), wrapped);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import net.openhft.chronicle.algo.bitset.ConcurrentFlatBitSetFrame;
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.algo.locks.TicketLockingStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+
+import static org.junit.Assert.*;
+
+public class MappedRegionTest {
+
+    private final Access<MappedRegion> access = MappedRegion.access();
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("mapped-region", ".dat");
+    }
+
+    @After
+    public void tearDown() {
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void writesAreVisibleThroughNativeAccessAndAfterRemapping() throws IOException {
+        try (MappedRegion region = MappedRegion.map(file, 10_000, false)) {
+            assertEquals(10_000, file.length());
+            region.prefault(3);
+            access.writeLong(region, 8, 42L);
+            assertEquals(42L, Access.nativeAccess().readLong(null, region.address() + 8));
+            assertTrue(access.compareAndSwapLong(region, 8, 42L, 43L));
+            access.writeBytes(region, 9_000, 1_000, (byte) 7);
+        }
+        try (MappedRegion region = MappedRegion.map(file, 10_000, true)) {
+            region.prefault(2);
+            assertTrue(region.isReadOnly());
+            assertEquals(43L, access.readLong(region, 8));
+            assertEquals(7, access.readByte(region, 9_999));
+            assertEquals(
+                    LongHashFunction.city_1_1().hashMemory(region.address(), 10_000),
+                    LongHashFunction.city_1_1().hash(region, access, 0, 10_000));
+        }
+    }
+
+    @Test
+    public void sharedStructuresWorkOverTheRegion() throws IOException {
+        ConcurrentFlatBitSetFrame frame = new ConcurrentFlatBitSetFrame(1024);
+        TicketLockingStrategy lock = TicketLockingStrategy.instance();
+        try (MappedRegion region = MappedRegion.map(file, 8 + frame.sizeInBytes(), false)) {
+            lock.reset(access, region, 0);
+            lock.lock(access, region, 0);
+            frame.clearAll(access, region, 8);
+            assertEquals(0, frame.setNextClearBit(access, region, 8, 0));
+            assertEquals(1, frame.setNextClearBit(access, region, 8, 0));
+            lock.unlock(access, region, 0);
+            assertEquals(2, frame.cardinality(Access.nativeAccess(), null, region.address() + 8));
+        }
+    }
+
+    @Test
+    public void accessIsBoundsChecked() throws IOException {
+        try (MappedRegion region = MappedRegion.map(file, 64, false)) {
+            try {
+                access.readLong(region, 60);
+                fail("out of the region");
+            } catch (IndexOutOfBoundsException expected) {
+                // expected
+            }
+            try {
+                access.writeBytes(region, -1, 2, (byte) 0);
+                fail("out of the region");
+            } catch (IndexOutOfBoundsException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void readOnlyRegionRejectsWrites() throws IOException {
+        try (MappedRegion region = MappedRegion.map(file, 64, false)) {
+            assertFalse(region.isReadOnly());
+        }
+        try (MappedRegion region = MappedRegion.map(file, 64, true)) {
+            access.writeInt(region, 0, 1);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedRegionRejectsAccess() throws IOException {
+        MappedRegion region = MappedRegion.map(file, 64, false);
+        region.close();
+        region.close();
+        access.readInt(region, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readOnlyFileShouldBeLongEnough() throws IOException {
+        MappedRegion.map(file, 64, true);
+    }
+}
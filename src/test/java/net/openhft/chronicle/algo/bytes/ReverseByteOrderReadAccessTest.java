@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.junit.Assert.*;
+
+public class ReverseByteOrderReadAccessTest {
+
+    private final Access<ByteBuffer> access = Access.checkedByteBufferAccess();
+
+    @Test
+    public void viewReadsBufferInRequestedOrder() {
+        for (ByteOrder bufferOrder : new ByteOrder[]{BIG_ENDIAN, LITTLE_ENDIAN}) {
+            ByteBuffer buffer = ByteBuffer.allocate(16).order(bufferOrder);
+            buffer.putLong(0, 0x0102030405060708L).putLong(8, 0x090A0B0C0D0E0F10L);
+            for (ByteOrder order : new ByteOrder[]{BIG_ENDIAN, LITTLE_ENDIAN}) {
+                ReadAccess<ByteBuffer> view = access.byteOrder(buffer, order);
+                ByteBuffer expected = buffer.duplicate().order(order);
+                assertEquals(order, view.byteOrder(buffer));
+                for (int offset = 0; offset <= 8; offset++) {
+                    assertEquals(expected.getLong(offset), view.readLong(buffer, offset));
+                    assertEquals(expected.getInt(offset), view.readInt(buffer, offset));
+                    assertEquals(expected.getInt(offset) & 0xFFFFFFFFL,
+                            view.readUnsignedInt(buffer, offset));
+                    assertEquals(expected.getShort(offset), view.readShort(buffer, offset));
+                    assertEquals(expected.getShort(offset) & 0xFFFF,
+                            view.readUnsignedShort(buffer, offset));
+                    assertEquals(expected.getChar(offset), view.readChar(buffer, offset));
+                    assertEquals(expected.get(offset), view.readByte(buffer, offset));
+                    assertEquals(expected.getDouble(offset), view.readDouble(buffer, offset), 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void viewInOwnOrderIsTheAccess() {
+        ByteBuffer buffer = ByteBuffer.allocate(8).order(BIG_ENDIAN);
+        assertSame(access, access.byteOrder(buffer, BIG_ENDIAN));
+        ReadAccess<ByteBuffer> reverse = access.byteOrder(buffer, LITTLE_ENDIAN);
+        assertSame(reverse, access.reverseByteOrder());
+        assertSame(access, reverse.reverseByteOrder());
+        assertSame(reverse, reverse.byteOrder(buffer, LITTLE_ENDIAN));
+        assertSame(access, reverse.byteOrder(buffer, BIG_ENDIAN));
+    }
+
+    @Test
+    public void volatileReadsAreReversed() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16).order(ByteOrder.nativeOrder());
+        access.writeOrderedLong(buffer, 0, 0x0102030405060708L);
+        access.writeOrderedInt(buffer, 8, 0x01020304);
+        ReadAccess<ByteBuffer> reverse = access.reverseByteOrder();
+        assertEquals(0x0807060504030201L, reverse.readVolatileLong(buffer, 0));
+        assertEquals(0x04030201, reverse.readVolatileInt(buffer, 8));
+    }
+
+    @Test
+    public void nativeViewOfArray() {
+        byte[] bytes = {1, 2, 3, 4, 5, 6, 7, 8};
+        Access<byte[]> nativeAccess = Access.nativeAccess();
+        long base = ArrayAccessors.BYTE_BASE;
+        assertEquals(0x0102030405060708L,
+                nativeAccess.byteOrder(bytes, BIG_ENDIAN).readLong(bytes, base));
+        assertEquals(0x0807060504030201L,
+                nativeAccess.byteOrder(bytes, LITTLE_ENDIAN).readLong(bytes, base));
+    }
+}
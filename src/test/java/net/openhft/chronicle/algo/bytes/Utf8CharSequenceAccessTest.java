@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class Utf8CharSequenceAccessTest {
+
+    private static final String ASCII = "The quick brown fox jumps over the lazy dog 0123456789";
+
+    private static void assertReadsBytes(CharSequence input) {
+        byte[] bytes = input.toString().getBytes(UTF_8);
+        ByteBuffer expected = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        ReadAccess<CharSequence> access = ReadAccess.asciiCharSequenceAccess();
+        for (int offset = 0; offset < bytes.length; offset++) {
+            assertEquals(bytes[offset], access.readByte(input, offset));
+            if (offset + 2 <= bytes.length)
+                assertEquals(expected.getShort(offset), access.readShort(input, offset));
+            if (offset + 4 <= bytes.length) {
+                assertEquals(expected.getInt(offset), access.readInt(input, offset));
+                assertEquals(expected.getInt(offset) & 0xFFFFFFFFL,
+                        access.readUnsignedInt(input, offset));
+            }
+            if (offset + 8 <= bytes.length)
+                assertEquals(expected.getLong(offset), access.readLong(input, offset));
+        }
+    }
+
+    @Test
+    public void readsUtf8BytesOfAsciiSequences() {
+        assertReadsBytes(ASCII);
+        assertReadsBytes(new StringBuilder(ASCII));
+        assertReadsBytes(new String(ASCII.toCharArray(), 3, 20));
+    }
+
+    private static <T> void assertAccessorReadsBytes(String input, int off,
+                                                     Accessor.Read<String, T> accessor) {
+        byte[] bytes = input.substring(off).getBytes(UTF_8);
+        ByteBuffer expected = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        ReadAccess<T> access = accessor.access().byteOrder(accessor.handle(input),
+                ByteOrder.LITTLE_ENDIAN);
+        T handle = accessor.handle(input);
+        assertEquals(bytes.length, accessor.size(input.length() - off));
+        for (int index = 0; index < bytes.length; index++) {
+            long offset = accessor.offset(input, off + index);
+            assertEquals(bytes[index], access.readByte(handle, offset));
+            if (index + 2 <= bytes.length)
+                assertEquals(expected.getShort(index), access.readShort(handle, offset));
+            if (index + 4 <= bytes.length)
+                assertEquals(expected.getInt(index), access.readInt(handle, offset));
+            if (index + 8 <= bytes.length)
+                assertEquals(expected.getLong(index), access.readLong(handle, offset));
+        }
+    }
+
+    @Test
+    public void stringAccessorReadsUtf8Bytes() {
+        // the ASCII chars of a UTF-16 string, which is not compact because of the first char
+        String utf16 = '\u20AC' + ASCII;
+        assertAccessorReadsBytes(ASCII, 0, Accessor.asciiStringAccessor(ASCII));
+        assertAccessorReadsBytes(utf16, 1, Accessor.asciiStringAccessor(utf16));
+        if (Utf8CharSequenceAccess.coder(utf16) >= 0) {
+            assertSame(Utf8StringAccessor.LATIN1, Accessor.asciiStringAccessor(ASCII));
+            assertSame(Utf8StringAccessor.UTF16, Accessor.asciiStringAccessor(utf16));
+        }
+        assertAccessorReadsBytes(ASCII, 0, Utf8StringAccessor.CHARS);
+        assertAccessorReadsBytes(utf16, 1, Utf8StringAccessor.CHARS);
+    }
+
+    @Test
+    public void isAscii() {
+        assertTrue(Access.isAscii(ASCII, 0, ASCII.length()));
+        assertTrue(Access.isAscii("", 0, 0));
+        for (String s : new String[]{ASCII + '\u00E9', ASCII + '\u20AC'}) {
+            assertFalse(s, Access.isAscii(s, 0, s.length()));
+            assertFalse(s, Access.isAscii(new StringBuilder(s), 0, s.length()));
+            assertTrue(s, Access.isAscii(s, 0, s.length() - 1));
+            assertFalse(s, Access.isAscii(s, s.length() - 1, 1));
+        }
+        try {
+            Access.isAscii(ASCII, 1, ASCII.length());
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void encodesLikeStringGetBytes() {
+        String[] inputs = {
+                "", ASCII, "caf\u00E9", "\u20AC 100", ASCII + "\u00FF\u0100\u07FF\u0800\uFFFF",
+                "\uD83D\uDE00 smile", "unpaired \uD83D high", "unpaired \uDE00 low", "end \uD83D",
+                "\uDE00\uD83D"
+        };
+        for (String input : inputs) {
+            byte[] expected = input.getBytes(UTF_8);
+            byte[] dst = new byte[input.length() * 3 + 2];
+            int end = Access.encodeUtf8(input, 0, input.length(), dst, 2);
+            assertArrayEquals(input, expected, Arrays.copyOfRange(dst, 2, end));
+            end = Access.encodeUtf8(new StringBuilder(input), 0, input.length(), dst, 0);
+            assertArrayEquals(input, expected, Arrays.copyOf(dst, end));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void encodeChecksDestinationSize() {
+        Access.encodeUtf8(ASCII, 0, ASCII.length(), new byte[ASCII.length()], 0);
+    }
+}
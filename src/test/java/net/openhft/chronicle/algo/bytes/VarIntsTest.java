@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(value = Parameterized.class)
+public class VarIntsTest {
+
+    private static final int SIZE = 16 * 1024;
+
+    private final Access<Object> access;
+    private final Object handle;
+
+    @SuppressWarnings("unchecked")
+    public VarIntsTest(String name, Access<?> access, Object handle) {
+        this.access = (Access<Object>) access;
+        this.handle = handle;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+                {"array", Access.nativeAccess(), new byte[SIZE]},
+                {"bigEndianBuffer", Access.checkedByteBufferAccess(),
+                        ByteBuffer.allocate(SIZE).order(ByteOrder.BIG_ENDIAN)},
+                {"littleEndianBuffer", Access.checkedByteBufferAccess(),
+                        ByteBuffer.allocateDirect(SIZE).order(ByteOrder.LITTLE_ENDIAN)},
+                {"bytesStore", Access.checkedBytesStoreAccess(), BytesStore.wrap(new byte[SIZE])},
+        });
+    }
+
+    private long offset(long index) {
+        return handle instanceof byte[] ? ArrayAccessors.BYTE_BASE + index : index;
+    }
+
+    private static long[] values() {
+        List<Long> values = new ArrayList<>();
+        for (int bits = 0; bits < 64; bits++) {
+            long power = 1L << bits;
+            values.addAll(Arrays.asList(power - 1, power, power + 1, -power, -power - 1));
+        }
+        Random random = new Random(0);
+        for (int i = 0; i < 500; i++)
+            values.add(random.nextLong() >> random.nextInt(64));
+        values.add(Long.MAX_VALUE);
+        values.add(Long.MIN_VALUE);
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Test
+    public void unsignedRoundTrip() {
+        long[] values = values();
+        long position = 0;
+        for (long value : values) {
+            int size = access.writeVarLong(handle, offset(position), value);
+            assertEquals(Access.varLongSize(value), size);
+            position += size;
+        }
+        long end = position;
+        position = 0;
+        for (long value : values) {
+            assertEquals(value, access.readVarLong(handle, offset(position)));
+            assertEquals(value, access.readVarLong(handle, offset(position), offset(end)));
+            position += Access.varLongSize(value);
+        }
+    }
+
+    @Test
+    public void signedRoundTrip() {
+        long[] values = values();
+        long position = 0;
+        for (long value : values) {
+            int size = access.writeSignedVarLong(handle, offset(position), value);
+            assertEquals(Access.signedVarLongSize(value), size);
+            position += size;
+        }
+        long end = position;
+        position = 0;
+        for (long value : values) {
+            assertEquals(value, access.readSignedVarLong(handle, offset(position)));
+            assertEquals(value, access.readSignedVarLong(handle, offset(position), offset(end)));
+            position += Access.signedVarLongSize(value);
+        }
+    }
+
+    @Test
+    public void sizes() {
+        assertEquals(1, Access.varLongSize(0));
+        assertEquals(1, Access.varLongSize(127));
+        assertEquals(2, Access.varLongSize(128));
+        assertEquals(9, Access.varLongSize(Long.MAX_VALUE));
+        assertEquals(10, Access.varLongSize(-1));
+        assertEquals(1, Access.signedVarLongSize(-64));
+        assertEquals(2, Access.signedVarLongSize(64));
+        assertEquals(10, Access.signedVarLongSize(Long.MIN_VALUE));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unterminatedValueIsRejected() {
+        access.writeBytes(handle, offset(0), 16, (byte) 0x80);
+        access.readVarLong(handle, offset(0), offset(16));
+    }
+}
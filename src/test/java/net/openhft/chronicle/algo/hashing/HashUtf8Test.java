@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.hashing;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(Parameterized.class)
+public class HashUtf8Test {
+
+    private final LongHashFunction f;
+
+    public HashUtf8Test(String name, LongHashFunction f) {
+        this.f = f;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(
+                new Object[]{"city", LongHashFunction.city_1_1()},
+                new Object[]{"murmur", LongHashFunction.murmur_3()},
+                new Object[]{"xx", LongHashFunction.xx_r39()},
+                new Object[]{"xx seeded", LongHashFunction.xx_r39(42L)});
+    }
+
+    private void assertHashesBytes(String s) {
+        long expected = f.hashBytes(s.getBytes(UTF_8));
+        assertEquals(s, expected, f.hashUtf8(s));
+        assertEquals(s, expected, f.hashUtf8(new StringBuilder(s)));
+        String padded = "\u20AC" + s + "\u20AC";
+        assertEquals(s, expected, f.hashUtf8(padded, 1, s.length()));
+    }
+
+    @Test
+    public void hashUtf8EqualsHashOfEncodedBytes() {
+        Random random = new Random(1);
+        char[] alphabets = {'a', '\u00E9', '\u20AC', '\uD83D'};
+        for (int len = 0; len <= 200; len++) {
+            StringBuilder ascii = new StringBuilder();
+            StringBuilder mixed = new StringBuilder();
+            for (int i = 0; i < len; i++) {
+                ascii.append((char) (' ' + random.nextInt(95)));
+                char c = alphabets[random.nextInt(alphabets.length)];
+                mixed.append(c);
+                if (c == '\uD83D')
+                    mixed.append('\uDE00');
+            }
+            assertHashesBytes(ascii.toString());
+            assertHashesBytes(mixed.toString());
+        }
+    }
+
+    @Test
+    public void hashUtf8OfLongString() {
+        char[] chars = new char[100_000];
+        Arrays.fill(chars, '\u0416');
+        assertHashesBytes(new String(chars));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class AcquisitionStrategiesTest {
+
+    private final ReadWriteWithWaitsLockingStrategy strategy =
+            VanillaReadWriteWithWaitsLockingStrategy.instance();
+    private final Access<Object> access = Access.nativeAccess();
+    private final BytesStore<?, ?> store = BytesStore.nativeStoreWithFixedCapacity(8);
+    private final long address = store.addressForRead(0);
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        strategy.reset(access, null, address);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        store.releaseLast();
+    }
+
+    @Test
+    public void adaptiveAcquiresLockHeldForMilliseconds() throws Exception {
+        for (boolean learnWaitTime : new boolean[]{false, true}) {
+            AcquisitionStrategy<ReadWriteLockingStrategy, RuntimeException> acquisition =
+                    AcquisitionStrategies.adaptive(5, TimeUnit.SECONDS, learnWaitTime);
+            for (int i = 0; i < 5; i++) {
+                assertTrue(strategy.tryWriteLock(access, null, address));
+                Future<Boolean> reader = executor.submit(() -> acquisition.acquire(
+                        TryAcquireOperations.readLock(), strategy, access, null, address));
+                Thread.sleep(5);
+                strategy.writeUnlock(access, null, address);
+                assertTrue(reader.get(10, TimeUnit.SECONDS));
+                strategy.readUnlock(access, null, address);
+            }
+        }
+    }
+
+    @Test
+    public void adaptiveGivesUpAfterDuration() {
+        assertTrue(strategy.tryWriteLock(access, null, address));
+        AcquisitionStrategy<ReadWriteLockingStrategy, RuntimeException> acquisition =
+                AcquisitionStrategies.adaptive(20, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        assertFalse(acquisition.acquire(
+                TryAcquireOperations.readLock(), strategy, access, null, address));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void adaptiveOrFailThrows() {
+        assertTrue(strategy.tryWriteLock(access, null, address));
+        AcquisitionStrategies.<ReadWriteLockingStrategy>adaptiveOrFail(5, TimeUnit.MILLISECONDS)
+                .acquire(TryAcquireOperations.readLock(), strategy, access, null, address);
+    }
+
+    @Test
+    public void adaptiveRegisteringWaitDeregistersOnFailure() {
+        assertTrue(strategy.tryReadLock(access, null, address));
+        try {
+            AcquisitionStrategies.<ReadWriteWithWaitsLockingStrategy>
+                    adaptiveRegisteringWaitOrFail(5, TimeUnit.MILLISECONDS, true)
+                    .acquire(TryAcquireOperations.writeLockAndDeregisterWait(),
+                            strategy, access, null, address);
+            fail("the read lock is held");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        assertEquals(0, strategy.waitCount(strategy.getState(access, null, address)));
+        strategy.readUnlock(access, null, address);
+    }
+}
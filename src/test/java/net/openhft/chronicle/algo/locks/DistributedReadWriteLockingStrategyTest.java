@@ -0,0 +1,228 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class DistributedReadWriteLockingStrategyTest {
+
+    private final DistributedReadWriteLockingStrategy strategy =
+            new DistributedReadWriteLockingStrategy(8);
+    private final Access<Object> access = Access.nativeAccess();
+    private final BytesStore<?, ?> store =
+            BytesStore.nativeStoreWithFixedCapacity(strategy.sizeInBytes() + 64);
+    private final long address = store.addressForRead(0);
+    private final long dataAddress = address + strategy.sizeInBytes();
+
+    @Before
+    public void setUp() {
+        strategy.reset(access, null, address);
+        access.writeLong(null, dataAddress, 0L);
+    }
+
+    @After
+    public void release() {
+        store.releaseLast();
+    }
+
+    @Test
+    public void sizeReflectsSlots() {
+        assertEquals(64 + 8 * 64, strategy.sizeInBytes());
+        assertEquals(64 + 64, new DistributedReadWriteLockingStrategy(1).sizeInBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void slotsShouldBePowerOfTwo() {
+        new DistributedReadWriteLockingStrategy(3);
+    }
+
+    @Test
+    public void biasedReadersDoNotWriteHeaderCount() {
+        // the first reader takes the slow path and enables the bias
+        assertTrue(strategy.tryReadLock(access, null, address));
+        assertEquals(1, strategy.readLockCount(strategy.getState(access, null, address)));
+        assertTrue(strategy.tryReadLock(access, null, address));
+        assertEquals(1, strategy.readLockCount(strategy.getState(access, null, address)));
+        assertEquals(2, strategy.readLockCount(access, null, address));
+
+        assertFalse(strategy.tryWriteLock(access, null, address));
+        strategy.readUnlock(access, null, address);
+        strategy.readUnlock(access, null, address);
+        assertEquals(0, strategy.readLockCount(access, null, address));
+        try {
+            strategy.readUnlock(access, null, address);
+            fail("read lock is not held");
+        } catch (IllegalMonitorStateException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void writerRevokesBias() {
+        assertTrue(strategy.tryReadLock(access, null, address));
+        strategy.readUnlock(access, null, address);
+        assertTrue(strategy.toString(strategy.getState(access, null, address))
+                .contains("read bias = true"));
+        assertTrue(strategy.tryWriteLock(access, null, address));
+        assertTrue(strategy.toString(strategy.getState(access, null, address))
+                .contains("read bias = false"));
+        assertFalse(strategy.tryReadLock(access, null, address));
+        strategy.writeUnlock(access, null, address);
+        assertTrue(strategy.tryReadLock(access, null, address));
+        strategy.readUnlock(access, null, address);
+    }
+
+    @Test
+    public void failedRevocationIsNotBypassed() throws Exception {
+        assertTrue(strategy.tryReadLock(access, null, address));
+        strategy.readUnlock(access, null, address);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            // the bias is enabled, so the reader uses its slot
+            assertTrue(reader.submit(() -> strategy.tryReadLock(access, null, address)).get());
+            assertEquals(0, strategy.readLockCount(strategy.getState(access, null, address)));
+            assertFalse(strategy.tryWriteLock(access, null, address));
+            // the bias is revoked now, but the slot reader still holds the lock
+            assertFalse(strategy.tryWriteLock(access, null, address));
+            reader.submit(() -> strategy.readUnlock(access, null, address)).get();
+        } finally {
+            reader.shutdown();
+        }
+        assertTrue(strategy.tryWriteLock(access, null, address));
+        strategy.writeUnlock(access, null, address);
+    }
+
+    @Test
+    public void upgradeMovesSlotReadLockToHeader() {
+        assertTrue(strategy.tryReadLock(access, null, address));
+        // the second read lock is counted in the slot
+        assertTrue(strategy.tryReadLock(access, null, address));
+        assertFalse(strategy.tryUpgradeReadToWriteLock(access, null, address));
+        assertEquals(2, strategy.readLockCount(access, null, address));
+        assertEquals(2, strategy.readLockCount(strategy.getState(access, null, address)));
+
+        strategy.readUnlock(access, null, address);
+        assertTrue(strategy.tryUpgradeReadToWriteLock(access, null, address));
+        long state = strategy.getState(access, null, address);
+        assertTrue(strategy.isWriteLocked(state));
+        assertEquals(0, strategy.readLockCount(access, null, address));
+        assertFalse(strategy.tryReadLock(access, null, address));
+        strategy.downgradeWriteToReadLock(access, null, address);
+        strategy.readUnlock(access, null, address);
+        assertFalse(strategy.isLocked(strategy.getState(access, null, address)));
+    }
+
+    @Test
+    public void upgradeFailsWhileOtherThreadReads() throws Exception {
+        assertTrue(strategy.tryReadLock(access, null, address));
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            assertTrue(reader.submit(() -> strategy.tryReadLock(access, null, address)).get());
+            assertFalse(strategy.tryUpgradeReadToWriteLock(access, null, address));
+            assertEquals(2, strategy.readLockCount(access, null, address));
+            reader.submit(() -> strategy.readUnlock(access, null, address)).get();
+        } finally {
+            reader.shutdown();
+        }
+        assertTrue(strategy.tryUpgradeReadToWriteLock(access, null, address));
+        strategy.writeUnlock(access, null, address);
+        assertEquals(0, strategy.readLockCount(access, null, address));
+    }
+
+    @Test
+    public void upgradeAndDeregisterWait() {
+        strategy.registerWait(access, null, address);
+        // a waiting writer blocks new readers of the header count
+        assertFalse(strategy.tryReadLock(access, null, address));
+        strategy.deregisterWait(access, null, address);
+        assertTrue(strategy.tryReadLock(access, null, address));
+        strategy.registerWait(access, null, address);
+        assertTrue(strategy.tryUpgradeReadToWriteLockAndDeregisterWait(access, null, address));
+        long state = strategy.getState(access, null, address);
+        assertTrue(strategy.isWriteLocked(state));
+        assertEquals(0, strategy.waitCount(state));
+        strategy.writeUnlock(access, null, address);
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void upgradeWithoutReadLock() {
+        strategy.tryUpgradeReadToWriteLock(access, null, address);
+    }
+
+    @Test
+    public void readersAndWritersAreConsistent() throws Exception {
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AcquisitionStrategy<ReadWriteLockingStrategy, RuntimeException> acquisition =
+                AcquisitionStrategies.spinLoopOrFail(10, TimeUnit.SECONDS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        int op = random.nextInt(16);
+                        if (op == 0) {
+                            acquisition.acquire(TryAcquireOperations.writeLock(),
+                                    strategy, access, null, address);
+                            long value = access.readLong(null, dataAddress);
+                            access.writeLong(null, dataAddress, -1L);
+                            access.writeLong(null, dataAddress, value + 1);
+                            strategy.writeUnlock(access, null, address);
+                        } else if (op == 1) {
+                            acquisition.acquire(TryAcquireOperations.readLock(),
+                                    strategy, access, null, address);
+                            long value = access.readLong(null, dataAddress);
+                            assertTrue(value >= 0L);
+                            if (strategy.tryUpgradeReadToWriteLock(access, null, address)) {
+                                // no other writer could have changed the value since the read
+                                assertEquals(value, access.readLong(null, dataAddress));
+                                access.writeLong(null, dataAddress, -1L);
+                                access.writeLong(null, dataAddress, value + 1);
+                                strategy.writeUnlock(access, null, address);
+                            } else {
+                                strategy.readUnlock(access, null, address);
+                            }
+                        } else {
+                            acquisition.acquire(TryAcquireOperations.readLock(),
+                                    strategy, access, null, address);
+                            assertTrue(access.readLong(null, dataAddress) >= 0L);
+                            strategy.readUnlock(access, null, address);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, strategy.readLockCount(access, null, address));
+        assertFalse(strategy.isLocked(strategy.getState(access, null, address)));
+        assertEquals(0, strategy.waitCount(strategy.getState(access, null, address)));
+    }
+}
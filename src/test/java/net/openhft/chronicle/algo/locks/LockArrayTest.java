@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class LockArrayTest {
+
+    private static final int STRIPES = 8;
+
+    private final LockArray<TicketLockingStrategy> locks =
+            new LockArray<>(TicketLockingStrategy.instance(), STRIPES);
+    private final Access<Object> access = Access.nativeAccess();
+    private final AcquisitionStrategy<TicketLockingStrategy, RuntimeException> acquisition =
+            AcquisitionStrategies.spinLoop(1, TimeUnit.MILLISECONDS);
+    private final BytesStore<?, ?> store =
+            BytesStore.nativeStoreWithFixedCapacity(locks.sizeInBytes() + STRIPES * 8);
+    private final long address = store.addressForRead(0);
+    private final long balancesAddress = address + locks.sizeInBytes();
+
+    @Before
+    public void setUp() {
+        locks.resetAll(access, null, address);
+        for (int i = 0; i < STRIPES; i++)
+            access.writeLong(null, balancesAddress + i * 8L, 1000L);
+    }
+
+    @After
+    public void tearDown() {
+        store.releaseLast();
+    }
+
+    @Test
+    public void layout() {
+        assertEquals(8, locks.stride());
+        assertEquals(64, locks.sizeInBytes());
+        assertEquals(address + 24, locks.lockOffset(address, 3));
+        LockArray<TicketLockingStrategy> padded =
+                new LockArray<>(TicketLockingStrategy.instance(), 3, true);
+        assertEquals(64, padded.stride());
+        assertEquals(192, padded.sizeInBytes());
+        LockArray<DistributedReadWriteLockingStrategy> wide =
+                new LockArray<>(new DistributedReadWriteLockingStrategy(2), 2, true);
+        assertEquals(192, wide.stride());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void stripeOutOfBounds() {
+        locks.lockOffset(address, STRIPES);
+    }
+
+    @Test
+    public void hashesAreSpreadOverStripes() {
+        LockArray<TicketLockingStrategy> odd = new LockArray<>(TicketLockingStrategy.instance(), 5);
+        int[] counts = new int[5];
+        for (long key = 0; key < 5000; key++) {
+            int stripe = odd.stripe(LongHashFunction.xx_r39(), key);
+            assertTrue(stripe >= 0 && stripe < 5);
+            counts[stripe]++;
+        }
+        for (int count : counts)
+            assertTrue("" + count, count > 800 && count < 1200);
+        assertEquals(0, odd.stripe(0L));
+        assertEquals(4, odd.stripe(-1L));
+    }
+
+    @Test
+    public void acquireAllLocksStripesOnce() {
+        int[] stripes = {5, 1, 5, 3};
+        assertTrue(locks.acquireAll(acquisition, TryAcquireOperations.lock(),
+                ReleaseOperations.unlock(), access, null, address, stripes));
+        assertArrayEquals(new int[]{1, 3, 5, 5}, stripes);
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            long state = locks.strategy().getState(
+                    access, null, locks.lockOffset(address, stripe));
+            assertEquals(stripe == 1 || stripe == 3 || stripe == 5,
+                    locks.strategy().isLocked(state));
+        }
+        locks.releaseAll(ReleaseOperations.unlock(), access, null, address, stripes);
+        assertNoLocksHeld();
+    }
+
+    @Test
+    public void acquireAllRollsBack() {
+        locks.acquire(acquisition, TryAcquireOperations.lock(), access, null, address, 4);
+        assertFalse(locks.acquireAll(acquisition, TryAcquireOperations.lock(),
+                ReleaseOperations.unlock(), access, null, address, new int[]{6, 2, 4}));
+        locks.release(ReleaseOperations.unlock(), access, null, address, 4);
+        assertNoLocksHeld();
+
+        AcquisitionStrategy<TicketLockingStrategy, RuntimeException> orFail =
+                AcquisitionStrategies.spinLoopOrFail(1, TimeUnit.MILLISECONDS);
+        locks.acquire(orFail, TryAcquireOperations.lock(), access, null, address, 7);
+        try {
+            locks.acquireAll(orFail, TryAcquireOperations.lock(),
+                    ReleaseOperations.unlock(), access, null, address, new int[]{7, 0});
+            fail("stripe 7 is held");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        locks.release(ReleaseOperations.unlock(), access, null, address, 7);
+        assertNoLocksHeld();
+    }
+
+    @Test
+    public void concurrentTransfersDontDeadlock() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int[] stripes = new int[2];
+                    for (int i = 0; i < 10_000; i++) {
+                        int from = random.nextInt(STRIPES);
+                        int to = random.nextInt(STRIPES);
+                        stripes[0] = from;
+                        stripes[1] = to;
+                        while (!locks.acquireAll(acquisition, TryAcquireOperations.lock(),
+                                ReleaseOperations.unlock(), access, null, address, stripes)) {
+                            Thread.yield();
+                        }
+                        add(from, -1);
+                        add(to, 1);
+                        locks.releaseAll(ReleaseOperations.unlock(), access, null, address, stripes);
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        long total = 0;
+        for (int i = 0; i < STRIPES; i++)
+            total += access.readLong(null, balancesAddress + i * 8L);
+        assertEquals(STRIPES * 1000L, total);
+        assertNoLocksHeld();
+    }
+
+    private void add(int stripe, long delta) {
+        long balanceAddress = balancesAddress + stripe * 8L;
+        access.writeLong(null, balanceAddress, access.readLong(null, balanceAddress) + delta);
+    }
+
+    private void assertNoLocksHeld() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            assertFalse(locks.strategy().isLocked(locks.strategy().getState(
+                    access, null, locks.lockOffset(address, stripe))));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongToIntFunction;
+
+import static org.junit.Assert.*;
+
+public class LockStatisticsTest {
+
+    private final LockStatistics statistics = new LockStatistics(2);
+    private final Access<Object> access = Access.nativeAccess();
+    private final BytesStore<?, ?> store =
+            BytesStore.nativeStoreWithFixedCapacity(16 + statistics.sizeInBytes());
+    private final long address = store.addressForRead(0);
+    private final long statisticsAddress = address + 16;
+    // two 8-byte locks, at address and address + 8
+    private final LongToIntFunction lockIndex = offset -> (int) ((offset - address) / 8);
+    private final TicketLockingStrategy lock = TicketLockingStrategy.instance();
+
+    @Before
+    public void setUp() {
+        System.setProperty(LockStatistics.ENABLED_PROPERTY, "true");
+        lock.reset(access, null, address);
+        lock.reset(access, null, address + 8);
+        statistics.reset(access, null, statisticsAddress);
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(LockStatistics.ENABLED_PROPERTY);
+        store.releaseLast();
+    }
+
+    @Test
+    public void disabledInstrumentationReturnsDelegates() {
+        System.clearProperty(LockStatistics.ENABLED_PROPERTY);
+        assertFalse(LockStatistics.enabled());
+        AcquisitionStrategy<LockingStrategy, RuntimeException> acquisition =
+                AcquisitionStrategies.spinLoop(1, TimeUnit.MILLISECONDS);
+        assertSame(acquisition, AcquisitionStrategies.instrumented(acquisition, statistics,
+                access, null, statisticsAddress, lockIndex));
+        assertSame(lock, LockStatistics.instrumented(lock, statistics,
+                access, null, statisticsAddress, lockIndex));
+    }
+
+    @Test
+    public void acquisitionsAndTimeoutsAreCounted() {
+        AcquisitionStrategy<LockingStrategy, RuntimeException> acquisition =
+                AcquisitionStrategies.instrumented(
+                        AcquisitionStrategies.spinLoop(1, TimeUnit.MILLISECONDS), statistics,
+                        access, null, statisticsAddress, lockIndex);
+        TryAcquireOperation<LockingStrategy> tryLock = TryAcquireOperations.lock();
+
+        assertTrue(acquisition.acquire(tryLock, lock, access, null, address));
+        assertFalse(acquisition.acquire(tryLock, lock, access, null, address));
+        lock.unlock(access, null, address);
+
+        LockStatistics.Snapshot snapshot =
+                statistics.snapshot(access, null, statisticsAddress, 0);
+        assertEquals(0, snapshot.lock());
+        assertEquals(1, snapshot.acquisitions());
+        assertEquals(1, snapshot.timeouts());
+        assertTrue(snapshot.spins() > 0);
+        assertTrue(snapshot.maxAcquireNanos() >= TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(snapshot.totalAcquireNanos() >= snapshot.maxAcquireNanos());
+        long histogramCount = 0;
+        long timedOutCount = 0;
+        int timedOutBucket = LockStatistics.bucket(TimeUnit.MILLISECONDS.toNanos(1));
+        for (int i = 0; i < LockStatistics.HISTOGRAM_BUCKETS; i++) {
+            histogramCount += snapshot.acquireLatencyCount(i);
+            if (i >= timedOutBucket)
+                timedOutCount += snapshot.acquireLatencyCount(i);
+        }
+        assertEquals(2, histogramCount);
+        assertEquals(1, timedOutCount);
+
+        assertEquals(0, statistics.snapshot(access, null, statisticsAddress, 1).acquisitions());
+        assertEquals(0, statistics.hottestLock(access, null, statisticsAddress));
+    }
+
+    @Test
+    public void failingAcquisitionsAreCountedAsTimeouts() {
+        AcquisitionStrategy<LockingStrategy, RuntimeException> acquisition =
+                AcquisitionStrategies.instrumented(
+                        AcquisitionStrategies.spinLoopOrFail(1, TimeUnit.MILLISECONDS),
+                        statistics, access, null, statisticsAddress, lockIndex);
+        assertTrue(lock.tryLock(access, null, address + 8));
+        try {
+            acquisition.acquire(TryAcquireOperations.lock(), lock, access, null, address + 8);
+            fail("the lock is held");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        LockStatistics.Snapshot snapshot =
+                statistics.snapshot(access, null, statisticsAddress, 1);
+        assertEquals(0, snapshot.acquisitions());
+        assertEquals(1, snapshot.timeouts());
+        assertEquals(1, statistics.hottestLock(access, null, statisticsAddress));
+    }
+
+    @Test
+    public void holdTimesAreCounted() throws InterruptedException {
+        LockingStrategy instrumented = LockStatistics.instrumented(lock, statistics,
+                access, null, statisticsAddress, lockIndex);
+        assertNotSame(lock, instrumented);
+        assertTrue(instrumented.tryLock(access, null, address + 8));
+        assertFalse(instrumented.tryLock(access, null, address + 8));
+        Thread.sleep(2);
+        instrumented.unlock(access, null, address + 8);
+        assertFalse(instrumented.isLocked(instrumented.getState(access, null, address + 8)));
+
+        LockStatistics.Snapshot snapshot =
+                statistics.snapshot(access, null, statisticsAddress, 1);
+        assertEquals(1, snapshot.holds());
+        assertTrue(snapshot.maxHoldNanos() >= TimeUnit.MILLISECONDS.toNanos(2));
+        assertEquals(snapshot.maxHoldNanos(), snapshot.totalHoldNanos());
+        assertEquals(0, statistics.snapshot(access, null, statisticsAddress, 0).holds());
+    }
+
+    @Test
+    public void histogramBuckets() {
+        assertEquals(0, LockStatistics.bucket(0));
+        assertEquals(0, LockStatistics.bucket(63));
+        assertEquals(1, LockStatistics.bucket(64));
+        assertEquals(1, LockStatistics.bucket(127));
+        assertEquals(2, LockStatistics.bucket(128));
+        assertEquals(LockStatistics.HISTOGRAM_BUCKETS - 1, LockStatistics.bucket(Long.MAX_VALUE));
+        for (int i = 1; i < LockStatistics.HISTOGRAM_BUCKETS; i++) {
+            long bound = LockStatistics.bucketLowerBoundNanos(i);
+            assertEquals(i, LockStatistics.bucket(bound));
+            assertEquals(i - 1, LockStatistics.bucket(bound - 1));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void snapshotOfUnknownLock() {
+        statistics.snapshot(access, null, statisticsAddress, 2);
+    }
+}
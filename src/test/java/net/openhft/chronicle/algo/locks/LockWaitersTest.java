@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class LockWaitersTest {
+
+    private final ReadWriteWithWaitsLockingStrategy strategy =
+            VanillaReadWriteWithWaitsLockingStrategy.instance();
+    // the wake word right after the lock word
+    private final LockWaiters waiters = new LockWaiters(8);
+    private final Access<Object> access = Access.nativeAccess();
+    private final BytesStore<?, ?> store =
+            BytesStore.nativeStoreWithFixedCapacity(8 + LockWaiters.SIZE_IN_BYTES);
+    private final long address = store.addressForRead(0);
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        strategy.reset(access, null, address);
+        waiters.reset(access, null, address);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        store.releaseLast();
+    }
+
+    @Test
+    public void wakeUpWithoutSleepersIsNoop() {
+        waiters.wakeUp(access, null, address);
+        assertEquals(0, waiters.sequence(access, null, address));
+        assertEquals(address + 8, waiters.wakeWordOffset(address));
+    }
+
+    @Test
+    public void blockedWaiterIsWokenUpByRelease() throws Exception {
+        assertTrue(strategy.tryWriteLock(access, null, address));
+        AcquisitionStrategy<ReadWriteLockingStrategy, RuntimeException> acquisition =
+                AcquisitionStrategies.spinThenBlock(30, TimeUnit.SECONDS, waiters);
+        AtomicReference<Thread> waiter = new AtomicReference<>();
+        Future<Boolean> reader = executor.submit(() -> {
+            waiter.set(Thread.currentThread());
+            return acquisition.acquire(
+                    TryAcquireOperations.readLock(), strategy, access, null, address);
+        });
+        awaitBlocked(waiter);
+        // the waiter is parked, not spinning
+        Thread.sleep(20);
+        assertEquals(1, waiters.sleepers(access, null, address));
+        waiters.releaseAndWakeUp(
+                ReleaseOperations.writeUnlock(), strategy, access, null, address);
+        assertTrue(reader.get(10, TimeUnit.SECONDS));
+        assertEquals(1, waiters.sequence(access, null, address));
+        assertEquals(0, waiters.sleepers(access, null, address));
+        strategy.readUnlock(access, null, address);
+    }
+
+    @Test
+    public void waiterNoticesReleaseWithoutWakeUp() throws Exception {
+        // like a release by another process, which can't unpark the waiter
+        assertTrue(strategy.tryWriteLock(access, null, address));
+        AcquisitionStrategy<ReadWriteLockingStrategy, RuntimeException> acquisition =
+                AcquisitionStrategies.spinThenBlock(30, TimeUnit.SECONDS, waiters);
+        AtomicReference<Thread> waiter = new AtomicReference<>();
+        Future<Boolean> reader = executor.submit(() -> {
+            waiter.set(Thread.currentThread());
+            return acquisition.acquire(
+                    TryAcquireOperations.readLock(), strategy, access, null, address);
+        });
+        awaitBlocked(waiter);
+        strategy.writeUnlock(access, null, address);
+        assertTrue(reader.get(10, TimeUnit.SECONDS));
+        strategy.readUnlock(access, null, address);
+    }
+
+    @Test
+    public void blockingGivesUpAfterDuration() {
+        assertTrue(strategy.tryWriteLock(access, null, address));
+        long start = System.nanoTime();
+        assertFalse(AcquisitionStrategies.<ReadWriteLockingStrategy>spinThenBlock(
+                20, TimeUnit.MILLISECONDS, waiters)
+                .acquire(TryAcquireOperations.readLock(), strategy, access, null, address));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(0, waiters.sleepers(access, null, address));
+    }
+
+    @Test
+    public void registeringWaitBlocksUntilReadersRelease() throws Exception {
+        assertTrue(strategy.tryReadLock(access, null, address));
+        AcquisitionStrategy<ReadWriteWithWaitsLockingStrategy, RuntimeException> acquisition =
+                AcquisitionStrategies.spinThenBlockRegisteringWaitOrFail(
+                        30, TimeUnit.SECONDS, waiters);
+        AtomicReference<Thread> waiter = new AtomicReference<>();
+        Future<Boolean> writer = executor.submit(() -> {
+            waiter.set(Thread.currentThread());
+            return acquisition.acquire(TryAcquireOperations.writeLockAndDeregisterWait(),
+                    strategy, access, null, address);
+        });
+        awaitBlocked(waiter);
+        // the registered wait blocks new readers
+        assertEquals(1, strategy.waitCount(strategy.getState(access, null, address)));
+        assertFalse(strategy.tryReadLock(access, null, address));
+        waiters.releaseAndWakeUp(
+                ReleaseOperations.readUnlock(), strategy, access, null, address);
+        assertTrue(writer.get(10, TimeUnit.SECONDS));
+        long state = strategy.getState(access, null, address);
+        assertTrue(strategy.isWriteLocked(state));
+        assertEquals(0, strategy.waitCount(state));
+        strategy.writeUnlock(access, null, address);
+    }
+
+    @Test
+    public void registeringWaitDeregistersOnFailure() {
+        assertTrue(strategy.tryReadLock(access, null, address));
+        try {
+            AcquisitionStrategies.<ReadWriteWithWaitsLockingStrategy>
+                    spinThenBlockRegisteringWaitOrFail(5, TimeUnit.MILLISECONDS, waiters)
+                    .acquire(TryAcquireOperations.writeLockAndDeregisterWait(),
+                            strategy, access, null, address);
+            fail("the read lock is held");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        assertEquals(0, strategy.waitCount(strategy.getState(access, null, address)));
+        assertEquals(0, waiters.sleepers(access, null, address));
+        strategy.readUnlock(access, null, address);
+    }
+
+    private void awaitBlocked(AtomicReference<Thread> waiter) throws InterruptedException {
+        while (waiters.sleepers(access, null, address) == 0 || waiter.get() == null ||
+                waiter.get().getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -26,12 +26,14 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Collection;
 import java.util.concurrent.*;
 
 import static java.util.Arrays.asList;
 import static net.openhft.chronicle.algo.bytes.Accessor.uncheckedByteBufferAccessor;
 import static net.openhft.chronicle.algo.locks.LockingStrategyTest.AccessMethod.ADDRESS;
+import static net.openhft.chronicle.algo.locks.LockingStrategyTest.AccessMethod.BYTE_BUFFER;
 import static net.openhft.chronicle.algo.locks.LockingStrategyTest.AccessMethod.BYTES_WITH_OFFSET;
 import static org.junit.Assert.*;
 import static org.junit.Assume.assumeTrue;
@@ -70,6 +72,14 @@ public class LockingStrategyTest {
                 {VanillaReadWriteUpdateWithWaitsLockingStrategy.instance(), BYTES_WITH_OFFSET},
                 {VanillaReadWriteWithWaitsLockingStrategy.instance(), ADDRESS},
                 {VanillaReadWriteWithWaitsLockingStrategy.instance(), BYTES_WITH_OFFSET},
+                {VanillaReadWriteUpdateWithWaitsLockingStrategy.instance(), BYTE_BUFFER},
+                {VanillaReadWriteWithWaitsLockingStrategy.instance(), BYTE_BUFFER},
+                {VanillaStampedLockingStrategy.instance(), ADDRESS},
+                {VanillaStampedLockingStrategy.instance(), BYTES_WITH_OFFSET},
+                {PhaseFairReadWriteLockingStrategy.instance(), ADDRESS},
+                {PhaseFairReadWriteLockingStrategy.instance(), BYTES_WITH_OFFSET},
+                {new DistributedReadWriteLockingStrategy(4), ADDRESS},
+                {new DistributedReadWriteLockingStrategy(4), BYTES_WITH_OFFSET},
         });
     }
 
@@ -81,12 +91,17 @@ public class LockingStrategyTest {
         e2 = new ThreadPoolExecutor(0, 1, Integer.MAX_VALUE, TimeUnit.SECONDS,
                 new LinkedBlockingQueue<>());
 
-        buffer = ByteBuffer.allocateDirect(8);
+        buffer = ByteBuffer.allocateDirect(lockingStrategy.sizeInBytes());
         if (accessMethod == ADDRESS) {
             Accessor.Full<ByteBuffer, ?> accessor = uncheckedByteBufferAccessor(buffer);
             access = accessor.access();
             handle = accessor.handle(buffer);
             offset = accessor.offset(buffer, 0);
+        } else if (accessMethod == BYTE_BUFFER) {
+            // lock words overlap ints and longs, which agree only in the native order
+            access = Access.checkedByteBufferAccess();
+            handle = buffer.order(ByteOrder.nativeOrder());
+            offset = 0;
         } else {
             bytesStore = BytesStore.wrap(buffer);
             Accessor.Full<BytesStore, ?> accessor = Accessor.checkedBytesStoreAccessor();
@@ -385,7 +400,7 @@ public class LockingStrategyTest {
         return rwuLockState;
     }
 
-    enum AccessMethod {ADDRESS, BYTES_WITH_OFFSET}
+    enum AccessMethod {ADDRESS, BYTES_WITH_OFFSET, BYTE_BUFFER}
 
     @SuppressWarnings("unchecked")
     private class TestReadWriteLockState extends AbstractReadWriteLockState {
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class McsQueueLockingStrategyTest {
+
+    private final McsQueueLockingStrategy lock = new McsQueueLockingStrategy(6);
+    private final Access<Object> access = Access.nativeAccess();
+    private final BytesStore<?, ?> store =
+            BytesStore.nativeStoreWithFixedCapacity(lock.sizeInBytes() + 8);
+    private final long address = store.addressForRead(0);
+    private final long dataAddress = address + lock.sizeInBytes();
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        lock.reset(access, null, address);
+        access.writeLong(null, dataAddress, 0L);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        store.releaseLast();
+    }
+
+    @Test
+    public void transitions() {
+        assertEquals(64 + 64 + 6 * 64, lock.sizeInBytes());
+        assertEquals(0, lock.queueLength(access, null, address));
+        assertTrue(lock.tryLock(access, null, address));
+        assertTrue(lock.isLocked(lock.getState(access, null, address)));
+        assertEquals(1, lock.queueLength(access, null, address));
+        assertFalse(lock.tryLock(access, null, address));
+        lock.unlock(access, null, address);
+        assertFalse(lock.isLocked(lock.getState(access, null, address)));
+        assertEquals(0, lock.queueLength(access, null, address));
+        try {
+            lock.unlock(access, null, address);
+            fail("lock is not held");
+        } catch (IllegalMonitorStateException expected) {
+            // expected
+        }
+        lock.lock(access, null, address);
+        assertEquals(1, lock.lockCount(lock.getState(access, null, address)));
+        lock.unlock(access, null, address);
+        assertEquals(0, lock.queueLength(access, null, address));
+    }
+
+    @Test
+    public void servesWaitersInOrder() throws Exception {
+        lock.lock(access, null, address);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int waiter = i;
+            futures.add(executor.submit(() -> {
+                lock.lock(access, null, address);
+                order.add(waiter);
+                lock.unlock(access, null, address);
+            }));
+            // wait until the waiter enqueues its node
+            while (lock.queueLength(access, null, address) != i + 2)
+                Thread.yield();
+        }
+        // queued waiters are not overtaken by tryLock()
+        assertFalse(lock.tryLock(access, null, address));
+        lock.unlock(access, null, address);
+        for (Future<?> future : futures)
+            future.get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(0, 1, 2), order);
+        assertEquals(0, lock.queueLength(access, null, address));
+    }
+
+    @Test
+    public void lockWaitsForFreeNode() throws Exception {
+        McsQueueLockingStrategy singleNode = new McsQueueLockingStrategy(1);
+        singleNode.reset(access, null, address);
+        assertTrue(singleNode.tryLock(access, null, address));
+        assertEquals(1, singleNode.queueLength(access, null, address));
+        Future<?> waiter = executor.submit(() -> {
+            singleNode.lock(access, null, address);
+            access.writeLong(null, dataAddress, 1L);
+            singleNode.unlock(access, null, address);
+        });
+        Thread.sleep(10);
+        assertFalse(waiter.isDone());
+        singleNode.unlock(access, null, address);
+        waiter.get(10, TimeUnit.SECONDS);
+        assertEquals(1L, access.readLong(null, dataAddress));
+        assertEquals(0, singleNode.queueLength(access, null, address));
+    }
+
+    @Test
+    public void isExclusive() throws Exception {
+        // more threads than nodes, some wait for nodes to be freed
+        McsQueueLockingStrategy fewNodes = new McsQueueLockingStrategy(3);
+        fewNodes.reset(access, null, address);
+        runConcurrently(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                if ((i & 1) == 0) {
+                    fewNodes.lock(access, null, address);
+                } else {
+                    while (!fewNodes.tryLock(access, null, address))
+                        Thread.yield();
+                }
+                access.writeLong(null, dataAddress, access.readLong(null, dataAddress) + 1);
+                fewNodes.unlock(access, null, address);
+            }
+        });
+        assertEquals(40_000L, access.readLong(null, dataAddress));
+        assertFalse(fewNodes.isLocked(fewNodes.getState(access, null, address)));
+        assertEquals(0, fewNodes.queueLength(access, null, address));
+    }
+
+    @Test
+    public void zeroedMemoryIsUnlocked() throws Exception {
+        // the bit set of 2 nodes has 62 spare bits, which zeroed memory leaves clear
+        McsQueueLockingStrategy twoNodes = new McsQueueLockingStrategy(2);
+        long guardAddress = address + twoNodes.sizeInBytes();
+        long guardSize = dataAddress - guardAddress;
+        access.zeroOut(null, address, twoNodes.sizeInBytes());
+        access.writeBytes(null, guardAddress, guardSize, (byte) -1);
+        assertFalse(twoNodes.isLocked(twoNodes.getState(access, null, address)));
+        assertEquals(0, twoNodes.queueLength(access, null, address));
+        runConcurrently(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                twoNodes.lock(access, null, address);
+                access.writeLong(null, dataAddress, access.readLong(null, dataAddress) + 1);
+                twoNodes.unlock(access, null, address);
+            }
+        });
+        assertEquals(40_000L, access.readLong(null, dataAddress));
+        assertEquals(0, twoNodes.queueLength(access, null, address));
+        for (long i = 0; i < guardSize; i += 8)
+            assertEquals(-1L, access.readLong(null, guardAddress + i));
+    }
+
+    @Test
+    public void worksWithTryAcquireOperations() {
+        TryAcquireOperation<LockingStrategy> tryLock = TryAcquireOperations.lock();
+        assertTrue(tryLock.tryAcquire(lock, access, null, address));
+        assertFalse(tryLock.tryAcquire(lock, access, null, address));
+        lock.unlock(access, null, address);
+    }
+
+    private void runConcurrently(Runnable task) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++)
+            futures.add(executor.submit(task));
+        for (Future<?> future : futures)
+            future.get(60, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.OS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class RobustLockingStrategyTest {
+
+    private final RobustLockingStrategy strategy = RobustLockingStrategy.instance();
+    private final Access<Object> access = Access.nativeAccess();
+    private final BytesStore<?, ?> store = BytesStore.nativeStoreWithFixedCapacity(8);
+    private final long address = store.addressForRead(0);
+    private final AtomicLong recovered = new AtomicLong();
+    private final LockRecoveryHandler handler = new LockRecoveryHandler() {
+        @Override
+        public <T> void recover(RobustLockingStrategy strategy, Access<T> access, T t,
+                                long offset, long deadOwnerState) {
+            recovered.set(deadOwnerState);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        strategy.reset(access, null, address);
+    }
+
+    @After
+    public void release() {
+        store.releaseLast();
+    }
+
+    @Test
+    public void recordsOwner() throws InterruptedException {
+        assertTrue(strategy.tryLock(access, null, address));
+        long state = strategy.getState(access, null, address);
+        assertEquals(Jvm.getProcessId(), strategy.ownerProcessId(state));
+        assertEquals((int) Thread.currentThread().getId(), strategy.ownerThreadId(state));
+        assertTrue(strategy.isOwnerAlive(state));
+        assertFalse(strategy.tryLock(access, null, address));
+
+        Thread other = new Thread(() -> {
+            try {
+                strategy.unlock(access, null, address);
+                fail("the lock is held by another thread");
+            } catch (IllegalMonitorStateException expected) {
+                // expected
+            }
+        });
+        other.start();
+        other.join();
+        strategy.unlock(access, null, address);
+        assertFalse(strategy.isLocked(strategy.getState(access, null, address)));
+    }
+
+    @Test
+    public void recoversFromDeadProcess() {
+        // no process could have this id
+        long deadOwner = RobustLockingStrategy.owner((int) OS.getPidMax() + 1, 1);
+        access.writeLong(null, address, deadOwner);
+        assertFalse(strategy.isOwnerAlive(deadOwner));
+        assertTrue(AcquisitionStrategies.spinLoopOrRecover(1, TimeUnit.MILLISECONDS, handler)
+                .acquire(TryAcquireOperations.lock(), strategy, access, null, address));
+        assertEquals(deadOwner, recovered.get());
+        assertEquals(RobustLockingStrategy.currentOwner(), strategy.getState(access, null, address));
+        strategy.unlock(access, null, address);
+    }
+
+    @Test
+    public void recoversFromDeadThread() throws InterruptedException {
+        Thread owner = new Thread(() -> assertTrue(strategy.tryLock(access, null, address)));
+        owner.start();
+        owner.join();
+        long deadOwner = strategy.getState(access, null, address);
+        assertTrue(strategy.isLocked(deadOwner));
+        assertFalse(strategy.isOwnerAlive(deadOwner));
+        assertTrue(AcquisitionStrategies.spinLoopOrRecover(1, TimeUnit.MILLISECONDS, handler)
+                .acquire(TryAcquireOperations.lock(), strategy, access, null, address));
+        assertEquals(deadOwner, recovered.get());
+        strategy.unlock(access, null, address);
+    }
+
+    @Test
+    public void failedRecoveryRestoresDeadOwner() {
+        long deadOwner = RobustLockingStrategy.owner((int) OS.getPidMax() + 1, 1);
+        access.writeLong(null, address, deadOwner);
+        try {
+            AcquisitionStrategies.spinLoopOrRecover(1, TimeUnit.MILLISECONDS,
+                    new LockRecoveryHandler() {
+                        @Override
+                        public <T> void recover(RobustLockingStrategy strategy, Access<T> access,
+                                                T t, long offset, long deadOwnerState) {
+                            throw new IllegalStateException("corrupted");
+                        }
+                    }).acquire(TryAcquireOperations.lock(), strategy, access, null, address);
+            fail("recovery should fail");
+        } catch (IllegalStateException e) {
+            assertEquals("corrupted", e.getMessage());
+        }
+        assertEquals(deadOwner, strategy.getState(access, null, address));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void liveOwnerIsNotRecovered() {
+        assertTrue(strategy.tryLock(access, null, address));
+        AcquisitionStrategies.spinLoopOrRecover(1, TimeUnit.MILLISECONDS, handler)
+                .acquire(TryAcquireOperations.lock(), strategy, access, null, address);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class SeqLockingStrategyTest {
+    private static final int RECORD_LONGS = 8;
+
+    private final SeqLockingStrategy strategy = SeqLockingStrategy.instance();
+    private final Access<Object> access = Access.nativeAccess();
+    private final BytesStore<?, ?> store = BytesStore.nativeStoreWithFixedCapacity(8 + RECORD_LONGS * 8);
+    private final BytesStore<?, ?> copy = BytesStore.nativeStoreWithFixedCapacity(RECORD_LONGS * 8);
+    private final long lockAddress = store.addressForRead(0);
+    private final long recordAddress = lockAddress + 8;
+    private final long copyAddress = copy.addressForRead(0);
+
+    @Before
+    public void setUp() {
+        strategy.reset(access, null, lockAddress);
+        for (int i = 0; i < RECORD_LONGS; i++)
+            access.writeLong(null, recordAddress + i * 8, 0L);
+    }
+
+    @After
+    public void release() {
+        store.releaseLast();
+        copy.releaseLast();
+    }
+
+    @Test
+    public void writesAreExclusive() {
+        assertFalse(strategy.isLocked(strategy.getState(access, null, lockAddress)));
+        assertTrue(strategy.tryBeginWrite(access, null, lockAddress));
+        assertTrue(strategy.isLocked(strategy.getState(access, null, lockAddress)));
+        assertFalse(strategy.tryLock(access, null, lockAddress));
+        strategy.endWrite(access, null, lockAddress);
+        assertEquals(2L, strategy.getState(access, null, lockAddress));
+        try {
+            strategy.unlock(access, null, lockAddress);
+            fail("write is not in progress");
+        } catch (IllegalMonitorStateException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void readRetriesAfterWrite() {
+        long sequence = strategy.beginRead(access, null, lockAddress);
+        assertFalse(strategy.retryRead(access, null, lockAddress, sequence));
+        strategy.beginWrite(access, null, lockAddress);
+        assertTrue(strategy.retryRead(access, null, lockAddress, sequence));
+        strategy.endWrite(access, null, lockAddress);
+        assertTrue(strategy.retryRead(access, null, lockAddress, sequence));
+        sequence = strategy.beginRead(access, null, lockAddress);
+        assertFalse(strategy.retryRead(access, null, lockAddress, sequence));
+    }
+
+    @Test
+    public void readersSeeConsistentRecords() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                BytesStore<?, ?> source = BytesStore.nativeStoreWithFixedCapacity(RECORD_LONGS * 8);
+                long sourceAddress = source.addressForRead(0);
+                try {
+                    for (long value = 1; value <= 100_000; value++) {
+                        for (int i = 0; i < RECORD_LONGS; i++)
+                            access.writeLong(null, sourceAddress + i * 8, value);
+                        strategy.writeRecord(access, null, sourceAddress,
+                                access, null, lockAddress, recordAddress, RECORD_LONGS * 8);
+                    }
+                } finally {
+                    source.releaseLast();
+                }
+            });
+            long lastValue = 0;
+            while (!writer.isDone()) {
+                strategy.readRecord(access, null, lockAddress, recordAddress,
+                        access, null, copyAddress, RECORD_LONGS * 8);
+                long value = access.readLong(null, copyAddress);
+                for (int i = 1; i < RECORD_LONGS; i++)
+                    assertEquals(value, access.readLong(null, copyAddress + i * 8));
+                assertTrue(value >= lastValue);
+                lastValue = value;
+            }
+            writer.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200_000L, strategy.getState(access, null, lockAddress));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.algo.locks;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class TicketLockingStrategyTest {
+
+    private final TicketLockingStrategy ticketLock = TicketLockingStrategy.instance();
+    private final PhaseFairReadWriteLockingStrategy phaseFairLock =
+            PhaseFairReadWriteLockingStrategy.instance();
+    private final Access<Object> access = Access.nativeAccess();
+    private final BytesStore<?, ?> store = BytesStore.nativeStoreWithFixedCapacity(16);
+    private final long address = store.addressForRead(0);
+    private final long dataAddress = address + 8;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        ticketLock.reset(access, null, address);
+        access.writeLong(null, dataAddress, 0L);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        store.releaseLast();
+    }
+
+    @Test
+    public void ticketLockTransitions() {
+        assertTrue(ticketLock.tryLock(access, null, address));
+        assertTrue(ticketLock.isLocked(ticketLock.getState(access, null, address)));
+        assertFalse(ticketLock.tryLock(access, null, address));
+        ticketLock.unlock(access, null, address);
+        assertFalse(ticketLock.isLocked(ticketLock.getState(access, null, address)));
+        try {
+            ticketLock.unlock(access, null, address);
+            fail("lock is not held");
+        } catch (IllegalMonitorStateException expected) {
+            // expected
+        }
+        ticketLock.lock(access, null, address);
+        assertEquals(1, ticketLock.lockCount(ticketLock.getState(access, null, address)));
+        ticketLock.unlock(access, null, address);
+    }
+
+    @Test
+    public void ticketsWrapAroundWithoutCarryingIntoEachOther() {
+        // both the next ticket and the ticket being served are at their maximum
+        access.writeOrderedLong(null, address, -1L);
+        ticketLock.lock(access, null, address);
+        long state = ticketLock.getState(access, null, address);
+        assertEquals(1, ticketLock.lockCount(state));
+        assertEquals(0, ticketLock.waitCount(state));
+        ticketLock.unlock(access, null, address);
+        assertEquals(0L, ticketLock.getState(access, null, address));
+        ticketLock.lock(access, null, address);
+        ticketLock.unlock(access, null, address);
+        assertEquals(TicketLockingStrategy.TICKET + 1, ticketLock.getState(access, null, address));
+    }
+
+    @Test
+    public void ticketLockServesWaitersInOrder() throws Exception {
+        ticketLock.lock(access, null, address);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int waiter = i;
+            futures.add(executor.submit(() -> {
+                ticketLock.lock(access, null, address);
+                order.add(waiter);
+                ticketLock.unlock(access, null, address);
+            }));
+            // wait until the waiter takes its ticket
+            while (ticketLock.waitCount(ticketLock.getState(access, null, address)) != i + 1)
+                Thread.yield();
+        }
+        // queued waiters are not overtaken by tryLock()
+        assertFalse(ticketLock.tryLock(access, null, address));
+        ticketLock.unlock(access, null, address);
+        for (Future<?> future : futures)
+            future.get(10, TimeUnit.SECONDS);
+        assertEquals(asList(0, 1, 2), order);
+    }
+
+    @Test
+    public void ticketLockIsExclusive() throws Exception {
+        runConcurrently(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                ticketLock.lock(access, null, address);
+                access.writeLong(null, dataAddress, access.readLong(null, dataAddress) + 1);
+                ticketLock.unlock(access, null, address);
+            }
+        });
+        assertEquals(40_000L, access.readLong(null, dataAddress));
+    }
+
+    @Test
+    public void phaseFairWriterBlocksNewReaders() throws Exception {
+        phaseFairLock.readLock(access, null, address);
+        Future<?> writer = executor.submit(() -> {
+            phaseFairLock.writeLock(access, null, address);
+            access.writeLong(null, dataAddress, 1L);
+            phaseFairLock.writeUnlock(access, null, address);
+        });
+        while (!phaseFairLock.isWriteLocked(phaseFairLock.getState(access, null, address)))
+            Thread.yield();
+        // the writer waits for the first reader, and new readers wait for the writer
+        assertFalse(phaseFairLock.tryReadLock(access, null, address));
+        Future<Long> reader = executor.submit(() -> {
+            phaseFairLock.readLock(access, null, address);
+            long value = access.readLong(null, dataAddress);
+            phaseFairLock.readUnlock(access, null, address);
+            return value;
+        });
+        Thread.sleep(10);
+        assertFalse(writer.isDone());
+        assertFalse(reader.isDone());
+        phaseFairLock.readUnlock(access, null, address);
+        writer.get(10, TimeUnit.SECONDS);
+        assertEquals(1L, (long) reader.get(10, TimeUnit.SECONDS));
+        assertFalse(phaseFairLock.isLocked(phaseFairLock.getState(access, null, address)));
+    }
+
+    @Test
+    public void phaseFairLockIsConsistent() throws Exception {
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 10_000; i++) {
+                if (random.nextInt(4) == 0) {
+                    phaseFairLock.writeLock(access, null, address);
+                    long value = access.readLong(null, dataAddress);
+                    access.writeLong(null, dataAddress, -1L);
+                    access.writeLong(null, dataAddress, value + 1);
+                    phaseFairLock.writeUnlock(access, null, address);
+                } else {
+                    phaseFairLock.readLock(access, null, address);
+                    assertTrue(access.readLong(null, dataAddress) >= 0L);
+                    phaseFairLock.readUnlock(access, null, address);
+                }
+            }
+        });
+        assertEquals(0L, phaseFairLock.lockCount(phaseFairLock.getState(access, null, address)));
+    }
+
+    private void runConcurrently(Runnable task) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++)
+            futures.add(executor.submit(task));
+        for (Future<?> future : futures)
+            future.get(60, TimeUnit.SECONDS);
+    }
+
+    private static List<Integer> asList(Integer... values) {
+        return java.util.Arrays.asList(values);
+    }
+}
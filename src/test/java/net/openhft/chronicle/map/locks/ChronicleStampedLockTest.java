@@ -18,88 +18,280 @@
 
 package net.openhft.chronicle.map.locks;
 
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.locks.ChronicleStampedLock;
+import net.openhft.chronicle.bytes.BytesStore;
+import org.junit.After;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 
-//import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 
 public class ChronicleStampedLockTest {
 
+    private final BytesStore<?, ?> store = BytesStore.nativeStoreWithFixedCapacity(64);
+    private final long address = store.addressForRead(0);
+    private final ChronicleStampedLock<Object> lock = newView();
+
+    private ChronicleStampedLock<Object> newView() {
+        return new ChronicleStampedLock<>(Access.nativeAccess(), null, address);
+    }
+
+    @Before
+    public void setUp() {
+        lock.reset();
+    }
+
+    @After
+    public void release() {
+        store.releaseLast();
+    }
+
     @Test
     public void tryOptimisticRead() {
-        System.out.println("A test of  ChronicleStampedLock::tryOptimisticRead()");
-        Assert.assertEquals(Boolean.TRUE, true);
+        long stamp = lock.tryOptimisticRead();
+        Assert.assertNotEquals(0L, stamp);
+        // readers don't invalidate optimistic reads
+        long readStamp = lock.readLock();
+        Assert.assertNotEquals(0L, lock.tryOptimisticRead());
+        Assert.assertTrue(lock.validate(stamp));
+        lock.unlockRead(readStamp);
+
+        long writeStamp = lock.writeLock();
+        Assert.assertEquals(0L, lock.tryOptimisticRead());
+        lock.unlockWrite(writeStamp);
     }
 
     @Test
     public void validate() {
-        System.out.println("A test of  ChronicleStampedLock::validate()");
-        Assert.assertEquals(Boolean.TRUE, true);
+        Assert.assertFalse(lock.validate(0L));
+        long stamp = lock.tryOptimisticRead();
+        Assert.assertTrue(lock.validate(stamp));
+        long writeStamp = lock.writeLock();
+        Assert.assertFalse(lock.validate(stamp));
+        Assert.assertTrue(lock.validate(writeStamp));
+        lock.unlockWrite(writeStamp);
+        Assert.assertFalse(lock.validate(stamp));
+        Assert.assertFalse(lock.validate(writeStamp));
+        Assert.assertTrue(lock.validate(lock.tryOptimisticRead()));
     }
 
     @Test
     public void tryWriteLock() {
-        System.out.println("A test of  ChronicleStampedLock::tryWriteLock()");
-        Assert.assertEquals(Boolean.TRUE, true);
+        long stamp = lock.tryWriteLock();
+        Assert.assertNotEquals(0L, stamp);
+        Assert.assertTrue(lock.isWriteLocked());
+        Assert.assertEquals(0L, lock.tryWriteLock());
+        Assert.assertEquals(0L, lock.tryReadLock());
+        Assert.assertEquals(0L, lock.tryWriteLock(1, TimeUnit.MILLISECONDS));
+        lock.unlockWrite(stamp);
+
+        long readStamp = lock.tryReadLock();
+        Assert.assertEquals(0L, lock.tryWriteLock());
+        lock.unlockRead(readStamp);
+        Assert.assertNotEquals(0L, stamp = lock.tryWriteLock());
+        lock.unlock(stamp);
     }
 
     @Test
     public void tryReadLock() {
-        System.out.println("A test of  ChronicleStampedLock::tryReadLock()");
-        Assert.assertEquals(Boolean.TRUE, true);
+        long stamp1 = lock.tryReadLock();
+        long stamp2 = lock.tryReadLock();
+        Assert.assertNotEquals(0L, stamp1);
+        Assert.assertNotEquals(0L, stamp2);
+        Assert.assertEquals(2, lock.getReadLockCount());
+        lock.unlockRead(stamp1);
+        lock.unlockRead(stamp2);
+        Assert.assertEquals(0, lock.getReadLockCount());
     }
 
     @Test
-    public void writeLock() {
-        System.out.println("A test of  ChronicleStampedLock::writeLock()");
-        Assert.assertEquals(Boolean.TRUE, true);
+    public void writeLock() throws Exception {
+        long stamp = lock.writeLock();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> writer = executor.submit(lock::writeLock);
+            Thread.sleep(10);
+            Assert.assertFalse(writer.isDone());
+            lock.unlockWrite(stamp);
+            lock.unlockWrite(writer.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertFalse(lock.isWriteLocked());
     }
 
     @Test
-    public void readLock() {
-        System.out.println("A test of  ChronicleStampedLock::readLock()");
-        Assert.assertEquals(Boolean.TRUE, true);
+    public void readLock() throws Exception {
+        long stamp = lock.writeLock();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> reader = executor.submit(lock::readLock);
+            Thread.sleep(10);
+            Assert.assertFalse(reader.isDone());
+            // converting the write lock to the read lock lets the other reader in
+            long readStamp = lock.tryConvertToReadLock(stamp);
+            Assert.assertNotEquals(0L, readStamp);
+            long otherReadStamp = reader.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(2, lock.getReadLockCount());
+            lock.unlockRead(readStamp);
+            lock.unlockRead(otherReadStamp);
+        } finally {
+            executor.shutdown();
+        }
     }
 
     @Test
     public void unlock() {
-        System.out.println("A test of  ChronicleStampedLock::unlock()");
-        Assert.assertEquals(Boolean.TRUE, true);
+        long readStamp = lock.readLock();
+        lock.unlock(readStamp);
+        Assert.assertFalse(lock.isReadLocked());
+        long writeStamp = lock.writeLock();
+        lock.unlock(writeStamp);
+        Assert.assertFalse(lock.isWriteLocked());
+        try {
+            lock.unlock(writeStamp);
+            Assert.fail("stale stamp");
+        } catch (IllegalMonitorStateException expected) {
+            // expected
+        }
     }
 
     @Test
     public void unlockRead() {
-        System.out.println("A test of  ChronicleStampedLock::unlockRead()");
-        Assert.assertEquals(Boolean.TRUE, true);
+        long stamp = lock.readLock();
+        try {
+            lock.unlockWrite(stamp);
+            Assert.fail("read stamp is not a write stamp");
+        } catch (IllegalMonitorStateException expected) {
+            // expected
+        }
+        lock.unlockRead(stamp);
+        try {
+            lock.unlockRead(stamp);
+            Assert.fail("read lock is not held");
+        } catch (IllegalMonitorStateException expected) {
+            // expected
+        }
     }
 
     @Test
     public void unlockWrite() {
-        System.out.println("A test of  ChronicleStampedLock::unlockWrite()");
-        Assert.assertEquals(Boolean.TRUE, true);
+        long stamp = lock.writeLock();
+        try {
+            lock.unlockRead(stamp);
+            Assert.fail("write stamp is not a read stamp");
+        } catch (IllegalMonitorStateException expected) {
+            // expected
+        }
+        lock.unlockWrite(stamp);
+        try {
+            lock.unlockWrite(stamp);
+            Assert.fail("write lock is not held");
+        } catch (IllegalMonitorStateException expected) {
+            // expected
+        }
     }
 
     @Test
     public void getReadLockCount() {
-        System.out.println("A test of  ChronicleStampedLock::getReadLockCount()");
-        Assert.assertEquals(Boolean.TRUE, true);
+        List<Long> stamps = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            stamps.add(lock.readLock());
+            Assert.assertEquals(i, lock.getReadLockCount());
+        }
+        for (long stamp : stamps)
+            lock.unlockRead(stamp);
+        Assert.assertEquals(0, lock.getReadLockCount());
     }
 
     @Test
     public void isReadLocked() {
-        System.out.println("A test of  ChronicleStampedLock::isReadLocked()");
-        Assert.assertEquals(Boolean.TRUE, true);
+        Assert.assertFalse(lock.isReadLocked());
+        long stamp = lock.readLock();
+        Assert.assertTrue(lock.isReadLocked());
+        Assert.assertFalse(lock.isWriteLocked());
+        // the only reader could upgrade
+        long writeStamp = lock.tryConvertToWriteLock(stamp);
+        Assert.assertNotEquals(0L, writeStamp);
+        Assert.assertFalse(lock.isReadLocked());
+        Assert.assertTrue(lock.isWriteLocked());
+        long optimisticStamp = lock.tryConvertToOptimisticRead(writeStamp);
+        Assert.assertNotEquals(0L, optimisticStamp);
+        Assert.assertFalse(lock.isWriteLocked());
+        Assert.assertTrue(lock.validate(optimisticStamp));
     }
 
     @Test
-    public void offHeapLock() {
-        System.out.println("A test of  ChronicleStampedLock::offHeapLock()");
-        Assert.assertEquals(Boolean.TRUE, true);
+    public void offHeapLock() throws Exception {
+        // another view of the same lock word, as if in another process
+        ChronicleStampedLock<Object> other = newView();
+        long stamp = lock.tryOptimisticRead();
+        long writeStamp = other.writeLock();
+        Assert.assertTrue(lock.isWriteLocked());
+        Assert.assertEquals(0L, lock.tryReadLock());
+        Assert.assertFalse(lock.validate(stamp));
+        // stamps are valid across views
+        lock.unlockWrite(writeStamp);
+        Assert.assertFalse(other.isWriteLocked());
+
+        // writes under the lock are consistently observed by optimistic readers
+        long dataAddress = address + 8;
+        Access<Object> access = Access.nativeAccess();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 1; i <= 100_000; i++) {
+                    long s = other.writeLock();
+                    access.writeLong(null, dataAddress, i);
+                    access.writeLong(null, dataAddress + 8, -i);
+                    other.unlockWrite(s);
+                }
+            });
+            while (!writer.isDone()) {
+                long s = lock.tryOptimisticRead();
+                long a = access.readLong(null, dataAddress);
+                long b = access.readLong(null, dataAddress + 8);
+                if (lock.validate(s))
+                    Assert.assertEquals(a, -b);
+            }
+            writer.get();
+        } finally {
+            executor.shutdown();
+        }
     }
 
     @Test
-    public void offHeapLockReaderCount() {
-        System.out.println("A test of  ChronicleStampedLock::offHeapLockReaderCount()");
-        Assert.assertEquals(Boolean.TRUE, true);
+    public void offHeapLockReaderCount() throws Exception {
+        int readers = 4;
+        CountDownLatch locked = new CountDownLatch(readers);
+        CountDownLatch unlock = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                futures.add(executor.submit(() -> {
+                    ChronicleStampedLock<Object> view = newView();
+                    long stamp = view.readLock();
+                    locked.countDown();
+                    unlock.await();
+                    view.unlockRead(stamp);
+                    return null;
+                }));
+            }
+            Assert.assertTrue(locked.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(readers, lock.getReadLockCount());
+            Assert.assertEquals(0L, lock.tryWriteLock());
+            unlock.countDown();
+            for (Future<?> future : futures)
+                future.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(0, lock.getReadLockCount());
+        Assert.assertNotEquals(0L, lock.tryWriteLock());
     }
-}
\ No newline at end of file
+}
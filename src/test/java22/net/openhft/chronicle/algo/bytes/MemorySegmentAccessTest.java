@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014-2020 chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.algo.bytes;
+
+import net.openhft.chronicle.algo.bitset.BitSetFrame;
+import net.openhft.chronicle.algo.bitset.ConcurrentFlatBitSetFrame;
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.algo.locks.ReadWriteLockingStrategy;
+import net.openhft.chronicle.algo.locks.VanillaReadWriteWithWaitsLockingStrategy;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MemorySegmentAccessTest {
+
+    private final Arena arena = Arena.ofConfined();
+    private final MemorySegment segment = arena.allocate(256, 64);
+    private final Access<MemorySegment> access = MemorySegmentAccess.INSTANCE;
+    private final Access<Object> nativeAccess = Access.nativeAccess();
+
+    @After
+    public void tearDown() {
+        if (arena.scope().isAlive())
+            arena.close();
+    }
+
+    @Test
+    public void readsAndWritesLikeNativeAccess() {
+        long address = segment.address();
+        access.writeLong(segment, 1, 0x0102030405060708L);
+        assertEquals(0x0102030405060708L, nativeAccess.readLong(null, address + 1));
+        access.writeInt(segment, 11, -5);
+        assertEquals(-5, nativeAccess.readInt(null, address + 11));
+        access.writeShort(segment, 17, (short) 300);
+        assertEquals(300, access.readUnsignedShort(segment, 17));
+        access.writeDouble(segment, 20, 1.5);
+        assertEquals(1.5, access.readDouble(segment, 20), 0.0);
+        nativeAccess.writeLong(null, address + 32, -2L);
+        assertEquals(-2L, access.readLong(segment, 32));
+        assertEquals(-2L, access.readVolatileLong(segment, 32));
+        access.writeOrderedInt(segment, 40, 7);
+        assertEquals(7, access.readVolatileInt(segment, 40));
+        assertTrue(access.compareAndSwapInt(segment, 40, 7, 8));
+        assertFalse(access.compareAndSwapInt(segment, 40, 7, 9));
+        assertTrue(access.compareAndSwapLong(segment, 32, -2L, 3L));
+        assertEquals(3L, access.readLong(segment, 32));
+        access.writeBytes(segment, 48, 16, (byte) 0x5A);
+        assertEquals(0x5A5A5A5A5A5A5A5AL, access.readLong(segment, 56));
+        assertEquals(ByteOrder.nativeOrder(), access.byteOrder(segment));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void accessesAreBoundsChecked() {
+        access.readLong(segment, 252);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void accessesFailAfterArenaIsClosed() {
+        arena.close();
+        access.readLong(segment, 0);
+    }
+
+    @Test
+    public void hashesLikeByteArrays() {
+        byte[] bytes = new byte[200];
+        new Random(1).nextBytes(bytes);
+        MemorySegment.copy(MemorySegment.ofArray(bytes), 0, segment, 3, bytes.length);
+        LongHashFunction hash = LongHashFunction.xx_r39();
+        assertEquals(hash.hashBytes(bytes), hash.hash(segment, access, 3, bytes.length));
+        Accessor.Full<MemorySegment, MemorySegment> accessor = MemorySegmentAccess.accessor();
+        assertSame(access, accessor.access());
+        assertEquals(3, accessor.offset(segment, 3));
+    }
+
+    @Test
+    public void atomicUpdates() {
+        access.writeInt(segment, 8, 5);
+        assertEquals(5, access.getAndAddInt(segment, 8, 3));
+        assertEquals(8, access.getAndSetInt(segment, 8, 0b1100));
+        assertEquals(0b1100, access.getAndBitwiseOrInt(segment, 8, 0b0011));
+        assertEquals(0b1111, access.getAndBitwiseAndInt(segment, 8, 0b0110));
+        assertEquals(0b0110, access.getAndBitwiseXorInt(segment, 8, 0b0101));
+        assertEquals(0b0011, access.readInt(segment, 8));
+
+        access.writeLong(segment, 16, 1L << 40);
+        assertEquals(1L << 40, access.getAndAddLong(segment, 16, -1L));
+        assertEquals((1L << 40) - 1, access.getAndSetLong(segment, 16, 0xF0L));
+        assertEquals(0xF0L, access.getAndBitwiseOrLong(segment, 16, 1L << 62));
+        assertEquals(0xF0L | 1L << 62, access.getAndBitwiseAndLong(segment, 16, 0xFFL));
+        assertEquals(0xF0L, access.getAndBitwiseXorLong(segment, 16, -1L));
+        assertEquals(~0xF0L, access.readLong(segment, 16));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void atomicUpdatesRequireAlignment() {
+        access.getAndAddLong(segment, 12, 1L);
+    }
+
+    @Test
+    public void bitSetFramesAndLocksWorkOnSegments() {
+        BitSetFrame frame = new ConcurrentFlatBitSetFrame(128);
+        frame.clearAll(access, segment, 0);
+        assertEquals(0, frame.setNextClearBit(access, segment, 0, 0));
+        assertEquals(1, frame.setNextClearBit(access, segment, 0, 0));
+        assertEquals(2, frame.cardinality(access, segment, 0));
+
+        ReadWriteLockingStrategy lock = VanillaReadWriteWithWaitsLockingStrategy.instance();
+        lock.reset(access, segment, 64);
+        assertTrue(lock.tryReadLock(access, segment, 64));
+        assertFalse(lock.tryWriteLock(access, segment, 64));
+        lock.readUnlock(access, segment, 64);
+        assertTrue(lock.tryWriteLock(access, segment, 64));
+        lock.writeUnlock(access, segment, 64);
+    }
+}